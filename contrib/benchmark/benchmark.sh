@@ -69,7 +69,7 @@ check_env(){
 
   # check JAVA_HOME
   if [ -z "$JAVA_HOME" -a ! -f "/usr/bin/java" ]; then
-    echo "\$JAVA_HOME not set, JDK/JRE 1.6 required"
+    echo "\$JAVA_HOME not set, JDK/JRE 1.7 required"
     exit 1
   fi
 
@@ -32,6 +32,9 @@ using namespace xtreemfs::pbrpc;
 
 namespace xtreemfs {
 
+// Defined in execute_sync_request.cpp.
+int GetBusyRetryBackoffMs(int retry_delay_s, int busy_in_a_row);
+
 AsyncWriteHandler::AsyncWriteHandler(
     FileInfo* file_info,
     UUIDIterator* uuid_iterator,
@@ -337,7 +340,8 @@ void AsyncWriteHandler::HandleCallback(
           (error->error_type() == xtreemfs::pbrpc::IO_ERROR ||
            error->error_type() == xtreemfs::pbrpc::INTERNAL_SERVER_ERROR ||
            error->error_type() == xtreemfs::pbrpc::REDIRECT ||
-           error->error_type() == xtreemfs::pbrpc::INSUFFICIENT_VOUCHER)) {
+           error->error_type() == xtreemfs::pbrpc::INSUFFICIENT_VOUCHER ||
+           error->error_type() == xtreemfs::pbrpc::SERVER_BUSY)) {
         std::string error_str;
         xtreemfs::util::LogLevel level = xtreemfs::util::LEVEL_ERROR;
 
@@ -381,20 +385,33 @@ void AsyncWriteHandler::HandleCallback(
           if(p.posix_errno() != POSIX_ERROR_NONE){
               throw p;
           }
+        } else if (error->error_type() == xtreemfs::pbrpc::SERVER_BUSY) {
+          // The server is overloaded, but not failed. A busy error does not
+          // replace another error as worst error.
+          if (first_fail &&
+              xtreemfs::util::Logging::log->loggingActive(LEVEL_DEBUG)) {
+            xtreemfs::util::Logging::log->getLog(LEVEL_DEBUG)
+                << "The server " << service_address << " (" << service_uuid
+                << ") is busy, retrying (attempt "
+                << write_buffer->retry_count_ << ")" << std::endl;
+          }
         } else {
           // Communication error or Internal Server Error.
 
           // set the current error as new worst error if it is worse:
-          // a non-REDIRECT error is worse than another non-REDIRECT error
-          // from a request with an earlier time stamp
-          if ((worst_error_.error_type() != xtreemfs::pbrpc::REDIRECT) &&
+          // a non-REDIRECT error is worse than a busy server and than another
+          // non-REDIRECT error from a request with an earlier time stamp
+          if (worst_error_.error_type() == xtreemfs::pbrpc::SERVER_BUSY) {
+              worst_error_.CopyFrom(*error);
+              worst_write_buffer_ = write_buffer;
+          } else if ((worst_error_.error_type() != xtreemfs::pbrpc::REDIRECT) &&
               (worst_write_buffer_->request_sent_time <
                write_buffer->request_sent_time)) {
               worst_error_.CopyFrom(*error);
           }
 
           // Log only the first retry in a series of write requests
-          if (first_fail) {
+          if (first_fail || worst_write_buffer_ == write_buffer) {
           //if (write_buffer->retry_count_ == 1 && max_write_tries_ != 1) {
             std::string retries_left = max_write_tries_ == 0 ? "infinite"
                 : boost::lexical_cast<std::string>(max_write_tries_
@@ -459,6 +476,7 @@ void AsyncWriteHandler::HandleCallback(
       // NOTE: only handle-able errors with enough retries can make it
       //       until here
 
+      bool busy = false;
       if (worst_error_.error_type() == xtreemfs::pbrpc::REDIRECT) {
         uuid_iterator_->SetCurrentUUID(worst_error_.redirect_to_server_uuid());
         // first fast reconnect
@@ -466,29 +484,41 @@ void AsyncWriteHandler::HandleCallback(
           redirected_ = true;
           fast_redirect_ = true;
         }
+      } else if (worst_error_.error_type() == xtreemfs::pbrpc::SERVER_BUSY) {
+        // The server is not failed, retry it after a backoff.
+        busy = true;
       } else {
         // Mark the current UUID as failed and get the next one.
         uuid_iterator_->MarkUUIDAsFailed(worst_write_buffer_->osd_uuid);
       }
 
       // delay retries to avoid flooding.
-      // delay = retry_delay - (current_time - request_sent_time)
-      boost::posix_time::time_duration delay_time_left =
-          boost::posix_time::seconds(volume_options_.retry_delay_s) -  // delay
-          (boost::posix_time::microsec_clock::local_time() -   // current time
-           worst_write_buffer_->request_sent_time);
+      boost::posix_time::time_duration delay_time_left;
+      if (busy) {
+        // delay = randomized exponential backoff based on the attempts
+        delay_time_left = boost::posix_time::milliseconds(
+            GetBusyRetryBackoffMs(volume_options_.retry_delay_s,
+                                  worst_write_buffer_->retry_count_ + 1));
+      } else {
+        // delay = retry_delay - (current_time - request_sent_time)
+        delay_time_left =
+            boost::posix_time::seconds(volume_options_.retry_delay_s) -  // delay
+            (boost::posix_time::microsec_clock::local_time() -   // current time
+             worst_write_buffer_->request_sent_time);
+      }
 
 
       if (!(fast_redirect_ || delay_time_left.is_negative())) {
         try {
           // Log time left
-          if (xtreemfs::util::Logging::log->loggingActive(
-              xtreemfs::util::LEVEL_INFO)) {
-            xtreemfs::util::Logging::log->getLog(xtreemfs::util::LEVEL_INFO)
+          xtreemfs::util::LogLevel level = busy ? xtreemfs::util::LEVEL_DEBUG
+                                                : xtreemfs::util::LEVEL_INFO;
+          if (xtreemfs::util::Logging::log->loggingActive(level)) {
+            xtreemfs::util::Logging::log->getLog(level)
                 << "Retrying. Waiting " << boost::lexical_cast<std::string>(
                     (delay_time_left.is_negative() || fast_redirect_) ? 0 :
-                        delay_time_left.total_seconds())
-                << " more seconds till next retry."
+                        delay_time_left.total_milliseconds())
+                << " more milliseconds till next retry."
                 << std::endl;
           }
           // boost::thread interruption point
@@ -15,6 +15,7 @@
 #include <boost/function.hpp>
 #include <boost/lexical_cast.hpp>
 #include <boost/thread/thread.hpp>
+#include <cstdlib>
 #include <ctime>
 #include <google/protobuf/descriptor.h>
 #include <iostream>
@@ -92,6 +93,47 @@ void DelayNextRetry(const RPCOptions& options,
   }
 }
 
+/** Returns the delay in ms before a request that was rejected by a busy server
+ *  is retried.
+ *
+ * The backoff grows exponentially with the number of busy errors in a row, up
+ * to "retry_delay_s", and is randomized to spread the retries of different
+ * clients. It is also used for the retries of async writes.
+ */
+int GetBusyRetryBackoffMs(int retry_delay_s, int busy_in_a_row) {
+  const int kMinBackoffMs = 100;
+  int max_backoff_ms = std::max(kMinBackoffMs, retry_delay_s * 1000);
+  int backoff_ms = std::min(max_backoff_ms,
+                            kMinBackoffMs << std::min(busy_in_a_row - 1, 20));
+  return backoff_ms / 2 + std::rand() % (backoff_ms / 2 + 1);
+}
+
+/** Helper function which delays the retry of a request that was rejected by a
+ *  busy server, see GetBusyRetryBackoffMs().
+ *
+ * @throws  boost::thread_interrupted if interrupted.
+ *
+ * @remarks Ownership of "response" is transferred if function throws.
+ */
+void DelayBusyRetry(const RPCOptions& options,
+    int busy_in_a_row,
+    rpc::SyncCallbackBase* response) {
+  int backoff_ms = GetBusyRetryBackoffMs(options.retry_delay_s(),
+                                         busy_in_a_row);
+
+  try {
+    Interruptibilizer::SleepInterruptible(backoff_ms,
+                                          options.was_interrupted_cb());
+  } catch (const boost::thread_interrupted&) {
+    if (response != NULL) {
+      // Free response.
+      response->DeleteBuffers();
+      delete response;
+    }
+    throw;
+  }
+}
+
 /** Retries to execute the synchronous request "sync_function" up to "options.
  *  options.max_retries()" times and may get interrupted. The "uuid_iterator"
  *  object is used to retrieve UUIDs or mark them as failed.
@@ -124,6 +166,7 @@ rpc::SyncCallbackBase* ExecuteSyncRequest(
   int attempt = 0;
   bool getXCap = false;
   int redirects_in_a_row = 0;
+  int busy_in_a_row = 0;
   bool max_redirects_in_a_row_exceeded = false;
   rpc::SyncCallbackBase* response = NULL;
   string service_uuid = "";
@@ -177,7 +220,7 @@ rpc::SyncCallbackBase* ExecuteSyncRequest(
 
     // Check response.
     if (has_failed) {
-      // Retry only if it is a recoverable error (REDIRECT, IO_ERROR, INTERNAL_SERVER_ERROR).  // NOLINT
+      // Retry only if it is a recoverable error (REDIRECT, IO_ERROR, INTERNAL_SERVER_ERROR, SERVER_BUSY).  // NOLINT
       bool retry = false;
       bool delayRetry = true;
       // Message to be logged and respective log level if retry occurs.
@@ -252,6 +295,20 @@ rpc::SyncCallbackBase* ExecuteSyncRequest(
         }
       }
 
+      if (err.error_type() == SERVER_BUSY) {
+        // The server is overloaded, but not failed: retry it after a backoff.
+        retry = true;
+        busy_in_a_row++;
+        level = LEVEL_DEBUG;
+        delay_error = "The server "
+            + (uuid_iterator_has_addresses ? service_address
+                  : ( service_address + " (" + service_uuid + ")"))
+            + " is busy, retrying (attempt "
+            + boost::lexical_cast<string>(attempt) + ")";
+      } else {
+        busy_in_a_row = 0;
+      }
+
       if (err.error_type() == INSUFFICIENT_VOUCHER) {
         string error =
             "The server "
@@ -311,7 +368,12 @@ rpc::SyncCallbackBase* ExecuteSyncRequest(
           (attempt < options.max_retries() || options.max_retries() == 0 ||
            // or this last retry should be delayed.
            (attempt == options.max_retries() && options.delay_last_attempt()))) {  // NOLINT
-        if (delayRetry) {
+        if (busy_in_a_row > 0) {
+          if (Logging::log->loggingActive(level)) {
+            Logging::log->getLog(level) << delay_error << endl;
+          }
+          DelayBusyRetry(options, busy_in_a_row, response);
+        } else if (delayRetry) {
           DelayNextRetry(options, request_sent_time, delay_error, level, response);  // NOLINT
         }else{
           if (Logging::log->loggingActive(LEVEL_DEBUG)) {
@@ -96,7 +96,10 @@ void VolumeImplementation::Start() {
   mrc_service_client_.reset(new MRCServiceClient(network_client_.get()));
   osd_service_client_.reset(new OSDServiceClient(network_client_.get()));
 
-  // Register StripingPolicies.
+  // Register StripingPolicies. Erasure-coded files
+  // (STRIPING_POLICY_ERASURECODE) are only supported by the Java client, so
+  // accessing them fails; the MRC rejects such policies unless
+  // erasure_coding.enabled is set.
   stripe_translators_[STRIPING_POLICY_RAID0] = new StripeTranslatorRaid0();
 
   // Start periodic threads.
@@ -47,15 +47,13 @@ public class RPCClientConnection {
 
     private int  numConnectAttempts;
 
-    private final ByteBuffer     requestRecordMarker;
-
     private final ByteBuffer     responseRecordMarker;
 
     private ReusableBuffer[]     responseBuffers;
 
     private ByteBuffer[]         requestBuffers;
 
-    private RPCClientRequest	 pendingRequest;
+    private final List<RPCClientRequest> pendingRequests;
     
     private ReceiveState         receiveState;
 
@@ -70,7 +68,7 @@ public class RPCClientConnection {
         numConnectAttempts = 0;
         nextReconnectTime = 0;
         sendQueue = new LinkedList<RPCClientRequest>();
-        requestRecordMarker = ByteBuffer.allocateDirect(RecordMarker.HDR_SIZE);
+        pendingRequests = new LinkedList<RPCClientRequest>();
         responseRecordMarker = ByteBuffer.allocateDirect(RecordMarker.HDR_SIZE);
         this.endpoint = endpoint;
         receiveState = ReceiveState.RECORD_MARKER;
@@ -86,6 +84,9 @@ public class RPCClientConnection {
         for (RPCClientRequest rq : sendQueue) {
             rq.freeBuffers();
         }
+        for (RPCClientRequest rq : pendingRequests) {
+            rq.freeBuffers();
+        }
         for (RPCClientRequest rq : requests.values()) {
             rq.freeBuffers();
         }
@@ -153,13 +154,6 @@ public class RPCClientConnection {
     }
 
     
-    /**
-     * @return the requestFragHdr
-     */
-    ByteBuffer getRequestRecordMarker() {
-        return requestRecordMarker;
-    }
-
     /**
      * @return the responseFragHdr
      */
@@ -191,12 +185,11 @@ public class RPCClientConnection {
         this.requestBuffers = requestBuffers;
     }
 
-    public RPCClientRequest getPendingRequest() {
-        return pendingRequest;
-    }
-    
-    public void setPendingRequest(RPCClientRequest pendingRequest) {
-    	this.pendingRequest = pendingRequest;
+    /**
+     * @return the requests which are currently written with the requestBuffers
+     */
+    public List<RPCClientRequest> getPendingRequests() {
+        return pendingRequests;
     }
     
     /**
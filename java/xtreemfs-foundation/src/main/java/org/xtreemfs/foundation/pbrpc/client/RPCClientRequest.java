@@ -16,10 +16,10 @@ import org.xtreemfs.foundation.TimeSync;
 import org.xtreemfs.foundation.buffer.BufferPool;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.foundation.logging.Logging;
-import org.xtreemfs.foundation.pbrpc.utils.ReusableBufferOutputStream;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.Auth;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.UserCredentials;
+import org.xtreemfs.foundation.pbrpc.utils.MessageUtils;
 import org.xtreemfs.foundation.pbrpc.utils.RecordMarker;
 
 
@@ -55,46 +55,38 @@ public class RPCClientRequest<ReturnType extends Message> {
         requestHeader = RPC.RPCHeader.newBuilder().setCallId(callId).setMessageType(RPC.MessageType.RPC_REQUEST).setRequestHeader(rqHdr).build();
         this.response = response;
 
-        ReusableBufferOutputStream os = new ReusableBufferOutputStream(ReusableBufferOutputStream.BUFF_SIZE);
-        requestHeader.writeTo(os);
-        hdrLen = os.length();
-        if (message != null) {
-            message.writeTo(os);
-            msgLen = os.length()-hdrLen;
-        } else {
-            msgLen = 0;
-        }
-        if (data != null) {
-            os.appendBuffer(data);
-            dataLen = data.limit();
-        } else {
-            dataLen = 0;
-        }
+        // The record marker is serialized into the same buffer as the header
+        // and message, which allows to send the whole request (and several
+        // queued requests) with a single gathering write.
+        hdrLen = requestHeader.getSerializedSize();
+        msgLen = (message != null) ? message.getSerializedSize() : 0;
+        dataLen = (data != null) ? data.limit() : 0;
         assert(hdrLen > 0);
         assert(msgLen >= 0);
         assert(dataLen >= 0);
-        os.flip();
-        buffers = os.getBuffers();
+
+        ReusableBuffer record = MessageUtils.serializeRecord(requestHeader, message, dataLen);
+        if (data != null) {
+            data.position(0);
+            buffers = new ReusableBuffer[]{record, data};
+        } else {
+            buffers = new ReusableBuffer[]{record};
+        }
     }
 
     public ReusableBuffer[] getBuffers() {
         return buffers;
     }
 
-    public ByteBuffer[] packBuffers(ByteBuffer recordMarker) {
+    public ByteBuffer[] packBuffers() {
         if (Logging.isDebug()) {
             Logging.logMessage(Logging.LEVEL_DEBUG, this, "sending record marker: %d/%d/%d", hdrLen,msgLen,dataLen);
         }
-        recordMarker.putInt(hdrLen);
-        recordMarker.putInt(msgLen);
-        recordMarker.putInt(dataLen);
-        recordMarker.flip();
-        ByteBuffer[] arr = new ByteBuffer[buffers.length+1];
-        arr[0] = recordMarker;
+        ByteBuffer[] arr = new ByteBuffer[buffers.length];
         for (int i = 0; i < buffers.length; i++) {
-            arr[i+1] = buffers[i].getBuffer();
+            arr[i] = buffers[i].getBuffer();
             if (Logging.isDebug()) {
-                Logging.logMessage(Logging.LEVEL_DEBUG, this, "send buffer #%d: %s", i+1,buffers[i]);
+                Logging.logMessage(Logging.LEVEL_DEBUG, this, "send buffer #%d: %s", i,buffers[i]);
             }
         }
         return arr;
@@ -167,6 +159,20 @@ public class RPCClientRequest<ReturnType extends Message> {
         }
     }
 
+    /**
+     * @return the number of bytes of this request which have not been written yet
+     */
+    long getBytesRemaining() {
+        return RecordMarker.HDR_SIZE + hdrLen + dataLen + msgLen - bytesWritten;
+    }
+
+    /**
+     * @return true, if the request was written completely
+     */
+    boolean isSent() {
+        return getBytesRemaining() == 0;
+    }
+
     public void checkEnoughBytesSent() {
         if (bytesWritten != RecordMarker.HDR_SIZE + hdrLen + dataLen + msgLen) {
             String errorMessage = "Not enough bytes written (expected: "
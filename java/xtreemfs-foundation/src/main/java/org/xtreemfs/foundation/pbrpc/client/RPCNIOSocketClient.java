@@ -20,6 +20,8 @@ import java.nio.channels.NotYetConnectedException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -27,6 +29,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -45,9 +48,11 @@ import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.Auth;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.UserCredentials;
 import org.xtreemfs.foundation.pbrpc.server.RPCNIOSocketServer;
 import org.xtreemfs.foundation.pbrpc.server.RPCNIOSocketServerConnection;
-import org.xtreemfs.foundation.pbrpc.utils.ReusableBufferInputStream;
+import org.xtreemfs.foundation.pbrpc.utils.MessageUtils;
 import org.xtreemfs.foundation.util.OutputUtils;
 
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
 import com.google.protobuf.Message;
 
 /**
@@ -62,7 +67,29 @@ public class RPCNIOSocketClient extends LifeCycleThread {
      */
     public static final int TIMEOUT_GRANULARITY = 250;
 
-    private final Map<InetSocketAddress, RPCClientConnection> connections;
+    /**
+     * maximum number of buffers to pack into a single gathering write when
+     * several requests are queued for the same connection
+     */
+    public static final int MAX_GATHERED_BUFFERS = 64;
+
+    /**
+     * name of the message field which is used to map requests for the same
+     * file to the same connection if several connections per endpoint are used
+     */
+    public static final String STRIPING_FIELD_NAME = "file_id";
+
+    private final Map<InetSocketAddress, RPCClientConnection[]> connections;
+
+    /**
+     * number of the striping field for each message type, -1 if the type has
+     * no such field
+     */
+    private final Map<Descriptor, Integer> stripingFields;
+
+    private final AtomicInteger nextConnection;
+
+    private volatile int connectionsPerEndpoint;
 
     private final int requestTimeout;
 
@@ -133,7 +160,10 @@ public class RPCNIOSocketClient extends LifeCycleThread {
         this.sendBufferSize = sendBufferSize;
         this.receiveBufferSize = receiveBufferSize;
         this.localBindPoint = localBindPoint;
-        connections = new HashMap<InetSocketAddress, RPCClientConnection>();
+        connections = new HashMap<InetSocketAddress, RPCClientConnection[]>();
+        stripingFields = new ConcurrentHashMap<Descriptor, Integer>();
+        nextConnection = new AtomicInteger();
+        connectionsPerEndpoint = 1;
         selector = Selector.open();
         this.sslOptions = sslOptions;
         quit = false;
@@ -147,18 +177,39 @@ public class RPCNIOSocketClient extends LifeCycleThread {
     }
 
 
+    /**
+     * Sets the number of TCP connections which are opened to each endpoint.
+     * Requests carrying a file ID are always sent over the same connection to
+     * preserve their order, all other requests are distributed round robin.
+     * Must be called before the first request is sent.
+     *
+     * @param connectionsPerEndpoint
+     *            number of connections, at least 1
+     */
+    public void setConnectionsPerEndpoint(int connectionsPerEndpoint) {
+        if (connectionsPerEndpoint < 1) {
+            throw new IllegalArgumentException("at least one connection per endpoint is required");
+        }
+        this.connectionsPerEndpoint = connectionsPerEndpoint;
+    }
+
+    public int getConnectionsPerEndpoint() {
+        return connectionsPerEndpoint;
+    }
+
     public void sendRequest(InetSocketAddress server, Auth auth, UserCredentials uCred, int interface_id, int proc_id, Message message, ReusableBuffer data,
                             RPCResponse response, boolean highPriority) {
         try {
             RPCClientRequest rq = new RPCClientRequest(auth, uCred, transactionId.incrementAndGet(), interface_id, proc_id, message, data, response);
-            internalSendRequest(server, rq, highPriority);
+            internalSendRequest(server, rq, message, highPriority);
         } catch (Throwable e) { // CancelledKeyException, RuntimeException (caused by missing TimeSyncThread)
             //e.printStackTrace();
             response.requestFailed(e.toString());
         }
     }
 
-    private void internalSendRequest(InetSocketAddress server, RPCClientRequest request, boolean highPriority) {
+    private void internalSendRequest(InetSocketAddress server, RPCClientRequest request, Message message,
+            boolean highPriority) {
         if (Logging.isDebug()) {
             Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this, "sending request %s no %d", request
                     .toString(), transactionId.get());
@@ -166,10 +217,16 @@ public class RPCNIOSocketClient extends LifeCycleThread {
         // get connection
         RPCClientConnection con = null;
         synchronized (connections) {
-            con = connections.get(server);
+            RPCClientConnection[] cons = connections.get(server);
+            if (cons == null) {
+                cons = new RPCClientConnection[connectionsPerEndpoint];
+                connections.put(server, cons);
+            }
+            final int slot = (cons.length == 1) ? 0 : selectConnection(message, cons.length);
+            con = cons[slot];
             if (con == null) {
                 con = new RPCClientConnection(server);
-                connections.put(server, con);
+                cons[slot] = con;
             }
         }
         synchronized (con) {
@@ -200,6 +257,30 @@ public class RPCNIOSocketClient extends LifeCycleThread {
         }
     }
 
+    /**
+     * Selects the connection for a message. Messages for the same file are
+     * mapped to the same connection.
+     */
+    private int selectConnection(Message message, int numConnections) {
+        if (message != null) {
+            final Descriptor type = message.getDescriptorForType();
+            Integer fieldNumber = stripingFields.get(type);
+            if (fieldNumber == null) {
+                final FieldDescriptor field = type.findFieldByName(STRIPING_FIELD_NAME);
+                fieldNumber = (field != null && !field.isRepeated()
+                        && field.getJavaType() == FieldDescriptor.JavaType.STRING) ? field.getNumber() : -1;
+                stripingFields.put(type, fieldNumber);
+            }
+            if (fieldNumber != -1) {
+                final FieldDescriptor field = type.findFieldByNumber(fieldNumber);
+                if (message.hasField(field)) {
+                    return (message.getField(field).hashCode() & Integer.MAX_VALUE) % numConnections;
+                }
+            }
+        }
+        return (nextConnection.getAndIncrement() & Integer.MAX_VALUE) % numConnections;
+    }
+
     @Override
     public void run() {
 
@@ -299,21 +380,26 @@ public class RPCNIOSocketClient extends LifeCycleThread {
         }
 
         synchronized (connections) {
-            for (RPCClientConnection con : connections.values()) {
-                synchronized (con) {
-                    for (RPCClientRequest rq : con.getSendQueue()) {
-                        rq.getResponse().requestFailed("RPC cancelled due to client shutdown");
-                        rq.freeBuffers();
-                    }
-                    for (RPCClientRequest rq : con.getRequests().values()) {
-                        rq.getResponse().requestFailed("RPC cancelled due to client shutdown");
-                        rq.freeBuffers();
+            for (RPCClientConnection[] cons : connections.values()) {
+                for (RPCClientConnection con : cons) {
+                    if (con == null) {
+                        continue;
                     }
-                    try {
-                        if (con.getChannel() != null)
-                            con.getChannel().close();
-                    } catch (Exception ex) {
-                        ex.printStackTrace();
+                    synchronized (con) {
+                        for (RPCClientRequest rq : con.getSendQueue()) {
+                            rq.getResponse().requestFailed("RPC cancelled due to client shutdown");
+                            rq.freeBuffers();
+                        }
+                        for (RPCClientRequest rq : con.getRequests().values()) {
+                            rq.getResponse().requestFailed("RPC cancelled due to client shutdown");
+                            rq.freeBuffers();
+                        }
+                        try {
+                            if (con.getChannel() != null)
+                                con.getChannel().close();
+                        } catch (Exception ex) {
+                            ex.printStackTrace();
+                        }
                     }
                 }
             }
@@ -550,8 +636,8 @@ public class RPCNIOSocketClient extends LifeCycleThread {
                 receiveBuffers[2].flip();
 
 
-            ReusableBufferInputStream rbis = new ReusableBufferInputStream(receiveBuffers[0]);
-            final RPC.RPCHeader header = RPC.RPCHeader.parseFrom(rbis);
+            final RPC.RPCHeader header = MessageUtils.parseFrom(RPC.RPCHeader.getDefaultInstance(),
+                    receiveBuffers[0]);
             BufferPool.free(receiveBuffers[0]);
 
             RPCClientRequest rq = con.getRequest(header.getCallId());
@@ -588,22 +674,19 @@ public class RPCNIOSocketClient extends LifeCycleThread {
 
                     while (true) {
                         ByteBuffer[] buffers = con.getRequestBuffers();
-                        RPCClientRequest send = con.getPendingRequest();
+                        final List<RPCClientRequest> sendBatch = con.getPendingRequests();
                         if (buffers == null) {
-                            assert (send == null);
+                            assert (sendBatch.isEmpty());
                             synchronized (con) {
                                 if (con.getSendQueue().isEmpty()) {
                                     // no more responses, stop writing...
                                     key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
                                     break;
                                 }
-                                send = con.getSendQueue().remove(0);
+                                buffers = gatherRequests(con.getSendQueue(), sendBatch);
                             }
-                            assert (send != null);
-                            con.getRequestRecordMarker().clear();
-                            buffers = send.packBuffers(con.getRequestRecordMarker());
+                            assert (!sendBatch.isEmpty());
                             con.setRequestBuffers(buffers);
-                            con.setPendingRequest(send);
                         }
 
                         assert (buffers != null);
@@ -618,8 +701,22 @@ public class RPCNIOSocketClient extends LifeCycleThread {
                             closeConnection(key, "server unexpectedly closed connection (EOF)");
                             return;
                         }
-                        // Detect if the client writes outside of the fragment.
-                        send.recordBytesWritten(numBytesWritten);
+                        // Detect if the client writes outside of the fragments.
+                        recordBytesWritten(sendBatch, numBytesWritten);
+
+                        // hand over completely sent requests, a response may
+                        // arrive before the rest of the batch is written
+                        synchronized (con) {
+                            while (!sendBatch.isEmpty() && sendBatch.get(0).isSent()) {
+                                final RPCClientRequest send = sendBatch.remove(0);
+                                con.addRequest(send.getRequestHeader().getCallId(), send);
+                                if (Logging.isDebug()) {
+                                    Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this,
+                                            "sent request %d to %s", send.getRequestHeader().getCallId(),
+                                            con.getEndpointString());
+                                }
+                            }
+                        }
 
                         if (buffers[buffers.length - 1].hasRemaining()) {
                             // not enough data...
@@ -627,17 +724,10 @@ public class RPCNIOSocketClient extends LifeCycleThread {
                             break;
                         }
 
-                        //remove from queue
-                        synchronized (con) {
-                            con.addRequest(send.getRequestHeader().getCallId(), send);
-                            if (Logging.isDebug()) {
-                                Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this,
-                                        "sent request %d to %s", send.getRequestHeader().getCallId(), con.getEndpointString());
-                            }
+                        for (RPCClientRequest send : sendBatch) {
+                            send.checkEnoughBytesSent();
                         }
-                        send.checkEnoughBytesSent();
                         con.setRequestBuffers(null);
-                        con.setPendingRequest(null);
                     }
                 }
             }
@@ -664,6 +754,53 @@ public class RPCNIOSocketClient extends LifeCycleThread {
         }
     }
 
+    /**
+     * Removes requests from the head of the send queue and packs their buffers
+     * into a single array, so that they can be sent with one gathering write.
+     * At least one request is taken, further requests are only added as long
+     * as MAX_GATHERED_BUFFERS is not exceeded.
+     *
+     * @param sendQueue
+     *            the queue of the connection, must be locked by the caller
+     * @param sendBatch
+     *            receives the requests which were taken from the queue
+     * @return the buffers to write
+     */
+    private static ByteBuffer[] gatherRequests(List<RPCClientRequest> sendQueue, List<RPCClientRequest> sendBatch) {
+        RPCClientRequest send = sendQueue.remove(0);
+        sendBatch.add(send);
+        ByteBuffer[] first = send.packBuffers();
+        if (sendQueue.isEmpty() || first.length >= MAX_GATHERED_BUFFERS) {
+            return first;
+        }
+
+        List<ByteBuffer> gathered = new ArrayList<ByteBuffer>(MAX_GATHERED_BUFFERS);
+        Collections.addAll(gathered, first);
+        while (!sendQueue.isEmpty()
+                && gathered.size() + sendQueue.get(0).getBuffers().length <= MAX_GATHERED_BUFFERS) {
+            send = sendQueue.remove(0);
+            sendBatch.add(send);
+            Collections.addAll(gathered, send.packBuffers());
+        }
+        return gathered.toArray(new ByteBuffer[gathered.size()]);
+    }
+
+    /**
+     * Accounts the bytes written by a gathering write to the requests of the
+     * batch in the order they were packed. Surplus bytes are accounted to the
+     * last request, which will detect the overflow.
+     */
+    private static void recordBytesWritten(List<RPCClientRequest> sendBatch, long numBytesWritten) {
+        Iterator<RPCClientRequest> iter = sendBatch.iterator();
+        while (iter.hasNext() && numBytesWritten > 0) {
+            final RPCClientRequest send = iter.next();
+            final long numBytes = iter.hasNext() ? Math.min(numBytesWritten, send.getBytesRemaining())
+                    : numBytesWritten;
+            send.recordBytesWritten(numBytes);
+            numBytesWritten -= numBytes;
+        }
+    }
+
     private void connectConnection(SelectionKey key) {
         final RPCClientConnection con = (RPCClientConnection) key.attachment();
         final ChannelIO channel = con.getChannel();
@@ -705,9 +842,12 @@ public class RPCNIOSocketClient extends LifeCycleThread {
             } catch (Exception ex) {
             }
             cancelRq.addAll(con.getRequests().values());
+            cancelRq.addAll(con.getPendingRequests());
             cancelRq.addAll(con.getSendQueue());
             con.getRequests().clear();
+            con.getPendingRequests().clear();
             con.getSendQueue().clear();
+            con.setRequestBuffers(null);
             con.setChannel(null);
         }
 
@@ -729,49 +869,33 @@ public class RPCNIOSocketClient extends LifeCycleThread {
         if (now >= lastCheck.get() + TIMEOUT_GRANULARITY) {
             // check for timed out requests
             synchronized (connections) {
-                Iterator<RPCClientConnection> conIter = connections.values().iterator();
+                Iterator<RPCClientConnection[]> conIter = connections.values().iterator();
                 while (conIter.hasNext()) {
-                    final RPCClientConnection con = conIter.next();
-
-                    if (con.getLastUsed() < (now - connectionTimeout)) {
-                        if (Logging.isDebug()) {
-                            Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this,
-                                    "removing idle connection");
-                        }
-                        try {
-                            conIter.remove();
-                            closeConnection(con.getChannel().keyFor(selector), null);
-                        } catch (Exception ex) {
+                    final RPCClientConnection[] cons = conIter.next();
+                    boolean inUse = false;
+                    for (int i = 0; i < cons.length; i++) {
+                        final RPCClientConnection con = cons[i];
+                        if (con == null) {
+                            continue;
                         }
-                    } else {
-                        // check for request timeout
-                        List<RPCClientRequest> cancelRq = new LinkedList<RPCClientRequest>();
-                        synchronized (con) {
-                            Iterator<RPCClientRequest> iter = con.getRequests().values().iterator();
-                            while (iter.hasNext()) {
-                                final RPCClientRequest rq = iter.next();
-                                if (rq.getTimeQueued() + requestTimeout < now) {
-                                    cancelRq.add(rq);
-                                    iter.remove();
-                                }
+
+                        if (con.getLastUsed() < (now - connectionTimeout)) {
+                            if (Logging.isDebug()) {
+                                Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this,
+                                        "removing idle connection");
                             }
-                            iter = con.getSendQueue().iterator();
-                            while (iter.hasNext()) {
-                                final RPCClientRequest rq = iter.next();
-                                if (rq.getTimeQueued() + requestTimeout < now) {
-                                    cancelRq.add(rq);
-                                    iter.remove();
-                                } else {
-                                    // requests are ordered :-)
-                                    break;
-                                }
+                            try {
+                                cons[i] = null;
+                                closeConnection(con.getChannel().keyFor(selector), null);
+                            } catch (Exception ex) {
                             }
+                        } else {
+                            inUse = true;
+                            checkForTimedOutRequests(con, now);
                         }
-                        for (RPCClientRequest rq : cancelRq) {
-                            rq.getResponse().requestFailed("sending RPC failed: request timed out");
-                            rq.freeBuffers();
-                        }
-
+                    }
+                    if (!inUse) {
+                        conIter.remove();
                     }
                 }
 
@@ -780,6 +904,35 @@ public class RPCNIOSocketClient extends LifeCycleThread {
         }
     }
 
+    private void checkForTimedOutRequests(RPCClientConnection con, long now) {
+        List<RPCClientRequest> cancelRq = new LinkedList<RPCClientRequest>();
+        synchronized (con) {
+            Iterator<RPCClientRequest> iter = con.getRequests().values().iterator();
+            while (iter.hasNext()) {
+                final RPCClientRequest rq = iter.next();
+                if (rq.getTimeQueued() + requestTimeout < now) {
+                    cancelRq.add(rq);
+                    iter.remove();
+                }
+            }
+            iter = con.getSendQueue().iterator();
+            while (iter.hasNext()) {
+                final RPCClientRequest rq = iter.next();
+                if (rq.getTimeQueued() + requestTimeout < now) {
+                    cancelRq.add(rq);
+                    iter.remove();
+                } else {
+                    // requests are ordered :-)
+                    break;
+                }
+            }
+        }
+        for (RPCClientRequest rq : cancelRq) {
+            rq.getResponse().requestFailed("sending RPC failed: request timed out");
+            rq.freeBuffers();
+        }
+    }
+
     @Override
     public void shutdown() {
         this.quit = true;
@@ -792,13 +945,20 @@ public class RPCNIOSocketClient extends LifeCycleThread {
      * @return an array with the number of bytes received [0] and sent [1]
      */
     public long[] getTransferStats(InetSocketAddress server) {
-        RPCClientConnection con = null;
+        RPCClientConnection[] cons = null;
         synchronized (connections) {
-            con = connections.get(server);
+            cons = connections.get(server);
+            if (cons == null)
+                return null;
+            cons = cons.clone();
+        }
+        long[] stats = new long[] { 0, 0 };
+        for (RPCClientConnection con : cons) {
+            if (con != null) {
+                stats[0] += con.bytesRX;
+                stats[1] += con.bytesTX;
+            }
         }
-        if (con == null)
-            return null;
-        else
-            return new long[]{con.bytesRX, con.bytesTX};
+        return stats;
     }
 }
@@ -15,7 +15,7 @@ import org.xtreemfs.foundation.buffer.ReusableBuffer;
 
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
-import org.xtreemfs.foundation.pbrpc.utils.ReusableBufferInputStream;
+import org.xtreemfs.foundation.pbrpc.utils.MessageUtils;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.MessageType;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader.ErrorResponse;
 
@@ -71,8 +71,7 @@ public class RPCResponse<V extends Message> implements RPCResponseListener<V> {
             if (request.getResponseHeader().getMessageType() == MessageType.RPC_RESPONSE_SUCCESS) {
                 if (responsePrototype != null) {
                     if (message != null) {
-                        ReusableBufferInputStream rbis = new ReusableBufferInputStream(message);
-                        V responseObject = (V) responsePrototype.newBuilderForType().mergeFrom(rbis).build();
+                        V responseObject = MessageUtils.parseFrom(responsePrototype, message);
                         assert(responseObject != null);
                         BufferPool.free(message);
                         message = null;
@@ -0,0 +1,653 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.foundation.pbrpc.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.ShutdownChannelGroupException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.logging.Logging.Category;
+import org.xtreemfs.foundation.util.OutputUtils;
+
+/**
+ * PBRPC server based on asynchronous socket channels (NIO.2). In contrast to
+ * the {@link RPCNIOSocketServer}, there is no selector loop. Reads and writes
+ * are completed by the threads of an asynchronous channel group, which uses
+ * the native event mechanism of the platform (e.g. epoll on Linux) directly.
+ * Hence, several connections can be served in parallel and no selected key
+ * sets are created per event. SSL is not supported.
+ */
+public class RPCNIO2SocketServer extends RPCSocketServer {
+
+    /**
+     * the server socket
+     */
+    private final AsynchronousServerSocketChannel socket;
+
+    /**
+     * thread pool which completes the I/O operations of all connections
+     */
+    private final AsynchronousChannelGroup        group;
+
+    /**
+     * The receiver that gets all incoming requests.
+     */
+    private final RPCServerRequestListener        receiver;
+
+    private final Set<RPCNIO2SocketServerConnection> connections;
+
+    /**
+     * Connection count
+     */
+    private final AtomicInteger                   numConnections;
+
+    /**
+     * Number of requests received but not answered
+     */
+    private final AtomicLong                      pendingRequests;
+
+    /**
+     * Port on which the server listens for incoming connections.
+     */
+    private final int                             bindPort;
+
+    /**
+     * maximum number of pending client requests to allow
+     */
+    private final int                             maxClientQLength;
+
+    /**
+     * if the Q was full we need at least clientQThreshold spaces before we
+     * start reading from the client again
+     */
+    private final int                             clientQThreshold;
+
+    private final CountDownLatch                  shutdownLatch;
+
+    private volatile boolean                      quit;
+
+    private final AcceptHandler                   acceptHandler;
+
+    private final RecordMarkerHandler             recordMarkerHandler;
+
+    private final BodyHandler                     bodyHandler;
+
+    private final WriteHandler                    writeHandler;
+
+    public RPCNIO2SocketServer(final int bindPort, InetAddress bindAddr, RPCServerRequestListener rl,
+            int bindRetries, int receiveBufferSize, int maxClientQLength) throws IOException {
+        super("PBRPCSrv@" + bindPort);
+
+        group = AsynchronousChannelGroup.withFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                new ThreadFactory() {
+                    private final AtomicInteger threadNo = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "PBRPCSrv@" + bindPort + "-" + threadNo.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+
+        try {
+            socket = AsynchronousServerSocketChannel.open(group);
+            socket.setOption(StandardSocketOptions.SO_RCVBUF, (receiveBufferSize != -1) ? receiveBufferSize
+                    : 256 * 1024);
+            if (receiveBufferSize != -1 && socket.getOption(StandardSocketOptions.SO_RCVBUF) != receiveBufferSize) {
+                Logging.logMessage(Logging.LEVEL_WARN, Category.net, this,
+                        "could not set socket receive buffer size to " + receiveBufferSize
+                                + ", using default size of " + socket.getOption(StandardSocketOptions.SO_RCVBUF));
+            }
+            socket.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+
+            bindWithRetries(bindPort, bindAddr, bindRetries);
+        } catch (IOException ex) {
+            group.shutdownNow();
+            throw ex;
+        }
+        this.bindPort = bindPort;
+
+        this.receiver = rl;
+        this.connections = Collections.newSetFromMap(new ConcurrentHashMap<RPCNIO2SocketServerConnection, Boolean>());
+        this.numConnections = new AtomicInteger(0);
+        this.pendingRequests = new AtomicLong(0);
+        this.maxClientQLength = maxClientQLength;
+        this.clientQThreshold = (maxClientQLength / 2 >= 0) ? maxClientQLength / 2 : 0;
+        if (maxClientQLength <= 1) {
+            Logging.logMessage(Logging.LEVEL_WARN, this, "max client queue length is 1, pipe lining is disabled.");
+        }
+        this.shutdownLatch = new CountDownLatch(1);
+
+        this.acceptHandler = new AcceptHandler();
+        this.recordMarkerHandler = new RecordMarkerHandler();
+        this.bodyHandler = new BodyHandler();
+        this.writeHandler = new WriteHandler();
+    }
+
+    @Override
+    protected void bindSocket(InetSocketAddress address) throws IOException {
+        socket.bind(address);
+    }
+
+    /**
+     * Stop the server and close all connections.
+     */
+    @Override
+    public void shutdown() {
+        this.quit = true;
+        shutdownLatch.countDown();
+    }
+
+    @Override
+    public void run() {
+
+        notifyStarted();
+
+        if (Logging.isInfo()) {
+            Logging.logMessage(Logging.LEVEL_INFO, Category.net, this, "PBRPC Srv %d ready (NIO2 transport)",
+                    bindPort);
+        }
+
+        try {
+            accept();
+
+            shutdownLatch.await();
+
+            socket.close();
+            for (RPCNIO2SocketServerConnection con : connections) {
+                closeConnection(con);
+            }
+            group.shutdownNow();
+            group.awaitTermination(1, TimeUnit.MINUTES);
+
+            if (Logging.isInfo())
+                Logging.logMessage(Logging.LEVEL_INFO, Category.net, this,
+                        "PBRPC Server %d shutdown complete", bindPort);
+
+            notifyStopped();
+        } catch (Throwable thr) {
+            Logging.logMessage(Logging.LEVEL_ERROR, Category.net, this, "PBRPC Server %d CRASHED!", bindPort);
+            notifyCrashed(thr);
+        }
+    }
+
+    /**
+     * sends a response.
+     */
+    @Override
+    public void sendResponse(RPCServerRequest request, RPCServerResponse response) {
+        assert (response != null);
+
+        if (Logging.isDebug())
+            Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this, "response sent (request %s)",
+                    request.getHeader().getCallId());
+        final RPCNIO2SocketServerConnection con = (RPCNIO2SocketServerConnection) request.getConnection();
+        try {
+            request.freeBuffers();
+        } catch (AssertionError ex) {
+            if (Logging.isInfo()) {
+                Logging.logMessage(Logging.LEVEL_INFO, Category.net, this,
+                        "Caught an AssertionError while trying to free buffers:");
+                Logging.logError(Logging.LEVEL_INFO, this, ex);
+            }
+        }
+        assert (con.getServer() == this);
+
+        boolean startWriting = false;
+        synchronized (con) {
+            if (con.isConnectionClosed()) {
+                // ignore and free buffers
+                pendingRequests.decrementAndGet();
+                response.freeBuffers();
+                return;
+            }
+            con.getPendingResponses().add(response);
+            if (!con.isWriting()) {
+                con.setWriting(true);
+                startWriting = true;
+            }
+        }
+        if (startWriting) {
+            writeNext(con);
+        }
+    }
+
+    private void accept() {
+        try {
+            socket.accept(null, acceptHandler);
+        } catch (ShutdownChannelGroupException ex) {
+            // server is shutting down
+        }
+    }
+
+    private void acceptConnection(AsynchronousSocketChannel client) {
+        final RPCNIO2SocketServerConnection con;
+        try {
+            client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            con = new RPCNIO2SocketServerConnection(this, client, client.getRemoteAddress());
+        } catch (IOException ex) {
+            if (Logging.isDebug())
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this, "cannot establish connection: %s",
+                        ex.toString());
+            try {
+                client.close();
+            } catch (IOException ex2) {
+            }
+            return;
+        }
+
+        numConnections.incrementAndGet();
+        connections.add(con);
+
+        if (Logging.isDebug()) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this, "connect from client at %s",
+                    con.getSender());
+        }
+
+        if (quit) {
+            closeConnection(con);
+        } else {
+            readRecordMarker(con);
+        }
+    }
+
+    private void readRecordMarker(RPCNIO2SocketServerConnection con) {
+        con.getReceiveRecordMarker().clear();
+        continueRecordMarker(con);
+    }
+
+    private void continueRecordMarker(RPCNIO2SocketServerConnection con) {
+        try {
+            con.getSocketChannel().read(con.getReceiveRecordMarker(), con, recordMarkerHandler);
+        } catch (RuntimeException ex) {
+            recordMarkerHandler.failed(ex, con);
+        }
+    }
+
+    private void readBody(RPCNIO2SocketServerConnection con) {
+        final ByteBuffer[] buffers = con.getReceiveByteBuffers();
+        try {
+            con.getSocketChannel().read(buffers, 0, buffers.length, 0L, TimeUnit.MILLISECONDS, con, bodyHandler);
+        } catch (RuntimeException ex) {
+            bodyHandler.failed(ex, con);
+        }
+    }
+
+    /**
+     * Called when the record marker was received completely. Allocates the
+     * buffers for the header, message and data.
+     */
+    private void recordMarkerReceived(RPCNIO2SocketServerConnection con) {
+        final ByteBuffer buf = con.getReceiveRecordMarker();
+        buf.position(0);
+        final int hdrLen = buf.getInt();
+        final int msgLen = buf.getInt();
+        final int dataLen = buf.getInt();
+
+        if ((hdrLen <= 0) || (hdrLen >= RPCNIOSocketServer.MAX_FRAGMENT_SIZE) || (msgLen < 0)
+                || (msgLen >= RPCNIOSocketServer.MAX_FRAGMENT_SIZE) || (dataLen < 0)
+                || (dataLen >= RPCNIOSocketServer.MAX_FRAGMENT_SIZE)) {
+            Logging.logMessage(Logging.LEVEL_ERROR, Category.net, this,
+                    "invalid record marker size (%d/%d/%d) received, closing connection to client %s", hdrLen,
+                    msgLen, dataLen, con.getSender());
+            closeConnection(con);
+            return;
+        }
+
+        final ReusableBuffer[] buffers = new ReusableBuffer[] { BufferPool.allocate(hdrLen),
+                ((msgLen > 0) ? BufferPool.allocate(msgLen) : null),
+                ((dataLen > 0) ? BufferPool.allocate(dataLen) : null) };
+        final List<ByteBuffer> byteBuffers = new ArrayList<ByteBuffer>(3);
+        for (ReusableBuffer buffer : buffers) {
+            if (buffer != null) {
+                byteBuffers.add(buffer.getBuffer());
+            }
+        }
+        con.setReceiveBuffers(buffers, byteBuffers.toArray(new ByteBuffer[byteBuffers.size()]));
+        readBody(con);
+    }
+
+    /**
+     * Called when header, message and data of a request were received
+     * completely. Hands the request over to the receiver and continues
+     * reading, unless the client has too many open requests.
+     */
+    private void bodyReceived(RPCNIO2SocketServerConnection con) {
+        final ReusableBuffer[] receiveBuffers = con.getReceiveBuffers();
+        con.setReceiveBuffers(null, null);
+        receiveBuffers[0].flip();
+        if (receiveBuffers[1] != null)
+            receiveBuffers[1].flip();
+        if (receiveBuffers[2] != null)
+            receiveBuffers[2].flip();
+
+        RPCServerRequest rq = null;
+        try {
+            rq = new RPCServerRequest(con, receiveBuffers[0], receiveBuffers[1], receiveBuffers[2]);
+        } catch (IOException ex) {
+            // close connection if the header cannot be parsed
+            Logging.logMessage(Logging.LEVEL_ERROR, Category.net, this, "invalid PBRPC header received: " + ex);
+            if (Logging.isDebug()) {
+                Logging.logError(Logging.LEVEL_DEBUG, this, ex);
+            }
+            closeConnection(con);
+            BufferPool.free(receiveBuffers[1]);
+            BufferPool.free(receiveBuffers[2]);
+            return;
+        }
+
+        if (Logging.isDebug())
+            Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this, "request received (request %s)", rq
+                    .getHeader().getCallId());
+
+        final boolean suspendReading;
+        synchronized (con) {
+            suspendReading = con.incrementOpenRequests() > maxClientQLength;
+            con.setReadSuspended(suspendReading);
+        }
+        pendingRequests.incrementAndGet();
+
+        if (!receiveRequest(rq)) {
+            closeConnection(con);
+            return;
+        }
+
+        if (suspendReading) {
+            Logging.logMessage(Logging.LEVEL_WARN, Category.net, this,
+                    "client sent too many requests... not accepting new requests from %s, q=%d", con.getSender(),
+                    maxClientQLength + 1);
+        } else {
+            readRecordMarker(con);
+        }
+    }
+
+    /**
+     * @return true on success, false on error
+     */
+    private boolean receiveRequest(RPCServerRequest request) {
+        try {
+            receiver.receiveRecord(request);
+            return true;
+        } catch (IllegalArgumentException ex) {
+            Logging.logMessage(Logging.LEVEL_ERROR, Category.net, this, "invalid PBRPC header received: " + ex);
+            if (Logging.isDebug()) {
+                Logging.logError(Logging.LEVEL_DEBUG, this, ex);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Starts writing the next batch of pending responses, or clears the
+     * writing flag if there are none left.
+     */
+    private void writeNext(RPCNIO2SocketServerConnection con) {
+        synchronized (con) {
+            if (con.isConnectionClosed()) {
+                dropPendingResponses(con);
+                return;
+            }
+            if (con.getPendingResponses().isEmpty()) {
+                con.setWriting(false);
+                return;
+            }
+            gatherResponses(con);
+        }
+        write(con);
+    }
+
+    private void write(RPCNIO2SocketServerConnection con) {
+        final ByteBuffer[] buffers = con.getSendBuffers();
+        try {
+            con.getSocketChannel().write(buffers, 0, buffers.length, 0L, TimeUnit.MILLISECONDS, con, writeHandler);
+        } catch (RuntimeException ex) {
+            writeHandler.failed(ex, con);
+        }
+    }
+
+    /**
+     * Packs the buffers of the responses at the head of the pending responses
+     * queue into a single array, see RPCNIOSocketServer.
+     *
+     * @param con
+     *            the connection, must be locked by the caller
+     */
+    private static void gatherResponses(RPCNIO2SocketServerConnection con) {
+        final List<ByteBuffer> gathered = new ArrayList<ByteBuffer>();
+        int numResponses = 0;
+        Iterator<RPCServerResponse> iter = con.getPendingResponses().iterator();
+        while (iter.hasNext()) {
+            RPCServerResponse rs = iter.next();
+            if (numResponses > 0
+                    && gathered.size() + rs.getBuffers().length > RPCNIOSocketServer.MAX_GATHERED_BUFFERS) {
+                break;
+            }
+            Collections.addAll(gathered, rs.packBuffers());
+            numResponses++;
+        }
+        con.setSendBuffers(gathered.toArray(new ByteBuffer[gathered.size()]), numResponses);
+    }
+
+    /**
+     * Called when the current batch of responses was sent completely.
+     */
+    private void responsesSent(RPCNIO2SocketServerConnection con) {
+        boolean resumeReading = false;
+        int numRq = 0;
+        synchronized (con) {
+            for (int i = con.getNumSendResponses(); i > 0; i--) {
+                RPCServerResponse rs = con.getPendingResponses().poll();
+                if (Logging.isDebug()) {
+                    Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this, "sent response for %s", rs
+                            .toString());
+                }
+                rs.freeBuffers();
+                pendingRequests.decrementAndGet();
+                numRq = con.decrementOpenRequests();
+            }
+            con.setSendBuffers(null, 0);
+
+            if (con.isReadSuspended() && numRq < clientQThreshold && !con.isConnectionClosed()) {
+                con.setReadSuspended(false);
+                resumeReading = true;
+            }
+        }
+
+        if (resumeReading) {
+            // read from client again
+            Logging.logMessage(Logging.LEVEL_WARN, Category.net, this, "client allowed to send data again: %s, q=%d",
+                    con.getSender(), numRq);
+            readRecordMarker(con);
+        }
+        writeNext(con);
+    }
+
+    /**
+     * Frees all responses of a closed connection.
+     *
+     * @param con
+     *            the connection, must be locked by the caller
+     */
+    private void dropPendingResponses(RPCNIO2SocketServerConnection con) {
+        for (RPCServerResponse rs : con.getPendingResponses()) {
+            rs.freeBuffers();
+            pendingRequests.decrementAndGet();
+        }
+        con.getPendingResponses().clear();
+        con.setSendBuffers(null, 0);
+        con.setWriting(false);
+    }
+
+    /**
+     * Closes a connection. Buffers which are used by outstanding reads and
+     * writes are freed by the respective completion handlers.
+     */
+    private void closeConnection(RPCNIO2SocketServerConnection con) {
+        synchronized (con) {
+            if (con.isConnectionClosed()) {
+                return;
+            }
+            con.setConnectionClosed(true);
+        }
+
+        connections.remove(con);
+        numConnections.decrementAndGet();
+        try {
+            con.getSocketChannel().close();
+        } catch (IOException ex) {
+        }
+
+        if (Logging.isDebug()) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this, "closing connection to %s", con
+                    .getSender());
+        }
+    }
+
+    private void logConnectionError(RPCNIO2SocketServerConnection con, Throwable exc) {
+        if (exc instanceof ClosedChannelException || con.isConnectionClosed()) {
+            return;
+        }
+        if (Logging.isDebug()) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this, "connection to %s failed: %s",
+                    con.getSender(), OutputUtils.stackTraceToString(exc));
+        }
+    }
+
+    @Override
+    public int getNumConnections() {
+        return this.numConnections.get();
+    }
+
+    @Override
+    public long getPendingRequests() {
+        return this.pendingRequests.get();
+    }
+
+    private final class AcceptHandler implements CompletionHandler<AsynchronousSocketChannel, Void> {
+
+        @Override
+        public void completed(AsynchronousSocketChannel client, Void attachment) {
+            accept();
+            acceptConnection(client);
+        }
+
+        @Override
+        public void failed(Throwable exc, Void attachment) {
+            if (quit || exc instanceof ClosedChannelException || exc instanceof ShutdownChannelGroupException) {
+                return;
+            }
+            if (Logging.isDebug())
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, RPCNIO2SocketServer.this,
+                        "cannot establish connection: %s", exc.toString());
+            accept();
+        }
+    }
+
+    private final class RecordMarkerHandler implements CompletionHandler<Integer, RPCNIO2SocketServerConnection> {
+
+        @Override
+        public void completed(Integer numBytesRead, RPCNIO2SocketServerConnection con) {
+            if (numBytesRead < 0) {
+                if (Logging.isDebug()) {
+                    Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, RPCNIO2SocketServer.this,
+                            "client closed connection (EOF): %s", con.getSender());
+                }
+                closeConnection(con);
+                return;
+            }
+            if (con.getReceiveRecordMarker().hasRemaining()) {
+                // not enough data...
+                continueRecordMarker(con);
+            } else {
+                recordMarkerReceived(con);
+            }
+        }
+
+        @Override
+        public void failed(Throwable exc, RPCNIO2SocketServerConnection con) {
+            logConnectionError(con, exc);
+            closeConnection(con);
+        }
+    }
+
+    private final class BodyHandler implements CompletionHandler<Long, RPCNIO2SocketServerConnection> {
+
+        @Override
+        public void completed(Long numBytesRead, RPCNIO2SocketServerConnection con) {
+            if (numBytesRead < 0) {
+                if (Logging.isDebug()) {
+                    Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, RPCNIO2SocketServer.this,
+                            "client closed connection (EOF): %s", con.getSender());
+                }
+                closeConnection(con);
+                con.freeReceiveBuffers();
+                return;
+            }
+            final ByteBuffer[] buffers = con.getReceiveByteBuffers();
+            if (buffers[buffers.length - 1].hasRemaining()) {
+                // not enough data...
+                readBody(con);
+            } else {
+                bodyReceived(con);
+            }
+        }
+
+        @Override
+        public void failed(Throwable exc, RPCNIO2SocketServerConnection con) {
+            logConnectionError(con, exc);
+            closeConnection(con);
+            con.freeReceiveBuffers();
+        }
+    }
+
+    private final class WriteHandler implements CompletionHandler<Long, RPCNIO2SocketServerConnection> {
+
+        @Override
+        public void completed(Long numBytesWritten, RPCNIO2SocketServerConnection con) {
+            final ByteBuffer[] buffers = con.getSendBuffers();
+            if (buffers[buffers.length - 1].hasRemaining()) {
+                // not enough data...
+                write(con);
+            } else {
+                responsesSent(con);
+            }
+        }
+
+        @Override
+        public void failed(Throwable exc, RPCNIO2SocketServerConnection con) {
+            logConnectionError(con, exc);
+            closeConnection(con);
+            synchronized (con) {
+                dropPendingResponses(con);
+            }
+        }
+    }
+}
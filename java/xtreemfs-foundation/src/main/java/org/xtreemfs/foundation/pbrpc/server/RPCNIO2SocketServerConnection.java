@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.foundation.pbrpc.server;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.util.LinkedList;
+import java.util.Queue;
+
+import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+import org.xtreemfs.foundation.pbrpc.channels.ChannelIO;
+import org.xtreemfs.foundation.pbrpc.utils.RecordMarker;
+
+/**
+ * Connection of the {@link RPCNIO2SocketServer}. At most one read and one
+ * write are outstanding per connection. The receive state is only accessed by
+ * the read completion handlers, the send state is guarded by the connection's
+ * monitor.
+ */
+public class RPCNIO2SocketServerConnection implements RPCServerConnectionInterface {
+
+    private final RPCNIO2SocketServer       server;
+
+    private final AsynchronousSocketChannel channel;
+
+    private final SocketAddress             clientAddress;
+
+    private final ByteBuffer                receiveRecordMarker;
+
+    private ReusableBuffer[]                receiveBuffers;
+
+    private ByteBuffer[]                    receiveByteBuffers;
+
+    private final Queue<RPCServerResponse>  pendingResponses;
+
+    private ByteBuffer[]                    sendBuffers;
+
+    private int                             numSendResponses;
+
+    private boolean                         writing;
+
+    private boolean                         readSuspended;
+
+    private int                             openRequests;
+
+    private volatile boolean                connectionClosed;
+
+    public RPCNIO2SocketServerConnection(RPCNIO2SocketServer server, AsynchronousSocketChannel channel,
+            SocketAddress clientAddress) {
+        this.server = server;
+        this.channel = channel;
+        this.clientAddress = clientAddress;
+        this.receiveRecordMarker = ByteBuffer.allocateDirect(RecordMarker.HDR_SIZE);
+        this.pendingResponses = new LinkedList<RPCServerResponse>();
+    }
+
+    @Override
+    public RPCServerInterface getServer() {
+        return server;
+    }
+
+    @Override
+    public SocketAddress getSender() {
+        return clientAddress;
+    }
+
+    /**
+     * The NIO2 transport is not based on {@link ChannelIO}, hence there are no
+     * certificates which can be obtained from the channel.
+     *
+     * @return null
+     */
+    @Override
+    public ChannelIO getChannel() {
+        return null;
+    }
+
+    AsynchronousSocketChannel getSocketChannel() {
+        return channel;
+    }
+
+    ByteBuffer getReceiveRecordMarker() {
+        return receiveRecordMarker;
+    }
+
+    ReusableBuffer[] getReceiveBuffers() {
+        return receiveBuffers;
+    }
+
+    ByteBuffer[] getReceiveByteBuffers() {
+        return receiveByteBuffers;
+    }
+
+    void setReceiveBuffers(ReusableBuffer[] receiveBuffers, ByteBuffer[] receiveByteBuffers) {
+        this.receiveBuffers = receiveBuffers;
+        this.receiveByteBuffers = receiveByteBuffers;
+    }
+
+    void freeReceiveBuffers() {
+        if (receiveBuffers != null) {
+            for (ReusableBuffer buffer : receiveBuffers)
+                BufferPool.free(buffer);
+            receiveBuffers = null;
+            receiveByteBuffers = null;
+        }
+    }
+
+    Queue<RPCServerResponse> getPendingResponses() {
+        return pendingResponses;
+    }
+
+    ByteBuffer[] getSendBuffers() {
+        return sendBuffers;
+    }
+
+    void setSendBuffers(ByteBuffer[] sendBuffers, int numSendResponses) {
+        this.sendBuffers = sendBuffers;
+        this.numSendResponses = numSendResponses;
+    }
+
+    int getNumSendResponses() {
+        return numSendResponses;
+    }
+
+    boolean isWriting() {
+        return writing;
+    }
+
+    void setWriting(boolean writing) {
+        this.writing = writing;
+    }
+
+    boolean isReadSuspended() {
+        return readSuspended;
+    }
+
+    void setReadSuspended(boolean readSuspended) {
+        this.readSuspended = readSuspended;
+    }
+
+    int getOpenRequests() {
+        return openRequests;
+    }
+
+    int incrementOpenRequests() {
+        return ++openRequests;
+    }
+
+    int decrementOpenRequests() {
+        return --openRequests;
+    }
+
+    public boolean isConnectionClosed() {
+        return connectionClosed;
+    }
+
+    void setConnectionClosed(boolean connectionClosed) {
+        this.connectionClosed = connectionClosed;
+    }
+
+}
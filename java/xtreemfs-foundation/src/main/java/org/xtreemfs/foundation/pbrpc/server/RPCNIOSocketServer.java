@@ -9,7 +9,6 @@
 package org.xtreemfs.foundation.pbrpc.server;
 
 import java.io.IOException;
-import java.net.BindException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketException;
@@ -21,13 +20,14 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import org.xtreemfs.foundation.LifeCycleThread;
 import org.xtreemfs.foundation.SSLOptions;
 import org.xtreemfs.foundation.buffer.BufferPool;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
@@ -41,7 +41,7 @@ import org.xtreemfs.foundation.util.OutputUtils;
 /**
  * @author bjko
  */
-public class RPCNIOSocketServer extends LifeCycleThread implements RPCServerInterface {
+public class RPCNIOSocketServer extends RPCSocketServer {
 
     /**
      * Maximum fragment size to accept. If the size is larger, the connection is
@@ -49,6 +49,12 @@ public class RPCNIOSocketServer extends LifeCycleThread implements RPCServerInte
      */
     public static final int MAX_FRAGMENT_SIZE = 1024 * 1024 * 32;
 
+    /**
+     * Maximum number of buffers to pack into a single gathering write when
+     * several responses are pending for the same connection.
+     */
+    public static final int MAX_GATHERED_BUFFERS = 64;
+
     /**
      * the server socket
      */
@@ -146,42 +152,8 @@ public class RPCNIOSocketServer extends LifeCycleThread implements RPCServerInte
 
         socket.socket().setReuseAddress(true);
 
-        int bindTry = 0;
-        long waitTime = 1000;
-        do {
-            try {
-                ++bindTry;
-                socket.socket().bind(
-                        bindAddr == null ? new InetSocketAddress(bindPort) : new InetSocketAddress(bindAddr, bindPort));
-            } catch (BindException e) {
-                if (bindTry > bindRetries) {
-                    // Rethrow exception with the failed port number.
-                    throw new BindException("Failed to bind to port " + bindPort + " after " + bindTry + " attempt(s)"
-                            + " (" + e.getMessage() + ").");
-                } else {
-                    Logging.logMessage(Logging.LEVEL_WARN, Category.net, this,
-                            "Failed to bind to port " + bindPort + ", waiting " + waitTime + "ms for it to become free ("
-                            + (bindRetries - bindTry) + " attempt(s) left).");
-                    if (bindTry == 1) {
-                        Logging.logMessage(Logging.LEVEL_WARN, Category.net, this,
-                                "You can configure the number of attempts using the 'listen.port.bind_retries' parameter."
-                                + " Current value: " + bindRetries + ".");
-                    }
-                    try {
-                        Thread.sleep(waitTime);
-                    } catch (InterruptedException e1) {
-                        throw new RuntimeException("Interrupted while waiting for port " + bindPort + " to become free", e1);
-                    }
-                    waitTime *= 2;
-                }
-            }
-        } while (!socket.socket().isBound());
-
+        bindWithRetries(bindPort, bindAddr, bindRetries);
         this.bindPort = bindPort;
-        if (bindTry > 1) {
-            Logging.logMessage(Logging.LEVEL_INFO, Category.net, this, "Successfully bound to port " + bindPort
-                    + " after " + bindTry + " attempts");
-        }
 
         // create a selector and register socket
         selector = Selector.open();
@@ -204,6 +176,11 @@ public class RPCNIOSocketServer extends LifeCycleThread implements RPCServerInte
         }
     }
 
+    @Override
+    protected void bindSocket(InetSocketAddress address) throws IOException {
+        socket.socket().bind(address);
+    }
+
     /**
      * Stop the server and close all connections.
      */
@@ -541,22 +518,17 @@ public class RPCNIOSocketServer extends LifeCycleThread implements RPCServerInte
 
                     while (true) {
 
-                        // final ByteBuffer fragmentHeader =
-                        // con.getSendFragHdr();
-
                         ByteBuffer[] response = con.getSendBuffers();
                         if (response == null) {
                             synchronized (con) {
-                                RPCServerResponse rq = con.getPendingResponses().peek();
-                                if (rq == null) {
+                                if (con.getPendingResponses().isEmpty()) {
                                     // no more responses, stop writing...
                                     con.setSendBuffers(null);
                                     key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
                                     break;
                                 }
-                                response = rq.packBuffers(con.getSendFragHdr());
+                                response = gatherResponses(con);
                                 con.setSendBuffers(response);
-                                con.setExpectedRecordSize(rq.getRpcMessageSize());
                             }
                         }
 
@@ -590,18 +562,21 @@ public class RPCNIOSocketServer extends LifeCycleThread implements RPCServerInte
                             break;
                         }
                         con.checkEnoughBytesSent();
-                        // finished sending fragment
-                        // clean up :-) request finished
-                        pendingRequests--;
-                        RPCServerResponse rq = con.getPendingResponses().poll();
-                        if (Logging.isDebug()) {
-                            Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this,
-                                    "sent response for %s", rq.toString());
+                        // finished sending fragments
+                        // clean up :-) requests finished
+                        int numRq = 0;
+                        for (int i = con.getNumSendResponses(); i > 0; i--) {
+                            pendingRequests--;
+                            RPCServerResponse rq = con.getPendingResponses().poll();
+                            if (Logging.isDebug()) {
+                                Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this,
+                                        "sent response for %s", rq.toString());
+                            }
+                            rq.freeBuffers();
+                            numRq = con.getOpenRequests().decrementAndGet();
                         }
-                        rq.freeBuffers();
                         con.setSendBuffers(null);
-                        con.getSendFragHdr().clear();
-                        int numRq = con.getOpenRequests().decrementAndGet();
+                        con.setNumSendResponses(0);
 
                         if ((key.interestOps() & SelectionKey.OP_READ) == 0) {
                             if (numRq < clientQThreshold) {
@@ -644,6 +619,45 @@ public class RPCNIOSocketServer extends LifeCycleThread implements RPCServerInte
         }
     }
 
+    /**
+     * Packs the buffers of the responses at the head of the pending responses
+     * queue into a single array, so that they can be sent with one gathering
+     * write. At least one response is taken, further responses are only added
+     * as long as MAX_GATHERED_BUFFERS is not exceeded. The responses remain in
+     * the queue until they were sent completely.
+     *
+     * @param con
+     *            the connection, must be locked by the caller
+     * @return the buffers to write
+     */
+    private static ByteBuffer[] gatherResponses(RPCNIOSocketServerConnection con) {
+        Iterator<RPCServerResponse> iter = con.getPendingResponses().iterator();
+        RPCServerResponse rq = iter.next();
+        ByteBuffer[] first = rq.packBuffers();
+        int numResponses = 1;
+        int recordSize = rq.getRpcMessageSize();
+
+        List<ByteBuffer> gathered = null;
+        while (iter.hasNext()) {
+            final int numBuffers = (gathered == null) ? first.length : gathered.size();
+            rq = iter.next();
+            if (numBuffers + rq.getBuffers().length > MAX_GATHERED_BUFFERS) {
+                break;
+            }
+            if (gathered == null) {
+                gathered = new ArrayList<ByteBuffer>(MAX_GATHERED_BUFFERS);
+                Collections.addAll(gathered, first);
+            }
+            Collections.addAll(gathered, rq.packBuffers());
+            numResponses++;
+            recordSize += rq.getRpcMessageSize();
+        }
+
+        con.setNumSendResponses(numResponses);
+        con.setExpectedRecordSize(recordSize);
+        return (gathered == null) ? first : gathered.toArray(new ByteBuffer[gathered.size()]);
+    }
+
     /**
      * Reads data from the socket, ensures that SSL connection is ready
      *
@@ -779,10 +793,12 @@ public class RPCNIOSocketServer extends LifeCycleThread implements RPCServerInte
         }
     }
 
+    @Override
     public int getNumConnections() {
         return this.numConnections.get();
     }
 
+    @Override
     public long getPendingRequests() {
         return this.pendingRequests;
     }
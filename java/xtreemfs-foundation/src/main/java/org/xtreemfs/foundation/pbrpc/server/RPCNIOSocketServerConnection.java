@@ -41,14 +41,14 @@ public class RPCNIOSocketServerConnection implements RPCServerConnectionInterfac
 
     private final ByteBuffer    receiveRecordMarker;
 
-    private final ByteBuffer    sendFragHdr;
-
     private ReusableBuffer[]    receiveBuffers;
 
     private ReceiveState        receiveState;
 
     private ByteBuffer[]        sendBuffers;
 
+    private int                 numSendResponses;
+
     private volatile boolean    connectionClosed;
 
     private SocketAddress       clientAddress;
@@ -67,7 +67,6 @@ public class RPCNIOSocketServerConnection implements RPCServerConnectionInterfac
         this.pendingResponses = new ConcurrentLinkedQueue<RPCServerResponse>();
         this.connectionClosed = false;
         this.receiveRecordMarker = ByteBuffer.allocate(RecordMarker.HDR_SIZE);
-        this.sendFragHdr = ByteBuffer.allocate(RecordMarker.HDR_SIZE);
         this.receiveState = ReceiveState.RECORD_MARKER;
         this.server = server;
         try {
@@ -158,13 +157,6 @@ public class RPCNIOSocketServerConnection implements RPCServerConnectionInterfac
         return receiveRecordMarker;
     }
 
-    /**
-     * @return the fragmentHeader
-     */
-    ByteBuffer getSendFragHdr() {
-        return sendFragHdr;
-    }
-
     /**
      * @return the receive
      */
@@ -194,6 +186,20 @@ public class RPCNIOSocketServerConnection implements RPCServerConnectionInterfac
     }
 
 
+    /**
+     * @return the number of pending responses packed into the sendBuffers
+     */
+    int getNumSendResponses() {
+        return numSendResponses;
+    }
+
+    /**
+     * @param numSendResponses the number of pending responses packed into the sendBuffers
+     */
+    void setNumSendResponses(int numSendResponses) {
+        this.numSendResponses = numSendResponses;
+    }
+
     /**
      * @return the clientAddress
      */
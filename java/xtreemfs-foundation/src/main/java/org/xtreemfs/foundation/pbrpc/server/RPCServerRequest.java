@@ -14,7 +14,7 @@ import java.net.SocketAddress;
 import org.xtreemfs.foundation.buffer.BufferPool;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.foundation.logging.Logging;
-import org.xtreemfs.foundation.pbrpc.utils.ReusableBufferInputStream;
+import org.xtreemfs.foundation.pbrpc.utils.MessageUtils;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC;
 
 /**
@@ -30,8 +30,7 @@ public class RPCServerRequest {
 
     public RPCServerRequest(RPCServerConnectionInterface connection, ReusableBuffer headerBuffer, ReusableBuffer message, ReusableBuffer data) throws IOException {
         try {
-            ReusableBufferInputStream rbis = new ReusableBufferInputStream(headerBuffer);
-            header = RPC.RPCHeader.parseFrom(rbis);
+            header = MessageUtils.parseFrom(RPC.RPCHeader.getDefaultInstance(), headerBuffer);
             this.message = message;
             this.data = data;
             this.connection = connection;
@@ -13,8 +13,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import org.xtreemfs.foundation.buffer.BufferPool;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
-import org.xtreemfs.foundation.pbrpc.utils.ReusableBufferOutputStream;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC;
+import org.xtreemfs.foundation.pbrpc.utils.MessageUtils;
 import org.xtreemfs.foundation.pbrpc.utils.RecordMarker;
 
 /**
@@ -31,7 +31,6 @@ public class RPCServerResponse {
     final int dataLen;
 
     public RPCServerResponse(RPC.RPCHeader header, Message message, ReusableBuffer data) throws IOException {
-        ReusableBufferOutputStream os = new ReusableBufferOutputStream(ReusableBufferOutputStream.BUFF_SIZE);
         callId = header.getCallId();
 
         hdrLen = header.getSerializedSize();
@@ -42,25 +41,20 @@ public class RPCServerResponse {
         assert(msgLen >= 0);
         assert(dataLen >= 0);
 
-        RecordMarker rm = new RecordMarker(hdrLen, msgLen, dataLen);
-        rm.writeFragmentHeader(os);
-        header.writeTo(os);
-        if (message != null) {
-            message.writeTo(os);
-        } 
+        ReusableBuffer record = MessageUtils.serializeRecord(header, message, dataLen);
         if (data != null) {
-            data.position(data.limit());
-            os.appendBuffer(data);
-        } 
-        os.flip();
-        buffers = os.getBuffers();
+            data.position(0);
+            buffers = new ReusableBuffer[]{record, data};
+        } else {
+            buffers = new ReusableBuffer[]{record};
+        }
     }
 
     public ReusableBuffer[] getBuffers() {
         return buffers;
     }
 
-    public ByteBuffer[] packBuffers(ByteBuffer recordMarker) {
+    public ByteBuffer[] packBuffers() {
         ByteBuffer[] arr = new ByteBuffer[buffers.length];
         for (int i = 0; i < buffers.length; i++)
             arr[i] = buffers[i].getBuffer();
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.foundation.pbrpc.server;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import org.xtreemfs.foundation.LifeCycleThread;
+import org.xtreemfs.foundation.SSLOptions;
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.logging.Logging.Category;
+
+/**
+ * Base class of the TCP based PBRPC servers. The actual transport is selected
+ * with {@link #create(Transport, int, InetAddress, RPCServerRequestListener, SSLOptions, int, int, int)}.
+ */
+public abstract class RPCSocketServer extends LifeCycleThread implements RPCServerInterface {
+
+    /**
+     * Available transport implementations.
+     */
+    public static enum Transport {
+        /** Selector based transport, see {@link RPCNIOSocketServer}. */
+        NIO,
+        /**
+         * Transport based on asynchronous socket channels (NIO.2), see
+         * {@link RPCNIO2SocketServer}. Requires Java 7 and does not support
+         * SSL.
+         */
+        NIO2;
+
+        /**
+         * Parses the transport name as used in the configuration files.
+         *
+         * @throws IllegalArgumentException
+         *             if the name is unknown
+         */
+        public static Transport parse(String name) {
+            return Transport.valueOf(name.trim().toUpperCase());
+        }
+    }
+
+    public RPCSocketServer(String name) {
+        super(name);
+    }
+
+    /**
+     * @return the number of open client connections
+     */
+    public abstract int getNumConnections();
+
+    /**
+     * @return the number of requests received but not answered yet
+     */
+    public abstract long getPendingRequests();
+
+    /**
+     * Binds the server socket to the given address.
+     */
+    protected abstract void bindSocket(InetSocketAddress address) throws IOException;
+
+    /**
+     * Binds the server socket. If the port is in use, binding is retried
+     * bindRetries times with exponentially increasing wait times.
+     */
+    protected void bindWithRetries(int bindPort, InetAddress bindAddr, int bindRetries) throws IOException {
+        int bindTry = 0;
+        long waitTime = 1000;
+        while (true) {
+            try {
+                ++bindTry;
+                bindSocket(bindAddr == null ? new InetSocketAddress(bindPort) : new InetSocketAddress(bindAddr,
+                        bindPort));
+                break;
+            } catch (BindException e) {
+                if (bindTry > bindRetries) {
+                    // Rethrow exception with the failed port number.
+                    throw new BindException("Failed to bind to port " + bindPort + " after " + bindTry + " attempt(s)"
+                            + " (" + e.getMessage() + ").");
+                } else {
+                    Logging.logMessage(Logging.LEVEL_WARN, Category.net, this,
+                            "Failed to bind to port " + bindPort + ", waiting " + waitTime + "ms for it to become free ("
+                            + (bindRetries - bindTry) + " attempt(s) left).");
+                    if (bindTry == 1) {
+                        Logging.logMessage(Logging.LEVEL_WARN, Category.net, this,
+                                "You can configure the number of attempts using the 'listen.port.bind_retries' parameter."
+                                + " Current value: " + bindRetries + ".");
+                    }
+                    try {
+                        Thread.sleep(waitTime);
+                    } catch (InterruptedException e1) {
+                        throw new RuntimeException("Interrupted while waiting for port " + bindPort + " to become free", e1);
+                    }
+                    waitTime *= 2;
+                }
+            }
+        }
+
+        if (bindTry > 1) {
+            Logging.logMessage(Logging.LEVEL_INFO, Category.net, this, "Successfully bound to port " + bindPort
+                    + " after " + bindTry + " attempts");
+        }
+    }
+
+    /**
+     * Creates a server with the given transport. As the NIO2 transport does
+     * not support SSL, the NIO transport is used if sslOptions are given.
+     */
+    public static RPCSocketServer create(Transport transport, int bindPort, InetAddress bindAddr,
+            RPCServerRequestListener rl, SSLOptions sslOptions, int bindRetries, int receiveBufferSize,
+            int maxClientQLength) throws IOException {
+        if (transport == Transport.NIO2) {
+            if (sslOptions == null) {
+                return new RPCNIO2SocketServer(bindPort, bindAddr, rl, bindRetries, receiveBufferSize,
+                        maxClientQLength);
+            }
+            Logging.logMessage(Logging.LEVEL_WARN, Category.net, RPCSocketServer.class,
+                    "the NIO2 transport does not support SSL, using the NIO transport instead");
+        }
+        return new RPCNIOSocketServer(bindPort, bindAddr, rl, sslOptions, bindRetries, receiveBufferSize,
+                maxClientQLength);
+    }
+}
@@ -28,7 +28,7 @@ import org.xtreemfs.foundation.logging.Logging.Category;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader;
 import org.xtreemfs.foundation.pbrpc.utils.PBRPCDatagramPacket;
 import org.xtreemfs.foundation.pbrpc.utils.RecordMarker;
-import org.xtreemfs.foundation.pbrpc.utils.ReusableBufferInputStream;
+import org.xtreemfs.foundation.pbrpc.utils.MessageUtils;
 
 import com.google.protobuf.Message;
 
@@ -188,14 +188,12 @@ public class RPCUDPSocketServer extends LifeCycleThread implements RPCServerInte
                                 if (Logging.isDebug())
                                     Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this, "rm: %d/%d data: %d",
                                             rm.getRpcHeaderLength(), rm.getMessageLength(), data.limit());
-                                ReusableBufferInputStream rbis = new ReusableBufferInputStream(data);
-
                                 final int origLimit = data.limit();
                                 assert (origLimit == RecordMarker.HDR_SIZE + rm.getRpcHeaderLength()
                                         + rm.getMessageLength());
                                 data.limit(RecordMarker.HDR_SIZE + rm.getRpcHeaderLength());
 
-                                RPCHeader header = RPCHeader.newBuilder().mergeFrom(rbis).build();
+                                RPCHeader header = MessageUtils.parseFrom(RPCHeader.getDefaultInstance(), data);
 
                                 data.range(RecordMarker.HDR_SIZE + rm.getRpcHeaderLength(), rm.getMessageLength());
 
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.foundation.pbrpc.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Message;
+
+/**
+ * Parses and serializes protobuf messages from/to ReusableBuffers without
+ * going through ReusableBufferInputStream/ReusableBufferOutputStream.
+ * <p>
+ * Heap buffers are parsed and serialized in place on their backing array.
+ * Protobuf cannot operate on direct memory, so the bytes of a direct buffer,
+ * which the BufferPool hands out, are copied once from/to a scratch array of
+ * the calling thread. This avoids the per-message allocations of the
+ * stream-based path (a fresh array for parsing, a 4 KB buffer and an output
+ * stream for serialization), but not the copy.
+ */
+public final class MessageUtils {
+
+    /**
+     * messages up to this size are copied through the scratch array of the
+     * thread; larger ones get an array of their own
+     */
+    private static final int               MAX_SCRATCH_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<byte[]> scratch          = new ThreadLocal<byte[]>();
+
+    private MessageUtils() {
+    }
+
+    /**
+     * Creates a CodedInputStream over the remaining bytes of the buffer. The
+     * position of the buffer is not changed.
+     * <p>
+     * The stream of a direct buffer may use the scratch array of the calling
+     * thread, so it has to be consumed before the thread calls any other
+     * method of this class.
+     *
+     * @param buffer
+     *            the buffer to parse
+     * @return the CodedInputStream
+     */
+    public static CodedInputStream newCodedInputStream(ReusableBuffer buffer) {
+        final ByteBuffer bb = buffer.getBuffer();
+        if (bb.hasArray()) {
+            return CodedInputStream.newInstance(bb.array(), bb.arrayOffset() + bb.position(), bb.remaining());
+        }
+
+        final int length = bb.remaining();
+        final byte[] array = getScratch(length);
+        bb.duplicate().get(array, 0, length);
+        return CodedInputStream.newInstance(array, 0, length);
+    }
+
+    /**
+     * Merges the remaining bytes of the buffer into the builder. Afterwards,
+     * the position of the buffer is at its limit, as it would be after
+     * reading the message from a ReusableBufferInputStream.
+     *
+     * @param builder
+     *            the builder to merge into
+     * @param buffer
+     *            the serialized message
+     * @return the builder
+     * @throws IOException
+     *             if the buffer does not contain a valid message
+     */
+    public static <B extends Message.Builder> B mergeFrom(B builder, ReusableBuffer buffer) throws IOException {
+        final CodedInputStream input = newCodedInputStream(buffer);
+        builder.mergeFrom(input);
+        input.checkLastTagWas(0);
+        buffer.position(buffer.position() + input.getTotalBytesRead());
+        return builder;
+    }
+
+    /**
+     * Parses a message of the prototype's type from the remaining bytes of the
+     * buffer.
+     *
+     * @see #mergeFrom(Message.Builder, ReusableBuffer)
+     */
+    @SuppressWarnings("unchecked")
+    public static <M extends Message> M parseFrom(M prototype, ReusableBuffer buffer) throws IOException {
+        return (M) mergeFrom(prototype.newBuilderForType(), buffer).build();
+    }
+
+    /**
+     * Serializes a record marker, the RPC header and the message into a
+     * single pooled buffer of exactly the required size.
+     *
+     * @param header
+     *            the RPC header
+     * @param message
+     *            the message, may be null
+     * @param dataLength
+     *            the length of the data sent after the message
+     * @return the buffer, flipped and ready for sending
+     * @throws IOException
+     */
+    public static ReusableBuffer serializeRecord(Message header, Message message, int dataLength)
+            throws IOException {
+        final int hdrLen = header.getSerializedSize();
+        final int msgLen = (message != null) ? message.getSerializedSize() : 0;
+
+        final ReusableBuffer buffer = BufferPool.allocate(RecordMarker.HDR_SIZE + hdrLen + msgLen);
+        try {
+            final ByteBuffer bb = buffer.getBuffer();
+            new RecordMarker(hdrLen, msgLen, dataLength).writeFragmentHeader(bb);
+
+            final int length = hdrLen + msgLen;
+            if (bb.hasArray()) {
+                writeTo(header, message, bb.array(), bb.arrayOffset() + bb.position(), length);
+            } else {
+                final byte[] array = getScratch(length);
+                writeTo(header, message, array, 0, length);
+                bb.put(array, 0, length);
+            }
+
+            buffer.position(RecordMarker.HDR_SIZE + hdrLen + msgLen);
+            buffer.flip();
+            return buffer;
+        } catch (IOException ex) {
+            BufferPool.free(buffer);
+            throw ex;
+        } catch (RuntimeException ex) {
+            BufferPool.free(buffer);
+            throw ex;
+        }
+    }
+
+    private static void writeTo(Message header, Message message, byte[] array, int offset, int length)
+            throws IOException {
+        final CodedOutputStream output = CodedOutputStream.newInstance(array, offset, length);
+        header.writeTo(output);
+        if (message != null) {
+            message.writeTo(output);
+        }
+        output.checkNoSpaceLeft();
+    }
+
+    /**
+     * Returns an array of at least the given length, which is only valid until
+     * the next call by the same thread.
+     */
+    private static byte[] getScratch(int length) {
+        if (length > MAX_SCRATCH_SIZE) {
+            return new byte[length];
+        }
+        byte[] array = scratch.get();
+        if (array == null || array.length < length) {
+            array = new byte[Math.max(length, 1024)];
+            scratch.set(array);
+        }
+        return array;
+    }
+}
@@ -25,16 +25,15 @@ public class PBRPCDatagramPacket {
 
     public PBRPCDatagramPacket(ReusableBuffer datagramToParse, Message msgPrototype) throws IOException {
         RecordMarker rm = new RecordMarker(datagramToParse.getBuffer());
-        ReusableBufferInputStream rbis = new ReusableBufferInputStream(datagramToParse);
 
         final int origLimit = datagramToParse.limit();
         assert(origLimit == rm.HDR_SIZE+rm.getRpcHeaderLength()+rm.getMessageLength());
         datagramToParse.limit(rm.HDR_SIZE+rm.getRpcHeaderLength());
 
-        header = RPCHeader.newBuilder().mergeFrom(rbis).build();
+        header = MessageUtils.parseFrom(RPCHeader.getDefaultInstance(), datagramToParse);
 
         datagramToParse.limit(origLimit);
-        message = msgPrototype.newBuilderForType().mergeFrom(rbis).build();
+        message = MessageUtils.parseFrom(msgPrototype, datagramToParse);
     }
 
     public PBRPCDatagramPacket(RPCHeader header, Message message) {
@@ -44,15 +43,7 @@ public class PBRPCDatagramPacket {
 
     public ReusableBuffer assembleDatagramPacket() throws IOException {
 
-        ReusableBufferOutputStream out = new ReusableBufferOutputStream(RecordMarker.HDR_SIZE+getHeader().getSerializedSize()+getMessage().getSerializedSize());
-        RecordMarker rm = new RecordMarker(getHeader().getSerializedSize(), getMessage().getSerializedSize(), 0);
-        rm.writeFragmentHeader(out);
-        getHeader().writeTo(out);
-        getMessage().writeTo(out);
-        out.flip();
-        ReusableBuffer[] bufs = out.getBuffers();
-        assert(bufs.length == 1);
-        return bufs[0];
+        return MessageUtils.serializeRecord(getHeader(), getMessage(), 0);
     }
 
     /**
@@ -21,7 +21,7 @@ import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC;
 import org.xtreemfs.foundation.pbrpc.server.RPCNIOSocketServer;
 import org.xtreemfs.foundation.pbrpc.server.RPCServerRequest;
 import org.xtreemfs.foundation.pbrpc.server.RPCServerRequestListener;
-import org.xtreemfs.foundation.pbrpc.utils.ReusableBufferInputStream;
+import org.xtreemfs.foundation.pbrpc.utils.MessageUtils;
 
 /**
  *
@@ -49,8 +49,8 @@ public class PingServer {
                 @Override
                 public void receiveRecord(RPCServerRequest rq) {
                     try {
-                        ReusableBufferInputStream is = new ReusableBufferInputStream(rq.getMessage());
-                        Ping.PingRequest pingRq = Ping.PingRequest.parseFrom(is);
+                        Ping.PingRequest pingRq = MessageUtils.parseFrom(Ping.PingRequest.getDefaultInstance(),
+                                rq.getMessage());
 
                         Ping.PingResponse resp = null;
                         if (pingRq.getSendError()) {
@@ -22,6 +22,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.xtreemfs.foundation.SSLOptions;
@@ -221,6 +223,100 @@ public class PBRPCClientServerTest {
 
     }
 
+    @Test
+    public void testPipelinedRequests() throws Exception {
+        ResponseCreator creator = new ResponseCreator() {
+            @Override
+            public void answer(RPCServerRequest rq, PingRequest pRq) throws Exception {
+                Ping.PingResponse.PingResult result = Ping.PingResponse.PingResult.newBuilder().setText(pRq.getText()).build();
+                Ping.PingResponse resp = Ping.PingResponse.newBuilder().setResult(result).build();
+
+                ReusableBuffer data = null;
+                if (rq.getData() != null) {
+                    data = rq.getData().createViewBuffer();
+                    data.limit(data.capacity());
+                    data.position(data.capacity());
+                }
+
+                rq.sendResponse(resp, data);
+            }
+        };
+
+        TestExecutor exec = new TestExecutor() {
+
+            @Override
+            public void execTest(RPCNIOSocketClient client) throws Exception {
+                PingServiceClient psClient = new PingServiceClient(client,null);
+                RPC.UserCredentials userCred = RPC.UserCredentials.newBuilder().setUsername("test").addGroups("tester").build();
+
+                // send many requests without waiting, so that requests and
+                // responses are gathered into shared writes
+                RPCResponse<PingResponse>[] responses = new RPCResponse[200];
+                for (int i = 0; i < responses.length; i++) {
+                    ReusableBuffer sendData = null;
+                    if (i % 2 == 0) {
+                        byte[] arr = new byte[i * 10 + 1];
+                        for (int j = 0; j < arr.length; j++)
+                            arr[j] = (byte) i;
+                        sendData = ReusableBuffer.wrap(arr);
+                    }
+                    responses[i] = psClient.doPing(new InetSocketAddress("localhost", TEST_PORT), RPCAuthentication.authNone, userCred, "Ping #" + i, false, sendData);
+                }
+
+                for (int i = 0; i < responses.length; i++) {
+                    assertEquals("Ping #" + i, responses[i].get().getResult().getText());
+                    if (i % 2 == 0) {
+                        ReusableBuffer recdata = responses[i].getData();
+                        assertEquals(i * 10 + 1, recdata.remaining());
+                        while (recdata.hasRemaining()) {
+                            assertEquals((byte) i, recdata.get());
+                        }
+                    }
+                    responses[i].freeBuffers();
+                }
+            }
+        };
+        for (String scheme: schemes)
+            runTest(scheme, creator, exec);
+
+    }
+
+    @Test
+    public void testMultipleConnectionsPerEndpoint() throws Exception {
+        ResponseCreator creator = new ResponseCreator() {
+            @Override
+            public void answer(RPCServerRequest rq, PingRequest pRq) throws Exception {
+                Ping.PingResponse.PingResult result = Ping.PingResponse.PingResult.newBuilder().setText(pRq.getText()).build();
+                Ping.PingResponse resp = Ping.PingResponse.newBuilder().setResult(result).build();
+                rq.sendResponse(resp, null);
+            }
+        };
+
+        TestExecutor exec = new TestExecutor() {
+
+            @Override
+            public void execTest(RPCNIOSocketClient client) throws Exception {
+                client.setConnectionsPerEndpoint(4);
+                PingServiceClient psClient = new PingServiceClient(client,null);
+                RPC.UserCredentials userCred = RPC.UserCredentials.newBuilder().setUsername("test").addGroups("tester").build();
+
+                List<RPCResponse<PingResponse>> responses = new ArrayList<RPCResponse<PingResponse>>();
+                for (int i = 0; i < 40; i++) {
+                    responses.add(psClient.doPing(new InetSocketAddress("localhost", TEST_PORT), RPCAuthentication.authNone, userCred, "Ping #" + i, false, null));
+                }
+
+                for (int i = 0; i < responses.size(); i++) {
+                    assertEquals("Ping #" + i, responses.get(i).get().getResult().getText());
+                    responses.get(i).freeBuffers();
+                }
+                assertNotNull(client.getTransferStats(new InetSocketAddress("localhost", TEST_PORT)));
+            }
+        };
+        for (String scheme: schemes)
+            runTest(scheme, creator, exec);
+
+    }
+
     @Test
     public void testTimeout() throws Exception {
         ResponseCreator creator = new ResponseCreator() {
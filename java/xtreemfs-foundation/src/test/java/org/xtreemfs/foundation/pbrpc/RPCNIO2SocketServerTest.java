@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.foundation.pbrpc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xtreemfs.foundation.TimeSync;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.pbrpc.client.RPCAuthentication;
+import org.xtreemfs.foundation.pbrpc.client.RPCNIOSocketClient;
+import org.xtreemfs.foundation.pbrpc.client.RPCResponse;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.Ping;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.Ping.PingResponse;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.PingServiceClient;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC;
+import org.xtreemfs.foundation.pbrpc.server.RPCServerRequest;
+import org.xtreemfs.foundation.pbrpc.server.RPCServerRequestListener;
+import org.xtreemfs.foundation.pbrpc.server.RPCSocketServer;
+import org.xtreemfs.foundation.pbrpc.server.RPCSocketServer.Transport;
+import org.xtreemfs.foundation.pbrpc.utils.MessageUtils;
+
+public class RPCNIO2SocketServerTest {
+
+    private static final int      TEST_PORT = 12998;
+
+    private static TimeSync       ts        = null;
+
+    private static final RPC.UserCredentials userCred = RPC.UserCredentials.newBuilder().setUsername("test")
+                                                              .addGroups("tester").build();
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Logging.start(Logging.LEVEL_WARN, Logging.Category.all);
+        ts = TimeSync.initializeLocal(50);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        ts.close();
+    }
+
+    @Test
+    public void testPipelinedRequestsWithData() throws Exception {
+        RPCSocketServer server = createServer(Transport.NIO2, 100);
+        RPCNIOSocketClient client = createClient();
+        try {
+            PingServiceClient psClient = new PingServiceClient(client, null);
+            List<RPCResponse<PingResponse>> responses = new ArrayList<RPCResponse<PingResponse>>();
+            for (int i = 0; i < 200; i++) {
+                ReusableBuffer sendData = null;
+                if (i % 2 == 0) {
+                    byte[] arr = new byte[i * 100 + 1];
+                    for (int j = 0; j < arr.length; j++)
+                        arr[j] = (byte) i;
+                    sendData = ReusableBuffer.wrap(arr);
+                }
+                responses.add(psClient.doPing(new InetSocketAddress("localhost", TEST_PORT),
+                        RPCAuthentication.authNone, userCred, "Ping #" + i, false, sendData));
+            }
+
+            for (int i = 0; i < responses.size(); i++) {
+                RPCResponse<PingResponse> response = responses.get(i);
+                assertEquals("Ping #" + i, response.get().getResult().getText());
+                if (i % 2 == 0) {
+                    ReusableBuffer recdata = response.getData();
+                    assertEquals(i * 100 + 1, recdata.remaining());
+                    while (recdata.hasRemaining()) {
+                        assertEquals((byte) i, recdata.get());
+                    }
+                }
+                response.freeBuffers();
+            }
+        } finally {
+            shutdown(client, server);
+        }
+    }
+
+    @Test
+    public void testClientQueueLimit() throws Exception {
+        // reading is suspended after two open requests and resumed once
+        // responses were sent
+        RPCSocketServer server = createServer(Transport.NIO2, 2);
+        RPCNIOSocketClient client = createClient();
+        try {
+            PingServiceClient psClient = new PingServiceClient(client, null);
+            List<RPCResponse<PingResponse>> responses = new ArrayList<RPCResponse<PingResponse>>();
+            for (int i = 0; i < 50; i++) {
+                responses.add(psClient.doPing(new InetSocketAddress("localhost", TEST_PORT),
+                        RPCAuthentication.authNone, userCred, "Ping #" + i, false, null));
+            }
+            for (int i = 0; i < responses.size(); i++) {
+                assertEquals("Ping #" + i, responses.get(i).get().getResult().getText());
+                responses.get(i).freeBuffers();
+            }
+            assertEquals(1, server.getNumConnections());
+        } finally {
+            shutdown(client, server);
+        }
+    }
+
+    /**
+     * Loopback benchmark, logs the request rate of both transports.
+     */
+    @Test
+    public void testLoopbackRequestRate() throws Exception {
+        for (Transport transport : new Transport[] { Transport.NIO, Transport.NIO2 }) {
+            RPCSocketServer server = createServer(transport, 1000);
+            RPCNIOSocketClient client = createClient();
+            try {
+                PingServiceClient psClient = new PingServiceClient(client, null);
+                final int numRequests = 20000;
+                final int window = 100;
+                List<RPCResponse<PingResponse>> responses = new ArrayList<RPCResponse<PingResponse>>(window);
+
+                long start = System.nanoTime();
+                for (int i = 0; i < numRequests; i++) {
+                    if (i >= window) {
+                        responses.get(i % window).get();
+                        responses.get(i % window).freeBuffers();
+                    }
+                    RPCResponse<PingResponse> response = psClient.doPing(new InetSocketAddress("localhost",
+                            TEST_PORT), RPCAuthentication.authNone, userCred, "ping", false, null);
+                    if (i < window) {
+                        responses.add(response);
+                    } else {
+                        responses.set(i % window, response);
+                    }
+                }
+                for (RPCResponse<PingResponse> response : responses) {
+                    response.get();
+                    response.freeBuffers();
+                }
+                long duration = System.nanoTime() - start;
+
+                Logging.logMessage(Logging.LEVEL_INFO, Logging.Category.test, this,
+                        "%s transport: %d requests in %d ms (%.0f requests/s)", transport, numRequests,
+                        duration / 1000000, numRequests / (duration / 1e9));
+            } finally {
+                shutdown(client, server);
+            }
+        }
+    }
+
+    private static RPCSocketServer createServer(Transport transport, int maxClientQLength) throws Exception {
+        RPCSocketServer server = RPCSocketServer.create(transport, TEST_PORT, null, new RPCServerRequestListener() {
+
+            @Override
+            public void receiveRecord(RPCServerRequest rq) {
+                try {
+                    Ping.PingRequest pingRq = MessageUtils.parseFrom(Ping.PingRequest.getDefaultInstance(),
+                            rq.getMessage());
+
+                    Ping.PingResponse.PingResult result = Ping.PingResponse.PingResult.newBuilder()
+                            .setText(pingRq.getText()).build();
+                    Ping.PingResponse resp = Ping.PingResponse.newBuilder().setResult(result).build();
+
+                    ReusableBuffer data = null;
+                    if (rq.getData() != null) {
+                        data = rq.getData().createViewBuffer();
+                        data.limit(data.capacity());
+                        data.position(data.capacity());
+                    }
+
+                    rq.sendResponse(resp, data);
+                } catch (Exception ex) {
+                    rq.sendError(RPC.ErrorType.GARBAGE_ARGS, RPC.POSIXErrno.POSIX_ERROR_EIO, ex.toString());
+                }
+            }
+        }, null, 0, -1, maxClientQLength);
+        server.start();
+        server.waitForStartup();
+        return server;
+    }
+
+    private static RPCNIOSocketClient createClient() throws Exception {
+        RPCNIOSocketClient client = new RPCNIOSocketClient(null, 15000, 5 * 60 * 1000, "RPCNIO2SocketServerTest");
+        client.start();
+        client.waitForStartup();
+        return client;
+    }
+
+    private static void shutdown(RPCNIOSocketClient client, RPCSocketServer server) throws Exception {
+        client.shutdown();
+        client.waitForShutdown();
+        server.shutdown();
+        server.waitForShutdown();
+    }
+}
@@ -30,6 +30,7 @@ import org.xtreemfs.foundation.pbrpc.Schemes;
 import org.xtreemfs.foundation.pbrpc.client.PBRPCException;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.Auth;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.AuthType;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.ErrorType;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.POSIXErrno;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.UserCredentials;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR;
@@ -40,6 +41,8 @@ import org.xtreemfs.pbrpc.generatedinterfaces.DIR.Service;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceDataMap;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceSet;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceType;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.serviceHeartbeatRequest;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.serviceRegisterResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.KeyValuePair;
 
 import sun.misc.Signal;
@@ -118,6 +121,15 @@ public class HeartbeatThread extends LifeCycleThread {
     /** Used to sleep until the next heartbeat is scheduled. It can be notified to trigger an instant update **/
     private Object                     updateIntervalMonitor          = new Object();
 
+    /**
+     * The service data last sent to the DIR and the resulting record version, per service UUID. Used to send
+     * only the changed data with the next heartbeat.
+     */
+    private final Map<String, Service> registeredServices             = new HashMap<String, Service>();
+
+    /** Set to false if the DIR does not support delta heartbeats. **/
+    private boolean                    deltaHeartbeats                = true;
+
     static {
         authNone = Auth.newBuilder().setAuthType(AuthType.AUTH_NONE).build();
     }
@@ -293,103 +305,173 @@ public class HeartbeatThread extends LifeCycleThread {
     private void registerServices(int numRetries) throws IOException, PBRPCException, InterruptedException {
 
         for (Service reg : serviceDataGen.getServiceData().getServicesList()) {
-            // retrieve old DIR entry
-            ServiceSet oldSet = numRetries == -1 ? client.xtreemfs_service_get_by_uuid(null, authNone, uc,
-                    reg.getUuid()) : client.xtreemfs_service_get_by_uuid(null, authNone, uc, reg.getUuid(),
-                    numRetries);
-            long currentVersion = 0;
-            Service oldService = oldSet.getServicesCount() == 0 ? null : oldSet.getServices(0);
-
-            Map<String, String> staticAttrs = new HashMap();
-            if (oldService != null) {
-                currentVersion = oldService.getVersion();
-                final ServiceDataMap data = oldService.getData();
-                for (KeyValuePair pair : data.getDataList()) {
-                    if (pair.getKey().startsWith(STATIC_ATTR_PREFIX))
-                        staticAttrs.put(pair.getKey(), pair.getValue());
-                }
-            }
 
-            if (!staticAttrs.containsKey(STATUS_ATTR))
-                staticAttrs.put(STATUS_ATTR,
-                        Integer.toString(DIR.ServiceStatus.SERVICE_STATUS_AVAIL.getNumber()));
+            // initially, a full registration is required; afterwards, only
+            // the changed data is sent if possible
+            if (numRetries == -1 || !sendHeartbeat(reg, numRetries)) {
+                registerService(reg, numRetries);
+            }
 
-            Service.Builder builder = reg.toBuilder();
-            builder.setVersion(currentVersion);
-            final ServiceDataMap.Builder data = ServiceDataMap.newBuilder();
-            for (Entry<String, String> sAttr : staticAttrs.entrySet()) {
-                data.addData(KeyValuePair.newBuilder().setKey(sAttr.getKey()).setValue(sAttr.getValue())
-                        .build());
+            if (Logging.isDebug()) {
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.misc, this,
+                        "%s successfully updated at Directory Service", uuid);
             }
 
-            // If the service to register is a volume, and a volume with the
-            // same ID but a different MRC has been registered already, it
-            // may be necessary to register the volume's MRC as a replica.
-            // In this case, all keys starting with 'mrc' have to be treated
-            // separately.
-            if (reg.getType() == ServiceType.SERVICE_TYPE_VOLUME && oldService != null
-                    && oldService.getUuid().equals(reg.getUuid())) {
-
-                // retrieve the MRC UUID attached to the volume to be
-                // registered
-                String mrcUUID = null;
-                for (KeyValuePair kv : reg.getData().getDataList())
-                    if (kv.getKey().equals("mrc")) {
-                        mrcUUID = kv.getValue();
-                        break;
-                    }
-                assert (mrcUUID != null);
+            // update lastHeartbeat value
+            this.lastHeartbeat = TimeSync.getGlobalTime();
+        }
+    }
 
-                // check if the UUID is already contained in the volume's
-                // list of MRCs and determine the next vacant key
-                int maxMRCNo = 1;
-                boolean contained = false;
-                for (KeyValuePair kv : oldService.getData().getDataList()) {
+    /**
+     * Sends the data of a service which changed since its last update at the
+     * DIR.
+     *
+     * @return false, if the service has to be registered with all its data
+     */
+    private boolean sendHeartbeat(Service reg, int numRetries) throws IOException, PBRPCException,
+            InterruptedException {
 
-                    if (kv.getKey().startsWith("mrc")) {
+        Service lastReg = registeredServices.get(reg.getUuid());
 
-                        data.addData(kv);
+        // volumes are always registered with all their data, as their MRC
+        // entries have to be merged with the existing record
+        if (!deltaHeartbeats || lastReg == null || reg.getType() == ServiceType.SERVICE_TYPE_VOLUME
+                || reg.getType() != lastReg.getType() || !reg.getName().equals(lastReg.getName())) {
+            return false;
+        }
 
-                        if (kv.getValue().equals(mrcUUID))
-                            contained = true;
+        Map<String, String> lastData = new HashMap<String, String>();
+        for (KeyValuePair kv : lastReg.getData().getDataList()) {
+            lastData.put(kv.getKey(), kv.getValue());
+        }
 
-                        if (!kv.getKey().equals("mrc")) {
-                            int no = Integer.parseInt(kv.getKey().substring(3));
-                            if (no > maxMRCNo)
-                                maxMRCNo = no;
-                        }
-                    }
-                }
+        serviceHeartbeatRequest.Builder hb = serviceHeartbeatRequest.newBuilder().setUuid(reg.getUuid())
+                .setVersion(lastReg.getVersion());
+        for (KeyValuePair kv : reg.getData().getDataList()) {
+            if (!kv.getValue().equals(lastData.remove(kv.getKey()))) {
+                hb.addChangedData(kv);
+            }
+        }
+        hb.addAllRemovedKeys(lastData.keySet());
 
-                // if the UUID is not contained, add it
-                if (!contained)
-                    data.addData(KeyValuePair.newBuilder().setKey("mrc" + (maxMRCNo + 1)).setValue(mrcUUID));
+        serviceRegisterResponse response;
+        try {
+            response = client.xtreemfs_service_heartbeat(null, authNone, uc, hb.build(), numRetries);
+        } catch (PBRPCException ex) {
+            if (ex.getPOSIXErrno() != POSIXErrno.POSIX_ERROR_EAGAIN) {
+                throw ex;
+            }
+            // the record was modified or removed in the meantime
+            registeredServices.remove(reg.getUuid());
+            return false;
+        } catch (IOException ex) {
+            if (ex.getCause() instanceof PBRPCException
+                    && ((PBRPCException) ex.getCause()).getErrorType() == ErrorType.INVALID_PROC_ID) {
+                Logging.logMessage(Logging.LEVEL_INFO, Category.misc, this,
+                        "the Directory Service does not support delta heartbeats, sending full registrations");
+                deltaHeartbeats = false;
+                return false;
+            }
+            throw ex;
+        }
 
-                // add all other key-value pairs
-                for (KeyValuePair kv : reg.getData().getDataList())
-                    if (!kv.getKey().startsWith("mrc"))
-                        data.addData(kv);
+        registeredServices.put(reg.getUuid(), reg.toBuilder().setVersion(response.getNewVersion()).build());
+        return true;
+    }
 
+    private void registerService(Service reg, int numRetries) throws IOException, PBRPCException,
+            InterruptedException {
+        // retrieve old DIR entry
+        ServiceSet oldSet = numRetries == -1 ? client.xtreemfs_service_get_by_uuid(null, authNone, uc,
+                reg.getUuid()) : client.xtreemfs_service_get_by_uuid(null, authNone, uc, reg.getUuid(),
+                numRetries);
+        long currentVersion = 0;
+        Service oldService = oldSet.getServicesCount() == 0 ? null : oldSet.getServices(0);
+
+        Map<String, String> staticAttrs = new HashMap();
+        if (oldService != null) {
+            currentVersion = oldService.getVersion();
+            final ServiceDataMap data = oldService.getData();
+            for (KeyValuePair pair : data.getDataList()) {
+                if (pair.getKey().startsWith(STATIC_ATTR_PREFIX))
+                    staticAttrs.put(pair.getKey(), pair.getValue());
             }
+        }
 
-            // in any other case, all data can be updated
-            else
-                data.addAllData(reg.getData().getDataList());
+        if (!staticAttrs.containsKey(STATUS_ATTR))
+            staticAttrs.put(STATUS_ATTR,
+                    Integer.toString(DIR.ServiceStatus.SERVICE_STATUS_AVAIL.getNumber()));
 
-            builder.setData(data);
-            if (numRetries == -1)
-                client.xtreemfs_service_register(null, authNone, uc, builder.build());
-            else
-                client.xtreemfs_service_register(null, authNone, uc, builder.build(), numRetries);
+        Service.Builder builder = reg.toBuilder();
+        builder.setVersion(currentVersion);
+        final ServiceDataMap.Builder data = ServiceDataMap.newBuilder();
+        for (Entry<String, String> sAttr : staticAttrs.entrySet()) {
+            data.addData(KeyValuePair.newBuilder().setKey(sAttr.getKey()).setValue(sAttr.getValue())
+                    .build());
+        }
 
-            if (Logging.isDebug()) {
-                Logging.logMessage(Logging.LEVEL_DEBUG, Category.misc, this,
-                        "%s successfully updated at Directory Service", uuid);
+        // If the service to register is a volume, and a volume with the
+        // same ID but a different MRC has been registered already, it
+        // may be necessary to register the volume's MRC as a replica.
+        // In this case, all keys starting with 'mrc' have to be treated
+        // separately.
+        if (reg.getType() == ServiceType.SERVICE_TYPE_VOLUME && oldService != null
+                && oldService.getUuid().equals(reg.getUuid())) {
+
+            // retrieve the MRC UUID attached to the volume to be
+            // registered
+            String mrcUUID = null;
+            for (KeyValuePair kv : reg.getData().getDataList())
+                if (kv.getKey().equals("mrc")) {
+                    mrcUUID = kv.getValue();
+                    break;
+                }
+            assert (mrcUUID != null);
+
+            // check if the UUID is already contained in the volume's
+            // list of MRCs and determine the next vacant key
+            int maxMRCNo = 1;
+            boolean contained = false;
+            for (KeyValuePair kv : oldService.getData().getDataList()) {
+
+                if (kv.getKey().startsWith("mrc")) {
+
+                    data.addData(kv);
+
+                    if (kv.getValue().equals(mrcUUID))
+                        contained = true;
+
+                    if (!kv.getKey().equals("mrc")) {
+                        int no = Integer.parseInt(kv.getKey().substring(3));
+                        if (no > maxMRCNo)
+                            maxMRCNo = no;
+                    }
+                }
             }
 
-            // update lastHeartbeat value
-            this.lastHeartbeat = TimeSync.getGlobalTime();
+            // if the UUID is not contained, add it
+            if (!contained)
+                data.addData(KeyValuePair.newBuilder().setKey("mrc" + (maxMRCNo + 1)).setValue(mrcUUID));
+
+            // add all other key-value pairs
+            for (KeyValuePair kv : reg.getData().getDataList())
+                if (!kv.getKey().startsWith("mrc"))
+                    data.addData(kv);
+
         }
+
+        // in any other case, all data can be updated
+        else
+            data.addAllData(reg.getData().getDataList());
+
+        builder.setData(data);
+        serviceRegisterResponse response;
+        if (numRetries == -1)
+            response = client.xtreemfs_service_register(null, authNone, uc, builder.build());
+        else
+            response = client.xtreemfs_service_register(null, authNone, uc, builder.build(), numRetries);
+
+        registeredServices.put(reg.getUuid(), reg.toBuilder().setVersion(response.getNewVersion()).build());
     }
 
     private void setServiceConfiguration() throws IOException, PBRPCException, InterruptedException {
@@ -25,6 +25,7 @@ import org.xtreemfs.common.uuids.ServiceUUID;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
 import org.xtreemfs.foundation.pbrpc.Schemes;
+import org.xtreemfs.foundation.pbrpc.server.RPCSocketServer;
 
 public class ServiceConfig extends Config {
 
@@ -44,6 +45,8 @@ public class ServiceConfig extends Config {
         DIRECTORY_SERVICE4("dir_service.4.host", null, InetSocketAddress.class, false),
         PORT("listen.port", null, Integer.class, true),
         BIND_RETRIES("listen.port.bind_retries", 7, Integer.class, false),
+        /** Transport of the PBRPC server, either "nio" (selector) or "nio2" (asynchronous channels). */
+        LISTEN_TRANSPORT("listen.transport", "nio", String.class, false),
         HTTP_PORT("http_port", null, Integer.class, true),
         LISTEN_ADDRESS("listen.address", null, InetAddress.class, false),
         USE_SSL("ssl.enabled", false, Boolean.class, false),
@@ -84,6 +87,7 @@ public class ServiceConfig extends Config {
         TIMEOUT_SECONDS("monitoring.service_timeout_s", 5 * 60, Integer.class, false),
         VIVALDI_MAX_CLIENTS("vivaldi.max_clients", 32, Integer.class, false),
         VIVALDI_CLIENT_TIMEOUT("vivaldi.client_timeout", 600000, Integer.class, false), // default: twice the recalculation interval
+        SERVICE_UPDATES_MAX_BATCH_SIZE("service_updates.max_batch_size", 256, Integer.class, false),
 
 
         /*
@@ -99,6 +103,7 @@ public class ServiceConfig extends Config {
         CAPABILITY_SECRET("capability_secret", null, String.class, true),
         CAPABILITY_TIMEOUT("capability_timeout", 600, Integer.class, false),
         RENEW_TIMED_OUT_CAPS("renew_to_caps", false, Boolean.class, false),
+        ERASURE_CODING_ENABLED("erasure_coding.enabled", false, Boolean.class, false),
 
         /*
          * OSD specific configuration parameter
@@ -108,15 +113,33 @@ public class ServiceConfig extends Config {
         CHECKSUM_ENABLED("checksums.enabled", false, Boolean.class, false),
         CHECKSUM_PROVIDER("checksums.algorithm", null, String.class, false),
         STORAGE_LAYOUT("storage_layout", "HashStorageLayout", String.class, false),
+        STORAGE_LAYOUT_OBJECT_INDEX("storage_layout.object_index", true, Boolean.class, false),
+        STORAGE_LAYOUT_SCAN_THREADS("storage_layout.scan_threads", 4, Integer.class, false),
+        STORAGE_LAYOUT_ADDITIONAL_OBJECT_DIRS("storage_layout.additional_object_dirs", "", String.class, false),
+        STORAGE_LAYOUT_ASYNC_IO_DEPTH("storage_layout.async_io_depth", 0, Integer.class, false),
+        STORAGE_LAYOUT_SEGMENT_SIZE("storage_layout.segment_size", 64 * 1024 * 1024, Integer.class, false),
+        STORAGE_LAYOUT_DIRECT_IO("storage_layout.direct_io", "", String.class, false),
+        STORAGE_LAYOUT_SPARSE_PADDING("storage_layout.sparse_padding", true, Boolean.class, false),
+        STORAGE_LAYOUT_DELTA_VERSIONS("storage_layout.delta_versions", true, Boolean.class, false),
+        IO_SCHEDULER("io_scheduler", "fifo", String.class, false),
+        IO_SCHEDULER_CLASS_WEIGHTS("io_scheduler.class_weights", "foreground=8,replication=4,background=1",
+                String.class, false),
+        IO_SCHEDULER_WEIGHTS("io_scheduler.weights", "", String.class, false),
+        ADMISSION_TARGET_DELAY_MS("admission.target_delay_ms", 0, Integer.class, false),
+        ADMISSION_INTERVAL_MS("admission.interval_ms", 1000, Integer.class, false),
+        LATENCY_SAMPLE_RATE("latency_stats.sample_rate", 100, Integer.class, false),
         IGNORE_CAPABILITIES("ignore_capabilities", false, Boolean.class, false),
         /** Maximum assumed drift between two server clocks. If the drift is higher, the system may not function properly. */
         FLEASE_DMAX_MS("flease.dmax_ms", 1000, Integer.class, false),
         FLEASE_LEASE_TIMEOUT_MS("flease.lease_timeout_ms", 14000, Integer.class, false),
+        XLOCSET_CHANGE_THREADS("xlocset_change.threads", 8, Integer.class, false),
         /** Message timeout. Maximum allowed in-transit time for a Flease message. */
         FLEASE_MESSAGE_TO_MS("flease.message_to_ms", 500, Integer.class, false),
         FLEASE_RETRIES("flease.retries", 3, Integer.class, false),
         SOCKET_SEND_BUFFER_SIZE("socket.send_buffer_size", -1, Integer.class, false),
         SOCKET_RECEIVE_BUFFER_SIZE("socket.recv_buffer_size", -1, Integer.class, false),
+        /** Number of parallel TCP connections the OSD opens to each other OSD. */
+        SOCKET_CONNECTIONS_PER_OSD("socket.connections_per_osd", 1, Integer.class, false),
         VIVALDI_RECALCULATION_INTERVAL_IN_MS("vivaldi.recalculation_interval_ms", 300000, Integer.class, false),
         VIVALDI_RECALCULATION_EPSILON_IN_MS("vivaldi.recalculation_epsilon_ms", 30000, Integer.class, false),
         VIVALDI_ITERATIONS_BEFORE_UPDATING("vivaldi.iterations_before_updating", 12, Integer.class, false),
@@ -124,6 +147,12 @@ public class ServiceConfig extends Config {
         VIVALDI_MAX_REQUEST_TIMEOUT_IN_MS("vivaldi.max_request_timeout_ms", 10000, Integer.class, false),
         VIVALDI_TIMER_INTERVAL_IN_MS("vivaldi.timer_interval_ms", 60000, Integer.class, false),
         STORAGE_THREADS("storage_threads", 1, Integer.class, false),
+        STORAGE_THREADS_PARALLEL_READS("storage_threads.parallel_reads", false, Boolean.class, false),
+        DELETION_THREADS("deletion.threads", 2, Integer.class, false),
+        DELETION_MAX_FILES_PER_SEC("deletion.max_files_per_s", 0, Integer.class, false),
+        DELETION_MAX_BYTES_PER_SEC("deletion.max_bytes_per_s", 0L, Long.class, false),
+        OBJECT_CACHE_SIZE("object_cache.size", 0L, Long.class, false),
+        OBJECT_CACHE_PREFETCH_DEPTH("object_cache.prefetch_depth", 4, Integer.class, false),
         HEALTH_CHECK("health_check", "", String.class, false),
 
         /*
@@ -588,6 +617,10 @@ public class ServiceConfig extends Config {
         return (Integer) parameter.get(Parameter.BIND_RETRIES);
     }
 
+    public RPCSocketServer.Transport getListenTransport() {
+        return RPCSocketServer.Transport.parse((String) parameter.get(Parameter.LISTEN_TRANSPORT));
+    }
+
     public int getHttpPort() {
         return (Integer) parameter.get(Parameter.HTTP_PORT);
     }
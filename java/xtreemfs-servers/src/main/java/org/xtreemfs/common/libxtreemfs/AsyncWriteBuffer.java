@@ -77,6 +77,11 @@ public class AsyncWriteBuffer {
      */
     private String                   osdUuid;
 
+    /**
+     * Number of times the write was sent.
+     */
+    private int                      attempts;
+
     protected writeRequest getWriteRequest() {
         return writeRequest;
     }
@@ -107,4 +112,12 @@ public class AsyncWriteBuffer {
     protected void setOsdUuid(String osdUuid) {
         this.osdUuid = osdUuid;
     }
+
+    protected int getAttempts() {
+        return attempts;
+    }
+
+    protected void increaseAttempts() {
+        attempts++;
+    }
 };
@@ -11,10 +11,15 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.xtreemfs.common.libxtreemfs.exceptions.AddressToUUIDNotFoundException;
 import org.xtreemfs.common.libxtreemfs.exceptions.UUIDIteratorListIsEmpyException;
 import org.xtreemfs.common.libxtreemfs.exceptions.XtreemFSException;
+import org.xtreemfs.foundation.buffer.BufferPool;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
@@ -128,9 +133,27 @@ public class AsyncWriteHandler {
      */
     private int                    maxWriteTries;
 
+    /**
+     * Maximum time in seconds to wait before a write rejected by a busy OSD is retried.
+     */
+    private int                    retryDelay_s;
+
+    /**
+     * Resends writes that were rejected by busy OSDs after a backoff.
+     */
+    private static final ScheduledExecutorService retryExecutor = Executors
+            .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "AsyncWriteRetry");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
     protected AsyncWriteHandler(FileInfo fileInfo, UUIDIterator uuidIterator, UUIDResolver uuidResolver,
             OSDServiceClient osdServiceClient, Auth authBogus, UserCredentials userCredentialsBogus,
-            int maxWriteahead, int maxWriteaheadRequests, int maxWriteTries) {
+            int maxWriteahead, int maxWriteaheadRequests, int maxWriteTries, int retryDelay_s) {
 
         this.fileInfo = fileInfo;
         this.uuidIterator = uuidIterator;
@@ -141,6 +164,7 @@ public class AsyncWriteHandler {
         this.maxWriteahead = maxWriteahead;
         this.maxWriteaheadRequests = maxWriteaheadRequests;
         this.maxWriteTries = maxWriteTries;
+        this.retryDelay_s = retryDelay_s;
 
         writesInFlight = new ArrayList<AsyncWriteBuffer>();
         allPendingWritesDidComplete = new Object();
@@ -178,6 +202,15 @@ public class AsyncWriteHandler {
             increasePendingBytesHelper(writeBuffer);
         }
 
+        sendWrite(writeBuffer);
+    }
+
+    /**
+     * Sends a pending write to its OSD. The data of the write buffer is sent as a view buffer, so that it
+     * remains available for retries.
+     */
+    private void sendWrite(AsyncWriteBuffer writeBuffer) throws AddressToUUIDNotFoundException,
+            XtreemFSException {
         String osdUuid = retrieveOSDUuidAndSetItInWriteBuffer(writeBuffer);
         String osdAddress = uuidResolver.uuidToAddress(osdUuid);
         InetSocketAddress osdInetSocketAddress =
@@ -188,9 +221,11 @@ public class AsyncWriteHandler {
         final AsyncWriteBuffer finalWriteBufferForCallback = writeBuffer;
         RPCResponse<OSDWriteResponse> response;
         try {
+            writeBuffer.increaseAttempts();
             response =
                     osdServiceClient.write(osdInetSocketAddress, authBogus, userCredentialsBogus,
-                            writeBuffer.getWriteRequest(), writeBuffer.getData());
+                            writeBuffer.getWriteRequest(), writeBuffer.getData() == null ? null : writeBuffer
+                                    .getData().createViewBuffer());
 
             response.registerListener(new RPCResponseAvailableListener<OSDWriteResponse>() {
                 @Override
@@ -199,6 +234,12 @@ public class AsyncWriteHandler {
                         OSDWriteResponse osdWriteResponse = r.get();
                         writeFinished(osdWriteResponse, r.getData(), finalWriteBufferForCallback);
                     } catch (PBRPCException e) {
+                        if (e.getErrorType() == ErrorType.SERVER_BUSY
+                                && (maxWriteTries == 0 || finalWriteBufferForCallback.getAttempts() < maxWriteTries)) {
+                            // The OSD is overloaded, but not failed: retry the write after a backoff.
+                            retryWrite(finalWriteBufferForCallback);
+                            return;
+                        }
                         String errorTypeName = e.getErrorType().toString();
                         EnumValueDescriptor enumDescriptor =
                                 ErrorType.getDescriptor().findValueByNumber(e.getErrorType().getNumber());
@@ -229,6 +270,31 @@ public class AsyncWriteHandler {
         }
     }
 
+    /**
+     * Resends a write that was rejected by a busy OSD after a randomized backoff, which grows with the
+     * number of attempts.
+     */
+    private void retryWrite(final AsyncWriteBuffer writeBuffer) {
+        long backoff = RPCCaller.getBusyBackoff(writeBuffer.getAttempts(), retryDelay_s);
+        if (Logging.isDebug()) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, Category.misc, this,
+                    "async write to the busy server %s is retried in %d ms (attempt %d)",
+                    writeBuffer.getOsdUuid(), backoff, writeBuffer.getAttempts());
+        }
+        retryExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sendWrite(writeBuffer);
+                } catch (XtreemFSException e) {
+                    Logging.logMessage(Logging.LEVEL_ERROR, Category.misc, this, "asyncWrite:"
+                            + " retry failed due to the following reasons ", e.getMessage());
+                    decreasePendingBytesHelper(writeBuffer);
+                }
+            }
+        }, backoff, TimeUnit.MILLISECONDS);
+    }
+
     private String retrieveOSDUuidAndSetItInWriteBuffer(AsyncWriteBuffer writeBuffer)
             throws UUIDIteratorListIsEmpyException {
         String osdUuid;
@@ -312,6 +378,9 @@ public class AsyncWriteHandler {
 
         writesInFlight.remove(writeBuffer);
         pendingBytes -= writeBuffer.getDataLength();
+        if (writeBuffer.getData() != null) {
+            BufferPool.free(writeBuffer.getData());
+        }
 
         if (pendingBytes == 0) {
             state = State.IDLE;
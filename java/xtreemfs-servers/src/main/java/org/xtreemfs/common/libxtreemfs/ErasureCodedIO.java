@@ -0,0 +1,413 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.common.libxtreemfs;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.xtreemfs.common.libxtreemfs.RPCCaller.CallGenerator;
+import org.xtreemfs.common.libxtreemfs.exceptions.InvalidViewException;
+import org.xtreemfs.common.xloc.ReedSolomonCodec;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.logging.Logging.Category;
+import org.xtreemfs.foundation.pbrpc.client.RPCResponse;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.Auth;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.UserCredentials;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.FileCredentials;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.OSDWriteResponse;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.SERVICES;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.StripingPolicy;
+import org.xtreemfs.pbrpc.generatedinterfaces.OSD.ObjectData;
+import org.xtreemfs.pbrpc.generatedinterfaces.OSD.readRequest;
+import org.xtreemfs.pbrpc.generatedinterfaces.OSD.writeRequest;
+import org.xtreemfs.pbrpc.generatedinterfaces.OSDServiceClient;
+
+/**
+ * Reads and writes the objects of an erasure-coded file. All objects of a
+ * stripe are transferred in parallel.
+ * <p>
+ * Writes re-encode the parity of each row they modify. If a write covers a
+ * row only partially, the data objects of the row are read first. Reads fetch
+ * the data objects directly; if a data object cannot be read, the row is
+ * reconstructed from any <tt>width</tt> of the remaining objects of the row.
+ * <p>
+ * Concurrent writes of different clients to the same row are not
+ * coordinated, i.e. the parity of the row may become inconsistent with its
+ * data in this case.
+ */
+class ErasureCodedIO {
+
+    private final FileHandleImplementation    fileHandle;
+
+    private final StripeTranslatorErasureCode translator;
+
+    private final OSDServiceClient            osdServiceClient;
+
+    private final UUIDResolver                uuidResolver;
+
+    private final Options                     options;
+
+    private final Auth                        authBogus;
+
+    private final UserCredentials             userCredentialsBogus;
+
+    ErasureCodedIO(FileHandleImplementation fileHandle, StripeTranslatorErasureCode translator,
+            OSDServiceClient osdServiceClient, UUIDResolver uuidResolver, Options options, Auth authBogus,
+            UserCredentials userCredentialsBogus) {
+        this.fileHandle = fileHandle;
+        this.translator = translator;
+        this.osdServiceClient = osdServiceClient;
+        this.uuidResolver = uuidResolver;
+        this.options = options;
+        this.authBogus = authBogus;
+        this.userCredentialsBogus = userCredentialsBogus;
+    }
+
+    /**
+     * Executes the read operations of a request in parallel.
+     *
+     * @return the number of bytes read
+     */
+    int read(UserCredentials userCredentials, FileCredentials fc, ReusableBuffer buf,
+            Vector<ReadOperation> operations) throws IOException {
+
+        final StripingPolicy policy = fc.getXlocs().getReplicas(0).getStripingPolicy();
+
+        List<ReusableBuffer> views = new ArrayList<ReusableBuffer>(operations.size());
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>(operations.size());
+        for (ReadOperation op : operations) {
+            final ReusableBuffer view = buf.createViewBuffer();
+            view.range(op.getBufferStart(), op.getReqSize());
+            views.add(view);
+            futures.add(submitRead(fc, op.getOsdOffset(), op.getObjNumber(), op.getReqOffset(),
+                    op.getReqSize(), view));
+        }
+
+        int receivedData = 0;
+        Map<Long, byte[][]> reconstructedRows = new HashMap<Long, byte[][]>();
+        long fileSize = -1;
+
+        for (int i = 0; i < operations.size(); i++) {
+            ReadOperation op = operations.get(i);
+            try {
+                receivedData += await(futures.get(i));
+            } catch (InvalidViewException ex) {
+                throw ex;
+            } catch (IOException ex) {
+                Logging.logMessage(Logging.LEVEL_WARN, Category.misc, this,
+                        "could not read object %d of %s, reconstructing it: %s", op.getObjNumber(),
+                        fc.getXcap().getFileId(), ex.toString());
+
+                final long row = op.getObjNumber() / policy.getWidth();
+                byte[][] chunks = reconstructedRows.get(row);
+                if (chunks == null) {
+                    chunks = readRow(fc, row, (int) (op.getObjNumber() % policy.getWidth()), ex);
+                    reconstructedRows.put(row, chunks);
+                }
+                if (fileSize < 0) {
+                    fileSize = fileHandle.getAttr(userCredentials).getSize();
+                }
+
+                // the reconstructed object is zero-padded, i.e. its end has
+                // to be determined from the file size
+                final long start = op.getObjNumber() * getStripeSize(policy) + op.getReqOffset();
+                final int length = (int) Math.max(0, Math.min(op.getReqSize(), fileSize - start));
+                ReusableBuffer view = views.get(i);
+                view.position(0);
+                view.put(chunks[(int) (op.getObjNumber() % policy.getWidth())], op.getReqOffset(), length);
+                receivedData += length;
+            }
+        }
+        return receivedData;
+    }
+
+    /**
+     * Writes a range of a file and the parity of all rows the range overlaps.
+     *
+     * @return the responses of the OSDs the data objects were written to
+     */
+    List<OSDWriteResponse> write(FileCredentials fc, ReusableBuffer buf, int count, long offset)
+            throws IOException {
+
+        final StripingPolicy policy = fc.getXlocs().getReplicas(0).getStripingPolicy();
+        final int stripeSize = getStripeSize(policy);
+        final int width = policy.getWidth();
+        final long rowSize = (long) stripeSize * width;
+        final ReedSolomonCodec codec = translator.getCodec(policy);
+
+        List<Future<OSDWriteResponse>> dataWrites = new ArrayList<Future<OSDWriteResponse>>();
+        List<Future<OSDWriteResponse>> parityWrites = new ArrayList<Future<OSDWriteResponse>>();
+
+        final long end = offset + count;
+        for (long row = offset / rowSize; row * rowSize < end; row++) {
+
+            final long rowStart = row * rowSize;
+            final long writeStart = Math.max(offset, rowStart);
+            final long writeEnd = Math.min(end, rowStart + rowSize);
+
+            // the parity depends on the data of the whole row
+            byte[][] chunks;
+            if (writeStart == rowStart && writeEnd == rowStart + rowSize) {
+                chunks = new byte[width][stripeSize];
+            } else {
+                chunks = readRow(fc, row, -1, null);
+            }
+
+            for (long pos = writeStart; pos < writeEnd;) {
+                final int obj = (int) ((pos - rowStart) / stripeSize);
+                final int objOffset = (int) ((pos - rowStart) % stripeSize);
+                final int length = (int) Math.min(writeEnd - pos, stripeSize - objOffset);
+
+                ReusableBuffer view = buf.createViewBuffer();
+                view.range((int) (pos - offset), length);
+                view.get(chunks[obj], objOffset, length);
+
+                dataWrites.add(submitWrite(fc, obj, row * width + obj, objOffset,
+                        ReusableBuffer.wrap(chunks[obj], objOffset, length)));
+                pos += length;
+            }
+
+            byte[][] parity = new byte[codec.getParityChunks()][stripeSize];
+            try {
+                codec.encode(chunks, parity, stripeSize);
+            } catch (InterruptedException ex) {
+                throw new InterruptedIOException("interrupted while encoding");
+            }
+            for (int p = 0; p < parity.length; p++) {
+                parityWrites.add(submitWrite(fc, width + p, row * width, 0, ReusableBuffer.wrap(parity[p])));
+            }
+        }
+
+        // wait for all writes before reporting an error
+        List<OSDWriteResponse> responses = new ArrayList<OSDWriteResponse>(dataWrites.size());
+        IOException error = null;
+        for (Future<OSDWriteResponse> future : dataWrites) {
+            try {
+                responses.add(await(future));
+            } catch (IOException ex) {
+                error = error == null ? ex : error;
+            }
+        }
+        for (Future<OSDWriteResponse> future : parityWrites) {
+            try {
+                // parity OSDs do not know the file size
+                await(future);
+            } catch (IOException ex) {
+                error = error == null ? ex : error;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+        return responses;
+    }
+
+    /**
+     * Re-encodes the parity of the row which contains the given offset. Called
+     * after the file was truncated, as truncating the data objects of a row
+     * invalidates its parity.
+     */
+    void updateParity(FileCredentials fc, long fileSize) throws IOException {
+
+        final StripingPolicy policy = fc.getXlocs().getReplicas(0).getStripingPolicy();
+        final int stripeSize = getStripeSize(policy);
+        final long rowSize = (long) stripeSize * policy.getWidth();
+        if (fileSize % rowSize == 0) {
+            // the last row is complete, all subsequent parity objects have
+            // been removed by the OSDs
+            return;
+        }
+
+        final long row = fileSize / rowSize;
+        byte[][] chunks = readRow(fc, row, -1, null);
+        ReedSolomonCodec codec = translator.getCodec(policy);
+        byte[][] parity = new byte[codec.getParityChunks()][stripeSize];
+        try {
+            codec.encode(chunks, parity, stripeSize);
+        } catch (InterruptedException ex) {
+            throw new InterruptedIOException("interrupted while encoding");
+        }
+
+        List<Future<OSDWriteResponse>> writes = new ArrayList<Future<OSDWriteResponse>>(parity.length);
+        for (int p = 0; p < parity.length; p++) {
+            writes.add(submitWrite(fc, policy.getWidth() + p, row * policy.getWidth(), 0,
+                    ReusableBuffer.wrap(parity[p])));
+        }
+        for (Future<OSDWriteResponse> write : writes) {
+            await(write);
+        }
+    }
+
+    /**
+     * Reads the data objects of a row. Objects which do not exist are
+     * zero-filled. If a data object cannot be read, it is reconstructed from
+     * the remaining objects of the row.
+     *
+     * @param failedObject
+     *            the index of a data object in the row which is known to be
+     *            unavailable, or -1
+     * @param cause
+     *            the error which occurred when the failed object was read
+     * @return the data objects of the row, each of full stripe size
+     */
+    private byte[][] readRow(FileCredentials fc, long row, int failedObject, IOException cause)
+            throws IOException {
+
+        final StripingPolicy policy = fc.getXlocs().getReplicas(0).getStripingPolicy();
+        final int stripeSize = getStripeSize(policy);
+        final int width = policy.getWidth();
+        final ReedSolomonCodec codec = translator.getCodec(policy);
+        final int numChunks = width + codec.getParityChunks();
+
+        byte[][] chunks = new byte[numChunks][];
+        boolean[] present = new boolean[numChunks];
+        List<Future<Integer>> reads = new ArrayList<Future<Integer>>(numChunks);
+
+        // parity objects are only fetched if a data object is unavailable
+        final int numFetched = failedObject < 0 ? width : numChunks;
+        for (int i = 0; i < numFetched; i++) {
+            chunks[i] = new byte[stripeSize];
+            if (i == failedObject) {
+                reads.add(null);
+                continue;
+            }
+            long objNo = i < width ? row * width + i : row * width;
+            reads.add(submitRead(fc, i, objNo, 0, stripeSize, ReusableBuffer.wrap(chunks[i])));
+        }
+
+        int numPresent = 0;
+        for (int i = 0; i < numFetched; i++) {
+            if (reads.get(i) == null) {
+                continue;
+            }
+            try {
+                await(reads.get(i));
+                present[i] = true;
+                numPresent++;
+            } catch (InvalidViewException ex) {
+                throw ex;
+            } catch (IOException ex) {
+                cause = cause == null ? ex : cause;
+                if (i < width && failedObject < 0) {
+                    // fall back to a reconstruction of the row
+                    return readRow(fc, row, i, ex);
+                }
+            }
+        }
+
+        if (numPresent == numFetched) {
+            return chunks;
+        }
+        if (numPresent < width) {
+            throw new IOException("could not reconstruct row " + row + " of " + fc.getXcap().getFileId()
+                    + ": only " + numPresent + " of " + numChunks + " objects are available", cause);
+        }
+
+        for (int i = 0; i < width; i++) {
+            if (!present[i]) {
+                chunks[i] = null;
+            }
+        }
+        try {
+            codec.decode(chunks, present, stripeSize);
+        } catch (InterruptedException ex) {
+            throw new InterruptedIOException("interrupted while decoding");
+        }
+        return chunks;
+    }
+
+    private Future<Integer> submitRead(FileCredentials fc, int osdOffset, long objNo, int reqOffset,
+            int reqSize, final ReusableBuffer target) throws IOException {
+
+        final readRequest request = readRequest.newBuilder().setFileCredentials(fc)
+                .setFileId(fc.getXcap().getFileId()).setObjectNumber(objNo).setObjectVersion(0)
+                .setOffset(reqOffset).setLength(reqSize).build();
+        final UUIDIterator uuidIterator = new UUIDIterator();
+        uuidIterator.clearAndAddUUID(Helper.getOSDUUIDFromXlocSet(fc.getXlocs(), 0, osdOffset));
+
+        return translator.getExecutor().submit(new Callable<Integer>() {
+
+            @Override
+            public Integer call() throws IOException {
+                ObjectData objectData = RPCCaller.<readRequest, ObjectData> syncCall(SERVICES.OSD,
+                        userCredentialsBogus, authBogus, options, uuidResolver, uuidIterator, false, request,
+                        target, new CallGenerator<readRequest, ObjectData>() {
+
+                            @Override
+                            public RPCResponse<ObjectData> executeCall(InetSocketAddress server, Auth auth,
+                                    UserCredentials userCreds, readRequest callRequest) throws IOException {
+                                return osdServiceClient.read(server, auth, userCreds, callRequest);
+                            }
+                        });
+                // if zeropadding > 0, put zeros at the end of the buffer.
+                for (int i = 0; i < objectData.getZeroPadding(); i++) {
+                    target.put((byte) 0);
+                }
+                return target.position();
+            }
+        });
+    }
+
+    private Future<OSDWriteResponse> submitWrite(FileCredentials fc, int osdOffset, long objNo, int reqOffset,
+            final ReusableBuffer data) throws IOException {
+
+        final writeRequest request = writeRequest.newBuilder().setFileCredentials(fc)
+                .setFileId(fc.getXcap().getFileId()).setObjectNumber(objNo).setObjectVersion(0)
+                .setOffset(reqOffset).setLeaseTimeout(0)
+                .setObjectData(ObjectData.newBuilder().setChecksum(0).setInvalidChecksumOnOsd(false)
+                        .setZeroPadding(0)).build();
+        final UUIDIterator uuidIterator = new UUIDIterator();
+        uuidIterator.clearAndAddUUID(Helper.getOSDUUIDFromXlocSet(fc.getXlocs(), 0, osdOffset));
+
+        return translator.getExecutor().submit(new Callable<OSDWriteResponse>() {
+
+            @Override
+            public OSDWriteResponse call() throws IOException {
+                return RPCCaller.<writeRequest, OSDWriteResponse> syncCall(SERVICES.OSD, userCredentialsBogus,
+                        authBogus, options, uuidResolver, uuidIterator, false, request,
+                        new CallGenerator<writeRequest, OSDWriteResponse>() {
+
+                            @Override
+                            public RPCResponse<OSDWriteResponse> executeCall(InetSocketAddress server,
+                                    Auth authHeader, UserCredentials userCreds, writeRequest input)
+                                    throws IOException {
+                                return osdServiceClient.write(server, authHeader, userCreds, input,
+                                        data.createViewBuffer());
+                            }
+                        });
+            }
+        });
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            throw new InterruptedIOException("interrupted while waiting for an OSD");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    private static int getStripeSize(StripingPolicy policy) {
+        return policy.getStripeSize() * 1024; // stripe size in kB
+    }
+}
@@ -8,9 +8,12 @@ package org.xtreemfs.common.libxtreemfs;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.xtreemfs.common.ReplicaUpdatePolicies;
 import org.xtreemfs.common.libxtreemfs.RPCCaller.CallGenerator;
@@ -22,6 +25,7 @@ import org.xtreemfs.common.libxtreemfs.exceptions.PosixErrorException;
 import org.xtreemfs.common.libxtreemfs.exceptions.UUIDIteratorListIsEmpyException;
 import org.xtreemfs.common.libxtreemfs.exceptions.UUIDNotInXlocSetException;
 import org.xtreemfs.common.libxtreemfs.exceptions.XtreemFSException;
+import org.xtreemfs.foundation.buffer.BufferPool;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
@@ -290,7 +294,18 @@ public class FileHandleImplementation implements FileHandle, AdminFileHandle {
         Vector<ReadOperation> operations = new Vector<ReadOperation>();
         translator.translateReadRequest(count, offset, policy, operations);
 
+        if (translator instanceof StripeTranslatorErasureCode) {
+            return getErasureCodedIO(translator).read(userCredentials, fc, buf, operations);
+        }
+
         UUIDIterator tempUuidIteratorForStriping = new UUIDIterator();
+
+        // Replicas of read-only files are equivalent, hence they can be read from the fastest replica and a hedged
+        // read can be sent to another one. With read-write replication, reads are redirected to the primary.
+        LatencyTracker latencyTracker = volume.getOsdLatencyTracker();
+        boolean latencyAware = volumeOptions.isLatencyAwareReplicaSelection() && fc.getXlocs().getReplicasCount() > 1
+                && ReplicaUpdatePolicies.isRO(fc.getXlocs().getReplicaUpdatePolicy());
+
         // Read all objects
         for (int j = 0; j < operations.size(); j++) {
             readRequest.Builder readRqBuilder = readRequest.newBuilder();
@@ -304,33 +319,32 @@ public class FileHandleImplementation implements FileHandle, AdminFileHandle {
 
             // Differ between striping and the rest (replication, no replication).
             UUIDIterator uuidIterator;
-            if (readRqBuilder.getFileCredentials().getXlocs().getReplicas(0).getOsdUuidsCount() > 1) {
-                // Replica is striped. Pick UUID from xlocset.
-                tempUuidIteratorForStriping.clear();
-                
-                // Replicas may have different stripe widths. However, the current Java client
-                // StripeTranslator code only supports the same stripe width as the first replica has.
-                int stripeWidthFirstReplica = fc.getXlocs().getReplicas(0).getStripingPolicy().getWidth();
-
-                for (int replicaIdx = 0; replicaIdx < fc.getXlocs().getReplicasCount(); replicaIdx++) {
-                    if (fc.getXlocs().getReplicas(replicaIdx).getStripingPolicy().getWidth() == stripeWidthFirstReplica) {
-                        tempUuidIteratorForStriping.addUUID(Helper.getOSDUUIDFromXlocSet(fc.getXlocs(),
-                                                            replicaIdx,
-                                                            operations.get(j).getOsdOffset()));
-                    }
+            List<String> replicasByLatency = null;
+            if (readRqBuilder.getFileCredentials().getXlocs().getReplicas(0).getOsdUuidsCount() > 1 || latencyAware) {
+                // Replica is striped, or the replicas are sorted by latency. Pick the UUIDs of the OSDs that store
+                // the object from xlocset.
+                List<String> objectOsds = getOSDUUIDsForObject(fc.getXlocs(), operations.get(j).getOsdOffset());
+                if (latencyAware) {
+                    replicasByLatency = latencyTracker.sortByLatency(objectOsds);
+                    objectOsds = replicasByLatency;
                 }
-                
+                tempUuidIteratorForStriping.clearAndAddUUIDs(objectOsds);
                 uuidIterator = tempUuidIteratorForStriping;
             } else {
-                // TODO(mberlin): Enhance UUIDIterator to read from different replicas.
                 uuidIterator = osdUuidIterator;
             }
 
             buf.position(operations.get(j).getBufferStart());
+            ObjectData objectData = null;
+            if (replicasByLatency != null && replicasByLatency.size() > 1 && volumeOptions.isHedgedReads()) {
+                objectData = hedgedRead(readRqBuilder.build(), buf, replicasByLatency);
+            }
+
             // If synccall gets a buffer it fill it with data from the response.
-            ObjectData objectData = RPCCaller.<readRequest, ObjectData> syncCall(SERVICES.OSD, userCredentialsBogus,
+            if (objectData == null) {
+                objectData = RPCCaller.<readRequest, ObjectData> syncCall(SERVICES.OSD, userCredentialsBogus,
                     authBogus, volumeOptions, uuidResolver, uuidIterator, false, readRqBuilder.build(), buf,
-                    new CallGenerator<readRequest, ObjectData>() {
+                    latencyTracker, new CallGenerator<readRequest, ObjectData>() {
 
                         @Override
                         public RPCResponse<ObjectData> executeCall(InetSocketAddress server, Auth auth,
@@ -339,6 +353,7 @@ public class FileHandleImplementation implements FileHandle, AdminFileHandle {
 
                         }
                     });
+            }
             // if zeropadding > 0, put zeros at the end of the buffer.
             for (int i = 0; i < objectData.getZeroPadding(); i++) {
                 buf.put((byte) 0);
@@ -348,6 +363,153 @@ public class FileHandleImplementation implements FileHandle, AdminFileHandle {
         return receivedData;
     }
 
+    /**
+     * Returns the UUIDs of the OSDs that store the objects at "osdOffset" within a stripe, one per replica.
+     */
+    private static List<String> getOSDUUIDsForObject(XLocSet xlocs, int osdOffset) {
+        List<String> uuids = new ArrayList<String>(xlocs.getReplicasCount());
+
+        // Replicas may have different stripe widths. However, the current Java client
+        // StripeTranslator code only supports the same stripe width as the first replica has.
+        int stripeWidthFirstReplica = xlocs.getReplicas(0).getStripingPolicy().getWidth();
+
+        for (int replicaIdx = 0; replicaIdx < xlocs.getReplicasCount(); replicaIdx++) {
+            if (xlocs.getReplicas(replicaIdx).getStripingPolicy().getWidth() == stripeWidthFirstReplica) {
+                uuids.add(Helper.getOSDUUIDFromXlocSet(xlocs, replicaIdx, osdOffset));
+            }
+        }
+        return uuids;
+    }
+
+    /**
+     * Sends "request" to the first replica in "replicas" and, if no response was received within the estimated 95th
+     * percentile of its response times, to the second replica as well. The data of the first successful response is
+     * copied to "buf"; the response of the other replica is discarded when it arrives.
+     * 
+     * @return The response, or null if the read failed and has to be retried with the regular error handling.
+     */
+    private ObjectData hedgedRead(readRequest request, ReusableBuffer buf, List<String> replicas) throws IOException {
+        final LatencyTracker latencyTracker = volume.getOsdLatencyTracker();
+        final LinkedBlockingQueue<RPCResponse<ObjectData>> completed = new LinkedBlockingQueue<RPCResponse<ObjectData>>();
+        // Set once a response was taken; responses arriving afterwards are discarded.
+        final boolean[] abandoned = { false };
+
+        long delay_ns = Math.max(latencyTracker.getPercentile95(replicas.get(0)),
+                volumeOptions.getHedgedReadMinDelay_ms() * 1000000L);
+
+        int sent = 0;
+        int outstanding = 0;
+        try {
+            while (true) {
+                if (sent < 2 && outstanding == 0) {
+                    if (sendHedgedRead(request, replicas.get(sent++), completed, abandoned)) {
+                        outstanding++;
+                    }
+                    continue;
+                }
+
+                RPCResponse<ObjectData> response;
+                if (sent < 2) {
+                    response = completed.poll(delay_ns, TimeUnit.NANOSECONDS);
+                    if (response == null) {
+                        if (Logging.isDebug()) {
+                            Logging.logMessage(Logging.LEVEL_DEBUG, Category.misc, this,
+                                    "no response from %s after %d ms, sending hedged read to %s", replicas.get(0),
+                                    delay_ns / 1000000, replicas.get(1));
+                        }
+                        if (sendHedgedRead(request, replicas.get(sent++), completed, abandoned)) {
+                            outstanding++;
+                        }
+                        continue;
+                    }
+                } else if (outstanding > 0) {
+                    response = completed.take();
+                } else {
+                    return null;
+                }
+                outstanding--;
+
+                try {
+                    ObjectData objectData = response.get();
+                    ReusableBuffer data = response.getData();
+                    if (data != null) {
+                        buf.put(data);
+                    }
+                    return objectData;
+                } catch (IOException e) {
+                    if (Logging.isDebug()) {
+                        Logging.logMessage(Logging.LEVEL_DEBUG, Category.misc, this, "hedged read failed: %s",
+                                e.getMessage());
+                    }
+                } finally {
+                    discardResponse(response);
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new IOException("Caught interrupt while waiting for a hedged read, aborting request");
+        } finally {
+            List<RPCResponse<ObjectData>> unused = new ArrayList<RPCResponse<ObjectData>>();
+            synchronized (abandoned) {
+                abandoned[0] = true;
+                completed.drainTo(unused);
+            }
+            for (RPCResponse<ObjectData> response : unused) {
+                discardResponse(response);
+            }
+        }
+    }
+
+    /**
+     * Sends "request" to "osdUuid". The response is added to "completed" once it is available.
+     * 
+     * @return false, if the request could not be sent
+     */
+    private boolean sendHedgedRead(readRequest request, final String osdUuid,
+            final LinkedBlockingQueue<RPCResponse<ObjectData>> completed, final boolean[] abandoned) {
+        final long startTime = System.nanoTime();
+        RPCResponse<ObjectData> response;
+        try {
+            InetSocketAddress server = RPCCaller.getInetSocketAddressFromAddress(
+                    uuidResolver.uuidToAddress(osdUuid), SERVICES.OSD);
+            response = osdServiceClient.read(server, authBogus, userCredentialsBogus, request);
+        } catch (IOException e) {
+            if (Logging.isDebug()) {
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.misc, this, "could not send read to %s: %s",
+                        osdUuid, e.getMessage());
+            }
+            return false;
+        }
+        response.registerListener(new RPCResponseAvailableListener<ObjectData>() {
+            @Override
+            public void responseAvailable(RPCResponse<ObjectData> r) {
+                volume.getOsdLatencyTracker().record(osdUuid, System.nanoTime() - startTime);
+                synchronized (abandoned) {
+                    if (abandoned[0]) {
+                        discardResponse(r);
+                    } else {
+                        completed.add(r);
+                    }
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Frees the buffers of a response that will not be used.
+     */
+    private static void discardResponse(RPCResponse<ObjectData> response) {
+        try {
+            ReusableBuffer data = response.getData();
+            if (data != null) {
+                BufferPool.free(data);
+            }
+        } catch (InterruptedException e) {
+            // the response is already available
+        }
+        response.freeBuffers();
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -413,6 +575,19 @@ public class FileHandleImplementation implements FileHandle, AdminFileHandle {
         StripingPolicy stripingPolicy = xlocs.getReplicas(0).getStripingPolicy();
         StripeTranslator translator = getStripeTranslator(stripingPolicy.getType());
 
+        if (translator instanceof StripeTranslatorErasureCode) {
+            // Erasure-coded files are always written synchronously, as the parity of a row depends on all data
+            // written to the row.
+            XCap xcapCopy = fcBuilder.getXcap();
+            for (OSDWriteResponse response : getErasureCodedIO(translator).write(fcBuilder.build(), buffer, count,
+                    offset)) {
+                if (response.hasSizeInBytes()) {
+                    fileInfo.tryToUpdateOSDWriteResponse(response, xcapCopy);
+                }
+            }
+            return count;
+        }
+
         translator.translateWriteRequest(count, offset, stripingPolicy, buffer, operations);
 
         FileCredentials fileCredentials = fcBuilder.build();
@@ -648,6 +823,13 @@ public class FileHandleImplementation implements FileHandle, AdminFileHandle {
 
             assert (response != null);
             assert (response.hasSizeInBytes());
+
+            // Truncating the data objects of the last row invalidates its parity.
+            StripeTranslator translator = getStripeTranslator(fileCredentialsBuilder.getXlocs().getReplicas(0)
+                    .getStripingPolicy().getType());
+            if (translator instanceof StripeTranslatorErasureCode) {
+                getErasureCodedIO(translator).updateParity(fileCredentialsBuilder.build(), newFileSize);
+            }
         } else {
 
             // create OSDWriteResponse
@@ -1013,27 +1195,16 @@ public class FileHandleImplementation implements FileHandle, AdminFileHandle {
     }
 
     protected void writeBackFileSizeAsync() throws IOException, PosixErrorException, AddressToUUIDNotFoundException {
-        xtreemfs_update_file_sizeRequest.Builder rqBuilder = xtreemfs_update_file_sizeRequest.newBuilder();
-
-        synchronized (this) {
-            if (osdWriteResponseForAsyncWriteBack == null) {
-                return;
-            }
-            if (Logging.isDebug()) {
-                Logging.logMessage(Logging.LEVEL_DEBUG, Category.misc, this, "updateFileSize: %s " + "#bytes: %s",
-                        fileInfo.getPath(), osdWriteResponseForAsyncWriteBack.getSizeInBytes());
-            }
-            rqBuilder.setXcap(xcap).setOsdWriteResponse(osdWriteResponseForAsyncWriteBack.toBuilder());
+        xtreemfs_update_file_sizeRequest request = getFileSizeUpdateForAsyncWriteBack();
+        if (request == null) {
+            return;
         }
 
-        // set close file to false because true implies synchronous call.
-        rqBuilder.setCloseFile(false);
-
         String address = uuidResolver.uuidToAddress(mrcUuidIterator.getUUID());
         InetSocketAddress server = RPCCaller.getInetSocketAddressFromAddress(address, SERVICES.MRC);
 
         RPCResponse<timestampResponse> r = mrcServiceClient.xtreemfs_update_file_size(server, authBogus,
-                userCredentialsBogus, rqBuilder.build());
+                userCredentialsBogus, request);
 
         final FileHandleImplementation fileHandle = this;
 
@@ -1057,6 +1228,37 @@ public class FileHandleImplementation implements FileHandle, AdminFileHandle {
         });
     }
 
+    /**
+     * Returns the request to write back the OSDWriteResponse set with
+     * {@link #setOsdWriteResponseForAsyncWriteBack(OSDWriteResponse)}, or null if there is none.
+     */
+    protected xtreemfs_update_file_sizeRequest getFileSizeUpdateForAsyncWriteBack() {
+        xtreemfs_update_file_sizeRequest.Builder rqBuilder = xtreemfs_update_file_sizeRequest.newBuilder();
+
+        synchronized (this) {
+            if (osdWriteResponseForAsyncWriteBack == null) {
+                return null;
+            }
+            if (Logging.isDebug()) {
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.misc, this, "updateFileSize: %s " + "#bytes: %s",
+                        fileInfo.getPath(), osdWriteResponseForAsyncWriteBack.getSizeInBytes());
+            }
+            rqBuilder.setXcap(xcap).setOsdWriteResponse(osdWriteResponseForAsyncWriteBack.toBuilder());
+        }
+
+        // set close file to false because true implies synchronous call.
+        rqBuilder.setCloseFile(false);
+        return rqBuilder.build();
+    }
+
+    /**
+     * Called when the asynchronous write back of the file size has been completed, e.g. as part of a batched
+     * update.
+     */
+    protected void asyncFileSizeWriteBackFinished(boolean success) {
+        fileInfo.asyncFileSizeUpdateResponseHandler(osdWriteResponseForAsyncWriteBack, this, success);
+    }
+
     protected void setOsdWriteResponseForAsyncWriteBack(OSDWriteResponse osdwr) {
         synchronized (this) {
             assert (osdWriteResponseForAsyncWriteBack == null);
@@ -1065,22 +1267,7 @@ public class FileHandleImplementation implements FileHandle, AdminFileHandle {
     }
 
     protected void renewXCapAsync() throws IOException, AddressToUUIDNotFoundException {
-        XCap xcapCopy;
-
-        synchronized (this) {
-            // TODO: Only renew after some time has elapsed.
-            // TODO: Cope with local clocks which have high clock skew.
-            if (Logging.isDebug()) {
-                Logging.logMessage(Logging.LEVEL_DEBUG, Category.misc, this,
-                        "Renew SCap for fileId: %s  Expiration in: %s", Helper.extractFileIdFromXcap(xcap),
-                        xcap.getExpireTimeoutS() - System.currentTimeMillis() / 1000);
-            }
-            xcapCopy = this.xcap.toBuilder().build();
-
-            synchronized (xcapRenewalPendingLock) {
-                xcapRenewalPending = true;
-            }
-        }
+        XCap xcapCopy = prepareXCapRenewal();
 
         String address = uuidResolver.uuidToAddress(mrcUuidIterator.getUUID());
         InetSocketAddress server = RPCCaller.getInetSocketAddressFromAddress(address, SERVICES.MRC);
@@ -1091,9 +1278,9 @@ public class FileHandleImplementation implements FileHandle, AdminFileHandle {
         r.registerListener(new RPCResponseAvailableListener<XCap>() {
             @Override
             public void responseAvailable(RPCResponse<XCap> r) {
+                XCap newXCap = null;
                 try {
-                    XCap newXCap = r.get();
-                    setRenewedXcap(newXCap);
+                    newXCap = r.get();
                 } catch (Exception e) {
                     if (Logging.isDebug()) {
                         Logging.logMessage(Logging.LEVEL_DEBUG, this, "renewXcapAsync: Renewing XCap"
@@ -1101,15 +1288,51 @@ public class FileHandleImplementation implements FileHandle, AdminFileHandle {
                     }
                 } finally {
                     r.freeBuffers();
-                    synchronized (xcapRenewalPendingLock) {
-                        xcapRenewalPending = false;
-                        xcapRenewalPendingLock.notifyAll();
-                    }
+                    xcapRenewalFinished(newXCap);
                 }
             }
         });
     }
 
+    /**
+     * Marks a renewal of the XCap as pending. The renewal has to be completed with
+     * {@link #xcapRenewalFinished(XCap)}.
+     * 
+     * @return a copy of the current XCap
+     */
+    protected XCap prepareXCapRenewal() {
+        synchronized (this) {
+            // TODO: Only renew after some time has elapsed.
+            // TODO: Cope with local clocks which have high clock skew.
+            if (Logging.isDebug()) {
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.misc, this,
+                        "Renew SCap for fileId: %s  Expiration in: %s", Helper.extractFileIdFromXcap(xcap),
+                        xcap.getExpireTimeoutS() - System.currentTimeMillis() / 1000);
+            }
+
+            synchronized (xcapRenewalPendingLock) {
+                xcapRenewalPending = true;
+            }
+            return this.xcap.toBuilder().build();
+        }
+    }
+
+    /**
+     * Completes a renewal of the XCap.
+     * 
+     * @param newXCap
+     *            the renewed XCap, or null if the renewal failed
+     */
+    protected void xcapRenewalFinished(XCap newXCap) {
+        if (newXCap != null) {
+            setRenewedXcap(newXCap);
+        }
+        synchronized (xcapRenewalPendingLock) {
+            xcapRenewalPending = false;
+            xcapRenewalPendingLock.notifyAll();
+        }
+    }
+
     private void setRenewedXcap(XCap newXCap) {
         synchronized (this) {
             // Overwrite current XCap only by a newer one (i.e. later expire time)
@@ -1177,6 +1400,11 @@ public class FileHandleImplementation implements FileHandle, AdminFileHandle {
         return getXcap().getFileId();
     }
 
+    private ErasureCodedIO getErasureCodedIO(StripeTranslator translator) {
+        return new ErasureCodedIO(this, (StripeTranslatorErasureCode) translator, osdServiceClient, uuidResolver,
+                volumeOptions, authBogus, userCredentialsBogus);
+    }
+
     private StripeTranslator getStripeTranslator(StripingPolicyType type) throws IOException {
         // Find the corresponding StripingPolicy
         StripeTranslator st = stripeTranslators.get(type);
@@ -8,7 +8,7 @@ package org.xtreemfs.common.libxtreemfs;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
@@ -189,7 +189,7 @@ public class FileInfo {
             asyncWriteHandler = new AsyncWriteHandler(this, osdUuidIterator, volume.getUUIDResolver(),
                     volume.getOsdServiceClient(), volume.getAuthBogus(), volume.getUserCredentialsBogus(), volume
                             .getOptions().getMaxWriteahead(), volume.getOptions().getMaxWriteaheadRequests(), volume
-                            .getOptions().getMaxWriteTries());
+                            .getOptions().getMaxWriteTries(), volume.getOptions().getRetryDelay_s());
         }
 
         pendingFilesizeUpdates = new ArrayList<FileHandle>(volume.getOptions().getMaxWriteahead());
@@ -379,6 +379,19 @@ public class FileInfo {
      */
     protected void writeBackFileSizeAsync() throws IOException, PosixErrorException,
             AddressToUUIDNotFoundException {
+        FileHandleImplementation fileHandle = prepareFileSizeWriteBack();
+        if (fileHandle != null) {
+            fileHandle.writeBackFileSizeAsync();
+        }
+    }
+
+    /**
+     * Marks a dirty file size as pending and creates the FileHandle used to write it back. The write back has
+     * to be completed with {@link FileHandleImplementation#asyncFileSizeWriteBackFinished(boolean)}.
+     * 
+     * @return the FileHandle, or null if there is no dirty file size to write back
+     */
+    protected FileHandleImplementation prepareFileSizeWriteBack() {
         synchronized (osdWriteResponseLock) {
             // Only update pending file size updates.
             if (osdWriteResponse != null && osdWriteResponseStatus == FilesizeUpdateStatus.kDirty) {
@@ -387,26 +400,17 @@ public class FileInfo {
                 osdWriteResponseStatus = FilesizeUpdateStatus.kDirtyAndAsyncPending;
 
                 fileHandle.setOsdWriteResponseForAsyncWriteBack(osdWriteResponse);
-                fileHandle.writeBackFileSizeAsync();
+                return fileHandle;
             }
+            return null;
         }
     }
 
     /**
-     * Renews xcap of all file handles of this file asynchronously.
+     * Returns the currently open file handles of this file.
      */
-    protected void renewXCapsAsync() throws AddressToUUIDNotFoundException {
-        Iterator<FileHandleImplementation> fhiIterator = openFileHandles.iterator();
-        try {
-            while (fhiIterator.hasNext()) {
-                fhiIterator.next().renewXCapAsync();
-            }
-        } catch (IOException ioe) {
-            if (Logging.isDebug()) {
-                Logging.logMessage(Logging.LEVEL_DEBUG, Category.misc, this,
-                        "renewXcapsSync: Failed to renew XCap for fileHandles. Reason: %s", ioe.getCause());
-            }
-        }
+    protected Collection<FileHandleImplementation> getOpenFileHandles() {
+        return openFileHandles;
     }
 
     /**
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.common.libxtreemfs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the response times of services, identified by their UUIDs.
+ * <p>
+ * For each UUID, an exponentially weighted moving average (EWMA) of the response time and of its mean deviation is
+ * maintained, like the round-trip time estimation of TCP. The estimates are used to read from the fastest replica
+ * first and to determine the delay after which a hedged read is sent to another replica.
+ */
+public class LatencyTracker {
+
+    /**
+     * Weight of a new sample in the average response time.
+     */
+    private static final double ALPHA = 0.125;
+
+    /**
+     * Weight of a new sample in the mean deviation of the response time.
+     */
+    private static final double BETA  = 0.25;
+
+    private static class Estimate {
+
+        double mean;
+
+        double deviation;
+    }
+
+    private final ConcurrentHashMap<String, Estimate> estimates;
+
+    public LatencyTracker() {
+        estimates = new ConcurrentHashMap<String, Estimate>();
+    }
+
+    /**
+     * Adds a response time sample for "uuid". Requests that failed should be recorded as well, with the time that
+     * passed until the failure was detected, so that unreachable services are avoided.
+     */
+    public void record(String uuid, long durationNanos) {
+        Estimate estimate = estimates.get(uuid);
+        if (estimate == null) {
+            Estimate newEstimate = new Estimate();
+            newEstimate.mean = -1;
+            estimate = estimates.putIfAbsent(uuid, newEstimate);
+            if (estimate == null) {
+                estimate = newEstimate;
+            }
+        }
+
+        synchronized (estimate) {
+            if (estimate.mean < 0) {
+                estimate.mean = durationNanos;
+                estimate.deviation = durationNanos / 2.0;
+            } else {
+                estimate.deviation = (1 - BETA) * estimate.deviation + BETA * Math.abs(durationNanos - estimate.mean);
+                estimate.mean = (1 - ALPHA) * estimate.mean + ALPHA * durationNanos;
+            }
+        }
+    }
+
+    /**
+     * Returns the average response time of "uuid" in nanoseconds, or -1 if no sample was recorded yet.
+     */
+    public long getAverage(String uuid) {
+        Estimate estimate = estimates.get(uuid);
+        if (estimate == null) {
+            return -1;
+        }
+        synchronized (estimate) {
+            return (long) estimate.mean;
+        }
+    }
+
+    /**
+     * Returns an estimate of the 95th percentile of the response times of "uuid" in nanoseconds, or -1 if no sample
+     * was recorded yet.
+     * <p>
+     * The mean deviation is about 0.8 standard deviations, hence the average plus two mean deviations approximates
+     * the 95th percentile.
+     */
+    public long getPercentile95(String uuid) {
+        Estimate estimate = estimates.get(uuid);
+        if (estimate == null) {
+            return -1;
+        }
+        synchronized (estimate) {
+            return estimate.mean < 0 ? -1 : (long) (estimate.mean + 2 * estimate.deviation);
+        }
+    }
+
+    /**
+     * Returns the UUIDs ordered by their average response time. UUIDs without samples come first, so that they are
+     * probed; the order of UUIDs with equal estimates is preserved.
+     */
+    public List<String> sortByLatency(Collection<String> uuids) {
+        List<String> sorted = new ArrayList<String>(uuids);
+        final Map<String, Long> averages = new HashMap<String, Long>();
+        for (String uuid : sorted) {
+            averages.put(uuid, getAverage(uuid));
+        }
+        Collections.sort(sorted, new Comparator<String>() {
+            @Override
+            public int compare(String o1, String o2) {
+                long a1 = averages.get(o1);
+                long a2 = averages.get(o2);
+                return a1 < a2 ? -1 : (a1 == a2 ? 0 : 1);
+            }
+        });
+        return sorted;
+    }
+
+    /**
+     * Forgets all estimates.
+     */
+    public void clear() {
+        estimates.clear();
+    }
+}
@@ -92,6 +92,12 @@ public class Options {
      */
     private final int     lingerTimeout_s                   = 600;
 
+    /**
+     * Number of parallel connections per server. Requests for the same file always use the same connection.
+     * Default: 1
+     */
+    private int           connectionsPerServer              = 1;
+
     // SSL options.
     private final String  sslPemCertPath                    = "";
     private final String  sslPemPath                        = "";
@@ -137,11 +143,39 @@ public class Options {
      */
     private int           periodicFileSizeUpdatesIntervalS  = 60;
 
+    /**
+     * Maximum number of file size updates sent to the MRC with a single request by the periodic file size update.
+     * Default: 1000
+     */
+    private int           maxFileSizeUpdatesPerRequest      = 1000;
+
     /**
      * Interval for periodic xcap renewal in seconds. Default: 60
      */
     private final int     periodicXcapRenewalIntervalS      = 60;
 
+    /**
+     * Maximum number of XCaps renewed with a single request by the periodic XCap renewal. Default: 1000
+     */
+    private int           maxXCapRenewalsPerRequest         = 1000;
+
+    /**
+     * Read read-only replicated files from the replica with the lowest average response time first. Default: true
+     */
+    private boolean       latencyAwareReplicaSelection      = true;
+
+    /**
+     * Send a second read request to another replica of a read-only replicated file if the first replica did not
+     * respond within the estimated 95th percentile of its response times. Default: false
+     */
+    private boolean       hedgedReads                       = false;
+
+    /**
+     * Minimum delay in milliseconds before a hedged read is sent. Also used for replicas without a response time
+     * estimate. Default: 10
+     */
+    private int           hedgedReadMinDelay_ms             = 10;
+
     /** Interval between requests while waiting for the installation of a new xLocSet. Default: 5 */
     private final int     xLocInstallPollIntervalS          = 5;
 
@@ -286,6 +320,14 @@ public class Options {
         return lingerTimeout_s;
     }
 
+    public int getConnectionsPerServer() {
+        return connectionsPerServer;
+    }
+
+    public void setConnectionsPerServer(int connectionsPerServer) {
+        this.connectionsPerServer = connectionsPerServer;
+    }
+
     public int getPeriodicXcapRenewalIntervalS() {
         return periodicXcapRenewalIntervalS;
     }
@@ -294,6 +336,46 @@ public class Options {
         return periodicFileSizeUpdatesIntervalS;
     }
 
+    public int getMaxXCapRenewalsPerRequest() {
+        return maxXCapRenewalsPerRequest;
+    }
+
+    public void setMaxXCapRenewalsPerRequest(int maxXCapRenewalsPerRequest) {
+        this.maxXCapRenewalsPerRequest = maxXCapRenewalsPerRequest;
+    }
+
+    public int getMaxFileSizeUpdatesPerRequest() {
+        return maxFileSizeUpdatesPerRequest;
+    }
+
+    public void setMaxFileSizeUpdatesPerRequest(int maxFileSizeUpdatesPerRequest) {
+        this.maxFileSizeUpdatesPerRequest = maxFileSizeUpdatesPerRequest;
+    }
+
+    public boolean isLatencyAwareReplicaSelection() {
+        return latencyAwareReplicaSelection;
+    }
+
+    public void setLatencyAwareReplicaSelection(boolean latencyAwareReplicaSelection) {
+        this.latencyAwareReplicaSelection = latencyAwareReplicaSelection;
+    }
+
+    public boolean isHedgedReads() {
+        return hedgedReads;
+    }
+
+    public void setHedgedReads(boolean hedgedReads) {
+        this.hedgedReads = hedgedReads;
+    }
+
+    public int getHedgedReadMinDelay_ms() {
+        return hedgedReadMinDelay_ms;
+    }
+
+    public void setHedgedReadMinDelay_ms(int hedgedReadMinDelay_ms) {
+        this.hedgedReadMinDelay_ms = hedgedReadMinDelay_ms;
+    }
+
     public int getXLocInstallPollIntervalS() {
         return xLocInstallPollIntervalS;
     }
@@ -6,14 +6,25 @@
  */
 package org.xtreemfs.common.libxtreemfs;
 
-import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map.Entry;
 
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
+import org.xtreemfs.foundation.pbrpc.client.PBRPCException;
+import org.xtreemfs.foundation.pbrpc.client.RPCResponse;
+import org.xtreemfs.foundation.pbrpc.client.RPCResponseAvailableListener;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.ErrorType;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.SERVICES;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_update_file_sizeRequest;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_update_file_sizesRequest;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_update_file_sizesResponse;
 
 /**
- * Updates periodically the fileSize at the MRC. 
+ * Updates periodically the fileSize at the MRC. The file sizes of all open files are sent with batched
+ * requests.
  */
 public class PeriodicFileSizeUpdateThread extends Thread {
 
@@ -46,17 +57,21 @@ public class PeriodicFileSizeUpdateThread extends Thread {
                                 .getOpenFileTable().size());
             }
 
-            // Iterate over the openFileTable
+            // Collect the pending file size updates of all open files and send them in batches.
+            List<FileHandleImplementation> batch = new ArrayList<FileHandleImplementation>();
             for (Entry<Long, FileInfo> entry : volume.getOpenFileTable().entrySet()) {
-                try {
-                    entry.getValue().writeBackFileSizeAsync();
-                } catch (IOException e) {
-                    if (Logging.isDebug()) {
-                        Logging.logMessage(Logging.LEVEL_DEBUG, Category.misc, this,
-                                "PeriodicFileSizeUpdateThread: failed to update filesize. Reason: ",
-                                e.getMessage());
-                    }
-                } 
+                FileHandleImplementation fileHandle = entry.getValue().prepareFileSizeWriteBack();
+                if (fileHandle == null) {
+                    continue;
+                }
+                batch.add(fileHandle);
+                if (batch.size() >= volume.getOptions().getMaxFileSizeUpdatesPerRequest()) {
+                    writeBackFileSizes(batch);
+                    batch = new ArrayList<FileHandleImplementation>();
+                }
+            }
+            if (!batch.isEmpty()) {
+                writeBackFileSizes(batch);
             }
 
             if (Logging.isDebug()) {
@@ -66,4 +81,84 @@ public class PeriodicFileSizeUpdateThread extends Thread {
             }
         }
     }
+
+    /**
+     * Sends the file size updates of the given FileHandles to the MRC with a single request. Falls back to
+     * individual updates if the MRC does not support batched updates.
+     */
+    private void writeBackFileSizes(final List<FileHandleImplementation> fileHandles) {
+        xtreemfs_update_file_sizesRequest.Builder rqBuilder = xtreemfs_update_file_sizesRequest.newBuilder();
+        final List<FileHandleImplementation> sent = new ArrayList<FileHandleImplementation>(fileHandles.size());
+        for (FileHandleImplementation fileHandle : fileHandles) {
+            xtreemfs_update_file_sizeRequest update = fileHandle.getFileSizeUpdateForAsyncWriteBack();
+            if (update == null) {
+                fileHandle.asyncFileSizeWriteBackFinished(false);
+            } else {
+                rqBuilder.addUpdates(update);
+                sent.add(fileHandle);
+            }
+        }
+        if (sent.isEmpty()) {
+            return;
+        }
+
+        RPCResponse<xtreemfs_update_file_sizesResponse> r = null;
+        try {
+            String address = volume.getUUIDResolver().uuidToAddress(volume.getMrcUuidIterator().getUUID());
+            InetSocketAddress server = RPCCaller.getInetSocketAddressFromAddress(address, SERVICES.MRC);
+            r = volume.getMrcServiceClient().xtreemfs_update_file_sizes(server, volume.getAuthBogus(),
+                    volume.getUserCredentialsBogus(), rqBuilder.build());
+        } catch (Exception e) {
+            if (Logging.isDebug()) {
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.misc, this,
+                        "PeriodicFileSizeUpdateThread: failed to update filesizes. Reason: %s", e.getMessage());
+            }
+            for (FileHandleImplementation fileHandle : sent) {
+                fileHandle.asyncFileSizeWriteBackFinished(false);
+            }
+            return;
+        }
+
+        r.registerListener(new RPCResponseAvailableListener<xtreemfs_update_file_sizesResponse>() {
+
+            @Override
+            public void responseAvailable(RPCResponse<xtreemfs_update_file_sizesResponse> r) {
+                try {
+                    xtreemfs_update_file_sizesResponse response = r.get();
+                    for (int i = 0; i < sent.size(); i++) {
+                        sent.get(i).asyncFileSizeWriteBackFinished(
+                                i < response.getAppliedCount() && response.getApplied(i));
+                    }
+                } catch (PBRPCException e) {
+                    boolean unsupported = e.getErrorType() == ErrorType.INVALID_PROC_ID;
+                    for (FileHandleImplementation fileHandle : sent) {
+                        if (unsupported) {
+                            writeBackFileSizeAsync(fileHandle);
+                        } else {
+                            fileHandle.asyncFileSizeWriteBackFinished(false);
+                        }
+                    }
+                } catch (Exception e) {
+                    if (Logging.isDebug()) {
+                        Logging.logMessage(Logging.LEVEL_DEBUG, Category.misc, this,
+                                "PeriodicFileSizeUpdateThread: failed to update filesizes. Reason: %s",
+                                e.getMessage());
+                    }
+                    for (FileHandleImplementation fileHandle : sent) {
+                        fileHandle.asyncFileSizeWriteBackFinished(false);
+                    }
+                } finally {
+                    r.freeBuffers();
+                }
+            }
+        });
+    }
+
+    private void writeBackFileSizeAsync(FileHandleImplementation fileHandle) {
+        try {
+            fileHandle.writeBackFileSizeAsync();
+        } catch (Exception e) {
+            fileHandle.asyncFileSizeWriteBackFinished(false);
+        }
+    }
 }
@@ -6,18 +6,24 @@
  */
 package org.xtreemfs.common.libxtreemfs;
 
-import java.util.Map.Entry;
+import java.util.Random;
 
-import org.xtreemfs.common.libxtreemfs.exceptions.AddressToUUIDNotFoundException;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
 
 /**
- * Renews periodically the XCap 
+ * Renews periodically the XCap. The XCaps of all open files are renewed with batched requests. The renewal
+ * interval is randomly shortened by up to {@link #RENEWAL_JITTER} to spread the renewals of many clients over
+ * time.
  */
 public class PeriodicXcapRenewalThread extends Thread {
 
-    private VolumeImplementation volume = null;
+    /** Maximum fraction by which a renewal interval is shortened. */
+    static final double          RENEWAL_JITTER = 0.25;
+
+    private VolumeImplementation volume         = null;
+
+    private final Random         random         = new Random();
 
     public PeriodicXcapRenewalThread(VolumeImplementation volume, boolean startAsDaemon) {
         this.volume = volume;
@@ -34,7 +40,8 @@ public class PeriodicXcapRenewalThread extends Thread {
         while (!isInterrupted()) {
             // send thread to sleep (default 1minute)
             try {
-                Thread.sleep(volume.getOptions().getPeriodicXcapRenewalIntervalS()*1000);
+                long intervalMs = volume.getOptions().getPeriodicXcapRenewalIntervalS() * 1000L;
+                Thread.sleep(intervalMs - (long) (intervalMs * RENEWAL_JITTER * random.nextDouble()));
             } catch (Exception e) {
                 break;
             }
@@ -45,19 +52,7 @@ public class PeriodicXcapRenewalThread extends Thread {
                                 .getOpenFileTable().size());
             }
 
-            // iterate over the openFileTable.
-            for (Entry<Long, FileInfo> entry : volume.getOpenFileTable().entrySet()) {
-            	try {
-            		entry.getValue().renewXCapsAsync();	
-            	} catch (AddressToUUIDNotFoundException e) {
-                    if (Logging.isDebug()) {
-                        Logging.logMessage(Logging.LEVEL_DEBUG, Category.misc, this,
-                                "PeriodicXCapThread: failed to renew XCap. Reason: ",
-                                e.getMessage());
-                    }
-				}
-                
-            }
+            volume.renewXCapsAsync();
 
             if (Logging.isDebug()) {
                 Logging.logMessage(Logging.LEVEL_DEBUG, Category.misc, this,
@@ -35,6 +35,11 @@ import com.google.protobuf.Message;
  */
 public class RPCCaller {
 
+    /**
+     * Initial delay before a request that was rejected by a busy server is retried, in ms.
+     */
+    private static final long BUSY_BACKOFF_MIN_MS = 100;
+
     /**
      * Interface for syncCall which generates the calls. Will be called for each retry.
      */
@@ -66,7 +71,19 @@ public class RPCCaller {
             throws IOException, PosixErrorException, InternalServerErrorException,
             AddressToUUIDNotFoundException {
         return syncCall(service, userCreds, auth, options, uuidResolver, it, uuidIteratorHasAddresses, false,
-                options.getMaxTries(), callRequest, buf, callGen);
+                options.getMaxTries(), callRequest, buf, null, callGen);
+    }
+
+    /**
+     * Like the other syncCalls, but additionally records the response time of every attempt in "latencyTracker".
+     */
+    protected static <C, R extends Message> R syncCall(SERVICES service, UserCredentials userCreds,
+            Auth auth, Options options, UUIDResolver uuidResolver, UUIDIterator it,
+            boolean uuidIteratorHasAddresses, C callRequest, ReusableBuffer buf, LatencyTracker latencyTracker,
+            CallGenerator<C, R> callGen) throws IOException, PosixErrorException, InternalServerErrorException,
+            AddressToUUIDNotFoundException {
+        return syncCall(service, userCreds, auth, options, uuidResolver, it, uuidIteratorHasAddresses, false,
+                options.getMaxTries(), callRequest, buf, latencyTracker, callGen);
     }
 
     protected static <C, R extends Message> R syncCall(SERVICES service, UserCredentials userCreds,
@@ -74,17 +91,32 @@ public class RPCCaller {
             boolean uuidIteratorHasAddresses, boolean delayNextTry, int maxRetries, C callRequest,
             ReusableBuffer buffer, CallGenerator<C, R> callGen) throws PosixErrorException, IOException,
             InternalServerErrorException, AddressToUUIDNotFoundException {
+        return syncCall(service, userCreds, auth, options, uuidResolver, it, uuidIteratorHasAddresses,
+                delayNextTry, maxRetries, callRequest, buffer, null, callGen);
+    }
+
+    private static <C, R extends Message> R syncCall(SERVICES service, UserCredentials userCreds,
+            Auth auth, Options options, UUIDResolver uuidResolver, UUIDIterator it,
+            boolean uuidIteratorHasAddresses, boolean delayNextTry, int maxRetries, C callRequest,
+            ReusableBuffer buffer, LatencyTracker latencyTracker, CallGenerator<C, R> callGen)
+            throws PosixErrorException, IOException, InternalServerErrorException, AddressToUUIDNotFoundException {
         int maxTries = maxRetries;
         int attempt = 0;
+        // Number of busy errors in a row, which determines the backoff.
+        int busyResponses = 0;
 
         R response = null;
         try {
             while (++attempt <= maxTries || maxTries == 0) {
-                // Retry only if it is a recoverable error (REDIRECT, IO_ERROR, INTERNAL_SERVER_ERROR).
+                // Retry only if it is a recoverable error (REDIRECT, IO_ERROR, INTERNAL_SERVER_ERROR,
+                // SERVER_BUSY).
                 boolean retry = false;
+                boolean busy = false;
                 IOException responseError = null;
 
                 RPCResponse<R> r = null;
+                String uuid = null;
+                long startTime = 0;
                 try {
                     // create an InetSocketAddresse depending on the uuidIterator and
                     // the kind of service
@@ -96,6 +128,8 @@ public class RPCCaller {
                         server = getInetSocketAddressFromAddress(address, service);
                     }
 
+                    uuid = it.getUUID();
+                    startTime = System.nanoTime();
                     r = callGen.executeCall(server, auth, userCreds, callRequest);
                     response = r.get();
 
@@ -138,6 +172,12 @@ public class RPCCaller {
                         continue;
                     }
 
+                    if (pbe.getErrorType().equals(ErrorType.SERVER_BUSY)) {
+                        // The server is overloaded, but not failed: retry it after a backoff.
+                        busy = true;
+                        retry = true;
+                    }
+
                     if (pbe.getErrorType().equals(ErrorType.IO_ERROR)
                             || pbe.getErrorType().equals(ErrorType.INTERNAL_SERVER_ERROR)) {
                         // Mark the current UUID as failed and get the next one.
@@ -163,11 +203,22 @@ public class RPCCaller {
                     if (r != null) {
                         r.freeBuffers();
                     }
+                    // Failed attempts are recorded as well to penalize unresponsive servers.
+                    if (latencyTracker != null && startTime != 0) {
+                        latencyTracker.record(uuid, System.nanoTime() - startTime);
+                    }
                 }
 
+                busyResponses = busy ? busyResponses + 1 : 0;
+
                 if (responseError != null) {
-                    // Log only the first retry.
-                    if (attempt == 1 && maxTries != 1) {
+                    // Log only the first retry; busy servers are expected to recover soon.
+                    if (busy) {
+                        if (Logging.isDebug()) {
+                            Logging.logMessage(Logging.LEVEL_DEBUG, Category.misc, responseError,
+                                    "Server %s is busy, retrying (attempt %d)", it.getUUID(), attempt);
+                        }
+                    } else if (attempt == 1 && maxTries != 1) {
                         String retriesLeft = (maxTries == 0) ? ("infinite") : (String.valueOf(maxTries - attempt));
                         Logging.logMessage(Logging.LEVEL_ERROR, Category.misc, responseError,
                                 "Got no response from %s, " + "retrying (%s attemps left, waiting at least %s seconds"
@@ -184,7 +235,11 @@ public class RPCCaller {
                             (attempt < maxTries || maxTries == 0)
                             // or this last retry should be delayed
                             || (attempt == maxTries && delayNextTry)) {
-                        waitDelay(options.getRetryDelay_s());
+                        if (busy) {
+                            sleep(getBusyBackoff(busyResponses, options.getRetryDelay_s()));
+                        } else {
+                            waitDelay(options.getRetryDelay_s());
+                        }
                         continue;
                     } else {
                         throw responseError;
@@ -207,8 +262,32 @@ public class RPCCaller {
      * @throws IOException
      */
     static void waitDelay(long delay_s) throws IOException {
+        sleep(delay_s * 1000);
+    }
+
+    /**
+     * Returns the time to wait before a request that was rejected by a busy server is retried. The backoff
+     * grows exponentially with the number of busy errors in a row, up to the retry delay, and is randomized
+     * to spread the retries of different clients.
+     * 
+     * @param busyResponses
+     *            number of busy errors in a row
+     * @param retryDelay_s
+     *            the maximum backoff in seconds
+     * @return the backoff in ms
+     */
+    static long getBusyBackoff(int busyResponses, long retryDelay_s) {
+        long max = Math.max(BUSY_BACKOFF_MIN_MS, retryDelay_s * 1000);
+        long backoff = Math.min(max, BUSY_BACKOFF_MIN_MS << Math.min(busyResponses - 1, 20));
+        return backoff / 2 + (long) (Math.random() * (backoff / 2 + 1));
+    }
+
+    /**
+     * Blocks the thread for delay_ms milliseconds and throws an exception if interrupted.
+     */
+    static void sleep(long delay_ms) throws IOException {
         try {
-            Thread.sleep(delay_s * 1000);
+            Thread.sleep(delay_ms);
         } catch (InterruptedException e) {
             String msg = "Caught interrupt while waiting for the next attempt, aborting sync request";
             if (Logging.isInfo()) {
@@ -254,6 +333,10 @@ public class RPCCaller {
         case REDIRECT:
             throw new XtreemFSException("This error (A REDIRECT error was not handled "
                     + "and retried but thrown instead) should never happen. Report this");
+        case SERVER_BUSY:
+            Logging.logMessage(logLevel, Category.misc, e, "The server %s is busy: %s", it.getUUID(),
+                    e.getErrorMessage());
+            throw new IOException("server busy: " + e.getErrorMessage());
         case INVALID_VIEW:
             Logging.logMessage(logLevel, Category.replication, e,
                     "The server %s denied the requested operation because the clients view is outdated. Error: %s",
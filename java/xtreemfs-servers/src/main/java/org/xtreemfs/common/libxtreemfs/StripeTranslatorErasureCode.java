@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.common.libxtreemfs;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.xtreemfs.common.xloc.ReedSolomonCodec;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.StripingPolicy;
+
+/**
+ * Stripe translator for erasure-coded files. Data objects are mapped to the
+ * first <tt>width</tt> OSDs like with RAID0; the parity objects are written by
+ * {@link ErasureCodedIO}.
+ * <p>
+ * The translator owns the threads used to encode and decode stripes and to
+ * transfer the objects of a stripe in parallel, and it caches one codec per
+ * combination of data and parity width.
+ */
+public class StripeTranslatorErasureCode extends StripeTranslatorRaid0 {
+
+    private final ExecutorService                           executor;
+
+    private final ConcurrentHashMap<Long, ReedSolomonCodec> codecs;
+
+    public StripeTranslatorErasureCode() {
+        this.codecs = new ConcurrentHashMap<Long, ReedSolomonCodec>();
+        this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ErasureCode-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Returns the codec for the given striping policy.
+     */
+    ReedSolomonCodec getCodec(StripingPolicy policy) {
+        Long key = ((long) policy.getWidth() << 32) | policy.getParityWidth();
+        ReedSolomonCodec codec = codecs.get(key);
+        if (codec == null) {
+            codec = new ReedSolomonCodec(policy.getWidth(), policy.getParityWidth(), executor, Runtime
+                    .getRuntime().availableProcessors());
+            ReedSolomonCodec existing = codecs.putIfAbsent(key, codec);
+            if (existing != null) {
+                codec = existing;
+            }
+        }
+        return codec;
+    }
+
+    ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Terminates the threads of the translator.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -8,6 +8,7 @@ package org.xtreemfs.common.libxtreemfs;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -28,10 +29,13 @@ import org.xtreemfs.foundation.json.JSONParser;
 import org.xtreemfs.foundation.json.JSONString;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
+import org.xtreemfs.foundation.pbrpc.client.PBRPCException;
 import org.xtreemfs.foundation.pbrpc.client.RPCAuthentication;
 import org.xtreemfs.foundation.pbrpc.client.RPCNIOSocketClient;
 import org.xtreemfs.foundation.pbrpc.client.RPCResponse;
+import org.xtreemfs.foundation.pbrpc.client.RPCResponseAvailableListener;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.Auth;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.ErrorType;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.POSIXErrno;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.UserCredentials;
 import org.xtreemfs.mrc.metadata.ReplicationPolicy;
@@ -84,6 +88,8 @@ import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_replica_addRequest;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_replica_addResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_replica_removeRequest;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_replica_removeResponse;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_renew_capabilitiesRequest;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_renew_capabilitiesResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_set_replica_update_policyRequest;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRCServiceClient;
 import org.xtreemfs.pbrpc.generatedinterfaces.OSD.unlink_osd_Request;
@@ -180,6 +186,11 @@ public class VolumeImplementation implements Volume, AdminVolume {
      */
     private final Map<StripingPolicyType, StripeTranslator> stripeTranslators;
 
+    /**
+     * Response times of the OSDs, used to select the replica to read from.
+     */
+    private final LatencyTracker                            osdLatencyTracker;
+
     private static final String                             XTREEMFS_DEFAULT_RP      = "xtreemfs.default_rp";
 
     private static final String                             OSD_SELECTION_POLICY     = "xtreemfs.osel_policy";
@@ -208,6 +219,9 @@ public class VolumeImplementation implements Volume, AdminVolume {
         // register all stripe translators
         this.stripeTranslators = new HashMap<StripingPolicyType, StripeTranslator>();
         stripeTranslators.put(StripingPolicyType.STRIPING_POLICY_RAID0, new StripeTranslatorRaid0());
+        stripeTranslators.put(StripingPolicyType.STRIPING_POLICY_ERASURECODE, new StripeTranslatorErasureCode());
+
+        this.osdLatencyTracker = new LatencyTracker();
     }
 
     /*
@@ -225,6 +239,7 @@ public class VolumeImplementation implements Volume, AdminVolume {
     public void start(boolean startThreadsAsDaemons) throws IOException {
         networkClient = new RPCNIOSocketClient(sslOptions, volumeOptions.getRequestTimeout_s() * 1000,
                 volumeOptions.getLingerTimeout_s() * 1000, "Volume", startThreadsAsDaemons);
+        networkClient.setConnectionsPerEndpoint(volumeOptions.getConnectionsPerServer());
         networkClient.start();
         try {
             networkClient.waitForStartup();
@@ -267,6 +282,12 @@ public class VolumeImplementation implements Volume, AdminVolume {
         // There must no FileInfo left in "openFileTable".
         assert (openFileTable.size() == 0);
 
+        for (StripeTranslator translator : stripeTranslators.values()) {
+            if (translator instanceof StripeTranslatorErasureCode) {
+                ((StripeTranslatorErasureCode) translator).shutdown();
+            }
+        }
+
         // Shutdown network client.
         networkClient.shutdown();
         try {
@@ -1696,6 +1717,86 @@ public class VolumeImplementation implements Volume, AdminVolume {
         }
     }
 
+    /**
+     * Renews the XCaps of all open file handles asynchronously. The XCaps are sent to the MRC in batches; if
+     * the MRC does not support batched renewals, each XCap is renewed individually.
+     */
+    protected void renewXCapsAsync() {
+        List<FileHandleImplementation> batch = new ArrayList<FileHandleImplementation>();
+        for (FileInfo fileInfo : openFileTable.values()) {
+            for (FileHandleImplementation fileHandle : fileInfo.getOpenFileHandles()) {
+                batch.add(fileHandle);
+                if (batch.size() >= volumeOptions.getMaxXCapRenewalsPerRequest()) {
+                    renewXCapsAsync(batch);
+                    batch = new ArrayList<FileHandleImplementation>();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            renewXCapsAsync(batch);
+        }
+    }
+
+    private void renewXCapsAsync(final List<FileHandleImplementation> fileHandles) {
+        xtreemfs_renew_capabilitiesRequest.Builder rqBuilder = xtreemfs_renew_capabilitiesRequest.newBuilder();
+        for (FileHandleImplementation fileHandle : fileHandles) {
+            rqBuilder.addXcaps(fileHandle.prepareXCapRenewal());
+        }
+
+        RPCResponse<xtreemfs_renew_capabilitiesResponse> r;
+        try {
+            String address = uuidResolver.uuidToAddress(mrcUUIDIterator.getUUID());
+            InetSocketAddress server = RPCCaller.getInetSocketAddressFromAddress(address, SERVICES.MRC);
+            r = mrcServiceClient.xtreemfs_renew_capabilities(server, authBogus, userCredentialsBogus,
+                    rqBuilder.build());
+        } catch (Exception e) {
+            if (Logging.isDebug()) {
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.misc, this,
+                        "renewXCapsAsync: Failed to renew XCaps. Reason: %s", e.getMessage());
+            }
+            for (FileHandleImplementation fileHandle : fileHandles) {
+                fileHandle.xcapRenewalFinished(null);
+            }
+            return;
+        }
+
+        r.registerListener(new RPCResponseAvailableListener<xtreemfs_renew_capabilitiesResponse>() {
+            @Override
+            public void responseAvailable(RPCResponse<xtreemfs_renew_capabilitiesResponse> r) {
+                xtreemfs_renew_capabilitiesResponse response = null;
+                boolean unsupported = false;
+                try {
+                    response = r.get();
+                } catch (PBRPCException e) {
+                    unsupported = e.getErrorType() == ErrorType.INVALID_PROC_ID;
+                } catch (Exception e) {
+                    if (Logging.isDebug()) {
+                        Logging.logMessage(Logging.LEVEL_DEBUG, Category.misc, this,
+                                "renewXCapsAsync: Failed to renew XCaps. Reason: %s", e.getMessage());
+                    }
+                } finally {
+                    r.freeBuffers();
+                }
+
+                for (int i = 0; i < fileHandles.size(); i++) {
+                    FileHandleImplementation fileHandle = fileHandles.get(i);
+                    if (response != null && i < response.getXcapsCount()) {
+                        fileHandle.xcapRenewalFinished(response.getXcaps(i));
+                    } else {
+                        fileHandle.xcapRenewalFinished(null);
+                        if (unsupported) {
+                            try {
+                                fileHandle.renewXCapAsync();
+                            } catch (Exception e) {
+                                fileHandle.xcapRenewalFinished(null);
+                            }
+                        }
+                    }
+                }
+            }
+        });
+    }
+
     protected UUIDIterator getMrcUuidIterator() {
         return this.mrcUUIDIterator;
     }
@@ -1732,6 +1833,10 @@ public class VolumeImplementation implements Volume, AdminVolume {
         return this.stripeTranslators;
     }
 
+    protected LatencyTracker getOsdLatencyTracker() {
+        return this.osdLatencyTracker;
+    }
+
     protected MetadataCache getMetaDataCache() {
         return this.metadataCache;
     }
@@ -12,6 +12,8 @@ import javax.management.MBeanServer;
 
 import org.xtreemfs.common.monitoring.StatusMonitor.ServiceTypes;
 import org.xtreemfs.common.monitoring.generatedcode.Osd;
+import org.xtreemfs.osd.stages.StageLatencyStats;
+import org.xtreemfs.osd.stages.StageLatencyStats.Phase;
 
 import com.sun.management.snmp.SnmpStatusException;
 
@@ -201,4 +203,67 @@ public class OsdImpl extends Osd {
         return NumObjsRX;
     }
 
+    @Override
+    public Long getSampledRequests() throws SnmpStatusException {
+        if (!statusMonitor.getInitiatingService().equals(ServiceTypes.OSD)) {
+            throw new SnmpStatusException(SnmpStatusException.noSuchName);
+        }
+        if (statusMonitor.getMasterOSD() != null) {
+            return statusMonitor.getMasterOSD().getLatencyStats().getAggregate(Phase.TOTAL).getCount();
+        }
+        return -1l;
+    }
+
+    @Override
+    public Long getPreprocStageLatency() throws SnmpStatusException {
+        return getStageLatency(Phase.PREPROC_QUEUE, Phase.PREPROC);
+    }
+
+    @Override
+    public Long getRwReplicationStageLatency() throws SnmpStatusException {
+        return getStageLatency(Phase.RWR_QUEUE, Phase.RWR);
+    }
+
+    @Override
+    public Long getStorageStageLatency() throws SnmpStatusException {
+        return getStageLatency(Phase.STORAGE_QUEUE, Phase.STORAGE);
+    }
+
+    @Override
+    public Long getRequestLatency() throws SnmpStatusException {
+        if (!statusMonitor.getInitiatingService().equals(ServiceTypes.OSD)) {
+            throw new SnmpStatusException(SnmpStatusException.noSuchName);
+        }
+        if (statusMonitor.getMasterOSD() != null) {
+            return statusMonitor.getMasterOSD().getLatencyStats().getAggregate(Phase.TOTAL).getMeanMicros();
+        }
+        return -1l;
+    }
+
+    @Override
+    public Long getRequestLatency99() throws SnmpStatusException {
+        if (!statusMonitor.getInitiatingService().equals(ServiceTypes.OSD)) {
+            throw new SnmpStatusException(SnmpStatusException.noSuchName);
+        }
+        if (statusMonitor.getMasterOSD() != null) {
+            return statusMonitor.getMasterOSD().getLatencyStats().getAggregate(Phase.TOTAL).getPercentileMicros(99);
+        }
+        return -1l;
+    }
+
+    /**
+     * Returns the mean time sampled requests spend in the queue and the
+     * processing of a stage, in microseconds.
+     */
+    private Long getStageLatency(Phase queuePhase, Phase processingPhase) throws SnmpStatusException {
+        if (!statusMonitor.getInitiatingService().equals(ServiceTypes.OSD)) {
+            throw new SnmpStatusException(SnmpStatusException.noSuchName);
+        }
+        if (statusMonitor.getMasterOSD() != null) {
+            StageLatencyStats stats = statusMonitor.getMasterOSD().getLatencyStats();
+            return stats.getAggregate(queuePhase).getMeanMicros() + stats.getAggregate(processingPhase).getMeanMicros();
+        }
+        return -1l;
+    }
+
 }
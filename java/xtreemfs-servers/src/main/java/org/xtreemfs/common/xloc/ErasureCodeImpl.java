@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.common.xloc;
+
+import java.util.Iterator;
+
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.Replica;
+
+/**
+ * Erasure-coded striping policy. The data objects are distributed across the
+ * first <tt>width</tt> OSDs of the replica like with RAID0. Each row of
+ * <tt>width</tt> data objects is protected by <tt>parity_width</tt> parity
+ * objects computed with a {@link ReedSolomonCodec}, which are stored on the
+ * remaining OSDs of the replica.
+ * <p>
+ * A parity object always has the full stripe size. On a parity OSD, the parity
+ * object of a row is stored with the number of the first data object of the
+ * row, so that truncating a file removes the parity objects of all rows beyond
+ * the new end of the file.
+ */
+public class ErasureCodeImpl extends RAID0Impl {
+
+    ErasureCodeImpl(Replica replica, int relOsdPosition) {
+        super(replica, relOsdPosition);
+        if (getParityWidth() < 1)
+            throw new IllegalArgumentException("parity width must be > 0");
+    }
+
+    /**
+     * @param relativeOsdNo
+     *            the relative position of an OSD in the replica
+     * @return true, if the OSD stores parity objects
+     */
+    public boolean isParityOSD(int relativeOsdNo) {
+        return relativeOsdNo >= getWidth();
+    }
+
+    /**
+     * returns the number of the object storing the parity of the given row on
+     * a parity OSD
+     *
+     * @param row
+     * @return
+     */
+    public long getParityObjectNumber(long row) {
+        return row * getWidth();
+    }
+
+    @Override
+    public boolean isLocalObject(long objNo, int relativeOsdNo) {
+        if (isParityOSD(relativeOsdNo)) {
+            return objNo % getWidth() == 0;
+        }
+        return super.isLocalObject(objNo, relativeOsdNo);
+    }
+
+    @Override
+    public Iterator<Long> getObjectsOfOSD(int osdIndex, long startObjectNo, long endObjectNo) {
+        // a parity OSD stores one object per row, numbered like the objects of
+        // the first data OSD
+        return super.getObjectsOfOSD(isParityOSD(osdIndex) ? 0 : osdIndex, startObjectNo, endObjectNo);
+    }
+
+    @Override
+    public long getGloablObjectNumber(long osdLocalObjNo) {
+        if (isParityOSD(relOsdPosition)) {
+            return getParityObjectNumber(osdLocalObjNo);
+        }
+        return super.getGloablObjectNumber(osdLocalObjNo);
+    }
+
+    public String toString() {
+        return "StripingPolicy ERASURECODE: " + policy;
+    }
+}
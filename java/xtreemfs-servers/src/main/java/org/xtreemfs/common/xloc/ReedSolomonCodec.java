@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.common.xloc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Systematic Reed-Solomon code over GF(2^8). A stripe of <tt>k</tt> data
+ * chunks is extended by <tt>m</tt> parity chunks, such that the data chunks can
+ * be restored from any <tt>k</tt> of the <tt>k + m</tt> chunks.
+ * <p>
+ * The encoding matrix is derived from a Vandermonde matrix whose upper
+ * <tt>k</tt> rows are transformed to the identity, i.e. the data chunks are
+ * stored unmodified. If an executor is provided, chunks are split into slices
+ * which are encoded and decoded in parallel.
+ */
+public class ReedSolomonCodec {
+
+    /** x^8 + x^4 + x^3 + x^2 + 1 */
+    private static final int      PRIMITIVE_POLYNOMIAL = 0x11D;
+
+    /** the minimum number of bytes per chunk processed by a single task */
+    private static final int      MIN_SLICE_SIZE       = 16 * 1024;
+
+    private static final int[]    EXP                  = new int[512];
+
+    private static final int[]    LOG                  = new int[256];
+
+    /** MUL[a][b] = a * b in GF(2^8) */
+    private static final byte[][] MUL                  = new byte[256][256];
+
+    static {
+        int x = 1;
+        for (int i = 0; i < 255; i++) {
+            EXP[i] = x;
+            LOG[x] = i;
+            x <<= 1;
+            if (x >= 256) {
+                x ^= PRIMITIVE_POLYNOMIAL;
+            }
+        }
+        for (int i = 255; i < EXP.length; i++) {
+            EXP[i] = EXP[i - 255];
+        }
+        for (int a = 0; a < 256; a++) {
+            for (int b = 0; b < 256; b++) {
+                MUL[a][b] = (byte) mul(a, b);
+            }
+        }
+    }
+
+    private final int             dataChunks;
+
+    private final int             parityChunks;
+
+    /** (k + m) x k encoding matrix, the upper k rows form the identity */
+    private final int[][]         matrix;
+
+    private final ExecutorService executor;
+
+    private final int             parallelism;
+
+    /**
+     * @param dataChunks
+     *            the number of data chunks per stripe (k)
+     * @param parityChunks
+     *            the number of parity chunks per stripe (m)
+     * @param executor
+     *            the executor used to encode and decode slices of the chunks
+     *            in parallel, or <tt>null</tt> to encode and decode in the
+     *            calling thread
+     * @param parallelism
+     *            the maximum number of slices processed in parallel
+     */
+    public ReedSolomonCodec(int dataChunks, int parityChunks, ExecutorService executor, int parallelism) {
+        if (dataChunks < 1 || parityChunks < 0 || dataChunks + parityChunks > 256) {
+            throw new IllegalArgumentException("invalid number of chunks: " + dataChunks + "+" + parityChunks);
+        }
+        this.dataChunks = dataChunks;
+        this.parityChunks = parityChunks;
+        this.executor = executor;
+        this.parallelism = executor == null ? 1 : Math.max(1, parallelism);
+
+        final int n = dataChunks + parityChunks;
+        int[][] vandermonde = new int[n][dataChunks];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < dataChunks; j++) {
+                vandermonde[i][j] = pow(i, j);
+            }
+        }
+        int[][] top = invert(Arrays.copyOf(vandermonde, dataChunks));
+        this.matrix = multiply(vandermonde, top);
+    }
+
+    public int getDataChunks() {
+        return dataChunks;
+    }
+
+    public int getParityChunks() {
+        return parityChunks;
+    }
+
+    /**
+     * Computes the parity chunks of a stripe.
+     *
+     * @param data
+     *            the k data chunks, each at least <tt>length</tt> bytes long
+     * @param parity
+     *            the m parity chunks to compute, each at least
+     *            <tt>length</tt> bytes long
+     * @param length
+     *            the number of bytes to encode
+     */
+    public void encode(byte[][] data, byte[][] parity, int length) throws InterruptedException {
+        assert (data.length == dataChunks && parity.length == parityChunks);
+        code(Arrays.copyOfRange(matrix, dataChunks, dataChunks + parityChunks), data, parity, length);
+    }
+
+    /**
+     * Restores the missing data chunks of a stripe.
+     *
+     * @param chunks
+     *            the k + m chunks of the stripe; data chunks to restore are
+     *            allocated if they are <tt>null</tt>
+     * @param present
+     *            flags indicating the chunks which are available; at least k
+     *            chunks have to be present
+     * @param length
+     *            the number of bytes to decode
+     */
+    public void decode(byte[][] chunks, boolean[] present, int length) throws InterruptedException {
+        assert (chunks.length == dataChunks + parityChunks && present.length == chunks.length);
+
+        // pick the first k chunks which are present
+        int[] rows = new int[dataChunks];
+        int numRows = 0;
+        for (int i = 0; i < chunks.length && numRows < dataChunks; i++) {
+            if (present[i]) {
+                rows[numRows++] = i;
+            }
+        }
+        if (numRows < dataChunks) {
+            throw new IllegalArgumentException("at least " + dataChunks + " chunks are required, got "
+                    + numRows);
+        }
+
+        List<Integer> missing = new ArrayList<Integer>();
+        for (int i = 0; i < dataChunks; i++) {
+            if (!present[i]) {
+                missing.add(i);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        int[][] sub = new int[dataChunks][];
+        byte[][] inputs = new byte[dataChunks][];
+        for (int i = 0; i < dataChunks; i++) {
+            sub[i] = matrix[rows[i]];
+            inputs[i] = chunks[rows[i]];
+        }
+        int[][] inverse = invert(sub);
+
+        int[][] coefs = new int[missing.size()][];
+        byte[][] outputs = new byte[missing.size()][];
+        for (int i = 0; i < coefs.length; i++) {
+            int chunk = missing.get(i);
+            coefs[i] = inverse[chunk];
+            if (chunks[chunk] == null) {
+                chunks[chunk] = new byte[length];
+            }
+            outputs[i] = chunks[chunk];
+        }
+        code(coefs, inputs, outputs, length);
+    }
+
+    /**
+     * Computes <tt>outputs = coefs * inputs</tt>, split into slices which are
+     * processed in parallel.
+     */
+    private void code(final int[][] coefs, final byte[][] inputs, final byte[][] outputs, int length)
+            throws InterruptedException {
+
+        final int numSlices = Math.max(1, Math.min(parallelism, length / MIN_SLICE_SIZE));
+        if (numSlices == 1) {
+            codeSlice(coefs, inputs, outputs, 0, length);
+            return;
+        }
+
+        final int sliceSize = (length + numSlices - 1) / numSlices;
+        List<Future<Object>> futures = new ArrayList<Future<Object>>(numSlices - 1);
+        for (int start = sliceSize; start < length; start += sliceSize) {
+            final int from = start;
+            final int to = Math.min(length, start + sliceSize);
+            futures.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    codeSlice(coefs, inputs, outputs, from, to);
+                    return null;
+                }
+            }));
+        }
+
+        // the first slice is processed by the calling thread
+        codeSlice(coefs, inputs, outputs, 0, Math.min(length, sliceSize));
+
+        for (Future<Object> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ex) {
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+    }
+
+    private static void codeSlice(int[][] coefs, byte[][] inputs, byte[][] outputs, int from, int to) {
+        for (int i = 0; i < outputs.length; i++) {
+            final byte[] out = outputs[i];
+            Arrays.fill(out, from, to, (byte) 0);
+            for (int j = 0; j < inputs.length; j++) {
+                final int c = coefs[i][j];
+                final byte[] in = inputs[j];
+                if (c == 0) {
+                    continue;
+                } else if (c == 1) {
+                    for (int x = from; x < to; x++) {
+                        out[x] ^= in[x];
+                    }
+                } else {
+                    final byte[] table = MUL[c];
+                    for (int x = from; x < to; x++) {
+                        out[x] ^= table[in[x] & 0xFF];
+                    }
+                }
+            }
+        }
+    }
+
+    private static int mul(int a, int b) {
+        if (a == 0 || b == 0) {
+            return 0;
+        }
+        return EXP[LOG[a] + LOG[b]];
+    }
+
+    private static int pow(int a, int n) {
+        if (n == 0) {
+            return 1;
+        }
+        if (a == 0) {
+            return 0;
+        }
+        return EXP[(LOG[a] * n) % 255];
+    }
+
+    private static int inverse(int a) {
+        return EXP[255 - LOG[a]];
+    }
+
+    private static int[][] multiply(int[][] a, int[][] b) {
+        int[][] result = new int[a.length][b[0].length];
+        for (int i = 0; i < a.length; i++) {
+            for (int j = 0; j < b[0].length; j++) {
+                int value = 0;
+                for (int x = 0; x < b.length; x++) {
+                    value ^= mul(a[i][x], b[x][j]);
+                }
+                result[i][j] = value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Inverts a square matrix by Gauss-Jordan elimination.
+     */
+    private static int[][] invert(int[][] m) {
+        final int n = m.length;
+        int[][] work = new int[n][];
+        int[][] result = new int[n][n];
+        for (int i = 0; i < n; i++) {
+            work[i] = m[i].clone();
+            result[i][i] = 1;
+        }
+
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            while (pivot < n && work[pivot][col] == 0) {
+                pivot++;
+            }
+            if (pivot == n) {
+                throw new IllegalArgumentException("singular matrix");
+            }
+            int[] tmp = work[col];
+            work[col] = work[pivot];
+            work[pivot] = tmp;
+            tmp = result[col];
+            result[col] = result[pivot];
+            result[pivot] = tmp;
+
+            final int factor = inverse(work[col][col]);
+            for (int j = 0; j < n; j++) {
+                work[col][j] = mul(work[col][j], factor);
+                result[col][j] = mul(result[col][j], factor);
+            }
+
+            for (int row = 0; row < n; row++) {
+                final int f = work[row][col];
+                if (row != col && f != 0) {
+                    for (int j = 0; j < n; j++) {
+                        work[row][j] ^= mul(f, work[col][j]);
+                        result[row][j] ^= mul(f, result[col][j]);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -52,6 +52,15 @@ public class Replica {
         return osds;
     }
 
+    /**
+     * Returns the OSDs storing the data objects of the replica, i.e. all OSDs
+     * except for the parity OSDs of an erasure-coded replica.
+     */
+    public List<ServiceUUID> getDataOSDs() {
+        List<ServiceUUID> all = getOSDs();
+        return all.subList(0, Math.min(all.size(), getStripingPolicy().getWidth()));
+    }
+
     public boolean isStriped() {
         return getStripingPolicy().getWidth() > 1;
     }
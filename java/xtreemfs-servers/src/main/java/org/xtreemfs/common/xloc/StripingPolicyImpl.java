@@ -39,6 +39,8 @@ public abstract class StripingPolicyImpl {
     public static StripingPolicyImpl getPolicy(Replica replica, int relOsdPosition) {
         if (replica.getStripingPolicy().getType() == StripingPolicyType.STRIPING_POLICY_RAID0) {
             return new RAID0Impl(replica,relOsdPosition);
+        } else if (replica.getStripingPolicy().getType() == StripingPolicyType.STRIPING_POLICY_ERASURECODE) {
+            return new ErasureCodeImpl(replica, relOsdPosition);
         } else {
             throw new IllegalArgumentException("unknown striping policy requested...request was " +
                     replica.getStripingPolicy().getType());
@@ -54,6 +56,16 @@ public abstract class StripingPolicyImpl {
         return policy.getWidth();
     }
 
+    /**
+     * returns the number of OSDs storing parity objects in addition to the
+     * <tt>width</tt> OSDs storing the data objects
+     * 
+     * @return
+     */
+    public int getParityWidth() {
+        return policy.getParityWidth();
+    }
+
     public int getPolicyId() {
         return policy.getType().getNumber();
     }
@@ -30,6 +30,7 @@ import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceType;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.addressMappingSetResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.configurationSetResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.globalTimeSGetResponse;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.serviceHeartbeatRequest;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.serviceRegisterResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIRServiceClient;
 
@@ -274,6 +275,24 @@ public class DIRClient implements TimeServerClient {
         return response;
     }
     
+    public serviceRegisterResponse xtreemfs_service_heartbeat(InetSocketAddress server, final Auth authHeader,
+            final UserCredentials userCreds, final serviceHeartbeatRequest request) throws IOException,
+            InterruptedException {
+        return xtreemfs_service_heartbeat(server, authHeader, userCreds, request, maxRetries);
+    }
+    
+    public serviceRegisterResponse xtreemfs_service_heartbeat(InetSocketAddress server, final Auth authHeader,
+            final UserCredentials userCreds, final serviceHeartbeatRequest request, int maxRetries)
+            throws IOException, InterruptedException {
+        serviceRegisterResponse response = (serviceRegisterResponse) syncCall(new CallGenerator() {
+            @Override
+            public RPCResponse executeCall(DIRServiceClient client, InetSocketAddress server) throws IOException {
+                return client.xtreemfs_service_heartbeat(server, authHeader, userCreds, request);
+            }
+        }, maxRetries);
+        return response;
+    }
+    
     public Configuration xtreemfs_configuration_get(InetSocketAddress server, final Auth authHeader,
             final UserCredentials userCreds, final String uuid) throws IOException, InterruptedException {
         return xtreemfs_configuration_get(server, authHeader, userCreds, uuid, maxRetries);
@@ -27,6 +27,7 @@ public class DIRConfig extends ServiceConfig {
             Parameter.DEBUG_CATEGORIES,
             Parameter.PORT,
             Parameter.BIND_RETRIES,
+            Parameter.LISTEN_TRANSPORT,
             Parameter.HTTP_PORT,
             Parameter.LISTEN_ADDRESS,
             Parameter.USE_SSL,
@@ -56,7 +57,8 @@ public class DIRConfig extends ServiceConfig {
             Parameter.SNMP_ACL,
             Parameter.MAX_CLIENT_Q,
             Parameter.VIVALDI_MAX_CLIENTS,
-            Parameter.VIVALDI_CLIENT_TIMEOUT
+            Parameter.VIVALDI_CLIENT_TIMEOUT,
+            Parameter.SERVICE_UPDATES_MAX_BATCH_SIZE
     };
     
     private Map<String, Integer> mirrors;
@@ -170,4 +172,8 @@ public class DIRConfig extends ServiceConfig {
     public int getVivaldiClientTimeout() {
         return (Integer)parameter.get(Parameter.VIVALDI_CLIENT_TIMEOUT);
     }
+    
+    public int getServiceUpdatesMaxBatchSize() {
+        return (Integer)parameter.get(Parameter.SERVICE_UPDATES_MAX_BATCH_SIZE);
+    }
 }
@@ -16,7 +16,7 @@ import org.xtreemfs.foundation.logging.Logging.Category;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.ErrorType;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.POSIXErrno;
 import org.xtreemfs.foundation.pbrpc.server.RPCServerRequest;
-import org.xtreemfs.foundation.pbrpc.utils.ReusableBufferInputStream;
+import org.xtreemfs.foundation.pbrpc.utils.MessageUtils;
 import org.xtreemfs.foundation.util.OutputUtils;
 import org.xtreemfs.mrc.RequestDetails;
 
@@ -41,8 +41,7 @@ public class DIRRequest {
         final ReusableBuffer payload = rpcRequest.getMessage();
         if (message != null) {
             if (payload != null) {
-                ReusableBufferInputStream istream = new ReusableBufferInputStream(payload);
-                requestMessage = message.newBuilderForType().mergeFrom(istream).build();
+                requestMessage = MessageUtils.parseFrom(message, payload);
                 if (Logging.isDebug()) {
                     Logging.logMessage(Logging.LEVEL_DEBUG, this, "parsed request: %s",message.getClass().getSimpleName());
                 }
@@ -44,6 +44,7 @@ import org.xtreemfs.dir.operations.GetGlobalTimeOperation;
 import org.xtreemfs.dir.operations.GetServiceByNameOperation;
 import org.xtreemfs.dir.operations.GetServiceByUuidOperation;
 import org.xtreemfs.dir.operations.GetServicesByTypeOperation;
+import org.xtreemfs.dir.operations.HeartbeatServiceOperation;
 import org.xtreemfs.dir.operations.RegisterServiceOperation;
 import org.xtreemfs.dir.operations.ServiceOfflineOperation;
 import org.xtreemfs.dir.operations.SetAddressMappingOperation;
@@ -64,9 +65,9 @@ import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.ErrorType;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.MessageType;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.POSIXErrno;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader;
-import org.xtreemfs.foundation.pbrpc.server.RPCNIOSocketServer;
 import org.xtreemfs.foundation.pbrpc.server.RPCServerRequest;
 import org.xtreemfs.foundation.pbrpc.server.RPCServerRequestListener;
+import org.xtreemfs.foundation.pbrpc.server.RPCSocketServer;
 import org.xtreemfs.foundation.util.OutputUtils;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceType;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIRServiceConstants;
@@ -101,7 +102,7 @@ public class DIRRequestDispatcher extends LifeCycleThread implements RPCServerRe
     
     private final Map<Integer, DIROperation>      registry;
     
-    private final RPCNIOSocketServer              server;
+    private final RPCSocketServer                 server;
     
     private final BlockingQueue<RPCServerRequest> queue;
     
@@ -121,6 +122,8 @@ public class DIRRequestDispatcher extends LifeCycleThread implements RPCServerRe
     
     private VivaldiClientMap vivaldiClientMap;
     
+    private final ServiceRecordWriter             serviceRecordWriter;
+    
     public DIRRequestDispatcher(final DIRConfig config, final BabuDBConfig dbsConfig) throws IOException,
         BabuDBException {
         super("DIR RqDisp");
@@ -141,6 +144,9 @@ public class DIRRequestDispatcher extends LifeCycleThread implements RPCServerRe
             }
         });
         
+        serviceRecordWriter = new ServiceRecordWriter(getDirDatabase(), config.getServiceUpdatesMaxBatchSize());
+        serviceRecordWriter.setLifeCycleListener(this);
+        
         registerOperations();
         
         // start the server
@@ -169,7 +175,8 @@ public class DIRRequestDispatcher extends LifeCycleThread implements RPCServerRe
         queue = new LinkedBlockingQueue<RPCServerRequest>();
         quit = false;
         
-        server = new RPCNIOSocketServer(config.getPort(), config.getAddress(), this, sslOptions, config.getBindRetries(), -1, config.getMaxClientQ());
+        server = RPCSocketServer.create(config.getListenTransport(), config.getPort(), config.getAddress(), this,
+                sslOptions, config.getBindRetries(), -1, config.getMaxClientQ());
         server.setLifeCycleListener(this);
         
         if (config.isAutodiscoverEnabled()) {
@@ -290,6 +297,9 @@ public class DIRRequestDispatcher extends LifeCycleThread implements RPCServerRe
     public void startup() throws Exception {
         this.start();
         
+        serviceRecordWriter.start();
+        serviceRecordWriter.waitForStartup();
+        
         server.start();
         server.waitForStartup();
         
@@ -316,6 +326,8 @@ public class DIRRequestDispatcher extends LifeCycleThread implements RPCServerRe
         }
         server.shutdown();
         server.waitForShutdown();
+        serviceRecordWriter.shutdown();
+        serviceRecordWriter.waitForShutdown();
         database.shutdown();
         
         if (discoveryThr != null) {
@@ -351,6 +363,9 @@ public class DIRRequestDispatcher extends LifeCycleThread implements RPCServerRe
         op = new RegisterServiceOperation(this);
         registry.put(op.getProcedureId(), op);
         
+        op = new HeartbeatServiceOperation(this);
+        registry.put(op.getProcedureId(), op);
+        
         op = new DeregisterServiceOperation(this);
         registry.put(op.getProcedureId(), op);
         
@@ -467,6 +482,10 @@ public class DIRRequestDispatcher extends LifeCycleThread implements RPCServerRe
         return vivaldiClientMap;
     }
     
+    public ServiceRecordWriter getServiceRecordWriter() {
+        return serviceRecordWriter;
+    }
+    
     public DIRConfig getConfig() {
         return config;
     }
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.dir;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.xtreemfs.babudb.api.database.Database;
+import org.xtreemfs.babudb.api.database.DatabaseInsertGroup;
+import org.xtreemfs.babudb.api.database.DatabaseRequestListener;
+import org.xtreemfs.babudb.api.exception.BabuDBException;
+import org.xtreemfs.foundation.LifeCycleThread;
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.logging.Logging.Category;
+
+/**
+ * Writes service records to the DIR database. Updates are queued and all
+ * updates which arrive while an insert is in progress are committed together
+ * in a single insert group, i.e. the number of database inserts does not grow
+ * with the number of services sending heartbeats.
+ * <p>
+ * As updates are acknowledged after they were committed, records which are
+ * queued but not committed yet have to be taken into account when records are
+ * modified. Likewise, a database lookup that was issued before a commit may
+ * complete after it with the previous record. Operations reading a record in
+ * order to modify it must therefore obtain it with
+ * {@link #getLatestRecord(String, byte[])}, which prefers the records written
+ * recently over the stored ones.
+ */
+public class ServiceRecordWriter extends LifeCycleThread {
+
+    /**
+     * Marks a deletion in the map of recent records.
+     */
+    private static final byte[]                     DELETED                       = new byte[0];
+
+    /**
+     * Time for which committed records are kept, which covers any database
+     * lookup that was in progress during the commit.
+     */
+    private static final long                       COMMITTED_RECORD_RETENTION_MS = 60 * 1000;
+
+    private static final class Record {
+
+        final byte[]  data;
+
+        /** the time at which the record was committed, or 0 while it is queued */
+        volatile long committedAt;
+
+        Record(byte[] data) {
+            this.data = data;
+        }
+    }
+
+    private static final class Update {
+
+        final String                          uuid;
+
+        final Record                          record;
+
+        final DIRRequest                      request;
+
+        final DatabaseRequestListener<Object> listener;
+
+        Update(String uuid, byte[] record, DIRRequest request, DatabaseRequestListener<Object> listener) {
+            this.uuid = uuid;
+            this.record = new Record(record);
+            this.request = request;
+            this.listener = listener;
+        }
+    }
+
+    private final Database                          database;
+
+    private final BlockingQueue<Update>             queue;
+
+    /**
+     * The most recent record for each UUID that is queued or was committed
+     * less than {@link #COMMITTED_RECORD_RETENTION_MS} ago.
+     */
+    private final ConcurrentHashMap<String, Record> recentRecords;
+
+    /** the time at which expired records were last removed */
+    private long                                    lastPurge;
+
+    private final int                               maxBatchSize;
+
+    private volatile boolean                        quit;
+
+    private volatile long                           numUpdates;
+
+    private volatile long                           numInserts;
+
+    public ServiceRecordWriter(Database database, int maxBatchSize) {
+        super("DIR SrvRecWriter");
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("the maximum batch size must be at least 1");
+        }
+        this.database = database;
+        this.maxBatchSize = maxBatchSize;
+        this.queue = new LinkedBlockingQueue<Update>();
+        this.recentRecords = new ConcurrentHashMap<String, Record>();
+    }
+
+    /**
+     * Queues the insertion of a serialized service record. The listener is
+     * notified once the record was committed.
+     */
+    public void insert(String uuid, byte[] record, DIRRequest rq, DatabaseRequestListener<Object> listener) {
+        enqueue(new Update(uuid, record, rq, listener));
+    }
+
+    /**
+     * Queues the deletion of a service record. The listener is notified once
+     * the deletion was committed.
+     */
+    public void delete(String uuid, DIRRequest rq, DatabaseRequestListener<Object> listener) {
+        enqueue(new Update(uuid, DELETED, rq, listener));
+    }
+
+    /**
+     * Returns the most recent version of a service record.
+     *
+     * @param uuid
+     *            the UUID of the service
+     * @param storedRecord
+     *            the record as read from the database, or null if none is
+     *            stored
+     * @return the record of the last update for the UUID that is queued or
+     *         was committed recently, if any, otherwise <tt>storedRecord</tt>
+     */
+    public byte[] getLatestRecord(String uuid, byte[] storedRecord) {
+        Record recent = recentRecords.get(uuid);
+        if (recent == null) {
+            return storedRecord;
+        }
+        return recent.data == DELETED ? null : recent.data;
+    }
+
+    /**
+     * @return the number of updates committed so far
+     */
+    public long getNumUpdates() {
+        return numUpdates;
+    }
+
+    /**
+     * @return the number of database inserts used to commit the updates
+     */
+    public long getNumInserts() {
+        return numInserts;
+    }
+
+    private void enqueue(Update update) {
+        recentRecords.put(update.uuid, update.record);
+        queue.add(update);
+    }
+
+    @Override
+    public void shutdown() {
+        quit = true;
+        interrupt();
+    }
+
+    @Override
+    public void run() {
+        notifyStarted();
+
+        try {
+            List<Update> batch = new ArrayList<Update>(maxBatchSize);
+            while (!quit) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException ex) {
+                    break;
+                }
+                queue.drainTo(batch, maxBatchSize - 1);
+                writeBatch(batch);
+                batch.clear();
+            }
+
+            // commit the updates which were queued before the shutdown
+            while (queue.drainTo(batch, maxBatchSize) > 0) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        } catch (Throwable th) {
+            notifyCrashed(th);
+            return;
+        }
+
+        notifyStopped();
+    }
+
+    private void writeBatch(List<Update> batch) {
+        DatabaseInsertGroup ig = database.createInsertGroup();
+        for (Update update : batch) {
+            if (update.record.data == DELETED) {
+                ig.addDelete(DIRRequestDispatcher.INDEX_ID_SERVREG, update.uuid.getBytes());
+            } else {
+                ig.addInsert(DIRRequestDispatcher.INDEX_ID_SERVREG, update.uuid.getBytes(), update.record.data);
+            }
+        }
+
+        BabuDBException error = null;
+        try {
+            // wait for the insert to complete; updates arriving in the meantime
+            // are committed with the next insert group
+            database.insert(ig, null).get();
+        } catch (BabuDBException ex) {
+            Logging.logMessage(Logging.LEVEL_ERROR, Category.storage, this,
+                    "could not write %d service record(s): %s", batch.size(), ex.toString());
+            error = ex;
+        }
+
+        numInserts++;
+        numUpdates += batch.size();
+
+        // committed records are kept for the lookups that were in progress;
+        // after a failure, the stored records are valid again
+        final long now = System.currentTimeMillis();
+        for (Update update : batch) {
+            if (error == null) {
+                update.record.committedAt = now;
+            } else {
+                recentRecords.remove(update.uuid, update.record);
+            }
+        }
+        purgeCommittedRecords(now);
+
+        for (Update update : batch) {
+            if (error == null) {
+                update.listener.finished(null, update.request);
+            } else {
+                update.listener.failed(error, update.request);
+            }
+        }
+
+        if (Logging.isDebug()) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, Category.storage, this,
+                    "committed %d service record update(s) with one insert", batch.size());
+        }
+    }
+
+    /**
+     * Removes the records that were committed longer than the retention time
+     * ago, at most once per retention time.
+     */
+    private void purgeCommittedRecords(long now) {
+        if (now - lastPurge < COMMITTED_RECORD_RETENTION_MS) {
+            return;
+        }
+        lastPurge = now;
+
+        for (Map.Entry<String, Record> entry : recentRecords.entrySet()) {
+            final long committedAt = entry.getValue().committedAt;
+            if (committedAt != 0 && now - committedAt >= COMMITTED_RECORD_RETENTION_MS) {
+                recentRecords.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+}
@@ -8,11 +8,10 @@
 
 package org.xtreemfs.dir.operations;
 
-import org.xtreemfs.babudb.api.database.Database;
-import org.xtreemfs.babudb.api.database.DatabaseInsertGroup;
 import org.xtreemfs.babudb.api.exception.BabuDBException;
 import org.xtreemfs.dir.DIRRequest;
 import org.xtreemfs.dir.DIRRequestDispatcher;
+import org.xtreemfs.dir.ServiceRecordWriter;
 import org.xtreemfs.pbrpc.generatedinterfaces.Common.emptyResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.serviceDeregisterRequest;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIRServiceConstants;
@@ -25,11 +24,11 @@ import com.google.protobuf.Message;
  */
 public class DeregisterServiceOperation extends DIROperation {
     
-    private final Database database;
+    private final ServiceRecordWriter writer;
     
     public DeregisterServiceOperation(DIRRequestDispatcher master) throws BabuDBException {
         super(master);
-        database = master.getDirDatabase();
+        writer = master.getServiceRecordWriter();
     }
     
     @Override
@@ -41,9 +40,7 @@ public class DeregisterServiceOperation extends DIROperation {
     public void startRequest(DIRRequest rq) {
         serviceDeregisterRequest request = (serviceDeregisterRequest) rq.getRequestMessage();
         
-        DatabaseInsertGroup ig = database.createInsertGroup();
-        ig.addDelete(DIRRequestDispatcher.INDEX_ID_SERVREG, request.getUuid().getBytes());
-        database.insert(ig, rq).registerListener(new DBRequestListener<Object, Object>(true) {
+        writer.delete(request.getUuid(), rq, new DBRequestListener<Object, Object>(true) {
             
             @Override
             Object execute(Object result, DIRRequest rq) throws Exception {
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.dir.operations;
+
+import java.util.ConcurrentModificationException;
+import java.util.Map;
+
+import org.xtreemfs.babudb.api.database.Database;
+import org.xtreemfs.babudb.api.exception.BabuDBException;
+import org.xtreemfs.dir.DIRRequest;
+import org.xtreemfs.dir.DIRRequestDispatcher;
+import org.xtreemfs.dir.ServiceRecordWriter;
+import org.xtreemfs.dir.data.ServiceRecord;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.serviceHeartbeatRequest;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.serviceRegisterResponse;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIRServiceConstants;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.KeyValuePair;
+
+import com.google.protobuf.Message;
+
+/**
+ * Applies the changes sent with a heartbeat to a registered service record.
+ * Unlike {@link RegisterServiceOperation}, only the changed data entries are
+ * transferred. If the record does not exist or has been modified in the
+ * meantime, EAGAIN is returned and the service has to register again.
+ */
+public class HeartbeatServiceOperation extends DIROperation {
+
+    private final Database            database;
+
+    private final ServiceRecordWriter writer;
+
+    public HeartbeatServiceOperation(DIRRequestDispatcher master) throws BabuDBException {
+        super(master);
+        database = master.getDirDatabase();
+        writer = master.getServiceRecordWriter();
+    }
+
+    @Override
+    public int getProcedureId() {
+        return DIRServiceConstants.PROC_ID_XTREEMFS_SERVICE_HEARTBEAT;
+    }
+
+    @Override
+    public void startRequest(DIRRequest rq) {
+        final serviceHeartbeatRequest request = (serviceHeartbeatRequest) rq.getRequestMessage();
+
+        database.lookup(DIRRequestDispatcher.INDEX_ID_SERVREG, request.getUuid().getBytes(), rq)
+                .registerListener(new DBRequestListener<byte[], Long>(false) {
+
+                    @Override
+                    Long execute(byte[] result, DIRRequest rq) throws Exception {
+
+                        result = writer.getLatestRecord(request.getUuid(), result);
+                        if (result == null) {
+                            throw new ConcurrentModificationException("The service " + request.getUuid()
+                                    + " is not registered!");
+                        }
+
+                        ServiceRecord rec = new ServiceRecord(ReusableBuffer.wrap(result));
+                        if (request.getVersion() != rec.getVersion()) {
+                            throw new ConcurrentModificationException("The requested version number ("
+                                    + request.getVersion() + ") did not match the " + "expected version ("
+                                    + rec.getVersion() + ")!");
+                        }
+
+                        Map<String, String> data = rec.getData();
+                        for (String key : request.getRemovedKeysList()) {
+                            data.remove(key);
+                        }
+                        for (KeyValuePair kv : request.getChangedDataList()) {
+                            data.put(kv.getKey(), kv.getValue());
+                        }
+
+                        final long version = rec.getVersion() + 1;
+                        rec.setVersion(version);
+                        rec.setLast_updated_s(System.currentTimeMillis() / 1000l);
+
+                        byte[] newData = new byte[rec.getSize()];
+                        rec.serialize(ReusableBuffer.wrap(newData));
+                        writer.insert(rec.getUuid(), newData, rq, new DBRequestListener<Object, Long>(true) {
+
+                            @Override
+                            Long execute(Object result, DIRRequest rq) throws Exception {
+                                return version;
+                            }
+                        });
+                        return null;
+                    }
+                });
+    }
+
+    @Override
+    public boolean isAuthRequired() {
+        return false;
+    }
+
+    @Override
+    protected Message getRequestMessagePrototype() {
+        return serviceHeartbeatRequest.getDefaultInstance();
+    }
+
+    @Override
+    void requestFinished(Object result, DIRRequest rq) {
+        serviceRegisterResponse resp = serviceRegisterResponse.newBuilder().setNewVersion((Long) result)
+                .build();
+        rq.sendSuccess(resp);
+    }
+
+}
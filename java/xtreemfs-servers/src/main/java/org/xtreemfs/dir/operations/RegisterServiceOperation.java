@@ -16,6 +16,7 @@ import org.xtreemfs.babudb.api.exception.BabuDBException;
 import org.xtreemfs.common.HeartbeatThread;
 import org.xtreemfs.dir.DIRRequest;
 import org.xtreemfs.dir.DIRRequestDispatcher;
+import org.xtreemfs.dir.ServiceRecordWriter;
 import org.xtreemfs.dir.data.ServiceRecord;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.Service;
@@ -31,11 +32,14 @@ import com.google.protobuf.Message;
  */
 public class RegisterServiceOperation extends DIROperation {
 
-    private final Database database;
+    private final Database            database;
+
+    private final ServiceRecordWriter writer;
 
     public RegisterServiceOperation(DIRRequestDispatcher master) throws BabuDBException {
         super(master);
         database = master.getDirDatabase();
+        writer = master.getServiceRecordWriter();
     }
 
     @Override
@@ -63,6 +67,9 @@ public class RegisterServiceOperation extends DIROperation {
                         boolean doNotSetLastUpdated = Boolean.parseBoolean(sRec.getData().get(
                                 HeartbeatThread.DO_NOT_SET_LAST_UPDATED));
 
+                        // take updates into account which are not committed yet
+                        result = writer.getLatestRecord(reg.getUuid(), result);
+
                         if (result != null) {
                             ReusableBuffer buf = ReusableBuffer.wrap(result);
                             ServiceRecord dbData = new ServiceRecord(buf);
@@ -136,16 +143,14 @@ public class RegisterServiceOperation extends DIROperation {
 
                         byte[] newData = new byte[newRec.getSize()];
                         newRec.serialize(ReusableBuffer.wrap(newData));
-                        database.singleInsert(DIRRequestDispatcher.INDEX_ID_SERVREG,
-                                newRec.getUuid().getBytes(), newData, rq).registerListener(
-                                new DBRequestListener<Object, Long>(true) {
+                        writer.insert(newRec.getUuid(), newData, rq, new DBRequestListener<Object, Long>(true) {
 
-                                    @Override
-                                    Long execute(Object result, DIRRequest rq) throws Exception {
+                            @Override
+                            Long execute(Object result, DIRRequest rq) throws Exception {
 
-                                        return version;
-                                    }
-                                });
+                                return version;
+                            }
+                        });
                         return null;
                     }
                 });
@@ -12,6 +12,7 @@ import org.xtreemfs.babudb.api.database.Database;
 import org.xtreemfs.babudb.api.exception.BabuDBException;
 import org.xtreemfs.dir.DIRRequest;
 import org.xtreemfs.dir.DIRRequestDispatcher;
+import org.xtreemfs.dir.ServiceRecordWriter;
 import org.xtreemfs.dir.data.ServiceRecord;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.pbrpc.generatedinterfaces.Common.emptyResponse;
@@ -26,11 +27,14 @@ import com.google.protobuf.Message;
  */
 public class ServiceOfflineOperation extends DIROperation {
     
-    private final Database database;
+    private final Database            database;
+    
+    private final ServiceRecordWriter writer;
     
     public ServiceOfflineOperation(DIRRequestDispatcher master) throws BabuDBException {
         super(master);
         database = master.getDirDatabase();
+        writer = master.getServiceRecordWriter();
     }
     
     @Override
@@ -47,6 +51,7 @@ public class ServiceOfflineOperation extends DIROperation {
                     
                     @Override
                     Object execute(byte[] result, DIRRequest rq) throws Exception {
+                        result = writer.getLatestRecord(request.getName(), result);
                         if (result != null) {
                             ReusableBuffer buf = ReusableBuffer.wrap(result);
                             ServiceRecord dbData = new ServiceRecord(buf);
@@ -56,8 +61,7 @@ public class ServiceOfflineOperation extends DIROperation {
                             
                             byte[] newData = new byte[dbData.getSize()];
                             dbData.serialize(ReusableBuffer.wrap(newData));
-                            database.singleInsert(DIRRequestDispatcher.INDEX_ID_SERVREG, request.getName().getBytes(),
-                                    newData, rq).registerListener(new DBRequestListener<Object, Object>(true) {
+                            writer.insert(request.getName(), newData, rq, new DBRequestListener<Object, Object>(true) {
                                 
                                 @Override
                                 Object execute(Object result, DIRRequest rq) throws Exception {
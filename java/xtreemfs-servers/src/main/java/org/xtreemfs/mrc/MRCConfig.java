@@ -29,6 +29,7 @@ public class MRCConfig extends ServiceConfig {
             Parameter.DEBUG_CATEGORIES,
             Parameter.PORT,
             Parameter.BIND_RETRIES,
+            Parameter.LISTEN_TRANSPORT,
             Parameter.HTTP_PORT,
             Parameter.LISTEN_ADDRESS,
             Parameter.HOSTNAME,
@@ -66,7 +67,9 @@ public class MRCConfig extends ServiceConfig {
             Parameter.MAX_CLIENT_Q,
             Parameter.USE_RENEWAL_SIGNAL,
             Parameter.USE_MULTIHOMING,
-            Parameter.FLEASE_LEASE_TIMEOUT_MS
+            Parameter.FLEASE_LEASE_TIMEOUT_MS,
+            Parameter.XLOCSET_CHANGE_THREADS,
+            Parameter.ERASURE_CODING_ENABLED
             };
     /*
      * @formatter:on
@@ -173,4 +176,18 @@ public class MRCConfig extends ServiceConfig {
     public int getFleaseLeaseToMS() {
         return (Integer) parameter.get(Parameter.FLEASE_LEASE_TIMEOUT_MS);
     }
+
+    public int getXLocSetChangeThreads() {
+        return (Integer) parameter.get(Parameter.XLOCSET_CHANGE_THREADS);
+    }
+
+    /**
+     * Erasure-coded files can only be accessed with the Java client, as the
+     * C++ client and thus the FUSE client only support RAID0.
+     * 
+     * @return whether erasure-coded striping policies may be assigned
+     */
+    public boolean isErasureCodingEnabled() {
+        return (Boolean) parameter.get(Parameter.ERASURE_CODING_ENABLED);
+    }
 }
\ No newline at end of file
@@ -15,7 +15,7 @@ import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.ErrorType;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.POSIXErrno;
 import org.xtreemfs.foundation.pbrpc.server.RPCServerRequest;
-import org.xtreemfs.foundation.pbrpc.utils.ReusableBufferInputStream;
+import org.xtreemfs.foundation.pbrpc.utils.MessageUtils;
 
 import com.google.protobuf.GeneratedMessage;
 import com.google.protobuf.Message;
@@ -55,7 +55,7 @@ public class MRCRequest {
     
     public void deserializeMessage(Message message) throws IOException {
         final ReusableBuffer payload = rpcRequest.getMessage();
-        requestArgs = message.newBuilderForType().mergeFrom(new ReusableBufferInputStream(payload)).build();
+        requestArgs = MessageUtils.parseFrom(message, payload);
         if (Logging.isDebug()) {
             Logging.logMessage(Logging.LEVEL_DEBUG, this, "parsed request: %s", requestArgs.toString());
         }
@@ -53,9 +53,9 @@ import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.ErrorType;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.MessageType;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.POSIXErrno;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader;
-import org.xtreemfs.foundation.pbrpc.server.RPCNIOSocketServer;
 import org.xtreemfs.foundation.pbrpc.server.RPCServerRequest;
 import org.xtreemfs.foundation.pbrpc.server.RPCServerRequestListener;
+import org.xtreemfs.foundation.pbrpc.server.RPCSocketServer;
 import org.xtreemfs.foundation.util.OutputUtils;
 import org.xtreemfs.mrc.StatusPage.Vars;
 import org.xtreemfs.mrc.ac.FileAccessManager;
@@ -95,7 +95,7 @@ public class MRCRequestDispatcher implements RPCServerRequestListener, LifeCycle
 
     private static final int               CONNECTION_TIMEOUT = 5 * 60 * 1000;
 
-    private final RPCNIOSocketServer       serverStage;
+    private final RPCSocketServer          serverStage;
 
     private final RPCNIOSocketClient       clientStage;
 
@@ -195,7 +195,8 @@ public class MRCRequestDispatcher implements RPCServerRequestListener, LifeCycle
                 "MRCRequestDispatcher");
         clientStage.setLifeCycleListener(this);
 
-        serverStage = new RPCNIOSocketServer(config.getPort(), config.getAddress(), this, sslOptions, config.getBindRetries(), -1, config.getMaxClientQ());
+        serverStage = RPCSocketServer.create(config.getListenTransport(), config.getPort(), config.getAddress(),
+                this, sslOptions, config.getBindRetries(), -1, config.getMaxClientQ());
         serverStage.setLifeCycleListener(this);
 
         DIRServiceClient dirRpcClient = new DIRServiceClient(clientStage, config.getDirectoryService());
@@ -64,10 +64,19 @@ public interface StorageManager {
     
     public StripingPolicy createStripingPolicy(String pattern, int stripeSize, int width);
     
+    public StripingPolicy createStripingPolicy(String pattern, int stripeSize, int width, int parityWidth);
+    
     public XAttr createXAttr(long fileId, String owner, String key, byte[] value);
     
     public void dumpDB(BufferedWriter xmlWriter) throws DatabaseException, IOException;
     
+    /**
+     * Returns all raw key-value pairs of the given database index in key
+     * order. Each element of the result set is an array containing the key
+     * and the value.
+     */
+    public DatabaseResultSet<byte[][]> getIndexEntries(int index) throws DatabaseException;
+    
     // handling volumes
     
     public VolumeInfo getVolumeInfo();
@@ -666,6 +666,11 @@ public class BabuDBSnapshotStorageManager implements StorageManager {
         return null;
     }
 
+    @Override
+    public StripingPolicy createStripingPolicy(String pattern, int stripeSize, int width, int parityWidth) {
+        return null;
+    }
+
     @Override
     public FileMetadata createSymLink(long fileId, long parentId, String fileName, int atime, int ctime,
                                       int mtime, String userId, String groupId, String ref, AtomicDBUpdate update) throws DatabaseException {
@@ -709,6 +714,16 @@ public class BabuDBSnapshotStorageManager implements StorageManager {
         DBAdminHelper.dumpVolume(xmlWriter, this);
     }
 
+    @Override
+    public DatabaseResultSet<byte[][]> getIndexEntries(int index) throws DatabaseException {
+        try {
+            ResultSet<byte[], byte[]> it = database.prefixLookup(index, new byte[0], null).get();
+            return new BabuDBStorageHelper.EntryIterator(it);
+        } catch (BabuDBException exc) {
+            throw new DatabaseException(exc);
+        }
+    }
+
     @Override
     public String[] getAllSnapshots() throws DatabaseException {
         throwException();
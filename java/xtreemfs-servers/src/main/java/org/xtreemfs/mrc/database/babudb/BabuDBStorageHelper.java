@@ -221,6 +221,37 @@ public class BabuDBStorageHelper {
         
     }
     
+    static class EntryIterator implements DatabaseResultSet<byte[][]> {
+        
+        private final ResultSet<byte[], byte[]> it;
+        
+        public EntryIterator(ResultSet<byte[], byte[]> it) {
+            this.it = it;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return it.hasNext();
+        }
+        
+        @Override
+        public byte[][] next() {
+            Entry<byte[], byte[]> entry = it.next();
+            return new byte[][] { entry.getKey(), entry.getValue() };
+        }
+        
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public void destroy() {
+            it.free();
+        }
+        
+    }
+    
     static class ACLIterator implements DatabaseResultSet<ACLEntry> {
         
         private final ResultSet<byte[], byte[]> it;
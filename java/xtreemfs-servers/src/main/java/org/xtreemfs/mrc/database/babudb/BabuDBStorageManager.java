@@ -283,6 +283,11 @@ public class BabuDBStorageManager implements StorageManager {
         return new BufferBackedStripingPolicy(pattern, stripeSize, width);
     }
 
+    @Override
+    public StripingPolicy createStripingPolicy(String pattern, int stripeSize, int width, int parityWidth) {
+        return new BufferBackedStripingPolicy(pattern, stripeSize, width, parityWidth);
+    }
+
     @Override
     public XAttr createXAttr(long fileId, String owner, String key, byte[] value) {
         return new BufferBackedXAttr(fileId, owner, key, value, (short) 0);
@@ -1304,6 +1309,16 @@ public class BabuDBStorageManager implements StorageManager {
         DBAdminHelper.dumpVolume(xmlWriter, this);
     }
 
+    @Override
+    public DatabaseResultSet<byte[][]> getIndexEntries(int index) throws DatabaseException {
+        try {
+            ResultSet<byte[], byte[]> it = database.prefixLookup(index, new byte[0], null).get();
+            return new BabuDBStorageHelper.EntryIterator(it);
+        } catch (BabuDBException exc) {
+            throw new DatabaseException(exc);
+        }
+    }
+
     protected void updateVolumeSize(long diff, AtomicDBUpdate update) throws DatabaseException {
 
         long newSize = getVolumeSize() + diff;
@@ -10,6 +10,11 @@ package org.xtreemfs.mrc.metadata;
 
 import java.nio.ByteBuffer;
 
+/**
+ * The striping width and the parity width share a single 32-bit field; the
+ * parity width is stored in the upper 16 bits, which are zero for policies
+ * without parity.
+ */
 public class BufferBackedStripingPolicy extends BufferBackedMetadata implements StripingPolicy {
     
     private static final int SIZE_INDEX    = 0;
@@ -24,6 +29,8 @@ public class BufferBackedStripingPolicy extends BufferBackedMetadata implements
     
     private int              width;
     
+    private int              parityWidth;
+    
     public BufferBackedStripingPolicy(byte[] buffer) {
         this(buffer, 0, buffer.length);
     }
@@ -38,21 +45,31 @@ public class BufferBackedStripingPolicy extends BufferBackedMetadata implements
         this.stripeSize = tmp.getInt();
         
         tmp = ByteBuffer.wrap(buffer, offset + WIDTH_INDEX, Integer.SIZE / 8);
-        this.width = tmp.getInt();
+        int widths = tmp.getInt();
+        this.width = widths & 0xFFFF;
+        this.parityWidth = widths >>> 16;
     }
     
     public BufferBackedStripingPolicy(String pattern, int stripeSize, int width) {
+        this(pattern, stripeSize, width, 0);
+    }
+    
+    public BufferBackedStripingPolicy(String pattern, int stripeSize, int width, int parityWidth) {
         
         super(null, 0, 0);
         
+        if (width < 0 || width > 0xFFFF || parityWidth < 0 || parityWidth > 0xFFFF)
+            throw new IllegalArgumentException("invalid striping width: " + width + "+" + parityWidth);
+        
         len = pattern.getBytes().length + 8;
         buffer = new byte[len];
         ByteBuffer tmp = ByteBuffer.wrap(buffer);
-        tmp.putInt(stripeSize).putInt(width).put(pattern.getBytes());
+        tmp.putInt(stripeSize).putInt(width | (parityWidth << 16)).put(pattern.getBytes());
         
         this.pattern = pattern;
         this.stripeSize = stripeSize;
         this.width = width;
+        this.parityWidth = parityWidth;
     }
     
     public boolean equals(StripingPolicy pol) {
@@ -71,4 +88,8 @@ public class BufferBackedStripingPolicy extends BufferBackedMetadata implements
         return width;
     }
     
+    public int getParityWidth() {
+        return parityWidth;
+    }
+    
 }
@@ -37,4 +37,12 @@ public interface StripingPolicy {
      */
     public int getStripeSize();
     
+    /**
+     * Returns the parity width, i.e. number of OSDs used for parity objects in
+     * addition to the OSDs used for the pattern.
+     * 
+     * @return the parity width
+     */
+    public int getParityWidth();
+    
 }
\ No newline at end of file
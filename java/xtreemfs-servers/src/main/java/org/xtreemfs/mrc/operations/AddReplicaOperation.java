@@ -130,13 +130,14 @@ public class AddReplicaOperation extends MRCOperation implements XLocSetCoordina
         
         Replica newRepl = rqArgs.getNewReplica();
         org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.StripingPolicy sp = newRepl.getStripingPolicy();
+        MRCHelper.checkStripingPolicy(master.getConfig(), sp);
         
         // if (sp.getWidth() > 1)
         // throw new UserException(POSIXErrno.POSIX_ERROR_NONE,
         // "adding replicas with a width > 1 is not supported yet");
 
         StripingPolicy sPol = sMan.createStripingPolicy(sp.getType().toString(), sp.getStripeSize(), sp
-                .getWidth());
+                .getWidth(), sp.getParityWidth());
         
         // Check whether the new replica relies on a set of OSDs which hasn't been used yet.
         XLocList xLocList = file.getXLocList();
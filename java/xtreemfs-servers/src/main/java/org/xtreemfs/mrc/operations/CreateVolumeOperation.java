@@ -26,6 +26,7 @@ import org.xtreemfs.mrc.UserException;
 import org.xtreemfs.mrc.database.DatabaseException;
 import org.xtreemfs.mrc.database.DatabaseException.ExceptionType;
 import org.xtreemfs.mrc.quota.VolumeQuotaManager;
+import org.xtreemfs.mrc.utils.MRCHelper;
 import org.xtreemfs.pbrpc.generatedinterfaces.Common.emptyResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.Service;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceDataMap;
@@ -71,6 +72,8 @@ public class CreateVolumeOperation extends MRCOperation {
                     + volData.getAccessControlPolicy());
         }
         
+        MRCHelper.checkStripingPolicy(master.getConfig(), volData.getDefaultStripingPolicy());
+        
         // in order to allow volume creation in a single-threaded
         // non-blocking manner, it needs to be performed in two steps:
         // * first, the volume is registered with the directory service
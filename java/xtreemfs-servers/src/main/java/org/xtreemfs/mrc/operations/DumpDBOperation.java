@@ -27,6 +27,7 @@ import org.xtreemfs.mrc.database.StorageManager;
 import org.xtreemfs.mrc.database.VolumeInfo;
 import org.xtreemfs.mrc.database.VolumeManager;
 import org.xtreemfs.mrc.metadata.FileMetadata;
+import org.xtreemfs.mrc.utils.BinaryDBDump;
 import org.xtreemfs.pbrpc.generatedinterfaces.Common.emptyResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_dump_restore_databaseRequest;
 
@@ -42,13 +43,31 @@ public class DumpDBOperation extends MRCOperation {
         
         private List<StorageManager> sManList;
         
-        public DumpWriter(List<StorageManager> sManList, File dumpFile) {
+        private boolean              binary;
+        
+        private File                 baseDumpFile;
+        
+        public DumpWriter(List<StorageManager> sManList, File dumpFile, boolean binary, File baseDumpFile) {
             this.dumpFile = dumpFile;
             this.sManList = sManList;
+            this.binary = binary;
+            this.baseDumpFile = baseDumpFile;
         }
         
         public void run() {
             
+            if (binary) {
+                try {
+                    BinaryDBDump.dump(sManList, dumpFile, baseDumpFile, Runtime.getRuntime()
+                            .availableProcessors());
+                } catch (Exception exc) {
+                    Logging.logMessage(Logging.LEVEL_ERROR, Category.storage, this,
+                        "an error has occurred while dumping the database: %s", OutputUtils
+                                .stackTraceToString(exc));
+                }
+                return;
+            }
+            
             File df = new File(dumpFile + ".inprogress");
             
             try {
@@ -93,6 +112,10 @@ public class DumpDBOperation extends MRCOperation {
             && !master.getConfig().getAdminPassword().equals(rq.getDetails().password))
             throw new UserException(POSIXErrno.POSIX_ERROR_EPERM, "invalid password");
         
+        if (rqArgs.hasBaseDumpFile() && !rqArgs.getBinary())
+            throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL,
+                "incremental dumps are only supported for binary dumps");
+        
         // check if the creation of a dump is already in progress; if not,
         // create a new dump
         if (!new File(rqArgs.getDumpFile() + ".inprogress").exists()) {
@@ -125,7 +148,8 @@ public class DumpDBOperation extends MRCOperation {
             }
             
             // write the dump asynchronously
-            DumpWriter dw = new DumpWriter(storageManagers, new File(rqArgs.getDumpFile()));
+            DumpWriter dw = new DumpWriter(storageManagers, new File(rqArgs.getDumpFile()), rqArgs.getBinary(),
+                rqArgs.hasBaseDumpFile() ? new File(rqArgs.getBaseDumpFile()) : null);
             dw.start();
         }
         
@@ -15,7 +15,7 @@ import org.xtreemfs.foundation.logging.Logging.Category;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.ErrorType;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.POSIXErrno;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.UserCredentials;
-import org.xtreemfs.foundation.pbrpc.utils.ReusableBufferInputStream;
+import org.xtreemfs.foundation.pbrpc.utils.MessageUtils;
 import org.xtreemfs.mrc.ErrorRecord;
 import org.xtreemfs.mrc.MRCRequest;
 import org.xtreemfs.mrc.MRCRequestDispatcher;
@@ -77,8 +77,7 @@ public abstract class MRCOperation {
                                        rq.getRPCRequest().getHeader().getCallId());
             } else {
                 if (rq.getRPCRequest().getMessage() != null) {
-                    rq.setRequestArgs(rqPrototype.newBuilderForType().mergeFrom(
-                        new ReusableBufferInputStream(rq.getRPCRequest().getMessage())).build());
+                    rq.setRequestArgs(MessageUtils.parseFrom(rqPrototype, rq.getRPCRequest().getMessage()));
                     if (Logging.isDebug()) {
                         Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this,
                             "received request of type %s (request %s)",
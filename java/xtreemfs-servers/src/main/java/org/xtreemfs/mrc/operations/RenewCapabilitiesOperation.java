@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.mrc.operations;
+
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.logging.Logging.Category;
+import org.xtreemfs.mrc.MRCRequest;
+import org.xtreemfs.mrc.MRCRequestDispatcher;
+import org.xtreemfs.mrc.UserException;
+import org.xtreemfs.mrc.database.DatabaseException;
+import org.xtreemfs.mrc.database.DatabaseException.ExceptionType;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.XCap;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_renew_capabilitiesRequest;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_renew_capabilitiesResponse;
+
+/**
+ * Renews multiple capabilities with a single request. Capabilities that cannot
+ * be renewed are returned unmodified.
+ */
+public class RenewCapabilitiesOperation extends MRCOperation {
+
+    public final boolean renewTimedOutCaps;
+
+    public RenewCapabilitiesOperation(MRCRequestDispatcher master) {
+        super(master);
+        renewTimedOutCaps = master.getConfig().isRenewTimedOutCaps();
+    }
+
+    @Override
+    public void startRequest(MRCRequest rq) throws Throwable {
+
+        final xtreemfs_renew_capabilitiesRequest rqArgs = (xtreemfs_renew_capabilitiesRequest) rq.getRequestArgs();
+
+        // perform master redirect if necessary due to DB operation
+        if (master.getReplMasterUUID() != null
+            && !master.getReplMasterUUID().equals(master.getConfig().getUUID().toString()))
+            throw new DatabaseException(ExceptionType.REDIRECT);
+
+        xtreemfs_renew_capabilitiesResponse.Builder response = xtreemfs_renew_capabilitiesResponse.newBuilder();
+        for (XCap xcap : rqArgs.getXcapsList()) {
+            try {
+                response.addXcaps(RenewOperation.renewCapability(master, xcap, renewTimedOutCaps));
+            } catch (UserException exc) {
+                if (Logging.isDebug())
+                    Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
+                        "could not renew capability for '%s': %s", xcap.getFileId(), exc.getMessage());
+                response.addXcaps(xcap);
+            }
+        }
+
+        // set the response
+        rq.setResponse(response.build());
+        finishRequest(rq);
+    }
+}
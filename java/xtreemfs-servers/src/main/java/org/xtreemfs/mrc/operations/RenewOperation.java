@@ -42,6 +42,18 @@ public class RenewOperation extends MRCOperation {
                 && !master.getReplMasterUUID().equals(master.getConfig().getUUID().toString()))
             throw new DatabaseException(ExceptionType.REDIRECT);
 
+        // set the response
+        rq.setResponse(renewCapability(master, xcap, renewTimedOutCaps));
+        finishRequest(rq);
+    }
+    
+    /**
+     * Verifies a capability and creates a new capability with an extended
+     * validity period.
+     */
+    static XCap renewCapability(MRCRequestDispatcher master, XCap xcap, boolean renewTimedOutCaps)
+        throws UserException {
+        
         // create a capability object to verify the capability
         Capability cap = new Capability(xcap, master.getConfig().getCapabilitySecret());
         
@@ -60,8 +72,6 @@ public class RenewOperation extends MRCOperation {
                 cap.getTraceConfig().getTracingPolicyConfig(), cap.getVoucherSize(), 0L,
                 master.getConfig().getCapabilitySecret());
         
-        // set the response
-        rq.setResponse(newCap.getXCap());
-        finishRequest(rq);
+        return newCap.getXCap();
     }
 }
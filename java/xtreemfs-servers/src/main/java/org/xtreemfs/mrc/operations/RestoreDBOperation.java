@@ -29,6 +29,7 @@ import org.xtreemfs.mrc.database.AtomicDBUpdate;
 import org.xtreemfs.mrc.database.DatabaseException;
 import org.xtreemfs.mrc.database.StorageManager;
 import org.xtreemfs.mrc.database.VolumeManager;
+import org.xtreemfs.mrc.utils.BinaryDBDump;
 import org.xtreemfs.mrc.utils.DBAdminHelper;
 import org.xtreemfs.mrc.utils.DBAdminHelper.DBRestoreState;
 import org.xtreemfs.pbrpc.generatedinterfaces.Common.emptyResponse;
@@ -70,6 +71,14 @@ public class RestoreDBOperation extends MRCOperation {
                     POSIXErrno.POSIX_ERROR_EPERM,
                     "Restoring from a dump is only possible on an MRC with no database. Please delete the existing MRC database on the server and restart the MRC!");
             
+            if (rqArgs.getBinary()) {
+                BinaryDBDump.restore(vMan, master.getFileAccessManager(), new File(rqArgs.getDumpFile()), Runtime
+                        .getRuntime().availableProcessors());
+                rq.setResponse(emptyResponse.getDefaultInstance());
+                finishRequest(rq);
+                return;
+            }
+            
             SAXParserFactory spf = SAXParserFactory.newInstance();
             SAXParser sp = spf.newSAXParser();
             sp.parse(new File(rqArgs.getDumpFile()), new DefaultHandler() {
@@ -37,6 +37,7 @@ import org.xtreemfs.mrc.utils.Converter;
 import org.xtreemfs.mrc.utils.MRCHelper;
 import org.xtreemfs.mrc.utils.MRCHelper.GlobalFileIdResolver;
 import org.xtreemfs.pbrpc.generatedinterfaces.Common.emptyResponse;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.OSDWriteResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.XLocSet;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_update_file_sizeRequest;
 
@@ -85,56 +86,11 @@ public class UpdateFileSizeOperation extends MRCOperation {
         
         // update the file size if necessary
         if (rqArgs.getOsdWriteResponse().hasSizeInBytes()) {
+            long diff = updateFileSize(sMan, file, cap.getFileId(), rqArgs.getOsdWriteResponse(), update, this);
             
-            if (file.isReadOnly())
-                throw new UserException(POSIXErrno.POSIX_ERROR_EPERM, "file '" + cap.getFileId()
-                    + "' is read-only");
-            
-            if (!rqArgs.getOsdWriteResponse().hasTruncateEpoch())
-                throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL,
-                    "missing truncate epoch in OSDWriteResponse");
-            
-            long newFileSize = rqArgs.getOsdWriteResponse().getSizeInBytes();
-            int epochNo = rqArgs.getOsdWriteResponse().getTruncateEpoch();
-            
-            // only accept valid file size updates
-            if (epochNo >= file.getEpoch()) {
-                
-                boolean epochChanged = epochNo > file.getEpoch();
-                
-                // accept any file size in a new epoch but only larger file
-                // sizes in the current epoch
-                if (epochChanged || newFileSize > file.getSize()) {
-                    
-                    long oldFileSize = file.getSize();
-                    int time = (int) (TimeSync.getGlobalTime() / 1000);
-                    
-                    file.setSize(newFileSize);
-                    file.setEpoch(epochNo);
-                    file.setCtime(time);
-                    file.setMtime(time);
-                    
-                    sMan.setMetadata(file, FileMetadata.FC_METADATA, update);
-                    
-                    if (epochChanged)
-                        sMan.setMetadata(file, FileMetadata.RC_METADATA, update);
-                    
-                    // update the volume size
-                    sMan.getVolumeInfo().updateVolumeSize(newFileSize - oldFileSize, update);
-                }
-
-                else if (Logging.isDebug())
-                    Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
-                        "received update for outdated file size: " + newFileSize + ", current file size="
-                            + file.getSize());
-            }
-
-            else {
-                if (Logging.isDebug())
-                    Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
-                        "received file size update w/ outdated epoch: " + epochNo + ", current epoch="
-                            + file.getEpoch());
-            }
+            // update the volume size
+            if (diff != 0)
+                sMan.getVolumeInfo().updateVolumeSize(diff, update);
         }
         
         // check if file is closed and on-close replication is required
@@ -260,4 +216,64 @@ public class UpdateFileSizeOperation extends MRCOperation {
         
     }
     
+    /**
+     * Applies the file size contained in an OSD write response to the metadata
+     * of a file. The volume size is not updated.
+     * 
+     * @return the difference between the new and the old file size
+     */
+    static long updateFileSize(StorageManager sMan, FileMetadata file, String globalFileId,
+        OSDWriteResponse osdWriteResponse, AtomicDBUpdate update, Object me) throws UserException,
+        DatabaseException {
+        
+        if (file.isReadOnly())
+            throw new UserException(POSIXErrno.POSIX_ERROR_EPERM, "file '" + globalFileId + "' is read-only");
+        
+        if (!osdWriteResponse.hasTruncateEpoch())
+            throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "missing truncate epoch in OSDWriteResponse");
+        
+        long newFileSize = osdWriteResponse.getSizeInBytes();
+        int epochNo = osdWriteResponse.getTruncateEpoch();
+        
+        // only accept valid file size updates
+        if (epochNo >= file.getEpoch()) {
+            
+            boolean epochChanged = epochNo > file.getEpoch();
+            
+            // accept any file size in a new epoch but only larger file
+            // sizes in the current epoch
+            if (epochChanged || newFileSize > file.getSize()) {
+                
+                long oldFileSize = file.getSize();
+                int time = (int) (TimeSync.getGlobalTime() / 1000);
+                
+                file.setSize(newFileSize);
+                file.setEpoch(epochNo);
+                file.setCtime(time);
+                file.setMtime(time);
+                
+                sMan.setMetadata(file, FileMetadata.FC_METADATA, update);
+                
+                if (epochChanged)
+                    sMan.setMetadata(file, FileMetadata.RC_METADATA, update);
+                
+                return newFileSize - oldFileSize;
+            }
+
+            else if (Logging.isDebug())
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, me,
+                    "received update for outdated file size: " + newFileSize + ", current file size="
+                        + file.getSize());
+        }
+
+        else {
+            if (Logging.isDebug())
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, me,
+                    "received file size update w/ outdated epoch: " + epochNo + ", current epoch="
+                        + file.getEpoch());
+        }
+        
+        return 0;
+    }
+    
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.mrc.operations;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.xtreemfs.common.Capability;
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.logging.Logging.Category;
+import org.xtreemfs.mrc.MRCRequest;
+import org.xtreemfs.mrc.MRCRequestDispatcher;
+import org.xtreemfs.mrc.database.AtomicDBUpdate;
+import org.xtreemfs.mrc.database.DBAccessResultListener;
+import org.xtreemfs.mrc.database.DatabaseException;
+import org.xtreemfs.mrc.database.DatabaseException.ExceptionType;
+import org.xtreemfs.mrc.database.StorageManager;
+import org.xtreemfs.mrc.metadata.FileMetadata;
+import org.xtreemfs.mrc.utils.MRCHelper.GlobalFileIdResolver;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_update_file_sizeRequest;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_update_file_sizesRequest;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_update_file_sizesResponse;
+
+/**
+ * Updates the sizes of multiple files. All updates of files in the same volume
+ * are applied with a single database insert. An update that cannot be applied,
+ * e.g. because of an invalid capability, does not affect the other updates of
+ * the batch.
+ */
+public class UpdateFileSizesOperation extends MRCOperation {
+
+    /**
+     * The updates of a single volume.
+     */
+    private static class VolumeUpdate {
+
+        final StorageManager          sMan;
+
+        final AtomicDBUpdate          update;
+
+        final Map<Long, FileMetadata> files;
+
+        long                          sizeDiff;
+
+        VolumeUpdate(StorageManager sMan, DBAccessResultListener<Object> listener, MRCRequest rq)
+            throws DatabaseException {
+            this.sMan = sMan;
+            this.update = sMan.createAtomicDBUpdate(listener, rq);
+            this.files = new HashMap<Long, FileMetadata>();
+        }
+    }
+
+    public UpdateFileSizesOperation(MRCRequestDispatcher master) {
+        super(master);
+    }
+
+    @Override
+    public void startRequest(final MRCRequest rq) throws Throwable {
+
+        // perform master redirect if necessary
+        if (master.getReplMasterUUID() != null
+            && !master.getReplMasterUUID().equals(master.getConfig().getUUID().toString()))
+            throw new DatabaseException(ExceptionType.REDIRECT);
+
+        final xtreemfs_update_file_sizesRequest rqArgs = (xtreemfs_update_file_sizesRequest) rq.getRequestArgs();
+
+        // the request is finished once the updates of all volumes have been
+        // executed
+        final int[] pending = { 0 };
+        final Throwable[] error = new Throwable[1];
+        DBAccessResultListener<Object> listener = new DBAccessResultListener<Object>() {
+
+            @Override
+            public void finished(Object result, Object context) {
+                done(null);
+            }
+
+            @Override
+            public void failed(Throwable err, Object context) {
+                done(err);
+            }
+
+            private void done(Throwable err) {
+                synchronized (pending) {
+                    if (err != null)
+                        error[0] = err;
+                    if (--pending[0] > 0)
+                        return;
+                }
+                if (error[0] != null)
+                    master.failed(error[0], rq);
+                else
+                    master.finished(null, rq);
+            }
+        };
+
+        xtreemfs_update_file_sizesResponse.Builder response = xtreemfs_update_file_sizesResponse.newBuilder();
+        Map<String, VolumeUpdate> volumeUpdates = new LinkedHashMap<String, VolumeUpdate>();
+
+        for (xtreemfs_update_file_sizeRequest fsUpdate : rqArgs.getUpdatesList()) {
+
+            boolean applied = false;
+            try {
+                applied = addUpdate(fsUpdate, volumeUpdates, listener, rq);
+            } catch (Exception exc) {
+                if (Logging.isDebug())
+                    Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
+                        "could not apply file size update for '%s': %s", fsUpdate.getXcap().getFileId(), exc);
+            }
+            response.addApplied(applied);
+        }
+
+        // set the response
+        rq.setResponse(response.build());
+
+        if (volumeUpdates.isEmpty()) {
+            finishRequest(rq);
+            return;
+        }
+
+        synchronized (pending) {
+            pending[0] = volumeUpdates.size();
+        }
+
+        for (VolumeUpdate vu : volumeUpdates.values()) {
+            if (vu.sizeDiff != 0)
+                vu.sMan.getVolumeInfo().updateVolumeSize(vu.sizeDiff, vu.update);
+            vu.update.execute();
+        }
+    }
+
+    /**
+     * Adds a single file size update to the update of the file's volume.
+     *
+     * @return <tt>true</tt>, if the update is valid
+     */
+    private boolean addUpdate(xtreemfs_update_file_sizeRequest fsUpdate, Map<String, VolumeUpdate> volumeUpdates,
+        DBAccessResultListener<Object> listener, MRCRequest rq) throws Exception {
+
+        Capability cap = new Capability(fsUpdate.getXcap(), master.getConfig().getCapabilitySecret());
+
+        // check whether the capability has a valid signature and has not
+        // expired; files cannot be closed with a batched update, as closing
+        // may trigger the replication of the file
+        if (!cap.hasValidSignature() || cap.hasExpired() || fsUpdate.getCloseFile())
+            return false;
+
+        // parse volume and file ID from global file ID
+        GlobalFileIdResolver idRes = new GlobalFileIdResolver(cap.getFileId());
+
+        VolumeUpdate vu = volumeUpdates.get(idRes.getVolumeId());
+        if (vu == null) {
+            vu = new VolumeUpdate(master.getVolumeManager().getStorageManager(idRes.getVolumeId()), listener, rq);
+            volumeUpdates.put(idRes.getVolumeId(), vu);
+        }
+
+        // reuse the metadata of files that occur more than once in the batch
+        FileMetadata file = vu.files.get(idRes.getLocalFileId());
+        if (file == null) {
+            file = vu.sMan.getMetadata(idRes.getLocalFileId());
+            if (file == null)
+                return false;
+            vu.files.put(idRes.getLocalFileId(), file);
+        }
+
+        if (fsUpdate.getOsdWriteResponse().hasSizeInBytes())
+            vu.sizeDiff += UpdateFileSizeOperation.updateFileSize(vu.sMan, file, cap.getFileId(), fsUpdate
+                    .getOsdWriteResponse(), vu.update, this);
+
+        return true;
+    }
+
+}
@@ -59,6 +59,7 @@ import org.xtreemfs.mrc.operations.ReadDirAndStatOperation;
 import org.xtreemfs.mrc.operations.ReadLinkOperation;
 import org.xtreemfs.mrc.operations.RemoveReplicaOperation;
 import org.xtreemfs.mrc.operations.RemoveXAttrOperation;
+import org.xtreemfs.mrc.operations.RenewCapabilitiesOperation;
 import org.xtreemfs.mrc.operations.RenewCapabilityAndVoucherOperation;
 import org.xtreemfs.mrc.operations.RenewOperation;
 import org.xtreemfs.mrc.operations.ReselectOSDsOperation;
@@ -72,6 +73,7 @@ import org.xtreemfs.mrc.operations.StatFSOperation;
 import org.xtreemfs.mrc.operations.StatOperation;
 import org.xtreemfs.mrc.operations.TruncateOperation;
 import org.xtreemfs.mrc.operations.UpdateFileSizeOperation;
+import org.xtreemfs.mrc.operations.UpdateFileSizesOperation;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRCServiceConstants;
 
 import com.google.protobuf.Descriptors.FieldDescriptor;
@@ -126,6 +128,7 @@ public class ProcessingStage extends MRCStage {
         operations.put(MRCServiceConstants.PROC_ID_REMOVEXATTR, new RemoveXAttrOperation(master));
         operations.put(MRCServiceConstants.PROC_ID_OPEN, new OpenOperation(master));
         operations.put(MRCServiceConstants.PROC_ID_XTREEMFS_RENEW_CAPABILITY, new RenewOperation(master));
+        operations.put(MRCServiceConstants.PROC_ID_XTREEMFS_RENEW_CAPABILITIES, new RenewCapabilitiesOperation(master));
         operations.put(MRCServiceConstants.PROC_ID_XTREEMFS_RENEW_CAPABILITY_AND_VOUCHER,
                 new RenewCapabilityAndVoucherOperation(master));
         operations.put(MRCServiceConstants.PROC_ID_XTREEMFS_REPLICA_ADD, new AddReplicaOperation(master));
@@ -151,6 +154,7 @@ public class ProcessingStage extends MRCStage {
         operations.put(MRCServiceConstants.PROC_ID_XTREEMFS_INTERNAL_DEBUG,
             new InternalDebugOperation(master));
         operations.put(MRCServiceConstants.PROC_ID_XTREEMFS_UPDATE_FILE_SIZE, new UpdateFileSizeOperation(master));
+        operations.put(MRCServiceConstants.PROC_ID_XTREEMFS_UPDATE_FILE_SIZES, new UpdateFileSizesOperation(master));
         operations.put(MRCServiceConstants.PROC_ID_ACCESS, new AccessOperation(master));
         // TODO operations.put(replication_toMasterRequest.TAG, new
         // ReplicationToMasterOperation(master));
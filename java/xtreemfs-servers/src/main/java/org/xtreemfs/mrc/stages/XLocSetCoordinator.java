@@ -16,10 +16,15 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.xtreemfs.common.Capability;
 import org.xtreemfs.common.ReplicaUpdatePolicies;
@@ -68,7 +73,10 @@ import org.xtreemfs.pbrpc.generatedinterfaces.OSDServiceClient;
  * a global point of view and that enough replicas are up to date to maintain consistency.<br>
  * Since database calls have to be exclusively from one process the coordinator calls the
  * {@link XLocSetCoordinatorCallback} in the context of the {@link ProcessingStage} when consistency in the new XLocSet
- * is assured.
+ * is assured.<br>
+ * Changes of different files are coordinated concurrently by a pool of threads, while changes of the same file are
+ * coordinated one after another. Waiting for leases to time out and for replicas to be reset does not block a thread,
+ * but the next step of the coordination is scheduled after the delay.
  */
 public class XLocSetCoordinator extends LifeCycleThread implements DBAccessResultListener<Object> {
     private enum RequestType {
@@ -85,6 +93,15 @@ public class XLocSetCoordinator extends LifeCycleThread implements DBAccessResul
     /** The lease timeout is needed to ensure no primary can exist after invalidating. */
     private final int                    leaseToMS;
 
+    /** Executes the steps of the xLocSet changes. */
+    private final ScheduledThreadPoolExecutor executor;
+
+    /**
+     * The files whose xLocSet is currently changed, mapped to the changes of the same file which have to be processed
+     * afterwards.
+     */
+    private final Map<String, LinkedList<RequestMethod>> activeChanges;
+
     public XLocSetCoordinator(MRCRequestDispatcher master) {
         super("XLocSetCoordinator");
         quit = false;
@@ -92,6 +109,18 @@ public class XLocSetCoordinator extends LifeCycleThread implements DBAccessResul
         this.master = master;
 
         leaseToMS = master.getConfig().getFleaseLeaseToMS();
+
+        executor = new ScheduledThreadPoolExecutor(master.getConfig().getXLocSetChangeThreads(), new ThreadFactory() {
+            private final AtomicInteger threadNo = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "XLocSetCoordinator-" + threadNo.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        activeChanges = new HashMap<String, LinkedList<RequestMethod>>();
     }
 
     @Override
@@ -108,6 +137,7 @@ public class XLocSetCoordinator extends LifeCycleThread implements DBAccessResul
                 break;
             }
         }
+        executor.shutdownNow();
         notifyStopped();
     }
 
@@ -122,26 +152,51 @@ public class XLocSetCoordinator extends LifeCycleThread implements DBAccessResul
      * 
      * @param m
      */
-    private void processRequest(RequestMethod m) throws InterruptedException {
-        try {
-            switch (m.getRequestType()) {
-            case XLOCSET_CHANGE:
-                processXLocSetChange(m);
-                break;
-            default:
-                throw new Exception("unknown stage operation");
+    private void processRequest(RequestMethod m) {
+        switch (m.getRequestType()) {
+        case XLOCSET_CHANGE:
+            // Changes of the same file are processed in the order they were requested.
+            synchronized (activeChanges) {
+                LinkedList<RequestMethod> pending = activeChanges.get(m.getFileId());
+                if (pending != null) {
+                    pending.add(m);
+                    return;
+                }
+                activeChanges.put(m.getFileId(), new LinkedList<RequestMethod>());
             }
-        } catch (InterruptedException e) {
-            throw e;
-        } catch (Throwable e) {
-            // Try to handle the error
-            Logging.logError(Logging.LEVEL_WARN, this, e);
-            try {
-                m.getCallback().handleInstallXLocSetError(e, m.getFileId(), m.getNewXLocList(), m.getCurXLocList());
-            } catch (Throwable e2) {
-                Logging.logError(Logging.LEVEL_ERROR, this, e2);
+            executor.execute(new XLocSetChange(m));
+            break;
+        default:
+            handleError(m, new Exception("unknown stage operation"));
+        }
+    }
+
+    /**
+     * Try to handle the error of a failed request.
+     */
+    private void handleError(RequestMethod m, Throwable e) {
+        Logging.logError(Logging.LEVEL_WARN, this, e);
+        try {
+            m.getCallback().handleInstallXLocSetError(e, m.getFileId(), m.getNewXLocList(), m.getCurXLocList());
+        } catch (Throwable e2) {
+            Logging.logError(Logging.LEVEL_ERROR, this, e2);
+        }
+    }
+
+    /**
+     * Starts the next pending xLocSet change of the file, if any.
+     */
+    private void changeFinished(String fileId) {
+        RequestMethod next;
+        synchronized (activeChanges) {
+            LinkedList<RequestMethod> pending = activeChanges.get(fileId);
+            next = pending.poll();
+            if (next == null) {
+                activeChanges.remove(fileId);
+                return;
             }
         }
+        executor.execute(new XLocSetChange(next));
     }
 
     /**
@@ -267,68 +322,199 @@ public class XLocSetCoordinator extends LifeCycleThread implements DBAccessResul
         return m;
     }
 
-    private void processXLocSetChange(final RequestMethod m) throws Throwable {
-        final String fileId = m.getFileId();
-        final Capability cap = m.getCapability();
+    /**
+     * The state of a single xLocSet change. The coordination is split into steps, which are executed by the thread
+     * pool. Steps which have to wait for a timeout are scheduled after the delay.
+     */
+    private final class XLocSetChange implements Runnable {
+
+        private final RequestMethod m;
+        private final String        fileId;
+        private final Capability    cap;
+        private final XLocList      curXLocList;
+        private final XLocList      newXLocList;
+        private XLocSet             curXLocSet;
+        private XLocSet             newXLocSet;
+
+        private Step                step;
+
+        /** The states returned by the invalidated replicas. */
+        private ReplicaStatus[]     states;
+
+        /** The replicas being reset and the number of resets which have to complete. */
+        private ResetState          resetState;
+
+        XLocSetChange(RequestMethod m) {
+            this.m = m;
+            this.fileId = m.getFileId();
+            this.cap = m.getCapability();
+            this.curXLocList = m.getCurXLocList();
+            this.newXLocList = m.getNewXLocList();
+            this.step = Step.INVALIDATE;
+        }
+
+        @Override
+        public void run() {
+            try {
+                switch (step) {
+                case INVALIDATE:
+                    invalidate();
+                    break;
+                case UPDATE:
+                    update();
+                    break;
+                case POLL_RESET_STATUS:
+                    pollResetStatus();
+                    break;
+                }
+            } catch (InterruptedException e) {
+                // The coordinator has been shut down.
+            } catch (Throwable e) {
+                handleError(m, e);
+                changeFinished(fileId);
+            }
+        }
 
-        final XLocList curXLocList = m.getCurXLocList();
-        final XLocList newXLocList = m.getNewXLocList();
+        private void schedule(Step nextStep, long delayMS) {
+            step = nextStep;
+            if (delayMS > 0) {
+                executor.schedule(this, delayMS, TimeUnit.MILLISECONDS);
+            } else {
+                run();
+            }
+        }
 
-        final XLocSet curXLocSet = Converter.xLocListToXLocSet(curXLocList).build();
-        // Ensure the next view won't be propagated until it is installed at the MRC.
-        final XLocSet newXLocSet = Converter.xLocListToXLocSet(newXLocList).setVersion(curXLocSet.getVersion()).build();
+        private void invalidate() throws Throwable {
+            curXLocSet = Converter.xLocListToXLocSet(curXLocList).build();
+            // Ensure the next view won't be propagated until it is installed at the MRC.
+            newXLocSet = Converter.xLocListToXLocSet(newXLocList).setVersion(curXLocSet.getVersion()).build();
 
-        final String replicaUpdatePolicy = curXLocSet.getReplicaUpdatePolicy();
+            final String replicaUpdatePolicy = curXLocSet.getReplicaUpdatePolicy();
 
-        if (replicaUpdatePolicy.equals(ReplicaUpdatePolicies.REPL_UPDATE_PC_WQRQ)) {
-            // Invalidate the majority of the replicas, get their ReplicaStatus and calculate the AuthState.
-            int numAcksMajority = (int) Math.ceil(((double) curXLocSet.getReplicasCount() + 1.0) / 2.0);
-            ReplicaStatus[] states = invalidateReplicas(fileId, cap, curXLocSet, numAcksMajority);
-            AuthoritativeReplicaState authState = calculateAuthoritativeState(fileId, curXLocSet, states);
+            int numAcksRequired;
+            if (replicaUpdatePolicy.equals(ReplicaUpdatePolicies.REPL_UPDATE_PC_WQRQ)) {
+                // Invalidate the majority of the replicas, get their ReplicaStatus and calculate the AuthState.
+                numAcksRequired = (int) Math.ceil(((double) curXLocSet.getReplicasCount() + 1.0) / 2.0);
 
-            // Update the required number of replicas while they are invalidated.
-            updateReplicas(fileId, cap, newXLocSet, curXLocSet, authState);
+            } else if (replicaUpdatePolicy.equals(ReplicaUpdatePolicies.REPL_UPDATE_PC_WARONE)
+                    || replicaUpdatePolicy.equals(ReplicaUpdatePolicies.REPL_UPDATE_PC_WARA)) {
+                // Invalidate all of the replicas.
+                numAcksRequired = curXLocSet.getReplicasCount();
+
+            } else if (replicaUpdatePolicy.equals(ReplicaUpdatePolicies.REPL_UPDATE_PC_RONLY)) {
+                // In case of the read-only replication the replicas will be invalidated. But the coordination takes
+                // place at the client by libxtreemfs.
+                // The INVALIDATION request will be send to every replica, but the coordination continues on the first
+                // response.
+                numAcksRequired = 1;
+
+            } else {
+                throw new UserException(POSIXErrno.POSIX_ERROR_EPERM, "Unknown replica update policy: "
+                        + curXLocSet.getReplicaUpdatePolicy());
+            }
+
+            InvalidationResult result = invalidateReplicas(fileId, cap, curXLocSet, numAcksRequired);
+            states = result.states;
+
+            // If a primary exists, wait until the lease has timed out.
+            // This is required, since the lease can't be actively returned.
+            // TODO (Improvement): If the primary did response we could continue to update phase (but still would have
+            // to wait until leaseTO before finally installing the new xLoc)
+            if (result.primaryExists) {
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.replication, XLocSetCoordinator.this,
+                        "%s: waiting %d ms for the lease of the primary to time out", fileId, leaseToMS);
+                schedule(Step.UPDATE, leaseToMS);
+            } else {
+                schedule(Step.UPDATE, 0);
+            }
+        }
+
+        private void update() throws Throwable {
+            if (curXLocSet.getReplicaUpdatePolicy().equals(ReplicaUpdatePolicies.REPL_UPDATE_PC_RONLY)) {
+                if (Logging.isDebug()) {
+                    Logging.logMessage(Logging.LEVEL_DEBUG, Category.replication, XLocSetCoordinator.this,
+                            "replication policy (%s) will be handled by VolumeImplementation",
+                            curXLocSet.getReplicaUpdatePolicy());
+                }
+                install();
+                return;
+            }
 
-        } else if (replicaUpdatePolicy.equals(ReplicaUpdatePolicies.REPL_UPDATE_PC_WARONE)
-                || replicaUpdatePolicy.equals(ReplicaUpdatePolicies.REPL_UPDATE_PC_WARA)) {
-            // Invalidate all of the replicas.
-            int numAcksMajority = curXLocSet.getReplicasCount();
-            ReplicaStatus[] states = invalidateReplicas(fileId, cap, curXLocSet, numAcksMajority);
             AuthoritativeReplicaState authState = calculateAuthoritativeState(fileId, curXLocSet, states);
 
             // Update the required number of replicas while they are invalidated.
-            updateReplicas(fileId, cap, newXLocSet, curXLocSet, authState);
-
-        } else if (replicaUpdatePolicy.equals(ReplicaUpdatePolicies.REPL_UPDATE_PC_RONLY)) {
-            // In case of the read-only replication the replicas will be invalidated. But the coordination takes place
-            // at the client by libxtreemfs.
-            // The INVALIDATION request will be send to every replica, but the coordination continues on the first
-            // response.
-            invalidateReplicas(fileId, cap, curXLocSet, 1);
+            resetState = updateReplicas(fileId, cap, newXLocSet, curXLocSet, authState);
 
-            if (Logging.isDebug()) {
-                Logging.logMessage(Logging.LEVEL_DEBUG, Category.replication, this,
-                                   "replication policy (%s) will be handled by VolumeImplementation",
-                                   curXLocSet.getReplicaUpdatePolicy());
+            // If there are still required updates remaining, wait for the updates to complete and poll the reset
+            // status.
+            if (resetState != null) {
+                schedule(Step.POLL_RESET_STATUS, STATUS_RETRY_DELAY_MS);
+            } else {
+                install();
             }
+        }
 
-        } else {
-            throw new UserException(POSIXErrno.POSIX_ERROR_EPERM, "Unknown replica update policy: "
-                    + curXLocSet.getReplicaUpdatePolicy());
+        private void pollResetStatus() throws Throwable {
+            Boolean complete = pollReset(resetState);
+
+            if (complete == null) {
+                schedule(Step.POLL_RESET_STATUS, STATUS_RETRY_DELAY_MS);
+            } else if (complete) {
+                install();
+            } else {
+                throw new MRCException(
+                        "XLocSetCoordinator failed because too many replicas didn't complete the update request.");
+            }
         }
 
-        // Call the installXLocSet method in the context of the ProcessingStage.
-        master.getProcStage().enqueueInternalCallbackOperation(new InternalCallbackInterface() {
-            @Override
-            public void execute() throws Throwable {
-                final XLocSetCoordinatorCallback callback = m.getCallback();
-                try {
-                    callback.installXLocSet(fileId, newXLocList, curXLocList);
-                } catch (Throwable e) {
-                    callback.handleInstallXLocSetError(e, fileId, newXLocList, curXLocList);
+        private void install() {
+            // Call the installXLocSet method in the context of the ProcessingStage.
+            master.getProcStage().enqueueInternalCallbackOperation(new InternalCallbackInterface() {
+                @Override
+                public void execute() throws Throwable {
+                    final XLocSetCoordinatorCallback callback = m.getCallback();
+                    try {
+                        callback.installXLocSet(fileId, newXLocList, curXLocList);
+                    } catch (Throwable e) {
+                        callback.handleInstallXLocSetError(e, fileId, newXLocList, curXLocList);
+                    }
                 }
-            }
-        });
+            });
+            changeFinished(fileId);
+        }
+    }
+
+    private enum Step {
+        INVALIDATE, UPDATE, POLL_RESET_STATUS
+    }
+
+    /**
+     * The result of invalidating the replicas.
+     */
+    private static final class InvalidationResult {
+        final ReplicaStatus[] states;
+        final boolean         primaryExists;
+
+        InvalidationResult(ReplicaStatus[] states, boolean primaryExists) {
+            this.states = states;
+            this.primaryExists = primaryExists;
+        }
+    }
+
+    /**
+     * The replicas that are still being reset and the number of resets which have to be completed.
+     */
+    private static final class ResetState {
+        List<ServiceUUID>                      OSDsInReset;
+        int                                    numRequiredUpdates;
+        final xtreemfs_rwr_reset_statusRequest resetStatusRequest;
+
+        ResetState(List<ServiceUUID> OSDsInReset, int numRequiredUpdates,
+                xtreemfs_rwr_reset_statusRequest resetStatusRequest) {
+            this.OSDsInReset = OSDsInReset;
+            this.numRequiredUpdates = numRequiredUpdates;
+            this.resetStatusRequest = resetStatusRequest;
+        }
     }
 
     /**
@@ -477,8 +663,8 @@ public class XLocSetCoordinator extends LifeCycleThread implements DBAccessResul
     }
 
     /**
-     * Invalidate the majority of the replicas listed in xLocList. Will sleep until the lease has timed out if the
-     * primary didn't respond.
+     * Invalidate the majority of the replicas listed in xLocList. The caller has to wait until the lease has timed out
+     * if a primary exists.
      * 
      * @param fileId
      * @param capability
@@ -487,8 +673,8 @@ public class XLocSetCoordinator extends LifeCycleThread implements DBAccessResul
      * @throws InterruptedException
      * @throws MRCException
      */
-    private ReplicaStatus[] invalidateReplicas(String fileId, Capability cap, XLocSet xLocSet, int numAcksRequired)
-            throws InterruptedException, MRCException {
+    private InvalidationResult invalidateReplicas(String fileId, Capability cap, XLocSet xLocSet,
+            int numAcksRequired) throws InterruptedException, MRCException {
         Logging.logMessage(Logging.LEVEL_DEBUG, this, "invalidateReplicas called with %d numAcksRequired",
                 numAcksRequired);
 
@@ -599,29 +785,10 @@ public class XLocSetCoordinator extends LifeCycleThread implements DBAccessResul
                                fileId, listener.numResponses);
         }
 
-        // If a primary exists, wait until the lease has timed out.
-        // This is required, since the lease can't be actively returned.
-        // TODO (Improvement): If the primary did response we could continue to update phase (but still would have to
-        // wait until leaseTO before finally installing the new xLoc)
+        // Clone the states and return them.
         synchronized (listener) {
-            if (listener.primaryExists) {
-                long now = System.currentTimeMillis();
-                long leaseEndTimeMS = now + leaseToMS;
-                
-                Logging.logMessage(Logging.LEVEL_DEBUG, Category.replication, this,
-                        "invalidateReplicas is waiting on the primary (now: %d, until: %d, timeout: %d ).", now,
-                        leaseEndTimeMS, leaseToMS);
-
-                while (now < leaseEndTimeMS) {
-                    listener.wait(leaseEndTimeMS - now);
-                    now = System.currentTimeMillis();
-                }
-            }
+            return new InvalidationResult(listener.getReplicaStates(), listener.primaryExists);
         }
-        
-        // Clone the states and return them.
-        ReplicaStatus[] states = listener.getReplicaStates();
-        return states;
     }
 
     /**
@@ -632,10 +799,11 @@ public class XLocSetCoordinator extends LifeCycleThread implements DBAccessResul
      * @param newXLocSet
      * @param curXLocSet
      * @param authState
+     * @return the replicas whose reset has to be awaited, or null if enough replicas are up to date
      * @throws InterruptedException
      * @throws MRCException
      */
-    private void updateReplicas(String fileId, Capability cap, XLocSet newXLocSet, XLocSet curXLocSet,
+    private ResetState updateReplicas(String fileId, Capability cap, XLocSet newXLocSet, XLocSet curXLocSet,
             AuthoritativeReplicaState authState) throws InterruptedException, MRCException {
         final OSDServiceClient client = master.getOSDClient();
 
@@ -707,62 +875,56 @@ public class XLocSetCoordinator extends LifeCycleThread implements DBAccessResul
         }
         
         
-        // If there are still required updates remaining, wait for the updates to complete and poll the reset status.
+        // If there are still required updates remaining, the updates have to complete. Their reset status is
+        // polled after a delay.
         if (numRemainingUpdates > 0) {
             xtreemfs_rwr_reset_statusRequest resetStatusRequest = xtreemfs_rwr_reset_statusRequest.newBuilder()
                     .setFileId(fileId).setFileCredentials(fileCredentials).setState(authState).build();
-            boolean complete = waitForReset(OSDsInReset, numRemainingUpdates, resetStatusRequest);
-
-            if (!complete) {
-                throw new MRCException(
-                        "XLocSetCoordinator failed because too many replicas didn't complete the update request.");
-            }
+            return new ResetState(OSDsInReset, numRemainingUpdates, resetStatusRequest);
         }
+
+        return null;
     }
 
-    private boolean waitForReset(List<ServiceUUID> OSDServiceUUIDs, int numRequiredUpdates,
-            final xtreemfs_rwr_reset_statusRequest resetStatusRequest) throws MRCException, InterruptedException {
+    /**
+     * Polls the reset status of the replicas being reset once.
+     * 
+     * @return true if enough updates completed, false if too many replicas failed, or null if the status has to be
+     *         polled again
+     */
+    private Boolean pollReset(ResetState state) throws MRCException, InterruptedException {
         final OSDServiceClient client = master.getOSDClient();
 
-        RWRResetStatusResponseListener listener;
-        int numMaxErrors;
-        long nextPollTime = System.currentTimeMillis() + STATUS_RETRY_DELAY_MS;
-        // long nextPollTime = -1;
-
-        while (numRequiredUpdates <= OSDServiceUUIDs.size()) {
-            // delay the next poll.
-            long now = System.currentTimeMillis();
-            if (now < nextPollTime) {
-                sleep(nextPollTime - now);
-            }
-            nextPollTime = System.currentTimeMillis() + STATUS_RETRY_DELAY_MS;
-
-            listener = new RWRResetStatusResponseListener(OSDServiceUUIDs, resetStatusRequest, client);
-            numMaxErrors = OSDServiceUUIDs.size() - numRequiredUpdates;
+        if (state.numRequiredUpdates > state.OSDsInReset.size()) {
+            return false;
+        }
 
-            synchronized (listener) {
-                // Wait until every request is finished.
-                while (!listener.allResponsesAvailable()) {
-                    listener.wait();
+        RWRResetStatusResponseListener listener = new RWRResetStatusResponseListener(state.OSDsInReset,
+                state.resetStatusRequest, client);
+        int numMaxErrors = state.OSDsInReset.size() - state.numRequiredUpdates;
 
-                    // Return on success.
-                    if (listener.numComplete >= numRequiredUpdates) {
-                        return true;
-                    }
+        synchronized (listener) {
+            // Wait until every request is finished.
+            while (!listener.allResponsesAvailable()) {
+                listener.wait();
 
-                    // Abort if too many errors occured.
-                    if (listener.numErrors > numMaxErrors) {
-                        return false;
-                    }
+                // Return on success.
+                if (listener.numComplete >= state.numRequiredUpdates) {
+                    return true;
                 }
 
-                // Adapt to the responses and poll the status after a delay.
-                OSDServiceUUIDs = listener.OSDsInReset;
-                numRequiredUpdates = numRequiredUpdates - listener.numComplete;
+                // Abort if too many errors occured.
+                if (listener.numErrors > numMaxErrors) {
+                    return false;
+                }
             }
+
+            // Adapt to the responses and poll the status after a delay.
+            state.OSDsInReset = listener.OSDsInReset;
+            state.numRequiredUpdates = state.numRequiredUpdates - listener.numComplete;
         }
 
-        return false;
+        return null;
     }
 
     /**
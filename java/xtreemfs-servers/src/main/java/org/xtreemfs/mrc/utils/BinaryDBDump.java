@@ -0,0 +1,627 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.mrc.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.xtreemfs.babudb.index.DefaultByteRangeComparator;
+import org.xtreemfs.common.quota.QuotaConstants;
+import org.xtreemfs.foundation.VersionManagement;
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.logging.Logging.Category;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.POSIXErrno;
+import org.xtreemfs.mrc.UserException;
+import org.xtreemfs.mrc.ac.FileAccessManager;
+import org.xtreemfs.mrc.database.AtomicDBUpdate;
+import org.xtreemfs.mrc.database.DatabaseException;
+import org.xtreemfs.mrc.database.DatabaseResultSet;
+import org.xtreemfs.mrc.database.StorageManager;
+import org.xtreemfs.mrc.database.VolumeInfo;
+import org.xtreemfs.mrc.database.VolumeManager;
+import org.xtreemfs.mrc.database.babudb.BabuDBStorageManager;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.KeyValuePair;
+
+/**
+ * Writes and restores binary dumps of the MRC database.
+ * <p>
+ * In contrast to the XML dump, a binary dump contains the raw key-value pairs
+ * of all database indices, so that neither dumping nor restoring requires the
+ * metadata to be parsed. A dump is a directory containing a manifest and one
+ * file per volume; the volume files are written and read in parallel. Each
+ * volume file is a sequence of length-prefixed records sorted by index and
+ * key.
+ * <p>
+ * An incremental dump refers to a base dump and only contains the records that
+ * have been added, changed or deleted since then. Dumps are numbered with
+ * sequence numbers; a full dump has the sequence number 0, and each
+ * incremental dump has the sequence number of its base dump plus one. To
+ * restore an incremental dump, the chain of dumps it is based on has to be
+ * available at the locations recorded in the manifests.
+ */
+public class BinaryDBDump {
+
+    public static final String        MANIFEST_FILE      = "MANIFEST";
+
+    public static final String        VOLUME_FILE_SUFFIX = ".vol";
+
+    private static final int          MAGIC              = 0x58544442;
+
+    private static final int          FORMAT_VERSION     = 1;
+
+    private static final byte         RECORD_END         = 0;
+
+    private static final byte         RECORD_PUT         = 1;
+
+    private static final byte         RECORD_DELETE      = 2;
+
+    /** the number of records inserted into the database with a single update */
+    private static final int          RESTORE_BATCH_SIZE = 1000;
+
+    private static final int[]        INDICES            = { BabuDBStorageManager.FILE_INDEX,
+            BabuDBStorageManager.XATTRS_INDEX, BabuDBStorageManager.ACL_INDEX,
+            BabuDBStorageManager.FILE_ID_INDEX, BabuDBStorageManager.VOLUME_INDEX };
+
+    private static final Comparator<byte[]> KEY_COMPARATOR = DefaultByteRangeComparator.getInstance();
+
+    /**
+     * The manifest of a dump.
+     */
+    static class Manifest {
+
+        long                dbVersion;
+
+        long                sequenceNo;
+
+        /** the absolute path of the base dump, or <tt>null</tt> for a full dump */
+        String              baseDump;
+
+        List<VolumeInfoRec> volumes = new LinkedList<VolumeInfoRec>();
+
+        VolumeInfoRec getVolume(String volumeId) {
+            for (VolumeInfoRec vol : volumes)
+                if (vol.id.equals(volumeId))
+                    return vol;
+            return null;
+        }
+
+        void write(File dumpDir) throws IOException {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(
+                    dumpDir, MANIFEST_FILE))));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(dbVersion);
+                out.writeLong(sequenceNo);
+                out.writeUTF(baseDump == null ? "" : baseDump);
+                out.writeInt(volumes.size());
+                for (VolumeInfoRec vol : volumes) {
+                    out.writeUTF(vol.id);
+                    out.writeUTF(vol.name);
+                    out.writeShort(vol.acPolicy);
+                }
+            } finally {
+                out.close();
+            }
+        }
+
+        static Manifest read(File dumpDir) throws IOException {
+            File file = new File(dumpDir, MANIFEST_FILE);
+            if (!file.exists())
+                throw new IOException("'" + dumpDir + "' is not a binary database dump");
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != MAGIC)
+                    throw new IOException("'" + file + "' is not a binary dump manifest");
+                int formatVersion = in.readInt();
+                if (formatVersion != FORMAT_VERSION)
+                    throw new IOException("unsupported binary dump format version: " + formatVersion);
+
+                Manifest m = new Manifest();
+                m.dbVersion = in.readLong();
+                m.sequenceNo = in.readLong();
+                String base = in.readUTF();
+                m.baseDump = base.length() == 0 ? null : base;
+                int numVolumes = in.readInt();
+                for (int i = 0; i < numVolumes; i++)
+                    m.volumes.add(new VolumeInfoRec(in.readUTF(), in.readUTF(), in.readShort()));
+                return m;
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    static class VolumeInfoRec {
+
+        final String id;
+
+        final String name;
+
+        final short  acPolicy;
+
+        VolumeInfoRec(String id, String name, short acPolicy) {
+            this.id = id;
+            this.name = name;
+            this.acPolicy = acPolicy;
+        }
+    }
+
+    /**
+     * A database record. A record without a value marks a deletion.
+     */
+    static class Record {
+
+        final int    index;
+
+        final byte[] key;
+
+        final byte[] value;
+
+        Record(int index, byte[] key, byte[] value) {
+            this.index = index;
+            this.key = key;
+            this.value = value;
+        }
+
+        int compareTo(Record other) {
+            if (index != other.index)
+                return index < other.index ? -1 : 1;
+            return KEY_COMPARATOR.compare(key, other.key);
+        }
+    }
+
+    /**
+     * A stream of records sorted by index and key.
+     */
+    static interface RecordSource {
+
+        /**
+         * @return the next record, or <tt>null</tt> if the end of the stream
+         *         has been reached
+         */
+        public Record next() throws IOException, DatabaseException;
+
+        public void close();
+    }
+
+    /**
+     * The content of all indices of a volume database.
+     */
+    static class DatabaseSource implements RecordSource {
+
+        private final StorageManager        sMan;
+
+        private int                         indexPos = -1;
+
+        private DatabaseResultSet<byte[][]> it;
+
+        DatabaseSource(StorageManager sMan) {
+            this.sMan = sMan;
+        }
+
+        @Override
+        public Record next() throws DatabaseException {
+            while (it == null || !it.hasNext()) {
+                if (it != null)
+                    it.destroy();
+                it = null;
+                if (++indexPos == INDICES.length)
+                    return null;
+                it = sMan.getIndexEntries(INDICES[indexPos]);
+            }
+            byte[][] entry = it.next();
+            return new Record(INDICES[indexPos], entry[0], entry[1]);
+        }
+
+        @Override
+        public void close() {
+            if (it != null)
+                it.destroy();
+        }
+    }
+
+    /**
+     * The records of a volume file.
+     */
+    static class FileSource implements RecordSource {
+
+        private final DataInputStream in;
+
+        FileSource(File file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 256 * 1024));
+        }
+
+        @Override
+        public Record next() throws IOException {
+            byte type = in.readByte();
+            if (type == RECORD_END)
+                return null;
+            if (type != RECORD_PUT && type != RECORD_DELETE)
+                throw new IOException("corrupted dump: invalid record type " + type);
+
+            int index = in.readUnsignedByte();
+            byte[] key = new byte[in.readInt()];
+            in.readFully(key);
+            byte[] value = null;
+            if (type == RECORD_PUT) {
+                value = new byte[in.readInt()];
+                in.readFully(value);
+            }
+            return new Record(index, key, value);
+        }
+
+        @Override
+        public void close() {
+            try {
+                in.close();
+            } catch (IOException exc) {
+                // ignore
+            }
+        }
+    }
+
+    static class EmptySource implements RecordSource {
+
+        @Override
+        public Record next() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Applies the records of an incremental dump to the records of its base.
+     * The resulting stream does not contain any deletions.
+     */
+    static class MergeSource implements RecordSource {
+
+        private final RecordSource base;
+
+        private final RecordSource delta;
+
+        private Record             nextBase;
+
+        private Record             nextDelta;
+
+        MergeSource(RecordSource base, RecordSource delta) throws IOException, DatabaseException {
+            this.base = base;
+            this.delta = delta;
+            nextBase = base.next();
+            nextDelta = delta.next();
+        }
+
+        @Override
+        public Record next() throws IOException, DatabaseException {
+            for (;;) {
+                Record result;
+                if (nextDelta == null) {
+                    result = nextBase;
+                    if (nextBase != null)
+                        nextBase = base.next();
+                    return result;
+                }
+
+                int cmp = nextBase == null ? 1 : nextBase.compareTo(nextDelta);
+                if (cmp < 0) {
+                    result = nextBase;
+                    nextBase = base.next();
+                } else {
+                    // the delta record replaces or deletes the base record
+                    if (cmp == 0)
+                        nextBase = base.next();
+                    result = nextDelta;
+                    nextDelta = delta.next();
+                }
+
+                if (result.value != null)
+                    return result;
+            }
+        }
+
+        @Override
+        public void close() {
+            base.close();
+            delta.close();
+        }
+    }
+
+    /**
+     * Creates a binary dump of the given volumes.
+     *
+     * @param sManList
+     *            storage managers for consistent snapshots of the volumes
+     * @param dumpDir
+     *            the directory for the dump; it is created from a temporary
+     *            directory once all volumes have been dumped
+     * @param baseDumpDir
+     *            the dump to create an incremental dump for, or <tt>null</tt>
+     *            to create a full dump
+     * @param numThreads
+     *            the maximum number of volumes dumped in parallel
+     */
+    public static void dump(List<StorageManager> sManList, File dumpDir, File baseDumpDir, int numThreads)
+            throws IOException, DatabaseException {
+
+        final Manifest manifest = new Manifest();
+        manifest.dbVersion = VersionManagement.getMrcDataVersion();
+        if (baseDumpDir != null) {
+            Manifest base = Manifest.read(baseDumpDir);
+            if (base.dbVersion != manifest.dbVersion)
+                throw new IOException("base dump '" + baseDumpDir + "' has an outdated database version");
+            manifest.sequenceNo = base.sequenceNo + 1;
+            manifest.baseDump = baseDumpDir.getAbsolutePath();
+        }
+
+        final File tmpDir = new File(dumpDir + ".inprogress");
+        if (!tmpDir.mkdirs())
+            throw new IOException("could not create directory '" + tmpDir + "'");
+
+        try {
+            List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(sManList.size());
+            for (final StorageManager sMan : sManList) {
+
+                VolumeInfo vol = sMan.getVolumeInfo();
+                final String volumeId = vol.getId();
+                manifest.volumes.add(new VolumeInfoRec(volumeId, vol.getName(), vol.getAcPolicyId()));
+
+                tasks.add(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        RecordSource current = new DatabaseSource(sMan);
+                        RecordSource base = manifest.baseDump == null ? new EmptySource() : openVolume(new File(
+                                manifest.baseDump), volumeId);
+                        try {
+                            writeVolume(new File(tmpDir, volumeId + VOLUME_FILE_SUFFIX), base, current);
+                        } finally {
+                            base.close();
+                            current.close();
+                        }
+                        return null;
+                    }
+                });
+            }
+
+            runAll(tasks, numThreads);
+            manifest.write(tmpDir);
+
+            if (!tmpDir.renameTo(dumpDir))
+                throw new IOException("could not rename '" + tmpDir + "' to '" + dumpDir + "'");
+
+        } catch (IOException exc) {
+            deleteDir(tmpDir);
+            throw exc;
+        } catch (DatabaseException exc) {
+            deleteDir(tmpDir);
+            throw exc;
+        }
+
+        if (Logging.isInfo())
+            Logging.logMessage(Logging.LEVEL_INFO, Category.storage, (Object) null,
+                    "created binary database dump '%s' (sequence number %d, %d volumes)", dumpDir,
+                    manifest.sequenceNo, manifest.volumes.size());
+    }
+
+    /**
+     * Restores all volumes from a binary dump. If the dump is an incremental
+     * dump, the dumps it is based on are applied first.
+     *
+     * @param vMan
+     *            the volume manager, which must not contain any volumes
+     * @param faMan
+     *            the file access manager
+     * @param dumpDir
+     *            the dump directory
+     * @param numThreads
+     *            the maximum number of volumes restored in parallel
+     */
+    public static void restore(VolumeManager vMan, FileAccessManager faMan, final File dumpDir, int numThreads)
+            throws IOException, DatabaseException, UserException {
+
+        Manifest manifest = Manifest.read(dumpDir);
+        if (manifest.dbVersion != VersionManagement.getMrcDataVersion())
+            throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "binary dump has database version "
+                    + manifest.dbVersion + ", expected " + VersionManagement.getMrcDataVersion()
+                    + "; please use an XML dump to migrate the database");
+
+        // volumes are created one after the other, since the volume manager
+        // waits for the registration of each volume
+        for (VolumeInfoRec vol : manifest.volumes)
+            vMan.createVolume(faMan, vol.id, vol.name, vol.acPolicy, "", "", null, 0,
+                    QuotaConstants.UNLIMITED_QUOTA, new LinkedList<KeyValuePair>());
+
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(manifest.volumes.size());
+        for (VolumeInfoRec vol : manifest.volumes) {
+            final StorageManager sMan = vMan.getStorageManager(vol.id);
+            final String volumeId = vol.id;
+            tasks.add(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    RecordSource records = openVolume(dumpDir, volumeId);
+                    try {
+                        restoreVolume(sMan, records);
+                    } finally {
+                        records.close();
+                    }
+                    return null;
+                }
+            });
+        }
+
+        runAll(tasks, numThreads);
+
+        if (Logging.isInfo())
+            Logging.logMessage(Logging.LEVEL_INFO, Category.storage, (Object) null,
+                    "restored %d volumes from binary database dump '%s' (sequence number %d)",
+                    manifest.volumes.size(), dumpDir, manifest.sequenceNo);
+    }
+
+    /**
+     * Returns the records of a volume as of the given dump, with all
+     * incremental dumps of the chain applied.
+     */
+    static RecordSource openVolume(File dumpDir, String volumeId) throws IOException, DatabaseException {
+
+        Manifest manifest = Manifest.read(dumpDir);
+
+        // the volume did not exist when the dump was created
+        if (manifest.getVolume(volumeId) == null)
+            return new EmptySource();
+
+        RecordSource records = new FileSource(new File(dumpDir, volumeId + VOLUME_FILE_SUFFIX));
+        if (manifest.baseDump == null)
+            return records;
+
+        return new MergeSource(openVolume(new File(manifest.baseDump), volumeId), records);
+    }
+
+    /**
+     * Writes the records of <tt>current</tt> that differ from the records of
+     * <tt>base</tt>, and deletion records for all records of <tt>base</tt>
+     * that are missing in <tt>current</tt>.
+     */
+    static void writeVolume(File file, RecordSource base, RecordSource current) throws IOException,
+            DatabaseException {
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file),
+                256 * 1024));
+        try {
+            Record b = base.next();
+            Record c = current.next();
+            while (b != null || c != null) {
+
+                int cmp = b == null ? 1 : c == null ? -1 : b.compareTo(c);
+                if (cmp < 0) {
+                    writeRecord(out, new Record(b.index, b.key, null));
+                    b = base.next();
+                } else if (cmp > 0) {
+                    writeRecord(out, c);
+                    c = current.next();
+                } else {
+                    if (!Arrays.equals(b.value, c.value))
+                        writeRecord(out, c);
+                    b = base.next();
+                    c = current.next();
+                }
+            }
+            out.writeByte(RECORD_END);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, Record record) throws IOException {
+        out.writeByte(record.value == null ? RECORD_DELETE : RECORD_PUT);
+        out.writeByte(record.index);
+        out.writeInt(record.key.length);
+        out.write(record.key);
+        if (record.value != null) {
+            out.writeInt(record.value.length);
+            out.write(record.value);
+        }
+    }
+
+    /**
+     * Inserts all records into the database of a newly created volume and
+     * removes the records which were created with the volume but are not part
+     * of the dump.
+     */
+    static void restoreVolume(StorageManager sMan, RecordSource records) throws IOException,
+            DatabaseException {
+
+        List<TreeSet<byte[]>> initialKeys = new ArrayList<TreeSet<byte[]>>(INDICES.length);
+        for (int index : INDICES) {
+            TreeSet<byte[]> keys = new TreeSet<byte[]>(KEY_COMPARATOR);
+            DatabaseResultSet<byte[][]> it = sMan.getIndexEntries(index);
+            try {
+                while (it.hasNext())
+                    keys.add(it.next()[0]);
+            } finally {
+                it.destroy();
+            }
+            initialKeys.add(keys);
+        }
+
+        AtomicDBUpdate update = sMan.createAtomicDBUpdate(null, null);
+        int batchSize = 0;
+        for (Record record = records.next(); record != null; record = records.next()) {
+            update.addUpdate(record.index, record.key, record.value);
+            initialKeys.get(record.index).remove(record.key);
+            if (++batchSize == RESTORE_BATCH_SIZE) {
+                update.execute();
+                update = sMan.createAtomicDBUpdate(null, null);
+                batchSize = 0;
+            }
+        }
+        for (int i = 0; i < INDICES.length; i++)
+            for (byte[] key : initialKeys.get(i))
+                update.addUpdate(INDICES[i], key, null);
+        update.execute();
+
+        // reload values from db
+        sMan.getVolumeInfo().reload();
+    }
+
+    private static void runAll(List<Callable<Object>> tasks, int numThreads) throws IOException,
+            DatabaseException {
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(numThreads, tasks.size())));
+        try {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>(tasks.size());
+            for (Callable<Object> task : tasks)
+                futures.add(executor.submit(task));
+
+            for (Future<Object> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException exc) {
+                    Throwable cause = exc.getCause();
+                    if (cause instanceof IOException)
+                        throw (IOException) cause;
+                    if (cause instanceof DatabaseException)
+                        throw (DatabaseException) cause;
+                    throw new DatabaseException(cause);
+                }
+            }
+        } catch (InterruptedException exc) {
+            throw new DatabaseException(exc);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null)
+            for (File file : files)
+                file.delete();
+        dir.delete();
+    }
+
+}
@@ -178,6 +178,8 @@ public class Converter {
             org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.StripingPolicy.Builder sp = org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.StripingPolicy
                     .newBuilder().setType(StripingPolicyType.valueOf(xSP.getPattern())).setStripeSize(
                             xSP.getStripeSize()).setWidth(xSP.getWidth());
+            if (xSP.getParityWidth() > 0)
+                sp.setParityWidth(xSP.getParityWidth());
 
             Replica.Builder replBuilder = Replica.newBuilder().setReplicationFlags(
                     xRepl.getReplicationFlags()).setStripingPolicy(sp);
@@ -204,11 +206,14 @@ public class Converter {
         String policy = st.nextToken();
         if (policy.equals("RAID0"))
             policy = StripingPolicyType.STRIPING_POLICY_RAID0.toString();
+        else if (policy.equals("ERASURECODE"))
+            policy = StripingPolicyType.STRIPING_POLICY_ERASURECODE.toString();
 
         int size = Integer.parseInt(st.nextToken());
         int width = Integer.parseInt(st.nextToken());
+        int parityWidth = st.hasMoreTokens() ? Integer.parseInt(st.nextToken()) : 0;
 
-        return sMan.createStripingPolicy(policy, size, width);
+        return sMan.createStripingPolicy(policy, size, width, parityWidth);
     }
 
     /**
@@ -229,9 +234,18 @@ public class Converter {
         String pattern = (String) spMap.get("pattern");
         long size = (Long) spMap.get("size");
         long width = (Long) spMap.get("width");
+        long parityWidth = spMap.containsKey("parity_width") ? (Long) spMap.get("parity_width") : 0;
 
-        return org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.StripingPolicy.newBuilder().setType(
-                StripingPolicyType.valueOf(pattern)).setStripeSize((int) size).setWidth((int) width).build();
+        StripingPolicyType type = StripingPolicyType.valueOf(pattern);
+        if ((type == StripingPolicyType.STRIPING_POLICY_ERASURECODE) != (parityWidth > 0))
+            throw new IllegalArgumentException("a parity width > 0 is required for " + pattern);
+
+        org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.StripingPolicy.Builder sp = org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.StripingPolicy
+                .newBuilder().setType(type).setStripeSize((int) size).setWidth((int) width);
+        if (parityWidth > 0)
+            sp.setParityWidth((int) parityWidth);
+
+        return sp.build();
     }
 
     /**
@@ -241,7 +255,8 @@ public class Converter {
      * @return a string containing the striping policy information
      */
     public static String stripingPolicyToString(StripingPolicy sp) {
-        return sp.getPattern() + ", " + sp.getStripeSize() + ", " + sp.getWidth();
+        return sp.getPattern() + ", " + sp.getStripeSize() + ", " + sp.getWidth()
+            + (sp.getParityWidth() > 0 ? ", " + sp.getParityWidth() : "");
     }
 
     /**
@@ -252,14 +267,18 @@ public class Converter {
      */
     public static String stripingPolicyToString(
             org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.StripingPolicy sp) {
-        return sp.getType().toString() + ", " + sp.getStripeSize() + ", " + sp.getWidth();
+        return sp.getType().toString() + ", " + sp.getStripeSize() + ", " + sp.getWidth()
+            + (sp.getParityWidth() > 0 ? ", " + sp.getParityWidth() : "");
     }
 
     public static org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.StripingPolicy.Builder stripingPolicyToStripingPolicy(
             StripingPolicy sp) {
-        return org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.StripingPolicy.newBuilder().setType(
-                StripingPolicyType.valueOf(sp.getPattern())).setStripeSize(sp.getStripeSize()).setWidth(
-                sp.getWidth());
+        org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.StripingPolicy.Builder builder = org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.StripingPolicy
+                .newBuilder().setType(StripingPolicyType.valueOf(sp.getPattern())).setStripeSize(sp.getStripeSize())
+                .setWidth(sp.getWidth());
+        if (sp.getParityWidth() > 0)
+            builder.setParityWidth(sp.getParityWidth());
+        return builder;
     }
 
     public static String stripingPolicyToJSONString(StripingPolicy sp) throws JSONException {
@@ -271,6 +290,8 @@ public class Converter {
         spMap.put("pattern", sp.getPattern());
         spMap.put("size", sp.getStripeSize());
         spMap.put("width", sp.getWidth());
+        if (sp.getParityWidth() > 0)
+            spMap.put("parity_width", sp.getParityWidth());
         return spMap;
     }
 
@@ -56,6 +56,7 @@ import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceDataMap;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceSet;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceType;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.KeyValuePair;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.StripingPolicyType;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.VivaldiCoordinates;
 
 public class MRCHelper {
@@ -242,9 +243,11 @@ public class MRCHelper {
             throw new UserException(POSIXErrno.POSIX_ERROR_EIO, "could not open file " + path
                     + ": no default striping policy available");
 
-        // determine the set of OSDs to be assigned to the replica
+        // determine the set of OSDs to be assigned to the replica; parity
+        // objects are stored on OSDs in addition to the striping width
+        final int parityWidth = stripingPolicy.getParityWidth();
         ServiceSet.Builder usableOSDs = osdMan.getUsableOSDs(volume.getId(), clientAddress, clientCoordinates,
-                currentXLoc, stripingPolicy.getWidth(), path);
+                currentXLoc, stripingPolicy.getWidth() + parityWidth, path);
 
         if (usableOSDs == null || usableOSDs.getServicesCount() == 0) {
 
@@ -259,10 +262,17 @@ public class MRCHelper {
         // available, the width will be limited to the amount of available OSDs
         int width = Math.min(stripingPolicy.getWidth(), usableOSDs.getServicesCount());
 
+        // the width of an erasure-coded replica cannot be limited, as the
+        // number of parity objects refers to the full width
+        if (parityWidth > 0 && usableOSDs.getServicesCount() < stripingPolicy.getWidth() + parityWidth)
+            throw new UserException(POSIXErrno.POSIX_ERROR_EIO, "could not assign OSDs to file " + path + ": "
+                + (stripingPolicy.getWidth() + parityWidth) + " OSDs required, but only "
+                + usableOSDs.getServicesCount() + " feasible OSDs available");
+
         // convert the set of OSDs to a string array of OSD UUIDs
         List<Service> osdServices = usableOSDs.getServicesList();
-        String[] osds = new String[width];
-        for (int i = 0; i < width; i++)
+        String[] osds = new String[width + parityWidth];
+        for (int i = 0; i < osds.length; i++)
             osds[i] = osdServices.get(i).getUuid();
 
         if (width != stripingPolicy.getWidth())
@@ -376,6 +386,27 @@ public class MRCHelper {
         return true;
     }
 
+    /**
+     * Checks whether a striping policy may be assigned. Erasure-coded
+     * policies have to be enabled explicitly, since the C++ client, which is
+     * used by mount.xtreemfs, cannot access erasure-coded files.
+     *
+     * @param config
+     *            the MRC configuration
+     * @param sp
+     *            the striping policy, or <tt>null</tt>
+     * @throws UserException
+     *             if the striping policy is not permitted
+     */
+    public static void checkStripingPolicy(MRCConfig config,
+            org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.StripingPolicy sp) throws UserException {
+        if (sp != null && sp.getType() == StripingPolicyType.STRIPING_POLICY_ERASURECODE
+            && !config.isErasureCodingEnabled())
+            throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL,
+                "erasure-coded striping policies are disabled, as mount.xtreemfs cannot access erasure-coded "
+                    + "files; set erasure_coding.enabled in the MRC configuration to allow them");
+    }
+
     public static String getSysAttrValue(MRCConfig config, StorageManager sMan, OSDStatusManager osdMan,
             FileAccessManager faMan, String path, FileMetadata file, String keyString) throws DatabaseException,
             UserException, JSONException {
@@ -708,10 +739,12 @@ public class MRCHelper {
                     throw new UserException(POSIXErrno.POSIX_ERROR_EPERM,
                             "cannot remove the volume's default striping policy");
 
+                checkStripingPolicy(master.getConfig(), sp);
+
                 // check if striping + rw replication would be set
                 ReplicationPolicy replPolicy = sMan.getDefaultReplicationPolicy(file.getId());
                 if (sp != null
-                        && sp.getWidth() > 1
+                        && (sp.getWidth() > 1 || sp.getParityWidth() > 0)
                         && replPolicy != null && ReplicaUpdatePolicies.isRW(replPolicy.getName())) {
                     throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL,
                             "Striping of rw-replicated Files is not supported yet.");
@@ -897,7 +930,8 @@ public class MRCHelper {
                 }
 
                 // check if rw replication + striping would be set
-                if (sMan.getDefaultStripingPolicy(file.getId()).getWidth() > 1
+                StripingPolicy defaultSp = sMan.getDefaultStripingPolicy(file.getId());
+                if ((defaultSp.getWidth() > 1 || defaultSp.getParityWidth() > 0)
                         && ReplicaUpdatePolicies.isRW(rp.getName())) {
                     throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL,
                             "RW-replication of striped files is not supported yet.");
@@ -9,7 +9,9 @@
 package org.xtreemfs.osd;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
@@ -31,6 +33,7 @@ public class OSDConfig extends ServiceConfig {
             Parameter.DEBUG_CATEGORIES,
             Parameter.PORT,
             Parameter.BIND_RETRIES,
+            Parameter.LISTEN_TRANSPORT,
             Parameter.HTTP_PORT,
             Parameter.LISTEN_ADDRESS,
             Parameter.HOSTNAME,
@@ -56,6 +59,20 @@ public class OSDConfig extends ServiceConfig {
             Parameter.UUID,
             Parameter.REPORT_FREE_SPACE,
             Parameter.STORAGE_LAYOUT,
+            Parameter.STORAGE_LAYOUT_OBJECT_INDEX,
+            Parameter.STORAGE_LAYOUT_SCAN_THREADS,
+            Parameter.STORAGE_LAYOUT_ADDITIONAL_OBJECT_DIRS,
+            Parameter.STORAGE_LAYOUT_ASYNC_IO_DEPTH,
+            Parameter.STORAGE_LAYOUT_SEGMENT_SIZE,
+            Parameter.STORAGE_LAYOUT_DIRECT_IO,
+            Parameter.STORAGE_LAYOUT_SPARSE_PADDING,
+            Parameter.STORAGE_LAYOUT_DELTA_VERSIONS,
+            Parameter.IO_SCHEDULER,
+            Parameter.IO_SCHEDULER_CLASS_WEIGHTS,
+            Parameter.IO_SCHEDULER_WEIGHTS,
+            Parameter.ADMISSION_TARGET_DELAY_MS,
+            Parameter.ADMISSION_INTERVAL_MS,
+            Parameter.LATENCY_SAMPLE_RATE,
             Parameter.IGNORE_CAPABILITIES,
             Parameter.FLEASE_DMAX_MS,
             Parameter.FLEASE_LEASE_TIMEOUT_MS,
@@ -65,6 +82,7 @@ public class OSDConfig extends ServiceConfig {
             Parameter.CAPABILITY_SECRET,
             Parameter.SOCKET_SEND_BUFFER_SIZE,
             Parameter.SOCKET_RECEIVE_BUFFER_SIZE,
+            Parameter.SOCKET_CONNECTIONS_PER_OSD,
             Parameter.USE_SNMP,
             Parameter.SNMP_ADDRESS,
             Parameter.SNMP_PORT,
@@ -80,6 +98,12 @@ public class OSDConfig extends ServiceConfig {
             Parameter.VIVALDI_MAX_REQUEST_TIMEOUT_IN_MS,
             Parameter.VIVALDI_TIMER_INTERVAL_IN_MS,
             Parameter.STORAGE_THREADS,
+            Parameter.STORAGE_THREADS_PARALLEL_READS,
+            Parameter.DELETION_THREADS,
+            Parameter.DELETION_MAX_FILES_PER_SEC,
+            Parameter.DELETION_MAX_BYTES_PER_SEC,
+            Parameter.OBJECT_CACHE_SIZE,
+            Parameter.OBJECT_CACHE_PREFETCH_DEPTH,
             Parameter.USE_RENEWAL_SIGNAL,
             Parameter.USE_MULTIHOMING,
             Parameter.HEALTH_CHECK
@@ -187,6 +211,93 @@ public class OSDConfig extends ServiceConfig {
         return (String) parameter.get(Parameter.STORAGE_LAYOUT);
     }
 
+    public boolean isUsingObjectIndex() {
+        return (Boolean) parameter.get(Parameter.STORAGE_LAYOUT_OBJECT_INDEX);
+    }
+
+    public int getStorageLayoutScanThreads() {
+        return (Integer) parameter.get(Parameter.STORAGE_LAYOUT_SCAN_THREADS);
+    }
+
+    public int getAsyncIODepth() {
+        return (Integer) parameter.get(Parameter.STORAGE_LAYOUT_ASYNC_IO_DEPTH);
+    }
+
+    public int getStorageLayoutSegmentSize() {
+        return (Integer) parameter.get(Parameter.STORAGE_LAYOUT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Returns the comma-separated UUIDs of the volumes whose objects are
+     * accessed with direct I/O, "*" for all volumes, or an empty string.
+     */
+    public String getDirectIOVolumes() {
+        return (String) parameter.get(Parameter.STORAGE_LAYOUT_DIRECT_IO);
+    }
+
+    public boolean isUsingSparsePadding() {
+        return (Boolean) parameter.get(Parameter.STORAGE_LAYOUT_SPARSE_PADDING);
+    }
+
+    public boolean isUsingDeltaVersions() {
+        return (Boolean) parameter.get(Parameter.STORAGE_LAYOUT_DELTA_VERSIONS);
+    }
+
+    /**
+     * Returns the policy by which the storage threads schedule their requests:
+     * "fifo", "volume" or "client".
+     */
+    public String getIOScheduler() {
+        return (String) parameter.get(Parameter.IO_SCHEDULER);
+    }
+
+    public String getIOSchedulerClassWeights() {
+        return (String) parameter.get(Parameter.IO_SCHEDULER_CLASS_WEIGHTS);
+    }
+
+    /**
+     * Returns the comma-separated weights of volumes or clients, in the form
+     * <code>volume UUID=weight</code> or <code>client address=weight</code>.
+     */
+    public String getIOSchedulerWeights() {
+        return (String) parameter.get(Parameter.IO_SCHEDULER_WEIGHTS);
+    }
+
+    /**
+     * Returns the queueing delay in ms above which external requests are
+     * rejected with a busy error, or 0 if admission control is disabled.
+     */
+    public int getAdmissionTargetDelay() {
+        return (Integer) parameter.get(Parameter.ADMISSION_TARGET_DELAY_MS);
+    }
+
+    public int getAdmissionInterval() {
+        return (Integer) parameter.get(Parameter.ADMISSION_INTERVAL_MS);
+    }
+
+    /**
+     * Every n-th client request is timed for the stage latency statistics; 0
+     * disables the statistics.
+     */
+    public int getLatencySampleRate() {
+        return (Integer) parameter.get(Parameter.LATENCY_SAMPLE_RATE);
+    }
+
+    /**
+     * Returns all directories in which objects are stored. The first entry is
+     * the object directory, followed by the additional object directories.
+     */
+    public List<String> getObjDirs() {
+        List<String> dirs = new ArrayList<String>();
+        dirs.add(getObjDir());
+        for (String dir : ((String) parameter.get(Parameter.STORAGE_LAYOUT_ADDITIONAL_OBJECT_DIRS)).split(",")) {
+            dir = dir.trim();
+            if (dir.length() > 0 && !dirs.contains(dir))
+                dirs.add(dir);
+        }
+        return dirs;
+    }
+
     /**
      * @return the fleaseDmaxMS
      */
@@ -231,6 +342,10 @@ public class OSDConfig extends ServiceConfig {
         return (Integer) parameter.get(Parameter.SOCKET_RECEIVE_BUFFER_SIZE);
     }
 
+    public int getSocketConnectionsPerOSD() {
+        return (Integer) parameter.get(Parameter.SOCKET_CONNECTIONS_PER_OSD);
+    }
+
     /**
      * Set default values according to the value in {@link Parameter} for all configuration parameter which
      * are null.
@@ -284,6 +399,30 @@ public class OSDConfig extends ServiceConfig {
     public int getStorageThreads() {
         return (Integer) parameter.get(Parameter.STORAGE_THREADS);
     }
+
+    public boolean isParallelReads() {
+        return (Boolean) parameter.get(Parameter.STORAGE_THREADS_PARALLEL_READS);
+    }
+
+    public int getDeletionThreads() {
+        return (Integer) parameter.get(Parameter.DELETION_THREADS);
+    }
+
+    public int getDeletionMaxFilesPerSec() {
+        return (Integer) parameter.get(Parameter.DELETION_MAX_FILES_PER_SEC);
+    }
+
+    public long getDeletionMaxBytesPerSec() {
+        return (Long) parameter.get(Parameter.DELETION_MAX_BYTES_PER_SEC);
+    }
+    
+    public long getObjectCacheSize() {
+        return (Long) parameter.get(Parameter.OBJECT_CACHE_SIZE);
+    }
+    
+    public int getObjectCachePrefetchDepth() {
+        return (Integer) parameter.get(Parameter.OBJECT_CACHE_PREFETCH_DEPTH);
+    }
     
     public String getHealthCheckScript() {
         return (String) parameter.get(Parameter.HEALTH_CHECK);
@@ -22,6 +22,7 @@ import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader.ErrorResp
 import org.xtreemfs.foundation.pbrpc.server.RPCServerRequest;
 import org.xtreemfs.foundation.util.OutputUtils;
 import org.xtreemfs.osd.operations.OSDOperation;
+import org.xtreemfs.osd.stages.RequestTimings;
 import org.xtreemfs.osd.storage.CowPolicy;
 
 /**
@@ -50,6 +51,10 @@ public final class OSDRequest {
      * (i.e. no entry in OFT)
      */
     private boolean fileOpen;
+    /**
+     * timings of the stages, or null if the request is not sampled
+     */
+    private RequestTimings timings;
 
     public OSDRequest(RPCServerRequest request) {
         this.rpcRequest = request;
@@ -61,6 +66,7 @@ public final class OSDRequest {
     }
 
     public void sendSuccess(Message response, ReusableBuffer data) {
+        finishTimings();
         try {
             rpcRequest.sendResponse(response, data);
         } catch (IOException ex) {
@@ -69,6 +75,7 @@ public final class OSDRequest {
     }
 
     public void sendInternalServerError(Throwable cause) {
+        finishTimings();
         if (getRpcRequest() != null) {
             rpcRequest.sendError(ErrorType.INTERNAL_SERVER_ERROR, POSIXErrno.POSIX_ERROR_NONE, "internal server error:" + cause, OutputUtils.stackTraceToString(cause));
         } else {
@@ -82,6 +89,7 @@ public final class OSDRequest {
         if (Logging.isDebug()) {
             Logging.logMessage(Logging.LEVEL_DEBUG, Category.stage, this, "sending errno exception %s/%s/%s", type, errno, message);
         }
+        finishTimings();
         rpcRequest.sendError(type, errno, message);
     }
 
@@ -89,6 +97,7 @@ public final class OSDRequest {
         if (Logging.isDebug()) {
             Logging.logMessage(Logging.LEVEL_DEBUG, Category.stage, this, "sending errno exception %s/%s/%s", type, errno, message);
         }
+        finishTimings();
         rpcRequest.sendError(type, errno, message, debugInfo);
     }
 
@@ -233,7 +242,32 @@ public final class OSDRequest {
         this.fileOpen = fileOpen;
     }
 
+    /**
+     * @return the timings of the stages, or null if the request is not sampled
+     */
+    public RequestTimings getTimings() {
+        return timings;
+    }
+
+    /**
+     * @param timings the timings to set
+     */
+    public void setTimings(RequestTimings timings) {
+        this.timings = timings;
+    }
+
     public void sendError(ErrorResponse error) {
+        finishTimings();
         this.getRPCRequest().sendError(error);
     }
+
+    private void finishTimings() {
+        if (timings != null && operation != null) {
+            String name = operation.getClass().getSimpleName();
+            if (name.endsWith("Operation")) {
+                name = name.substring(0, name.length() - "Operation".length());
+            }
+            timings.finish(name);
+        }
+    }
 }
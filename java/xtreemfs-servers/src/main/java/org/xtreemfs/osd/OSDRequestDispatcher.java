@@ -55,9 +55,9 @@ import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.MessageType;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.POSIXErrno;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader.ErrorResponse;
-import org.xtreemfs.foundation.pbrpc.server.RPCNIOSocketServer;
 import org.xtreemfs.foundation.pbrpc.server.RPCServerRequest;
 import org.xtreemfs.foundation.pbrpc.server.RPCServerRequestListener;
+import org.xtreemfs.foundation.pbrpc.server.RPCSocketServer;
 import org.xtreemfs.foundation.pbrpc.server.RPCUDPSocketServer;
 import org.xtreemfs.foundation.pbrpc.utils.ErrorUtils;
 import org.xtreemfs.foundation.util.FSUtils;
@@ -108,13 +108,16 @@ import org.xtreemfs.osd.rwre.ReplicatedFileStateSimple.ReplicatedFileStateSimple
 import org.xtreemfs.osd.stages.DeletionStage;
 import org.xtreemfs.osd.stages.PreprocStage;
 import org.xtreemfs.osd.stages.ReplicationStage;
+import org.xtreemfs.osd.stages.StageLatencyStats;
 import org.xtreemfs.osd.stages.StorageStage;
 import org.xtreemfs.osd.stages.TracingStage;
 import org.xtreemfs.osd.stages.VivaldiStage;
 import org.xtreemfs.osd.storage.CleanupThread;
 import org.xtreemfs.osd.storage.CleanupVersionsThread;
 import org.xtreemfs.osd.storage.HashStorageLayout;
+import org.xtreemfs.osd.storage.LogStructuredStorageLayout;
 import org.xtreemfs.osd.storage.MetadataCache;
+import org.xtreemfs.osd.storage.MultiDeviceStorageLayout;
 import org.xtreemfs.osd.storage.StorageLayout;
 import org.xtreemfs.osd.vivaldi.VivaldiNode;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.DirService;
@@ -158,7 +161,7 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
 
     protected final RPCNIOSocketClient                  rpcClient;
 
-    protected final RPCNIOSocketServer                  rpcServer;
+    protected final RPCSocketServer                     rpcServer;
 
     protected long                                      requestId;
 
@@ -174,6 +177,8 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
 
     protected final TracingStage                        tracingStage;
 
+    protected final StageLatencyStats                   latencyStats;
+
     protected final RPCUDPSocketServer                  udpCom;
 
     protected final StatusServer                        statusServer;
@@ -294,8 +299,8 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
                 .getTrustedCertsPassphrase(), config.getTrustedCertsContainer(), false, config
                 .isGRIDSSLmode(), config.getSSLProtocolString(), tm1) : null;
         
-        rpcServer = new RPCNIOSocketServer(config.getPort(), config.getAddress(), this, serverSSLopts,
-                config.getBindRetries(), config.getSocketReceiveBufferSize(), config.getMaxClientQ());
+        rpcServer = RPCSocketServer.create(config.getListenTransport(), config.getPort(), config.getAddress(), this,
+                serverSSLopts, config.getBindRetries(), config.getSocketReceiveBufferSize(), config.getMaxClientQ());
         rpcServer.setLifeCycleListener(this);
         
         final SSLOptions clientSSLopts = config.isUsingSSL() ? new SSLOptions(config.getServiceCredsFile(),
@@ -312,10 +317,12 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
         
         rpcClient = new RPCNIOSocketClient(clientSSLopts, RPC_TIMEOUT, CONNECTION_TIMEOUT,
                 config.getSocketSendBufferSize(), config.getSocketReceiveBufferSize(), bindPoint, "OSDRequestDispatcher");
+        rpcClient.setConnectionsPerEndpoint(config.getSocketConnectionsPerOSD());
         rpcClient.setLifeCycleListener(this);
         
         // replication uses its own RPCClient with a much higher timeout
         rpcClientForReplication = new RPCNIOSocketClient(clientSSLopts, 30000, 5 * 60 * 1000, "OSDRequestDispatcher (for replication)");
+        rpcClientForReplication.setConnectionsPerEndpoint(config.getSocketConnectionsPerOSD());
         rpcClientForReplication.setLifeCycleListener(this);
         
         // initialize ServiceAvailability
@@ -328,7 +335,12 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
         MetadataCache metadataCache = new MetadataCache();
         StorageLayout storageLayout = null;
         if (config.getStorageLayout().equalsIgnoreCase(HashStorageLayout.class.getSimpleName())) {
-            storageLayout = new HashStorageLayout(config, metadataCache);
+            if (config.getObjDirs().size() > 1)
+                storageLayout = new MultiDeviceStorageLayout(config, metadataCache);
+            else
+                storageLayout = new HashStorageLayout(config, metadataCache);
+        } else if (config.getStorageLayout().equalsIgnoreCase(LogStructuredStorageLayout.class.getSimpleName())) {
+            storageLayout = new LogStructuredStorageLayout(config, metadataCache);
             /*
              * } else if
              * (config.getStorageLayout().equalsIgnoreCase(SingleFileStorageLayout
@@ -348,7 +360,9 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
         stStage = new StorageStage(this, metadataCache, storageLayout, config.getStorageThreads(), config.getMaxRequestsQueueLength());
         stStage.setLifeCycleListener(this);
         
-        delStage = new DeletionStage(this, metadataCache, storageLayout, config.getMaxRequestsQueueLength());
+        delStage = new DeletionStage(this, metadataCache, storageLayout, config.getDeletionThreads(),
+                config.getDeletionMaxFilesPerSec(), config.getDeletionMaxBytesPerSec(),
+                config.getMaxRequestsQueueLength());
         delStage.setLifeCycleListener(this);
         
         replStage = new ReplicationStage(this, config.getMaxRequestsQueueLength());
@@ -360,6 +374,13 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
         tracingStage = new TracingStage(this, config.getMaxRequestsQueueLength());
         tracingStage.setLifeCycleListener(this);
 
+        if (config.getAdmissionTargetDelay() > 0) {
+            stStage.enableAdmissionControl(config.getAdmissionTargetDelay(), config.getAdmissionInterval());
+            rwrStage.enableAdmissionControl(config.getAdmissionTargetDelay(), config.getAdmissionInterval());
+        }
+
+        latencyStats = new StageLatencyStats(config.getLatencySampleRate());
+
         
         // ----------------------------------------
         // initialize TimeSync and Heartbeat thread
@@ -384,20 +405,23 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
             public ServiceSet getServiceData() {
                 
                 OSDConfig config = OSDRequestDispatcher.this.config;
-                String freeSpace = "0";
-                String useableSpace = "0";
-                
-                if (config.isReportFreeSpace()) {
-                    freeSpace = String.valueOf(FSUtils.getFreeSpace(config.getObjDir()));
-                    useableSpace = String.valueOf(FSUtils.getUsableSpace(config.getObjDir()));
-                }
+                List<String> objDirs = config.getObjDirs();
+                long[] freeSpace = new long[objDirs.size()];
+                long[] useableSpace = new long[objDirs.size()];
+                long[] totalSpace = new long[objDirs.size()];
                 
-                String totalSpace = "-1";
-                
-                try {
-                    File f = new File(config.getObjDir());
-                    totalSpace = String.valueOf(f.getTotalSpace());
-                } catch (Exception ex) {
+                for (int i = 0; i < objDirs.size(); i++) {
+                    if (config.isReportFreeSpace()) {
+                        freeSpace[i] = FSUtils.getFreeSpace(objDirs.get(i));
+                        useableSpace[i] = FSUtils.getUsableSpace(objDirs.get(i));
+                    }
+                    
+                    try {
+                        File f = new File(objDirs.get(i));
+                        totalSpace[i] = f.getTotalSpace();
+                    } catch (Exception ex) {
+                        totalSpace[i] = -1;
+                    }
                 }
                 
                 OperatingSystemMXBean osb = ManagementFactory.getOperatingSystemMXBean();
@@ -451,9 +475,23 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
                 
                 ServiceDataMap.Builder dmap = ServiceDataMap.newBuilder();
                 dmap.addData(KeyValuePair.newBuilder().setKey("load").setValue(load).build());
-                dmap.addData(KeyValuePair.newBuilder().setKey("total").setValue(totalSpace).build());
-                dmap.addData(KeyValuePair.newBuilder().setKey("free").setValue(freeSpace).build());
-                dmap.addData(KeyValuePair.newBuilder().setKey("usable").setValue(useableSpace).build());
+                dmap.addData(KeyValuePair.newBuilder().setKey("total").setValue(String.valueOf(sum(totalSpace)))
+                        .build());
+                dmap.addData(KeyValuePair.newBuilder().setKey("free").setValue(String.valueOf(sum(freeSpace)))
+                        .build());
+                dmap.addData(KeyValuePair.newBuilder().setKey("usable")
+                        .setValue(String.valueOf(sum(useableSpace))).build());
+                // the capacity of the individual devices, if there is more than one
+                if (objDirs.size() > 1) {
+                    for (int i = 0; i < objDirs.size(); i++) {
+                        dmap.addData(KeyValuePair.newBuilder().setKey("device." + i + ".total")
+                                .setValue(String.valueOf(totalSpace[i])).build());
+                        dmap.addData(KeyValuePair.newBuilder().setKey("device." + i + ".free")
+                                .setValue(String.valueOf(freeSpace[i])).build());
+                        dmap.addData(KeyValuePair.newBuilder().setKey("device." + i + ".usable")
+                                .setValue(String.valueOf(useableSpace[i])).build());
+                    }
+                }
                 dmap.addData(KeyValuePair.newBuilder().setKey("totalRAM").setValue(Long.toString(totalRAM))
                         .build());
                 dmap.addData(KeyValuePair.newBuilder().setKey("usedRAM").setValue(Long.toString(usedRAM))
@@ -508,6 +546,7 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
             statusServer.registerModule(new PrintStackTrace());
             statusServer.registerModule(new ReplicatedFileStatusPage());
             statusServer.registerModule(new ReplicatedFileStatusJSON());
+            statusServer.registerModule(new StageLatencyPage());
 
             if (config.getAdminPassword().length() > 0) {
                 statusServer.addAuthorizedUser("admin", config.getAdminPassword());
@@ -645,6 +684,8 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
             cThread.waitForShutdown();
             cvThread.waitForShutdown();
 
+            stStage.getStorageLayout().shutdown();
+
             if (statusServer != null) {
                 statusServer.shutdown();
             }
@@ -760,12 +801,23 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
     }
 
     public long getFreeSpace() {
-        return FSUtils.getFreeSpace(config.getObjDir());
+        long s = 0;
+        for (String dir : config.getObjDirs())
+            s += FSUtils.getFreeSpace(dir);
+        return s;
     }
 
     public long getTotalSpace() {
-        File f = new File(config.getObjDir());
-        long s = f.getTotalSpace();
+        long s = 0;
+        for (String dir : config.getObjDirs())
+            s += new File(dir).getTotalSpace();
+        return s;
+    }
+
+    private static long sum(long[] values) {
+        long s = 0;
+        for (long value : values)
+            s += value;
         return s;
     }
 
@@ -793,6 +845,7 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
 
         try {
             OSDRequest request = new OSDRequest(rq);
+            request.setTimings(latencyStats.sample());
             if (Logging.isDebug())
                 Logging.logMessage(Logging.LEVEL_DEBUG, Category.stage, this, "received new request: %s", rq.toString());
             preprocStage.prepareRequest(request, new PreprocStage.ParseCompleteCallback() {
@@ -980,6 +1033,10 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
         return this.rwrStage;
     }
 
+    public StageLatencyStats getLatencyStats() {
+        return this.latencyStats;
+    }
+
     // FIXME: implement operations for Gmax, Ping
     /*
      * @Override public void receiveUDP(UDPMessage msg) { assert (msg.isRequest() || msg.isResponse());
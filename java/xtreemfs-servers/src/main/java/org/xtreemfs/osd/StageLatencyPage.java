@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.osd;
+
+import java.io.IOException;
+import java.util.Map.Entry;
+
+import org.xtreemfs.common.statusserver.StatusServerModule;
+import org.xtreemfs.osd.stages.LatencyHistogram;
+import org.xtreemfs.osd.stages.StageLatencyStats;
+import org.xtreemfs.osd.stages.StageLatencyStats.Phase;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceType;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Status page showing the latencies of the sampled requests per operation and
+ * stage.
+ */
+class StageLatencyPage extends StatusServerModule {
+
+    private OSDRequestDispatcher myDispatcher;
+
+    @Override
+    public String getDisplayName() {
+        return "OSD Stage Latencies";
+    }
+
+    @Override
+    public String getUriPath() {
+        return "/latency";
+    }
+
+    @Override
+    public boolean isAvailableForService(ServiceType service) {
+        return service == ServiceType.SERVICE_TYPE_OSD;
+    }
+
+    @Override
+    public void initialize(ServiceType service, Object serviceRequestDispatcher) {
+        assert (service == ServiceType.SERVICE_TYPE_OSD);
+        myDispatcher = (OSDRequestDispatcher) serviceRequestDispatcher;
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public void handle(HttpExchange httpExchange) throws IOException {
+        final StageLatencyStats stats = myDispatcher.getLatencyStats();
+        final String query = httpExchange.getRequestURI().getQuery();
+        if (query != null && query.contains("reset")) {
+            stats.reset();
+        }
+
+        final StringBuffer sb = new StringBuffer();
+        sb.append("<HTML><HEAD><TITLE>Stage Latencies</TITLE>");
+        sb.append("<STYLE type=\"text/css\">body,table,tr,td,h1 ");
+        sb.append("{font-family:Arial,Helvetica,sans-serif;}</STYLE></HEAD><BODY>");
+        sb.append("<H1>Request Latencies per Stage</H1>");
+        if (stats.getSampleRate() <= 0) {
+            sb.append("Latency statistics are disabled (latency_stats.sample_rate = 0).");
+        } else {
+            sb.append("Every ").append(stats.getSampleRate()).append(". request is sampled. ");
+            sb.append("Each cell shows mean / 99th percentile / max in microseconds and the number of ");
+            sb.append("requests that passed the phase. <A HREF=\"latency?reset\">Reset</A><BR><BR>");
+            sb.append("<TABLE border=\"1\"><TR><TD><B>Operation</B></TD>");
+            for (Phase phase : Phase.values()) {
+                sb.append("<TD><B>").append(phase.getDisplayName()).append("</B></TD>");
+            }
+            sb.append("</TR>\n");
+            for (Entry<String, LatencyHistogram[]> e : stats.getHistograms().entrySet()) {
+                sb.append("<TR><TD>").append(e.getKey()).append("</TD>");
+                for (LatencyHistogram hist : e.getValue()) {
+                    appendCell(sb, hist);
+                }
+                sb.append("</TR>\n");
+            }
+            sb.append("<TR><TD><B>all</B></TD>");
+            for (Phase phase : Phase.values()) {
+                appendCell(sb, stats.getAggregate(phase));
+            }
+            sb.append("</TR>\n</TABLE>");
+        }
+        sb.append("</BODY></HTML>");
+        sendResponse(httpExchange, sb.toString());
+    }
+
+    private static void appendCell(StringBuffer sb, LatencyHistogram hist) {
+        sb.append("<TD align=\"right\">");
+        if (hist.getCount() > 0) {
+            sb.append(hist.getMeanMicros()).append(" / ").append(hist.getPercentileMicros(99)).append(" / ")
+                    .append(hist.getMaxMicros()).append(" (").append(hist.getCount()).append(")");
+        } else {
+            sb.append("-");
+        }
+        sb.append("</TD>");
+    }
+}
@@ -24,6 +24,9 @@ import org.xtreemfs.foundation.buffer.BufferPool;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.pbrpc.Schemes;
 import org.xtreemfs.foundation.util.OutputUtils;
+import org.xtreemfs.osd.stages.FairRequestQueue.TrafficClass;
+import org.xtreemfs.osd.stages.StorageStage;
+import org.xtreemfs.osd.storage.ObjectCache;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceType;
 import org.xtreemfs.pbrpc.generatedinterfaces.OSDServiceConstants;
 
@@ -49,6 +52,8 @@ class StatusPage extends StatusServerModule {
             PARSERQ("<!-- $PARSERQ -->"),
             AUTHQ("<!-- $AUTHQ -->"),
             STORAGEQ("<!-- $STORAGEQ -->"),
+            STORAGEDELAY("<!-- $STORAGEDELAY -->"),
+            REJECTED("<!-- $REJECTED -->"),
             DELETIONQ("<!-- $DELETIONQ -->"),
             OPENFILES("<!-- $OPENFILES -->"),
             OBJWRITE("<!-- $OBJWRITE -->"),
@@ -60,6 +65,9 @@ class StatusPage extends StatusServerModule {
             GMAXMSG("<!-- $GMAXMSG -->"),
             GMAXRPC("<!-- $GMAXRPC -->"),
             DELETES("<!-- $DELETES -->"),
+            DELETEDBYTES("<!-- $DELETEDBYTES -->"),
+            DELETIONRATE("<!-- $DELETIONRATE -->"),
+            OBJCACHE("<!-- $OBJCACHE -->"),
             GLOBALTIME("<!-- $GLOBALTIME -->"),
             GLOBALRESYNC("<!-- $GLOBALRESYNC -->"),
             LOCALTIME("<!-- $LOCALTIME -->"),
@@ -161,6 +169,13 @@ class StatusPage extends StatusServerModule {
         values.put(
                 Vars.STORAGEQ,
                 Integer.toString(myDispatcher.getStorageStage().getQueueLength()));
+        values.put(
+                Vars.STORAGEDELAY,
+                getQueueingDelays());
+        values.put(
+                Vars.REJECTED,
+                Long.toString(myDispatcher.getStorageStage().getNumRejectedRequests()
+                        + myDispatcher.getRWReplicationStage().getNumRejectedRequests()));
         values.put(
                 Vars.DELETIONQ,
                 Integer.toString(myDispatcher.getDeletionStage().getQueueLength()));
@@ -188,6 +203,15 @@ class StatusPage extends StatusServerModule {
         values.put(
                 Vars.DELETES,
                 Long.toString(myDispatcher.getDeletionStage().getNumFilesDeleted()));
+        values.put(
+                Vars.DELETEDBYTES,
+                OutputUtils.formatBytes(myDispatcher.getDeletionStage().getNumBytesDeleted()));
+        values.put(
+                Vars.DELETIONRATE,
+                String.format("%.1f files/s", myDispatcher.getDeletionStage().getDeletionRate()));
+        values.put(
+                Vars.OBJCACHE,
+                getObjectCacheStatus());
         values.put(
                 Vars.GLOBALTIME,
                 new Date(globalTime).toString() + " (" + globalTime + ")");
@@ -265,5 +289,35 @@ class StatusPage extends StatusServerModule {
         }
         sendResponse(httpExchange, html);
     }
+    
+    private String getQueueingDelays() {
+        StorageStage stage = myDispatcher.getStorageStage();
+        StringBuilder sb = new StringBuilder();
+        for (TrafficClass tc : TrafficClass.values()) {
+            if (sb.length() > 0) {
+                sb.append("<br>");
+            }
+            sb.append(String.format("%s: avg %.2f ms, max %.2f ms", tc.name().toLowerCase(),
+                    stage.getAverageQueueingDelay(tc), stage.getMaxQueueingDelay(tc)));
+        }
+        return sb.toString();
+    }
+
+    private String getObjectCacheStatus() {
+        ObjectCache objectCache = myDispatcher.getStorageStage().getObjectCache();
+        if (objectCache == null) {
+            return "disabled";
+        }
+        
+        long hits = objectCache.getHits();
+        long requests = hits + objectCache.getMisses();
+        long prefetches = objectCache.getPrefetches();
+        return OutputUtils.formatBytes(objectCache.getSize()) + " / "
+                + OutputUtils.formatBytes(objectCache.getMaxSize()) + ", hit rate "
+                + String.format("%.1f%% (%d/%d)", requests == 0 ? 0.0 : hits * 100.0 / requests, hits, requests)
+                + ", prefetch accuracy "
+                + String.format("%.1f%% (%d/%d)", prefetches == 0 ? 0.0 : objectCache.getPrefetchHits() * 100.0
+                        / prefetches, objectCache.getPrefetchHits(), prefetches);
+    }
 
 }
@@ -177,8 +177,9 @@ public final class ReadOperation extends OSDOperation {
         if ((objNo > lastKnownObject) ||
                 (objNo == lastKnownObject) && (result.getData() != null) && (result.getData().remaining() < result.getStripeSize())) {
             try {
-                final List<ServiceUUID> osds = rq.getLocationList().getLocalReplica().getOSDs();
-                final RPCResponse[] gmaxRPCs = new RPCResponse[osds.size() - 1];
+                // parity OSDs of erasure-coded files do not know the file size
+                final List<ServiceUUID> osds = rq.getLocationList().getLocalReplica().getDataOSDs();
+                final RPCResponse[] gmaxRPCs = new RPCResponse[osds.contains(localUUID) ? osds.size() - 1 : osds.size()];
                 int cnt = 0;
                 for (ServiceUUID osd : osds) {
                     if (!osd.equals(localUUID)) {
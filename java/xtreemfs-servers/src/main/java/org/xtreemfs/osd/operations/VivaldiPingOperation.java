@@ -14,6 +14,7 @@ import org.xtreemfs.common.uuids.ServiceUUID;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader.ErrorResponse;
+import org.xtreemfs.foundation.pbrpc.server.UDPMessage;
 import org.xtreemfs.osd.OSDRequest;
 import org.xtreemfs.osd.OSDRequestDispatcher;
 import org.xtreemfs.osd.stages.VivaldiStage;
@@ -52,7 +53,7 @@ public class VivaldiPingOperation extends OSDOperation {
         }
 
         // Check for udp connections which don't have a channel.
-        if (rq.getRPCRequest().getConnection().getChannel() == null) {
+        if (rq.getRPCRequest().getConnection() instanceof UDPMessage) {
             if (Logging.isDebug()) {
                 Logging.logMessage(Logging.LEVEL_DEBUG,Category.all,this,"Async Ping");
             }
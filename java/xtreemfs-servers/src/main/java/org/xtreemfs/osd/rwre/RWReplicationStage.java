@@ -16,7 +16,6 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import org.xtreemfs.common.libxtreemfs.exceptions.XtreemFSException;
 import org.xtreemfs.common.uuids.ServiceUUID;
@@ -55,6 +54,7 @@ import org.xtreemfs.osd.operations.OSDOperation;
 import org.xtreemfs.osd.rwre.ReplicatedFileState.ReplicaState;
 import org.xtreemfs.osd.stages.PreprocStage.InvalidateXLocSetCallback;
 import org.xtreemfs.osd.stages.Stage;
+import org.xtreemfs.osd.stages.StageLatencyStats.Phase;
 import org.xtreemfs.osd.stages.StorageStage.DeleteObjectsCallback;
 import org.xtreemfs.osd.stages.StorageStage.InternalGetMaxObjectNoCallback;
 import org.xtreemfs.osd.stages.StorageStage.WriteObjectCallback;
@@ -130,19 +130,16 @@ public class RWReplicationStage extends Stage implements FleaseMessageSenderInte
 
     private static final int                       MAX_PENDING_PER_FILE       = 10;
 
-    private static final int                       MAX_EXTERNAL_REQUESTS_IN_Q = 250;
-
     private final Queue<ReplicatedFileState>       filesInReset;
 
     private final FleaseMasterEpochThread          masterEpochThread;
 
-    private final AtomicInteger                    externalRequestsInQueue;
-
     public RWReplicationStage(OSDRequestDispatcher master, SSLOptions sslOpts, int maxRequestsQueueLength)
             throws IOException {
         super("RWReplSt", maxRequestsQueueLength);
         this.master = master;
         client = new RPCNIOSocketClient(sslOpts, 15000, 60000 * 5, "RWReplicationStage");
+        client.setConnectionsPerEndpoint(master.getConfig().getSocketConnectionsPerOSD());
         fleaseClient = new RPCNIOSocketClient(sslOpts, 15000, 60000 * 5, "RWReplicationStage (flease)");
         osdClient = new OSDServiceClient(client, null);
         fleaseOsdClient = new OSDServiceClient(fleaseClient, null);
@@ -150,7 +147,7 @@ public class RWReplicationStage extends Stage implements FleaseMessageSenderInte
         cellToFileId = new HashMap<ASCIIString, String>();
         numObjsInFlight = 0;
         filesInReset = new LinkedList<ReplicatedFileState>();
-        externalRequestsInQueue = new AtomicInteger(0);
+        setTimedPhases(Phase.RWR_QUEUE, Phase.RWR);
 
         localID = new ASCIIString(master.getConfig().getUUID().toString());
 
@@ -839,6 +836,9 @@ public class RWReplicationStage extends Stage implements FleaseMessageSenderInte
     }
 
     private void enqueuePrioritized(StageRequest rq) {
+        // the time spent waiting for the file does not count as queueing delay
+        rq.setEnqueueNanos(System.nanoTime());
+        requestEnqueued(rq);
         while (!q.offer(rq)) {
             StageRequest otherRq = q.poll();
             otherRq.sendInternalServerError(new IllegalStateException(
@@ -861,28 +861,13 @@ public class RWReplicationStage extends Stage implements FleaseMessageSenderInte
         this.enqueueOperation(STAGEOP_OPEN, new Object[]{credentials,locations,forceReset}, request, callback);
     }*/
 
+    /**
+     * Enqueues a request of a client or another OSD. Like any external
+     * request, it is subject to the admission control of the stage.
+     */
     protected void enqueueExternalOperation(int stageOp, Object[] arguments, OSDRequest request,
             ReusableBuffer createdViewBuffer, Object callback) {
-        if (externalRequestsInQueue.get() >= MAX_EXTERNAL_REQUESTS_IN_Q) {
-            Logging.logMessage(Logging.LEVEL_WARN, this,
-                    "RW replication stage is overloaded, request %d for %s dropped", request.getRequestId(),
-                    request.getFileId());
-            request.sendInternalServerError(new IllegalStateException(
-                    "RW replication stage is overloaded, request dropped"));
-
-            // Make sure that the data buffer is returned to the pool if
-            // necessary, as some operations create view buffers on the
-            // data. Otherwise, a 'finalized but not freed before' warning
-            // may occur.
-            if (createdViewBuffer != null) {
-                assert (createdViewBuffer.getRefCount() >= 2);
-                BufferPool.free(createdViewBuffer);
-            }
-
-        } else {
-            externalRequestsInQueue.incrementAndGet();
-            this.enqueueOperation(stageOp, arguments, request, createdViewBuffer, callback);
-        }
+        this.enqueueOperation(stageOp, arguments, request, createdViewBuffer, callback);
     }
 
     public void prepareOperation(FileCredentials credentials, XLocations xloc, long objNo, long objVersion,
@@ -951,23 +936,11 @@ public class RWReplicationStage extends Stage implements FleaseMessageSenderInte
     @Override
     protected void processMethod(StageRequest method) {
         switch (method.getStageMethod()) {
-        case STAGEOP_REPLICATED_WRITE: {
-            externalRequestsInQueue.decrementAndGet();
-            processReplicatedWrite(method);
-            break;
-        }
-        case STAGEOP_TRUNCATE: {
-            externalRequestsInQueue.decrementAndGet();
-            processReplicatedTruncate(method);
-            break;
-        }
+        case STAGEOP_REPLICATED_WRITE: processReplicatedWrite(method); break;
+        case STAGEOP_TRUNCATE: processReplicatedTruncate(method); break;
         case STAGEOP_CLOSE: processFileClosed(method); break;
         case STAGEOP_PROCESS_FLEASE_MSG: processFleaseMessage(method); break;
-        case STAGEOP_PREPAREOP: {
-            externalRequestsInQueue.decrementAndGet();
-            processPrepareOp(method);
-            break;
-        }
+        case STAGEOP_PREPAREOP: processPrepareOp(method); break;
         case STAGEOP_INTERNAL_AUTHSTATE: processSetAuthoritativeState(method); break;
         case STAGEOP_LEASE_STATE_CHANGED: processLeaseStateChanged(method); break;
         case STAGEOP_INTERNAL_OBJFETCHED: processObjectFetched(method); break;
@@ -980,7 +953,6 @@ public class RWReplicationStage extends Stage implements FleaseMessageSenderInte
         case STAGEOP_SETVIEW: processSetView(method); break;
         case STAGEOP_INVALIDATEVIEW: processInvalidateReplica(method); break;
         case STAGEOP_INVALIDATED_RESET: processInvalidatedReplicaReset(method); break;
-        // TODO: externalRequestsInQueue.decrementAndGet(); ????
         case STAGEOP_GET_REPLICATED_FILE_STATE: processGetInvalidatedResetStatus(method); break; 
 
         default : throw new IllegalArgumentException("no such stageop");
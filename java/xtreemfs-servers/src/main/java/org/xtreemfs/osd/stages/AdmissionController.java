@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd.stages;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xtreemfs.osd.OSDRequest;
+import org.xtreemfs.pbrpc.generatedinterfaces.OSDServiceConstants;
+
+/**
+ * Controls the admission of external requests to a stage based on the time
+ * the requests spend in the stage queue, following CoDel. A burst of requests
+ * that is processed within the interval is admitted, regardless of the queue
+ * length. If the sojourn times stay above the target delay for a whole
+ * interval, the queue holds a standing backlog that only adds latency. The
+ * controller then enters the rejecting state, in which it rejects single
+ * requests at intervals that shrink with the square root of the number of
+ * rejections (interval / sqrt(count)), until a request leaves the queue below
+ * the target delay or the queue runs empty. As the clients back off, the
+ * arrival rate is thus reduced gradually until the backlog is gone.
+ * <p>
+ * The sojourn times are reported by the thread that processes the queue;
+ * admission may be checked by any thread. Requests that OSDs and the MRC send
+ * to keep replicas and files consistent are always admitted, see
+ * {@link #isExempt(OSDRequest)}.
+ */
+public class AdmissionController {
+
+    private final long       targetNanos;
+
+    private final long       intervalNanos;
+
+    /** the time at which the controller may enter the rejecting state, or 0 */
+    private long             firstAboveTime;
+
+    private volatile boolean rejecting;
+
+    /** the time at which the next request is rejected */
+    private long             rejectNext;
+
+    /** the number of rejections since entering the rejecting state */
+    private int              count;
+
+    /** the number of rejections when the rejecting state was last entered */
+    private int              lastCount;
+
+    private final AtomicLong numRejected;
+
+    /**
+     * @param targetDelayMs
+     *            the acceptable queueing delay
+     * @param intervalMs
+     *            the time for which the queueing delay has to exceed the
+     *            target before requests are rejected
+     */
+    public AdmissionController(long targetDelayMs, long intervalMs) {
+        this.targetNanos = targetDelayMs * 1000000;
+        this.intervalNanos = intervalMs * 1000000;
+        this.numRejected = new AtomicLong();
+    }
+
+    /**
+     * Checks whether a request is exempt from admission control. This applies
+     * to the requests of other OSDs for replication and to control requests,
+     * whose rejection would delay the recovery of replicas or make a file
+     * inaccessible rather than reduce the load.
+     */
+    public static boolean isExempt(OSDRequest request) {
+        if (request.getOperation() == null)
+            return false;
+
+        switch (request.getOperation().getProcedureId()) {
+        case OSDServiceConstants.PROC_ID_XTREEMFS_BROADCAST_GMAX:
+        case OSDServiceConstants.PROC_ID_XTREEMFS_FINALIZE_VOUCHERS:
+        case OSDServiceConstants.PROC_ID_XTREEMFS_INTERNAL_GET_GMAX:
+        case OSDServiceConstants.PROC_ID_XTREEMFS_INTERNAL_TRUNCATE:
+        case OSDServiceConstants.PROC_ID_XTREEMFS_INTERNAL_GET_FILE_SIZE:
+        case OSDServiceConstants.PROC_ID_XTREEMFS_INTERNAL_READ_LOCAL:
+        case OSDServiceConstants.PROC_ID_XTREEMFS_INTERNAL_GET_OBJECT_SET:
+        case OSDServiceConstants.PROC_ID_XTREEMFS_INTERNAL_GET_FILEID_LIST:
+        case OSDServiceConstants.PROC_ID_XTREEMFS_RWR_FETCH:
+        case OSDServiceConstants.PROC_ID_XTREEMFS_RWR_FLEASE_MSG:
+        case OSDServiceConstants.PROC_ID_XTREEMFS_RWR_NOTIFY:
+        case OSDServiceConstants.PROC_ID_XTREEMFS_RWR_SET_PRIMARY_EPOCH:
+        case OSDServiceConstants.PROC_ID_XTREEMFS_RWR_STATUS:
+        case OSDServiceConstants.PROC_ID_XTREEMFS_RWR_TRUNCATE:
+        case OSDServiceConstants.PROC_ID_XTREEMFS_RWR_UPDATE:
+        case OSDServiceConstants.PROC_ID_XTREEMFS_RWR_AUTH_STATE:
+        case OSDServiceConstants.PROC_ID_XTREEMFS_RWR_RESET_COMPLETE:
+        case OSDServiceConstants.PROC_ID_XTREEMFS_RWR_AUTH_STATE_INVALIDATED:
+        case OSDServiceConstants.PROC_ID_XTREEMFS_RWR_RESET_STATUS:
+        case OSDServiceConstants.PROC_ID_XTREEMFS_XLOC_SET_INVALIDATE:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether an external request is admitted to the stage.
+     *
+     * @param now
+     *            the current time, as returned by {@link System#nanoTime()}
+     */
+    public boolean admit(long now) {
+        if (!rejecting)
+            return true;
+
+        synchronized (this) {
+            if (!rejecting || now - rejectNext < 0)
+                return true;
+            count++;
+            // the first rejection after entering the rejecting state starts
+            // the schedule of the following ones
+            rejectNext = controlLaw(count == lastCount ? now : rejectNext, count);
+        }
+        numRejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Reports the sojourn time of a request that was taken from the queue.
+     *
+     * @param sojournNanos
+     *            the time the request spent in the queue
+     * @param now
+     *            the current time, as returned by {@link System#nanoTime()}
+     * @param queueEmpty
+     *            whether no further requests are queued
+     */
+    public synchronized void dequeued(long sojournNanos, long now, boolean queueEmpty) {
+
+        boolean aboveTarget = false;
+        if (sojournNanos < targetNanos || queueEmpty) {
+            firstAboveTime = 0;
+        } else if (firstAboveTime == 0) {
+            // 0 is reserved for "below target"
+            firstAboveTime = now + intervalNanos == 0 ? 1 : now + intervalNanos;
+        } else if (now - firstAboveTime >= 0) {
+            aboveTarget = true;
+        }
+
+        if (rejecting) {
+            if (!aboveTarget)
+                rejecting = false;
+        } else if (aboveTarget) {
+            // if the rejecting state was left only recently, the rejection
+            // rate that controlled the backlog is resumed
+            final int delta = count - lastCount;
+            count = delta > 1 && now - rejectNext < 16 * intervalNanos ? delta - 1 : 0;
+            lastCount = count + 1;
+            rejectNext = now;
+            rejecting = true;
+        }
+    }
+
+    private long controlLaw(long t, int count) {
+        return t + (long) (intervalNanos / Math.sqrt(count));
+    }
+
+    /**
+     * Checks whether the controller is in the rejecting state.
+     */
+    public boolean isOverloaded() {
+        return rejecting;
+    }
+
+    /**
+     * Returns the number of requests that have been rejected.
+     */
+    public long getNumRejected() {
+        return numRejected.get();
+    }
+}
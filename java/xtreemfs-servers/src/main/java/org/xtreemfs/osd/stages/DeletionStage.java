@@ -10,6 +10,7 @@ package org.xtreemfs.osd.stages;
 
 import java.io.IOException;
 import java.util.Map.Entry;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import org.xtreemfs.foundation.logging.Logging;
@@ -17,6 +18,7 @@ import org.xtreemfs.foundation.logging.Logging.Category;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader.ErrorResponse;
 import org.xtreemfs.osd.OSDRequest;
 import org.xtreemfs.osd.OSDRequestDispatcher;
+import org.xtreemfs.osd.stages.StorageStage.BackgroundTurnCallback;
 import org.xtreemfs.osd.storage.FileMetadata;
 import org.xtreemfs.osd.storage.MetadataCache;
 import org.xtreemfs.osd.storage.StorageLayout;
@@ -25,17 +27,32 @@ public class DeletionStage extends Stage {
     
     public static final int      STAGEOP_DELETE_OBJECTS = 0;
     
+    private static final long    RATE_INTERVAL_MS       = 10 * 1000;
+    
     private MetadataCache        cache;
     
     private StorageLayout        layout;
     
     private OSDRequestDispatcher master;
     
-    private DeleteThread         deletor;
+    private final DeleteThread[] deletors;
+    
+    private final RateLimiter    fileRateLimiter;
+    
+    private final RateLimiter    byteRateLimiter;
     
     private long                 numFilesDeleted;
     
-    public DeletionStage(OSDRequestDispatcher master, MetadataCache cache, StorageLayout layout, int maxRequestsQueueLength) {
+    private volatile long        numBytesDeleted;
+    
+    private long                 rateIntervalStart;
+    
+    private long                 rateIntervalFiles;
+    
+    private double               deletionRate;
+    
+    public DeletionStage(OSDRequestDispatcher master, MetadataCache cache, StorageLayout layout,
+            int numThreads, int maxFilesPerSec, long maxBytesPerSec, int maxRequestsQueueLength) {
         
         super("OSD DelSt", maxRequestsQueueLength);
         
@@ -43,18 +60,27 @@ public class DeletionStage extends Stage {
         this.cache = cache;
         this.layout = layout;
         
-        deletor = new DeleteThread(layout);
+        this.fileRateLimiter = new RateLimiter(maxFilesPerSec);
+        this.byteRateLimiter = new RateLimiter(maxBytesPerSec);
+        this.rateIntervalStart = System.currentTimeMillis();
+        
+        deletors = new DeleteThread[Math.max(numThreads, 1)];
+        for (int i = 0; i < deletors.length; i++)
+            deletors[i] = new DeleteThread(i);
     }
     
     public void start() {
         super.start();
-        deletor.start();
-        deletor.setPriority(MIN_PRIORITY);
+        for (DeleteThread deletor : deletors) {
+            deletor.start();
+            deletor.setPriority(MIN_PRIORITY);
+        }
     }
     
     public void shutdown() {
         super.shutdown();
-        deletor.shutdown();
+        for (DeleteThread deletor : deletors)
+            deletor.shutdown();
     }
     
     public void deleteObjects(String fileId, FileMetadata fi, boolean isCow, OSDRequest request,
@@ -70,6 +96,35 @@ public class DeletionStage extends Stage {
         return numFilesDeleted;
     }
     
+    /**
+     * @return the number of bytes freed by deleting files
+     */
+    public long getNumBytesDeleted() {
+        return numBytesDeleted;
+    }
+    
+    /**
+     * @return the number of files deleted per second, averaged over the last
+     *         complete interval of ten seconds
+     */
+    public synchronized double getDeletionRate() {
+        if (System.currentTimeMillis() - rateIntervalStart > 2 * RATE_INTERVAL_MS)
+            return 0;
+        return deletionRate;
+    }
+    
+    /**
+     * @return the number of requests in the stage queue plus the number of
+     *         files queued for deletion
+     */
+    @Override
+    public int getQueueLength() {
+        int len = super.getQueueLength();
+        for (DeleteThread deletor : deletors)
+            len += deletor.files.size();
+        return len;
+    }
+    
     public static interface DeleteObjectsCallback {
         
         public void deleteComplete(ErrorResponse error);
@@ -113,23 +168,91 @@ public class DeletionStage extends Stage {
         // remove the file info from the storage cache
         cache.removeFileInfo(fileId);
         
-        // remove all local objects
-        if (layout.fileExists(fileId))
-            deletor.enqueueFileForDeletion(fileId, cow, fi, deleteMetadata);
+        // remove all local objects; all deletions of a file are handled by the
+        // same thread in order to preserve their order
+        if (layout.fileExists(fileId)) {
+            final int shard = (fileId.hashCode() & Integer.MAX_VALUE) % deletors.length;
+            deletors[shard].enqueueFileForDeletion(fileId, cow, fi, deleteMetadata);
+        }
         cback.deleteComplete(null);
     }
     
-    private final static class DeleteThread extends Thread {
+    private synchronized void fileRemoved(long bytes) {
+        numBytesDeleted += bytes;
         
-        private transient boolean                   quit;
+        rateIntervalFiles++;
+        final long now = System.currentTimeMillis();
+        if (now - rateIntervalStart >= RATE_INTERVAL_MS) {
+            deletionRate = rateIntervalFiles * 1000.0 / (now - rateIntervalStart);
+            rateIntervalStart = now;
+            rateIntervalFiles = 0;
+        }
+    }
+    
+    /**
+     * Defers the deletion of a file behind the requests pending in its storage
+     * thread. The storage thread schedules deletions in the background traffic
+     * class with any I/O scheduler, so that deletions do not compete with
+     * regular I/O, but still progress with the share of the class while
+     * regular I/O continues.
+     */
+    private void awaitStorageTurn(String fileId) throws InterruptedException {
+        final CountDownLatch turn = new CountDownLatch(1);
+        master.getStorageStage().awaitBackgroundTurn(fileId, new BackgroundTurnCallback() {
+            @Override
+            public void turnGranted() {
+                turn.countDown();
+            }
+        });
+        turn.await();
+    }
+    
+    /**
+     * Limits the rate of an operation to a number of units per second. A rate
+     * of zero or less disables the limit.
+     */
+    private final static class RateLimiter {
+        
+        private final long rate;
         
-        private final StorageLayout                 layout;
+        /** the time at which the next unit is available */
+        private long       next;
+        
+        RateLimiter(long rate) {
+            this.rate = rate;
+            this.next = System.nanoTime();
+        }
+        
+        /**
+         * Blocks until the given number of units is available.
+         */
+        void acquire(long units) throws InterruptedException {
+            if (rate <= 0 || units <= 0)
+                return;
+            
+            final long wait;
+            synchronized (this) {
+                final long now = System.nanoTime();
+                if (next < now)
+                    next = now;
+                wait = next - now;
+                next += units * 1000000000L / rate;
+            }
+            
+            if (wait > 0)
+                Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+        }
+    }
+    
+    private final class DeleteThread extends Thread {
+        
+        private transient boolean                   quit;
         
         private final LinkedBlockingQueue<Object[]> files;
         
-        public DeleteThread(StorageLayout layout) {
+        public DeleteThread(int id) {
+            super("OSD DelThr " + id);
             quit = false;
-            this.layout = layout;
             files = new LinkedBlockingQueue<Object[]>();
         }
         
@@ -146,22 +269,28 @@ public class DeletionStage extends Stage {
         
         public void run() {
             try {
+                if (Logging.isDebug())
+                    Logging.logMessage(Logging.LEVEL_DEBUG, Category.lifecycle, this,
+                        "DeleteThread started");
+                
                 do {
-                    if (Logging.isDebug())
-                        Logging.logMessage(Logging.LEVEL_DEBUG, Category.lifecycle, this,
-                            "DeleteThread started");
-                    
                     final Object[] file = files.take();
                     final String fileId = (String) file[0];
                     final boolean cow = (Boolean) file[1];
                     final FileMetadata fi = (FileMetadata) file[2];
                     final boolean deleteMetadata = (Boolean) file[3];
                     
+                    fileRateLimiter.acquire(1);
+                    awaitStorageTurn(fileId);
+                    master.getStorageStage().invalidateObjectCache(fileId);
+                    
                     try {
                         if (Logging.isDebug())
                             Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
                                 "deleting objects for %s", fileId);
                         
+                        long deletedBytes = 0;
+                        
                         // if copy-on-write is enabled ...
                         if (cow) {
                             
@@ -177,7 +306,7 @@ public class DeletionStage extends Stage {
                             // if no previous versions exist, delete the file
                             // including all its metadata if requested
                             if (fi.getVersionTable().getVersionCount() == 0)
-                                layout.deleteFile(fileId, deleteMetadata);
+                                deletedBytes = layout.deleteFile(fileId, deleteMetadata);
                             
                             // if other versions exist, only delete those
                             // objects that make up the latest version of the
@@ -198,9 +327,13 @@ public class DeletionStage extends Stage {
 
                         // otherwise ...
                         else
-                            layout.deleteFile(fileId, deleteMetadata);
+                            deletedBytes = layout.deleteFile(fileId, deleteMetadata);
+                        
+                        fileRemoved(deletedBytes);
                         
-                        yield();
+                        // throttle subsequent deletions according to the
+                        // amount of data freed
+                        byteRateLimiter.acquire(deletedBytes);
                         
                     } catch (IOException ex) {
                         Logging.logError(Logging.LEVEL_ERROR, this, ex);
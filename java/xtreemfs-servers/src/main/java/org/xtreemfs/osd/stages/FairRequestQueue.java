@@ -0,0 +1,487 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd.stages;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.xtreemfs.osd.stages.Stage.StageRequest;
+
+/**
+ * A stage queue that schedules requests by weighted fair queuing. Each request
+ * belongs to one of the {@link TrafficClass}es and, within its class, to a
+ * flow, e.g. the volume or the client that issued it. The classes share the
+ * stage according to their weights, and so do the flows of a class. Thus, a
+ * volume with many pending requests, like a bulk scan, does not starve the
+ * requests of other volumes.
+ * <p>
+ * Requests are scheduled by start-time fair queuing with unit costs, first
+ * among the classes and then among the flows of the selected class. The
+ * requests of a flow are processed in arrival order. The requests of a file
+ * are never reordered: a request for a file with pending requests is appended
+ * to the flow that holds them.
+ * <p>
+ * If fair queuing is disabled, the foreground and replication requests are
+ * processed in arrival order. Background requests are still queued separately
+ * and share the stage with the other requests according to the class
+ * weights, so that background work yields to regular I/O with either
+ * scheduler. In both cases, the queueing delays are recorded per traffic
+ * class.
+ */
+public class FairRequestQueue extends AbstractQueue<StageRequest> implements BlockingQueue<StageRequest> {
+
+    public static enum TrafficClass {
+        /** requests of clients */
+        FOREGROUND,
+        /** requests of other OSDs and events that replicate data */
+        REPLICATION,
+        /** cleanup, deletion and read-ahead */
+        BACKGROUND
+    }
+
+    /**
+     * Determines how requests are scheduled.
+     */
+    public static interface RequestClassifier {
+
+        public TrafficClass getTrafficClass(StageRequest rq);
+
+        /**
+         * @return the flow of the request within its class
+         */
+        public String getFlow(StageRequest rq);
+
+        /**
+         * @return the file the request refers to, or <code>null</code>
+         */
+        public String getFileId(StageRequest rq);
+    }
+
+    private static final class Entry {
+
+        final StageRequest rq;
+
+        final TrafficClass trafficClass;
+
+        final String       fileId;
+
+        final long         enqueueNanos;
+
+        final double       startTag;
+
+        Entry(StageRequest rq, TrafficClass trafficClass, String fileId, long enqueueNanos, double startTag) {
+            this.rq = rq;
+            this.trafficClass = trafficClass;
+            this.fileId = fileId;
+            this.enqueueNanos = enqueueNanos;
+            this.startTag = startTag;
+        }
+    }
+
+    private static final class Flow {
+
+        final String            key;
+
+        final double            weight;
+
+        final ClassQueue        owner;
+
+        final ArrayDeque<Entry> entries = new ArrayDeque<Entry>();
+
+        double                  finishTag;
+
+        Flow(String key, double weight, ClassQueue owner) {
+            this.key = key;
+            this.weight = weight;
+            this.owner = owner;
+        }
+    }
+
+    private static final class ClassQueue {
+
+        final double             weight;
+
+        /** flows with pending requests */
+        final Map<String, Flow>  flows = new LinkedHashMap<String, Flow>();
+
+        /** start tags of the pending requests at the class level */
+        final ArrayDeque<Double> tags  = new ArrayDeque<Double>();
+
+        double                   finishTag;
+
+        /** start tag of the last request processed from the class */
+        double                   virtualTime;
+
+        ClassQueue(double weight) {
+            this.weight = weight;
+        }
+    }
+
+    private static final class PendingFile {
+
+        final Flow flow;
+
+        int        count;
+
+        PendingFile(Flow flow) {
+            this.flow = flow;
+        }
+    }
+
+    private final RequestClassifier        classifier;
+
+    private final boolean                  fair;
+
+    private final Map<String, Double>      flowWeights;
+
+    private final ClassQueue[]             classes;
+
+    private final Map<String, PendingFile> pendingFiles;
+
+    private final ReentrantLock            lock;
+
+    private final Condition                notEmpty;
+
+    /** start tag of the last request processed */
+    private double                         virtualTime;
+
+    private int                            size;
+
+    private final long[]                   numRequests;
+
+    private final long[]                   sumDelayNanos;
+
+    private final long[]                   maxDelayNanos;
+
+    /**
+     * Creates a queue that processes the foreground and replication requests
+     * in arrival order, and background requests with the same share.
+     */
+    public FairRequestQueue(RequestClassifier classifier) {
+        this(classifier, false, new HashMap<String, Double>(), new HashMap<String, Double>());
+    }
+
+    /**
+     * @param classifier
+     *            assigns the requests to classes and flows
+     * @param fair
+     *            whether requests are scheduled by weighted fair queuing;
+     *            otherwise, only background requests are
+     * @param classWeights
+     *            the weights of the classes by lower-case class name; the
+     *            default weight is 1
+     * @param flowWeights
+     *            the weights of the flows; the default weight is 1
+     */
+    public FairRequestQueue(RequestClassifier classifier, boolean fair, Map<String, Double> classWeights,
+        Map<String, Double> flowWeights) {
+
+        this.classifier = classifier;
+        this.fair = fair;
+        this.flowWeights = flowWeights;
+        this.pendingFiles = new HashMap<String, PendingFile>();
+        this.lock = new ReentrantLock();
+        this.notEmpty = lock.newCondition();
+
+        TrafficClass[] tcs = TrafficClass.values();
+        this.classes = new ClassQueue[tcs.length];
+        for (TrafficClass tc : tcs) {
+            Double weight = classWeights.get(tc.name().toLowerCase());
+            classes[tc.ordinal()] = new ClassQueue(weight == null ? 1 : weight);
+        }
+
+        this.numRequests = new long[tcs.length];
+        this.sumDelayNanos = new long[tcs.length];
+        this.maxDelayNanos = new long[tcs.length];
+    }
+
+    @Override
+    public boolean offer(StageRequest rq) {
+
+        final TrafficClass tc = classifier.getTrafficClass(rq);
+        final String fileId = classifier.getFileId(rq);
+
+        lock.lock();
+        try {
+            PendingFile pf = fileId == null ? null : pendingFiles.get(fileId);
+            Flow flow;
+            if (pf != null) {
+                flow = pf.flow;
+            } else {
+                if (fair)
+                    flow = getFlow(classes[tc.ordinal()], classifier.getFlow(rq));
+                else if (tc == TrafficClass.BACKGROUND)
+                    flow = getFlow(classes[TrafficClass.BACKGROUND.ordinal()], "");
+                else
+                    flow = getFlow(classes[TrafficClass.FOREGROUND.ordinal()], "");
+                if (fileId != null) {
+                    pf = new PendingFile(flow);
+                    pendingFiles.put(fileId, pf);
+                }
+            }
+            if (pf != null)
+                pf.count++;
+
+            final ClassQueue cq = flow.owner;
+            final double start = Math.max(cq.virtualTime, flow.finishTag);
+            flow.finishTag = start + 1 / flow.weight;
+            flow.entries.add(new Entry(rq, tc, fileId, System.nanoTime(), start));
+
+            final double classStart = Math.max(virtualTime, cq.finishTag);
+            cq.finishTag = classStart + 1 / cq.weight;
+            cq.tags.add(classStart);
+
+            size++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(StageRequest rq) {
+        offer(rq);
+    }
+
+    @Override
+    public boolean offer(StageRequest rq, long timeout, TimeUnit unit) {
+        return offer(rq);
+    }
+
+    @Override
+    public StageRequest poll() {
+        lock.lock();
+        try {
+            return size == 0 ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public StageRequest take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == 0)
+                notEmpty.await();
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public StageRequest poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (nanos <= 0)
+                    return null;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public StageRequest peek() {
+        lock.lock();
+        try {
+            if (size == 0)
+                return null;
+            return selectFlow(selectClass()).entries.peek().rq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int drainTo(Collection<? super StageRequest> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super StageRequest> c, int maxElements) {
+        lock.lock();
+        try {
+            int n = 0;
+            while (size > 0 && n < maxElements) {
+                c.add(dequeue());
+                n++;
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the pending requests, in no
+     * particular order.
+     */
+    @Override
+    public Iterator<StageRequest> iterator() {
+        lock.lock();
+        try {
+            List<StageRequest> snapshot = new ArrayList<StageRequest>(size);
+            for (ClassQueue cq : classes)
+                for (Flow flow : cq.flows.values())
+                    for (Entry e : flow.entries)
+                        snapshot.add(e.rq);
+            return snapshot.iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of requests of a class that have been dequeued.
+     */
+    public long getNumRequests(TrafficClass tc) {
+        lock.lock();
+        try {
+            return numRequests[tc.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the sum of the queueing delays of the dequeued requests of a
+     * class, in nanoseconds.
+     */
+    public long getTotalQueueingDelay(TrafficClass tc) {
+        lock.lock();
+        try {
+            return sumDelayNanos[tc.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the maximum queueing delay of a request of a class, in
+     * nanoseconds.
+     */
+    public long getMaxQueueingDelay(TrafficClass tc) {
+        lock.lock();
+        try {
+            return maxDelayNanos[tc.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Flow getFlow(ClassQueue cq, String key) {
+        Flow flow = cq.flows.get(key);
+        if (flow == null) {
+            Double weight = flowWeights.get(key);
+            flow = new Flow(key, weight == null ? 1 : weight, cq);
+            cq.flows.put(key, flow);
+        }
+        return flow;
+    }
+
+    private ClassQueue selectClass() {
+        ClassQueue best = null;
+        for (ClassQueue cq : classes)
+            if (!cq.tags.isEmpty() && (best == null || cq.tags.peek() < best.tags.peek()))
+                best = cq;
+        return best;
+    }
+
+    private static Flow selectFlow(ClassQueue cq) {
+        Flow best = null;
+        for (Flow flow : cq.flows.values())
+            if (best == null || flow.entries.peek().startTag < best.entries.peek().startTag)
+                best = flow;
+        return best;
+    }
+
+    private StageRequest dequeue() {
+
+        final ClassQueue cq = selectClass();
+        virtualTime = cq.tags.poll();
+
+        final Flow flow = selectFlow(cq);
+        final Entry e = flow.entries.poll();
+        cq.virtualTime = e.startTag;
+        if (flow.entries.isEmpty())
+            cq.flows.remove(flow.key);
+
+        if (e.fileId != null) {
+            PendingFile pf = pendingFiles.get(e.fileId);
+            if (--pf.count == 0)
+                pendingFiles.remove(e.fileId);
+        }
+
+        final int tc = e.trafficClass.ordinal();
+        final long delay = System.nanoTime() - e.enqueueNanos;
+        numRequests[tc]++;
+        sumDelayNanos[tc] += delay;
+        if (delay > maxDelayNanos[tc])
+            maxDelayNanos[tc] = delay;
+
+        size--;
+        return e.rq;
+    }
+
+    /**
+     * Parses a comma-separated list of weights of the form
+     * <code>key=weight</code>.
+     */
+    public static Map<String, Double> parseWeights(String spec) {
+        Map<String, Double> weights = new HashMap<String, Double>();
+        for (String entry : spec.split(",")) {
+            entry = entry.trim();
+            if (entry.length() == 0)
+                continue;
+            int sep = entry.lastIndexOf('=');
+            double weight = -1;
+            try {
+                weight = sep < 0 ? -1 : Double.parseDouble(entry.substring(sep + 1).trim());
+            } catch (NumberFormatException ex) {
+                // handled below
+            }
+            if (weight <= 0)
+                throw new IllegalArgumentException("invalid weight: " + entry);
+            weights.put(entry.substring(0, sep).trim(), weight);
+        }
+        return weights;
+    }
+}
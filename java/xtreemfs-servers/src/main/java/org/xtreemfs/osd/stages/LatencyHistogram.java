@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd.stages;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies with exponentially growing buckets. Bucket
+ * <code>i &gt; 0</code> holds the latencies of at least
+ * <code>2^(i-1)</code> and less than <code>2^i</code> microseconds; bucket 0
+ * holds the latencies below one microsecond. Values may be added concurrently
+ * without locking.
+ */
+public final class LatencyHistogram {
+
+    public static final int       NUM_BUCKETS = 32;
+
+    private final AtomicLongArray buckets;
+
+    private final AtomicLong      count;
+
+    private final AtomicLong      sumMicros;
+
+    private final AtomicLong      maxMicros;
+
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(NUM_BUCKETS);
+        this.count = new AtomicLong();
+        this.sumMicros = new AtomicLong();
+        this.maxMicros = new AtomicLong();
+    }
+
+    /**
+     * Adds a latency.
+     *
+     * @param nanos
+     *            the latency in nanoseconds
+     */
+    public void add(long nanos) {
+        final long micros = Math.max(0, nanos / 1000);
+        buckets.incrementAndGet(getBucket(micros));
+        count.incrementAndGet();
+        sumMicros.addAndGet(micros);
+
+        long max = maxMicros.get();
+        while (micros > max && !maxMicros.compareAndSet(max, micros))
+            max = maxMicros.get();
+    }
+
+    /**
+     * Adds all latencies of another histogram.
+     */
+    public void addAll(LatencyHistogram other) {
+        for (int i = 0; i < NUM_BUCKETS; i++)
+            buckets.addAndGet(i, other.buckets.get(i));
+        count.addAndGet(other.count.get());
+        sumMicros.addAndGet(other.sumMicros.get());
+
+        final long otherMax = other.maxMicros.get();
+        long max = maxMicros.get();
+        while (otherMax > max && !maxMicros.compareAndSet(max, otherMax))
+            max = maxMicros.get();
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMeanMicros() {
+        final long n = count.get();
+        return n == 0 ? 0 : sumMicros.get() / n;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    public long getBucketCount(int bucket) {
+        return buckets.get(bucket);
+    }
+
+    /**
+     * Returns an upper bound of the given percentile, i.e. the upper bound of
+     * the bucket that contains it, but at most the maximum latency.
+     *
+     * @param percentile
+     *            the percentile, between 0 and 100
+     * @return the latency in microseconds, or 0 if the histogram is empty
+     */
+    public long getPercentileMicros(double percentile) {
+        final long n = count.get();
+        if (n == 0)
+            return 0;
+
+        final long rank = (long) Math.ceil(n * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank)
+                return Math.min(getUpperBoundMicros(i), maxMicros.get());
+        }
+        return maxMicros.get();
+    }
+
+    /**
+     * Returns the exclusive upper bound of a bucket in microseconds; the last
+     * bucket has no upper bound.
+     */
+    public static long getUpperBoundMicros(int bucket) {
+        return bucket == NUM_BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    private static int getBucket(long micros) {
+        return Math.min(NUM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+}
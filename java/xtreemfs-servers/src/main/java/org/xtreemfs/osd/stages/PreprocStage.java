@@ -29,7 +29,7 @@ import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.POSIXErrno;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader.ErrorResponse;
 import org.xtreemfs.foundation.pbrpc.utils.ErrorUtils;
-import org.xtreemfs.foundation.pbrpc.utils.ReusableBufferInputStream;
+import org.xtreemfs.foundation.pbrpc.utils.MessageUtils;
 import org.xtreemfs.foundation.util.OutputUtils;
 import org.xtreemfs.osd.AdvisoryLock;
 import org.xtreemfs.osd.OSDRequest;
@@ -42,6 +42,7 @@ import org.xtreemfs.osd.operations.OSDOperation;
 import org.xtreemfs.osd.quota.OSDVoucherManager;
 import org.xtreemfs.osd.quota.VoucherErrorException;
 import org.xtreemfs.osd.rwre.ReplicaUpdatePolicy;
+import org.xtreemfs.osd.stages.StageLatencyStats.Phase;
 import org.xtreemfs.osd.storage.CowPolicy;
 import org.xtreemfs.osd.storage.CowPolicy.cowMode;
 import org.xtreemfs.osd.storage.MetadataCache;
@@ -126,6 +127,7 @@ public class PreprocStage extends Stage {
         this.metadataCache = metadataCache;
         this.layout = layout;
         this.ignoreCaps = master.getConfig().isIgnoreCaps();
+        setTimedPhases(Phase.PREPROC_QUEUE, Phase.PREPROC);
     }
     
     public void prepareRequest(OSDRequest request, ParseCompleteCallback listener) {
@@ -137,6 +139,14 @@ public class PreprocStage extends Stage {
         public void parseComplete(OSDRequest result, ErrorResponse error);
     }
     
+    @Override
+    protected OSDRequest getTimedRequest(StageRequest rq) {
+        // requests to be parsed are enqueued as internal requests
+        if (rq.getStageMethod() == STAGEOP_PARSE_AUTH_OFTOPEN)
+            return (OSDRequest) rq.getArgs()[0];
+        return rq.getRequest();
+    }
+    
     private void doPrepareRequest(StageRequest rq) {
         final OSDRequest request = (OSDRequest) rq.getArgs()[0];
         final ParseCompleteCallback callback = (ParseCompleteCallback) rq.getCallback();
@@ -428,7 +438,7 @@ public class PreprocStage extends Stage {
                     continue;
                 }
                 
-                processMethod(op);
+                processQueuedRequest(op);
                 
             } catch (InterruptedException ex) {
                 break;
@@ -582,7 +592,7 @@ public class PreprocStage extends Stage {
                 Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this, "received request with empty message");
             } else {
                 if (rq.getRPCRequest().getMessage() != null) {
-                    rq.setRequestArgs(rqPrototype.newBuilderForType().mergeFrom(new ReusableBufferInputStream(rq.getRPCRequest().getMessage())).build());
+                    rq.setRequestArgs(MessageUtils.parseFrom(rqPrototype, rq.getRPCRequest().getMessage()));
                     if (Logging.isDebug()) {
                         Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this, "received request of type %s (request %s)",
                             rq.getRequestArgs().getClass().getName(), rq.getRPCRequest().getHeader().getCallId());
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd.stages;
+
+import org.xtreemfs.osd.stages.StageLatencyStats.Phase;
+
+/**
+ * The timings of a sampled request. The request is in exactly one
+ * {@link Phase} at a time; each transition adds the time since the previous
+ * transition to the phase that is left. Transitions may be triggered by the
+ * different stages the request is handed to.
+ */
+public final class RequestTimings {
+
+    private final StageLatencyStats stats;
+
+    private final long              startNanos;
+
+    private final long[]            phaseNanos;
+
+    /** bit mask of the phases the request passed */
+    private int                     visited;
+
+    private Phase                   current;
+
+    private long                    lastNanos;
+
+    private boolean                 finished;
+
+    RequestTimings(StageLatencyStats stats, long startNanos) {
+        this.stats = stats;
+        this.startNanos = startNanos;
+        this.phaseNanos = new long[Phase.values().length];
+        this.current = Phase.OTHER;
+        this.lastNanos = startNanos;
+        this.visited = (1 << Phase.OTHER.ordinal()) | (1 << Phase.TOTAL.ordinal());
+    }
+
+    /**
+     * Moves the request to a phase.
+     */
+    public synchronized void enter(Phase phase) {
+        if (finished)
+            return;
+        final long now = System.nanoTime();
+        phaseNanos[current.ordinal()] += now - lastNanos;
+        current = phase;
+        lastNanos = now;
+        visited |= 1 << phase.ordinal();
+    }
+
+    /**
+     * Moves the request from a phase to {@link Phase#OTHER}, unless it has
+     * already been moved to another phase.
+     */
+    public synchronized void leave(Phase phase) {
+        if (current == phase)
+            enter(Phase.OTHER);
+    }
+
+    /**
+     * Completes the timings and records them.
+     *
+     * @param operation
+     *            the name of the operation
+     */
+    public synchronized void finish(String operation) {
+        if (finished)
+            return;
+        final long now = System.nanoTime();
+        phaseNanos[current.ordinal()] += now - lastNanos;
+        phaseNanos[Phase.TOTAL.ordinal()] = now - startNanos;
+        finished = true;
+        stats.record(operation, phaseNanos, visited);
+    }
+}
@@ -18,9 +18,12 @@ import org.xtreemfs.foundation.buffer.BufferPool;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.ErrorType;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.POSIXErrno;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader.ErrorResponse;
 import org.xtreemfs.foundation.util.OutputUtils;
 import org.xtreemfs.osd.OSDRequest;
+import org.xtreemfs.osd.stages.StageLatencyStats.Phase;
 
 public abstract class Stage extends LifeCycleThread {
     
@@ -30,6 +33,18 @@ public abstract class Stage extends LifeCycleThread {
     protected BlockingQueue<StageRequest> q;
     
     private final int queueCapacity;
+    
+    /**
+     * decides on the admission of external requests, or <tt>null</tt> if
+     * requests are only limited by the queue capacity
+     */
+    private volatile AdmissionController admission;
+
+    /**
+     * the phases in which sampled requests are timed while they are queued
+     * and processed by the stage, or <tt>null</tt> if they are not timed
+     */
+    private Phase                         queuePhase, processingPhase;
 
     /**
      * set to true if stage should shut down
@@ -41,9 +56,17 @@ public abstract class Stage extends LifeCycleThread {
     public AtomicLong                     _sumRqTime;
     
     public Stage(String stageName, int queueCapacity) {
+        this(stageName, queueCapacity, new LinkedBlockingQueue<StageRequest>());
+    }
+    
+    /**
+     * Creates a stage whose requests are processed in the order defined by the
+     * given queue.
+     */
+    public Stage(String stageName, int queueCapacity, BlockingQueue<StageRequest> queue) {
         
         super(stageName);
-        q = new LinkedBlockingQueue<StageRequest>();
+        q = queue;
         this.queueCapacity = queueCapacity;
         this.quit = false;
         
@@ -80,42 +103,165 @@ public abstract class Stage extends LifeCycleThread {
      * @param createdViewBuffer
      *            an optional additional view buffer to the data, which will be
      *            freed if the request needs to be dropped due to overload
+     * @return <tt>false</tt>, if the request was not enqueued
      */
-    protected void enqueueOperation(int stageOp, Object[] args, OSDRequest request, ReusableBuffer createdViewBuffer,
-            Object callback) {
-        // rq.setEnqueueNanos(System.nanoTime());
+    protected boolean enqueueOperation(int stageOp, Object[] args, OSDRequest request,
+            ReusableBuffer createdViewBuffer, Object callback) {
+        
+        final StageRequest rq = new StageRequest(stageOp, args, request, callback);
+        rq.setEnqueueNanos(System.nanoTime());
+        requestEnqueued(rq);
         
         if (request == null) {
             try {
-                q.put(new StageRequest(stageOp, args, request, callback));
+                q.put(rq);
             } catch (InterruptedException e) {
                 Logging.logMessage(Logging.LEVEL_DEBUG, Category.stage, this,
                         "Failed to queue internal request due to InterruptedException:");
                 Logging.logError(Logging.LEVEL_DEBUG, this, e);
+                return false;
             }
         } else {
-            if (q.size() < queueCapacity) {
+            final AdmissionController ac = admission;
+            if (q.size() < queueCapacity
+                && (ac == null || AdmissionController.isExempt(request) || ac.admit(rq.getEnqueueNanos()))) {
                 try {
-                    q.put(new StageRequest(stageOp, args, request, callback));
+                    q.put(rq);
                 } catch (InterruptedException e) {
                     Logging.logMessage(Logging.LEVEL_DEBUG, Category.stage, this,
                             "Failed to queue external request due to InterruptedException:");
                     Logging.logError(Logging.LEVEL_DEBUG, this, e);
+                    return false;
                 }
             } else {
-                // Make sure that the data buffer is returned to the pool if
-                // necessary, as some operations create view buffers on the
-                // data. Otherwise, a 'finalized but not freed before' warning
-                // may occur.
-                if (createdViewBuffer != null) {
-                    assert (createdViewBuffer.getRefCount() >= 2);
-                    BufferPool.free(createdViewBuffer);
-                }
-                Logging.logMessage(Logging.LEVEL_WARN, this, "stage is overloaded, request %d for %s dropped",
-                        request.getRequestId(), request.getFileId());
-                request.sendInternalServerError(new IllegalStateException("server overloaded, request dropped"));
+                rejectRequest(request, createdViewBuffer, ac != null);
+                return false;
             }
         }
+        return true;
+    }
+    
+    /**
+     * Rejects an external request because the stage is overloaded. With
+     * admission control, the client receives a busy error, upon which it
+     * retries the request after a backoff. Otherwise, the request fails with
+     * an internal server error, as older clients do not know the busy error.
+     * 
+     * @param request
+     *            the request
+     * @param createdViewBuffer
+     *            an optional additional view buffer to the data, which is freed
+     * @param busy
+     *            whether a busy error is sent
+     */
+    protected void rejectRequest(OSDRequest request, ReusableBuffer createdViewBuffer, boolean busy) {
+        // Make sure that the data buffer is returned to the pool if
+        // necessary, as some operations create view buffers on the
+        // data. Otherwise, a 'finalized but not freed before' warning
+        // may occur.
+        if (createdViewBuffer != null) {
+            assert (createdViewBuffer.getRefCount() >= 2);
+            BufferPool.free(createdViewBuffer);
+        }
+        if (busy) {
+            if (Logging.isDebug())
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.stage, this,
+                        "stage is overloaded, request %d for %s rejected", request.getRequestId(),
+                        request.getFileId());
+            request.sendError(ErrorType.SERVER_BUSY, POSIXErrno.POSIX_ERROR_EAGAIN, "server busy, request rejected");
+        } else {
+            Logging.logMessage(Logging.LEVEL_WARN, this, "stage is overloaded, request %d for %s dropped",
+                    request.getRequestId(), request.getFileId());
+            request.sendInternalServerError(new IllegalStateException("server overloaded, request dropped"));
+        }
+    }
+    
+    /**
+     * Enables the admission control of external requests based on their
+     * queueing delay, see {@link AdmissionController}.
+     * 
+     * @param targetDelayMs
+     *            the acceptable queueing delay
+     * @param intervalMs
+     *            the time for which the queueing delay has to exceed the
+     *            target before requests are rejected
+     */
+    public void enableAdmissionControl(long targetDelayMs, long intervalMs) {
+        admission = new AdmissionController(targetDelayMs, intervalMs);
+    }
+    
+    /**
+     * Returns the number of external requests rejected by the admission
+     * control.
+     */
+    public long getNumRejectedRequests() {
+        final AdmissionController ac = admission;
+        return ac == null ? 0 : ac.getNumRejected();
+    }
+    
+    /**
+     * Sets the phases in which sampled requests are timed while they are
+     * queued and processed by the stage, see {@link StageLatencyStats}.
+     */
+    protected void setTimedPhases(Phase queuePhase, Phase processingPhase) {
+        this.queuePhase = queuePhase;
+        this.processingPhase = processingPhase;
+    }
+    
+    /**
+     * Returns the client request on whose behalf a stage request is
+     * processed, or <tt>null</tt> for internal requests.
+     */
+    protected OSDRequest getTimedRequest(StageRequest rq) {
+        return rq.getRequest();
+    }
+    
+    /**
+     * Must be called for each request put into the queue.
+     */
+    protected void requestEnqueued(StageRequest rq) {
+        final RequestTimings timings = getTimings(rq);
+        if (timings != null)
+            timings.enter(queuePhase);
+    }
+    
+    private RequestTimings getTimings(StageRequest rq) {
+        if (queuePhase == null)
+            return null;
+        final OSDRequest request = getTimedRequest(rq);
+        return request == null ? null : request.getTimings();
+    }
+    
+    /**
+     * Processes a request taken from the queue.
+     */
+    protected void processQueuedRequest(StageRequest rq) {
+        requestDequeued(rq);
+        
+        final RequestTimings timings = getTimings(rq);
+        if (timings == null) {
+            processMethod(rq);
+            return;
+        }
+        
+        timings.enter(processingPhase);
+        try {
+            processMethod(rq);
+        } finally {
+            timings.leave(processingPhase);
+        }
+    }
+    
+    /**
+     * Must be called for each request taken from the queue, before it is
+     * processed.
+     */
+    protected void requestDequeued(StageRequest rq) {
+        final AdmissionController ac = admission;
+        if (ac != null && rq.getEnqueueNanos() != 0) {
+            final long now = System.nanoTime();
+            ac.dequeued(now - rq.getEnqueueNanos(), now, q.isEmpty());
+        }
     }
     
     /**
@@ -144,7 +290,7 @@ public abstract class Stage extends LifeCycleThread {
             try {
                 final StageRequest op = q.take();
                 
-                processMethod(op);
+                processQueuedRequest(op);
                 
             } catch (InterruptedException ex) {
                 break;
@@ -189,6 +335,8 @@ public abstract class Stage extends LifeCycleThread {
         
         private final OSDRequest request;
         
+        private long             enqueueNanos;
+        
         public StageRequest(int stageMethod, Object[] args, OSDRequest request, Object callback) {
             this.args = args;
             this.stageMethod = stageMethod;
@@ -212,6 +360,18 @@ public abstract class Stage extends LifeCycleThread {
             return request;
         }
         
+        /**
+         * Returns the time at which the request was enqueued, as returned by
+         * {@link System#nanoTime()}, or 0 if unknown.
+         */
+        public long getEnqueueNanos() {
+            return enqueueNanos;
+        }
+        
+        public void setEnqueueNanos(long enqueueNanos) {
+            this.enqueueNanos = enqueueNanos;
+        }
+        
         public void sendInternalServerError(Throwable cause) {
             if (request != null) {
                 request.sendInternalServerError(cause);
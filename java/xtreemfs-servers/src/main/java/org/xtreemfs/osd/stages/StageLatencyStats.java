@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd.stages;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the latencies of client requests, broken down by operation and by
+ * the stages a request passes on its way through the OSD. Only every n-th
+ * request is timed, see {@link #sample()}; the timings of a sampled request
+ * are recorded when its response is sent. Redirects and requests that cannot
+ * be parsed are not recorded.
+ */
+public class StageLatencyStats {
+
+    /**
+     * The phases of a request. Each stage has a queue phase, in which the
+     * request waits to be processed, and a processing phase.
+     */
+    public static enum Phase {
+        PREPROC_QUEUE("preproc queue"),
+        PREPROC("preproc"),
+        RWR_QUEUE("rw replication queue"),
+        RWR("rw replication"),
+        STORAGE_QUEUE("storage queue"),
+        STORAGE("storage"),
+        /**
+         * time outside of the stage threads, e.g. spent in callbacks or
+         * waiting for other OSDs
+         */
+        OTHER("other"),
+        /** the time from the receipt of a request until its response */
+        TOTAL("total");
+
+        private final String displayName;
+
+        private Phase(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    private final int                                           sampleRate;
+
+    private final AtomicLong                                    numRequests;
+
+    private final ConcurrentHashMap<String, LatencyHistogram[]> histograms;
+
+    /**
+     * @param sampleRate
+     *            every <code>sampleRate</code>-th request is timed; 0
+     *            disables the timing
+     */
+    public StageLatencyStats(int sampleRate) {
+        this.sampleRate = sampleRate;
+        this.numRequests = new AtomicLong();
+        this.histograms = new ConcurrentHashMap<String, LatencyHistogram[]>();
+    }
+
+    /**
+     * Decides whether a newly received request is timed.
+     *
+     * @return the timings to attach to the request, or <code>null</code> if
+     *         the request is not sampled
+     */
+    public RequestTimings sample() {
+        if (sampleRate <= 0 || numRequests.getAndIncrement() % sampleRate != 0)
+            return null;
+        return new RequestTimings(this, System.nanoTime());
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Records the timings of a completed request.
+     *
+     * @param operation
+     *            the name of the operation
+     * @param phaseNanos
+     *            the time spent in each phase
+     * @param visited
+     *            a bit mask of the phases the request passed
+     */
+    void record(String operation, long[] phaseNanos, int visited) {
+        LatencyHistogram[] hists = histograms.get(operation);
+        if (hists == null) {
+            hists = new LatencyHistogram[Phase.values().length];
+            for (int i = 0; i < hists.length; i++)
+                hists[i] = new LatencyHistogram();
+            LatencyHistogram[] existing = histograms.putIfAbsent(operation, hists);
+            if (existing != null)
+                hists = existing;
+        }
+
+        for (int i = 0; i < hists.length; i++)
+            if ((visited & (1 << i)) != 0)
+                hists[i].add(phaseNanos[i]);
+    }
+
+    /**
+     * Returns the histograms of all operations, indexed by the ordinal of
+     * the {@link Phase}.
+     */
+    public SortedMap<String, LatencyHistogram[]> getHistograms() {
+        return new TreeMap<String, LatencyHistogram[]>(histograms);
+    }
+
+    /**
+     * Returns the latencies of a phase over all operations.
+     */
+    public LatencyHistogram getAggregate(Phase phase) {
+        LatencyHistogram aggregate = new LatencyHistogram();
+        for (Map.Entry<String, LatencyHistogram[]> e : histograms.entrySet())
+            aggregate.addAll(e.getValue()[phase.ordinal()]);
+        return aggregate;
+    }
+
+    /**
+     * Discards all recorded latencies.
+     */
+    public void reset() {
+        histograms.clear();
+    }
+}
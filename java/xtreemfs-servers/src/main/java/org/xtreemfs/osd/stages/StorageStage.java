@@ -10,6 +10,9 @@ package org.xtreemfs.osd.stages;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -19,12 +22,16 @@ import org.xtreemfs.common.xloc.XLocations;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader.ErrorResponse;
 import org.xtreemfs.osd.OSDRequest;
+import org.xtreemfs.osd.OSDConfig;
 import org.xtreemfs.osd.OSDRequestDispatcher;
 import org.xtreemfs.osd.replication.ObjectSet;
+import org.xtreemfs.osd.stages.FairRequestQueue.TrafficClass;
 import org.xtreemfs.osd.storage.CowPolicy;
 import org.xtreemfs.osd.storage.FileMetadata;
 import org.xtreemfs.osd.storage.MetadataCache;
+import org.xtreemfs.osd.storage.ObjectCache;
 import org.xtreemfs.osd.storage.ObjectInformation;
+import org.xtreemfs.osd.storage.ParallelReadTracker;
 import org.xtreemfs.osd.storage.StorageLayout;
 import org.xtreemfs.osd.storage.StorageThread;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.OSDFinalizeVouchersResponse;
@@ -34,9 +41,61 @@ import org.xtreemfs.pbrpc.generatedinterfaces.OSD.ReplicaStatus;
 
 public class StorageStage extends Stage {
     
+    /**
+     * Number of consecutive reads of subsequent local objects after which a
+     * read stream is considered sequential.
+     */
+    private static final int      SEQUENTIAL_READS_BEFORE_PREFETCH = 2;
+    
+    /**
+     * Maximum number of files for which read streams are tracked.
+     */
+    private static final int      MAX_READ_STREAMS                 = 1024;
+    
     private final StorageThread[] storageThreads;
+
+    /** the request queues of the storage threads */
+    private final FairRequestQueue[] queues;
+    
     private final StorageLayout layout;
     
+    /** number of storage threads per device of the storage layout */
+    private final int             threadsPerDevice;
+    
+    private final MetadataCache   metadataCache;
+    
+    /** if reads of a file may be processed by all threads of its device */
+    private final boolean         parallelReads;
+    
+    /**
+     * tracks the operations of each file if reads may be processed in
+     * parallel or asynchronously, <tt>null</tt> otherwise
+     */
+    private final ParallelReadTracker readTracker;
+    
+    /** the shared object cache, or <tt>null</tt> if it is disabled */
+    private final ObjectCache     objectCache;
+    
+    /** number of local objects read ahead of a sequential read stream */
+    private final int             prefetchDepth;
+    
+    private final Map<String, ReadStream> readStreams;
+    
+    /**
+     * The read position of a file on this OSD. Striped readers access the
+     * objects of an OSD with a stride of the stripe width, which is sequential
+     * in terms of local object numbers.
+     */
+    private static final class ReadStream {
+        
+        long lastLocalObjNo   = -1;
+        
+        int  sequentialReads;
+        
+        /** the largest object number that was prefetched */
+        long prefetchedUpTo   = -1;
+    }
+    
     /** Creates a new instance of MultithreadedStorageStage */
     public StorageStage(OSDRequestDispatcher master, MetadataCache cache, StorageLayout layout,
         int numOfThreads, int maxRequestsQueueLength) throws IOException {
@@ -44,15 +103,47 @@ public class StorageStage extends Stage {
         super("OSD Storage Stage", maxRequestsQueueLength);
 
         this.layout = layout;
+        this.metadataCache = cache;
+        this.parallelReads = master.getConfig().isParallelReads();
+        this.readTracker = parallelReads || master.getConfig().getAsyncIODepth() > 0 ? new ParallelReadTracker()
+            : null;
+        
+        long objectCacheSize = master.getConfig().getObjectCacheSize();
+        this.objectCache = objectCacheSize > 0 ? new ObjectCache(objectCacheSize) : null;
+        this.prefetchDepth = master.getConfig().getObjectCachePrefetchDepth();
+        this.readStreams = new LinkedHashMap<String, ReadStream>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ReadStream> eldest) {
+                return size() > MAX_READ_STREAMS;
+            }
+        };
 
         int numberOfThreads = 5;
         if (numOfThreads > 0)
             numberOfThreads = numOfThreads;
         
+        // each device is served by its own group of threads, so that a slow
+        // device does not delay the requests for other devices
+        this.threadsPerDevice = numberOfThreads;
+        numberOfThreads *= layout.getNumberOfDevices();
+        
+        final OSDConfig config = master.getConfig();
+        final String scheduler = config.getIOScheduler();
+        if (!scheduler.equals("fifo") && !scheduler.equals("volume") && !scheduler.equals("client"))
+            throw new IllegalArgumentException("invalid I/O scheduler: " + scheduler);
+        final Map<String, Double> classWeights = FairRequestQueue.parseWeights(config.getIOSchedulerClassWeights());
+        final Map<String, Double> flowWeights = FairRequestQueue.parseWeights(config.getIOSchedulerWeights());
+        
         storageThreads = new StorageThread[numberOfThreads];
+        queues = new FairRequestQueue[numberOfThreads];
         for (int i = 0; i < numberOfThreads; i++) {
+            queues[i] = new FairRequestQueue(new StorageThread.StorageRequestClassifier(scheduler.equals("client")),
+                !scheduler.equals("fifo"), classWeights, flowWeights);
             // Each storage thread gets the max. queue length as it is possible that one thread gets the whole load
-            storageThreads[i] = new StorageThread(i, master, cache, layout, maxRequestsQueueLength);
+            storageThreads[i] = new StorageThread(i, master, cache, layout, objectCache, readTracker,
+                maxRequestsQueueLength, queues[i]);
             storageThreads[i].setLifeCycleListener(master);
         }
     }
@@ -60,12 +151,89 @@ public class StorageStage extends Stage {
     public StorageLayout getStorageLayout() {
         return layout;
     }
+    
+    /**
+     * Returns the object cache, or <tt>null</tt> if it is disabled.
+     */
+    public ObjectCache getObjectCache() {
+        return objectCache;
+    }
+    
+    /**
+     * Removes all cached objects of a file, e.g. before the file is deleted.
+     */
+    public void invalidateObjectCache(String fileId) {
+        if (objectCache == null)
+            return;
+        
+        synchronized (readStreams) {
+            readStreams.remove(fileId);
+        }
+        objectCache.invalidate(fileId);
+    }
 
     
     public void readObject(String fileId, long objNo, StripingPolicyImpl sp, int offset, int length,
         long versionTimestamp, OSDRequest request, ReadObjectCallback listener) {
         this.enqueueOperation(fileId, StorageThread.STAGEOP_READ_OBJECT, new Object[] { fileId, objNo, sp,
             offset, length, versionTimestamp }, request, listener);
+        
+        if (objectCache != null && prefetchDepth > 0 && versionTimestamp == 0)
+            prefetch(fileId, objNo, sp);
+    }
+    
+    /**
+     * Detects sequential read streams and enqueues a prefetch of the next
+     * objects of the stream that are stored on this OSD. The prefetch is
+     * executed by the storage thread of the file after the triggering read.
+     */
+    private void prefetch(String fileId, long objNo, StripingPolicyImpl sp) {
+        
+        final long localObjNo = sp.getLocalObjectNumber(objNo);
+        final long start;
+        final long end;
+        
+        synchronized (readStreams) {
+            ReadStream stream = readStreams.get(fileId);
+            if (stream == null) {
+                stream = new ReadStream();
+                readStreams.put(fileId, stream);
+            }
+            
+            if (localObjNo == stream.lastLocalObjNo + 1) {
+                stream.sequentialReads++;
+            } else if (localObjNo != stream.lastLocalObjNo) {
+                // random access, or the stream was restarted
+                stream.sequentialReads = 0;
+                stream.prefetchedUpTo = objNo;
+            }
+            stream.lastLocalObjNo = localObjNo;
+            
+            if (stream.sequentialReads < SEQUENTIAL_READS_BEFORE_PREFETCH)
+                return;
+            
+            start = Math.max(objNo, stream.prefetchedUpTo) + 1;
+            end = objNo + (long) prefetchDepth * sp.getWidth();
+            
+            // do not read ahead while the storage thread is busy with
+            // requests that are actually waiting
+            if (start > end || storageThreads[getTaskId(fileId)].getQueueLength() > prefetchDepth)
+                return;
+            
+            stream.prefetchedUpTo = end;
+        }
+        
+        List<Long> objects = new ArrayList<Long>(prefetchDepth);
+        Iterator<Long> it = sp.getObjectsOfOSD(sp.getRelativeOSDPosition(), start, end);
+        while (it.hasNext()) {
+            long obj = it.next();
+            if (obj >= start)
+                objects.add(obj);
+        }
+        
+        if (!objects.isEmpty())
+            this.enqueueOperation(fileId, StorageThread.STAGEOP_PREFETCH_OBJECTS, new Object[] { fileId, sp,
+                objects }, null, null);
     }
     
     public static interface ReadObjectCallback {
@@ -145,6 +313,9 @@ public class StorageStage extends Stage {
     }
     
     public void flushCaches(String fileId, CachesFlushedCallback listener) {
+        synchronized (readStreams) {
+            readStreams.remove(fileId);
+        }
         this.enqueueOperation(fileId, StorageThread.STAGEOP_FLUSH_CACHES, new Object[] { fileId }, null,
             listener);
     }
@@ -210,6 +381,39 @@ public class StorageStage extends Stage {
         public void createFileVersionComplete(long fileSize, ErrorResponse error);
     }
     
+    /**
+     * Notifies the listener when the storage thread of a file grants the
+     * background traffic class its turn, i.e. after the requests of the other
+     * classes that were queued before have received their share. Allows work
+     * that is done outside of the storage threads, like the deletion of
+     * files, to yield to pending requests without polling.
+     */
+    public void awaitBackgroundTurn(String fileId, BackgroundTurnCallback listener) {
+        this.enqueueOperation(fileId, StorageThread.STAGEOP_BACKGROUND_TURN, new Object[] { fileId }, null,
+                listener);
+    }
+
+    public static interface BackgroundTurnCallback {
+
+        public void turnGranted();
+    }
+
+    /**
+     * Merges the delta object versions of a file with their base versions, see
+     * {@link StorageLayout#compactObjectVersions(String, FileMetadata)}. The
+     * operation is processed by the storage thread of the file, so that it
+     * does not interfere with writes to the file.
+     */
+    public void compactObjectVersions(String fileId, StripingPolicyImpl sp, CompactObjectVersionsCallback listener) {
+        this.enqueueOperation(fileId, StorageThread.STAGEOP_COMPACT_VERSIONS, new Object[] { fileId, sp }, null,
+                listener);
+    }
+
+    public static interface CompactObjectVersionsCallback {
+
+        public void compactObjectVersionsComplete(ErrorResponse error);
+    }
+
     public void getFileIDList(OSDRequest request, GetFileIDListCallback listener) {
         this.enqueueOperation("foobar", StorageThread.STAGEOP_GET_FILEID_LIST, new Object[] {}, request, listener);
     }
@@ -239,13 +443,60 @@ public class StorageStage extends Stage {
             // assigned to, for its execution
             int taskId = getTaskId(fileId);
             
+            // reads of files whose metadata has been loaded may be processed
+            // by any thread of the device, as long as the file is not modified
+            boolean parallel = false;
+            if (readTracker != null && stageOp != StorageThread.STAGEOP_GET_FILEID_LIST) {
+                parallel = readTracker.register(fileId, parallelReads && StorageThread.isReadOnly(stageOp)
+                    && metadataCache.getFileInfo(fileId) != null);
+                if (parallel) {
+                    taskId = getLeastLoadedTaskId(taskId);
+                    stageOp |= StorageThread.STAGEOP_PARALLEL;
+                }
+            }
+            
             // add the new request to the storageTask,
             // in order to start/schedule its execution
             // concurrently with other threads assigned to other
             // storageTasks
-            storageThreads[taskId].enqueueOperation(stageOp, args, request, createdViewBuffer, callback);
+            if (!storageThreads[taskId].enqueueOperation(stageOp, args, request, createdViewBuffer, callback)
+                && readTracker != null && stageOp != StorageThread.STAGEOP_GET_FILEID_LIST)
+                readTracker.done(fileId, parallel);
         }
     
+    /**
+     * Returns the thread with the shortest queue among the threads of the
+     * device that the given thread belongs to, preferring the given thread.
+     */
+    private int getLeastLoadedTaskId(int taskId) {
+        final int first = taskId - taskId % threadsPerDevice;
+        int best = taskId;
+        int bestLength = storageThreads[taskId].getQueueLength();
+        for (int i = first; i < first + threadsPerDevice && bestLength > 0; i++) {
+            int length = storageThreads[i].getQueueLength();
+            if (length < bestLength) {
+                best = i;
+                bestLength = length;
+            }
+        }
+        return best;
+    }
+    
+    @Override
+    public void enableAdmissionControl(long targetDelayMs, long intervalMs) {
+        // each thread has its own queue
+        for (StorageThread th : storageThreads)
+            th.enableAdmissionControl(targetDelayMs, intervalMs);
+    }
+    
+    @Override
+    public long getNumRejectedRequests() {
+        long num = 0;
+        for (StorageThread th : storageThreads)
+            num += th.getNumRejectedRequests();
+        return num;
+    }
+    
     @Override
     public void run() {
         // start all storage threads
@@ -279,11 +530,8 @@ public class StorageStage extends Stage {
         // thread
         assert (fileId != null);
         int hash = fileId.hashCode();
-        if (hash == Integer.MIN_VALUE) {
-            return 0;
-        }
-        int key = Math.abs(hash);
-        int index = (key % storageThreads.length);
+        int key = hash == Integer.MIN_VALUE ? 0 : Math.abs(hash);
+        int index = layout.getDevice(fileId) * threadsPerDevice + (key % threadsPerDevice);
         
         // String objId = rq.getDetails().getFileId()
         // + rq.getDetails().getObjectNumber();
@@ -298,6 +546,31 @@ public class StorageStage extends Stage {
         throw new UnsupportedOperationException("Not supported yet.");
     }
     
+    /**
+     * Returns the average queueing delay of the requests of a traffic class in
+     * the storage threads, in milliseconds.
+     */
+    public double getAverageQueueingDelay(TrafficClass tc) {
+        long num = 0;
+        long sum = 0;
+        for (FairRequestQueue queue : queues) {
+            num += queue.getNumRequests(tc);
+            sum += queue.getTotalQueueingDelay(tc);
+        }
+        return num == 0 ? 0 : sum / (double) num / 1000000;
+    }
+    
+    /**
+     * Returns the maximum queueing delay of a request of a traffic class in
+     * the storage threads, in milliseconds.
+     */
+    public double getMaxQueueingDelay(TrafficClass tc) {
+        long max = 0;
+        for (FairRequestQueue queue : queues)
+            max = Math.max(max, queue.getMaxQueueingDelay(tc));
+        return max / 1000000.0;
+    }
+    
     @Override
     public int getQueueLength() {
         
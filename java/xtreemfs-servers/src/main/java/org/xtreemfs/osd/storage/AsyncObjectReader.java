@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+
+/**
+ * Reads object files with {@link AsynchronousFileChannel}s, so that a storage
+ * thread can have multiple reads outstanding on a device.
+ * <p>
+ * The number of outstanding reads is limited by the queue depth; callers of
+ * {@link #read} block while the limit is reached. The completion handlers run
+ * in a pool with one thread per queue slot, which is also used by the channel
+ * implementations that emulate asynchronous I/O with blocking reads.
+ */
+public class AsyncObjectReader {
+
+    /**
+     * Receives the result of a read.
+     */
+    public static interface Listener {
+
+        /**
+         * Invoked when the buffer has been filled, the end of the file has been
+         * reached, or an error occurred.
+         */
+        public void readComplete(IOException error);
+    }
+
+    private static final Set<OpenOption> READ_OPTIONS = Collections
+                                                              .<OpenOption> singleton(StandardOpenOption.READ);
+
+    private final ExecutorService        executor;
+
+    private final int                    queueDepth;
+
+    private final Semaphore              slots;
+
+    /**
+     * @param name
+     *            name prefix of the I/O threads
+     * @param queueDepth
+     *            maximum number of outstanding reads
+     */
+    public AsyncObjectReader(final String name, int queueDepth) {
+        this.queueDepth = queueDepth;
+        this.slots = new Semaphore(queueDepth);
+        this.executor = Executors.newFixedThreadPool(queueDepth, new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread th = new Thread(r, name + " " + count.incrementAndGet());
+                th.setDaemon(true);
+                return th;
+            }
+        });
+    }
+
+    /**
+     * Reads the content of a file into the remaining space of a buffer,
+     * starting at the given position of the file.
+     */
+    public void read(File file, final long position, final ReusableBuffer buf, final Listener listener) {
+
+        slots.acquireUninterruptibly();
+
+        final AsynchronousFileChannel channel;
+        try {
+            channel = AsynchronousFileChannel.open(file.toPath(), READ_OPTIONS, executor);
+        } catch (IOException ex) {
+            slots.release();
+            listener.readComplete(ex);
+            return;
+        }
+
+        final int start = buf.position();
+        channel.read(buf.getBuffer(), position, null, new CompletionHandler<Integer, Object>() {
+
+            @Override
+            public void completed(Integer bytesRead, Object attachment) {
+                // continue short reads until the end of the file
+                if (bytesRead > 0 && buf.hasRemaining()) {
+                    channel.read(buf.getBuffer(), position + buf.position() - start, null, this);
+                    return;
+                }
+                finish(null);
+            }
+
+            @Override
+            public void failed(Throwable exc, Object attachment) {
+                finish(exc instanceof IOException ? (IOException) exc : new IOException(exc));
+            }
+
+            private void finish(IOException error) {
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    // ignore
+                }
+                slots.release();
+                listener.readComplete(error);
+            }
+        });
+    }
+
+    /**
+     * Returns the number of reads that are currently outstanding.
+     */
+    public int getOutstandingReads() {
+        return queueDepth - slots.availablePermits();
+    }
+}
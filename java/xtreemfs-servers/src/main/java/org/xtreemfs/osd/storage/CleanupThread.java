@@ -208,236 +208,242 @@ public class CleanupThread extends LifeCycleThread {
         zombies.set(0L);
         startTime = TimeSync.getGlobalTime();
 
-        do { // while(l.hasMore)
+        try {
+            do { // while(l.hasMore)
             
-            // Retrieve the fileList from the storage Layout.
-            l = layout.getFileList(l, 1024 * 4);
+                // Retrieve the fileList from the storage Layout.
+                l = layout.getFileList(l, 1024 * 4);
             
-            // Map files to their corresponding volume.
-            final Map<Volume, List<String>> perVolume = new Hashtable<Volume, List<String>>();
-            final Map<Volume, List<String>> metaOnlyPerVolume = new Hashtable<Volume, List<String>>();
-
-            for (String fileName : l.files.keySet()) {
-                filesChecked++;
-                String[] tmp = fileName.split(":");
-                Volume v = new Volume(tmp[0]);
-                String fileId = tmp[1];
-
-                final Map<Volume, List<String>> target;
-                if (l.files.get(fileName).metaDataOnly) {
-                    target = metaOnlyPerVolume;
-                } else {
-                    target = perVolume;
-                }
-
-                List<String> flist = target.get(v);
-                if (flist == null) {
-                    flist = new LinkedList<String>();
-                    target.put(v, flist);
-                }
+                // Map files to their corresponding volume.
+                final Map<Volume, List<String>> perVolume = new Hashtable<Volume, List<String>>();
+                final Map<Volume, List<String>> metaOnlyPerVolume = new Hashtable<Volume, List<String>>();
+
+                for (String fileName : l.files.keySet()) {
+                    filesChecked++;
+                    String[] tmp = fileName.split(":");
+                    Volume v = new Volume(tmp[0]);
+                    String fileId = tmp[1];
+
+                    final Map<Volume, List<String>> target;
+                    if (l.files.get(fileName).metaDataOnly) {
+                        target = metaOnlyPerVolume;
+                    } else {
+                        target = perVolume;
+                    }
 
-                flist.add(fileId);
-            }
+                    List<String> flist = target.get(v);
+                    if (flist == null) {
+                        flist = new LinkedList<String>();
+                        target.put(v, flist);
+                    }
 
-            // Interrupt execution if the cleanup has been stopped.
-            synchronized (this) {
-                if (!isRunning)
-                    break;
-            }
+                    flist.add(fileId);
+                }
 
-            // Check for zombie files on each volume.
-            Map<Volume, Map<String, FileData>> zombieFilesPerVolume = new Hashtable<Volume, Map<String, FileData>>();
-            // final List<String> deleteableFiles = Collections.synchronizedList(new LinkedList<String>());
+                // Interrupt execution if the cleanup has been stopped.
+                synchronized (this) {
+                    if (!isRunning)
+                        break;
+                }
 
-            for (Volume volume : perVolume.keySet()) {
-                final Map<String, FileData> zombieFiles = new Hashtable<String, FileData>();
+                // Check for zombie files on each volume.
+                Map<Volume, Map<String, FileData>> zombieFilesPerVolume = new Hashtable<Volume, Map<String, FileData>>();
+                // final List<String> deleteableFiles = Collections.synchronizedList(new LinkedList<String>());
 
-                try {
-                    ServiceSet s = master.getDIRClient().xtreemfs_service_get_by_uuid(null, RPCAuthentication.authNone,
-                            RPCAuthentication.userService, volume.id);
+                for (Volume volume : perVolume.keySet()) {
+                    final Map<String, FileData> zombieFiles = new Hashtable<String, FileData>();
 
-                    if (s.getServicesCount() == 0) {
-                        // Volume does not exist (is not registered at the DIR).
-                        results.add(String.format(DEAD_VOLUME_FORMAT, volume.id));
-                        volume.dead();
+                    try {
+                        ServiceSet s = master.getDIRClient().xtreemfs_service_get_by_uuid(null, RPCAuthentication.authNone,
+                                RPCAuthentication.userService, volume.id);
 
-                    } else {
+                        if (s.getServicesCount() == 0) {
+                            // Volume does not exist (is not registered at the DIR).
+                            results.add(String.format(DEAD_VOLUME_FORMAT, volume.id));
+                            volume.dead();
 
-                        final boolean cowEnabled = false; // FIXME: fetch COW policy for current volume
+                        } else {
 
-                        String mrcUUID = null;
-                        for (KeyValuePair kvp : s.getServices(0).getData().getDataList()) {
-                            if (kvp.getKey().equals("mrc"))
-                                mrcUUID = kvp.getValue();
-                        }
-                        volume.mrc = new ServiceUUID(mrcUUID);
+                            final boolean cowEnabled = false; // FIXME: fetch COW policy for current volume
 
-                        RPCResponse<xtreemfs_check_file_existsResponse> r = mrcClient.xtreemfs_check_file_exists(
-                                volume.mrc.getAddress(), RPCAuthentication.authNone, RPCAuthentication.userService,
-                                volume.id, perVolume.get(volume), localUUID.toString());
-                        xtreemfs_check_file_existsResponse response = r.get();
-                        r.freeBuffers();
+                            String mrcUUID = null;
+                            for (KeyValuePair kvp : s.getServices(0).getData().getDataList()) {
+                                if (kvp.getKey().equals("mrc"))
+                                    mrcUUID = kvp.getValue();
+                            }
+                            volume.mrc = new ServiceUUID(mrcUUID);
 
+                            RPCResponse<xtreemfs_check_file_existsResponse> r = mrcClient.xtreemfs_check_file_exists(
+                                    volume.mrc.getAddress(), RPCAuthentication.authNone, RPCAuthentication.userService,
+                                    volume.id, perVolume.get(volume), localUUID.toString());
+                            xtreemfs_check_file_existsResponse response = r.get();
+                            r.freeBuffers();
 
-                        if (!response.getVolumeExists()) {
-                            // Volume does not exist (is not found at the MRC VolumeManager),
-                            // but it is still known to the DIR. The MRC volume removal DeleteVolumeOperation()
-                            // deregisters volumes _after_ they are deleted from the database, therefore it is
-                            // possible to end in this case.
-                            results.add(String.format(DEAD_VOLUME_FORMAT, volume.id));
-                            volume.dead();
 
-                        } else {
-                            // Check all files from valid volumes.
-                            List<String> files = perVolume.get(volume);
-                            final AtomicInteger numZombies = new AtomicInteger(0);
-                            final AtomicInteger openOFTChecks = new AtomicInteger(0);
-
-                            for (int i = 0; i < files.size(); i++) {
-                                final FILE_STATE fileState = response.getFileStates(i);
-                                if (fileState == FILE_STATE.ABANDONED || fileState == FILE_STATE.DELETED) {
-                                    // remove abandoned replicas immediately
-                                    final boolean abandoned = (fileState == FILE_STATE.ABANDONED);
-
-                                    // retrieve the fileName
-                                    final String fName = volume.id + ":" + files.get(i);
-
-                                    // retrieve the fileData
-                                    final FileData fData = l.files.get(fName);
-
-                                    // check against the OFT
-                                    openOFTChecks.incrementAndGet();
-                                    master.getPreprocStage().checkDeleteOnClose(files.get(i),
-                                            new DeleteOnCloseCallback() {
-                                                @Override
-                                                public void deleteOnCloseResult(boolean isDeleteOnClose,
-                                                        ErrorResponse error) {
-
-                                                    // file is zombie
-                                                    if (!isDeleteOnClose && !abandoned) {
-                                                        numZombies.incrementAndGet();
-                                                        zombies.incrementAndGet();
-                                                        zombieFiles.put(fName, fData);
-                                                    }
+                            if (!response.getVolumeExists()) {
+                                // Volume does not exist (is not found at the MRC VolumeManager),
+                                // but it is still known to the DIR. The MRC volume removal DeleteVolumeOperation()
+                                // deregisters volumes _after_ they are deleted from the database, therefore it is
+                                // possible to end in this case.
+                                results.add(String.format(DEAD_VOLUME_FORMAT, volume.id));
+                                volume.dead();
+
+                            } else {
+                                // Check all files from valid volumes.
+                                List<String> files = perVolume.get(volume);
+                                final AtomicInteger numZombies = new AtomicInteger(0);
+                                final AtomicInteger openOFTChecks = new AtomicInteger(0);
+
+                                for (int i = 0; i < files.size(); i++) {
+                                    final FILE_STATE fileState = response.getFileStates(i);
+                                    if (fileState == FILE_STATE.ABANDONED || fileState == FILE_STATE.DELETED) {
+                                        // remove abandoned replicas immediately
+                                        final boolean abandoned = (fileState == FILE_STATE.ABANDONED);
+
+                                        // retrieve the fileName
+                                        final String fName = volume.id + ":" + files.get(i);
+
+                                        // retrieve the fileData
+                                        final FileData fData = l.files.get(fName);
+
+                                        // check against the OFT
+                                        openOFTChecks.incrementAndGet();
+                                        master.getPreprocStage().checkDeleteOnClose(files.get(i),
+                                                new DeleteOnCloseCallback() {
+                                                    @Override
+                                                    public void deleteOnCloseResult(boolean isDeleteOnClose,
+                                                            ErrorResponse error) {
+
+                                                        // file is zombie
+                                                        if (!isDeleteOnClose && !abandoned) {
+                                                            numZombies.incrementAndGet();
+                                                            zombies.incrementAndGet();
+                                                            zombieFiles.put(fName, fData);
+                                                        }
 
-                                                    // deal with the unrestoreable replica
-                                                    if (!isDeleteOnClose && abandoned) {
-                                                        deleteFile(fName, cowEnabled);
-                                                    }
+                                                        // deal with the unrestoreable replica
+                                                        if (!isDeleteOnClose && abandoned) {
+                                                            deleteFile(fName, cowEnabled);
+                                                        }
                                                     
-                                                    if (openOFTChecks.decrementAndGet() <= 0) {
-                                                        synchronized (openOFTChecks) {
-                                                            openOFTChecks.notify();
+                                                        if (openOFTChecks.decrementAndGet() <= 0) {
+                                                            synchronized (openOFTChecks) {
+                                                                openOFTChecks.notify();
+                                                            }
                                                         }
                                                     }
-                                                }
-                                            });
+                                                });
+                                    }
                                 }
-                            }
 
-                            synchronized (openOFTChecks) {
-                                while (openOFTChecks.get() > 0)
-                                    openOFTChecks.wait();
+                                synchronized (openOFTChecks) {
+                                    while (openOFTChecks.get() > 0)
+                                        openOFTChecks.wait();
+                                }
+                                results.add(String.format(VOLUME_RESULT_FORMAT, volume.id, numZombies.get(), files.size()));
                             }
-                            results.add(String.format(VOLUME_RESULT_FORMAT, volume.id, numZombies.get(), files.size()));
                         }
+                    } catch (Exception ex) {
+                        results.add(String.format(ERROR_FORMAT, volume.id, OutputUtils.stackTraceToString(ex)));
                     }
-                } catch (Exception ex) {
-                    results.add(String.format(ERROR_FORMAT, volume.id, OutputUtils.stackTraceToString(ex)));
-                }
 
-                // Handle dead volumes.
-                if (volume.isDead()) {
-                    // Every file associated with a dead or deleted volume is a zombie.
-                    List<String> files = perVolume.get(volume);
-                    for (int i = 0; i < files.size(); i++) {
-                        // Retrieve the fileName and fileData and store them.
-                        final String fName = volume.id + ":" + files.get(i);
-                        final FileData fData = l.files.get(fName);
-                        zombieFiles.put(fName, fData);
+                    // Handle dead volumes.
+                    if (volume.isDead()) {
+                        // Every file associated with a dead or deleted volume is a zombie.
+                        List<String> files = perVolume.get(volume);
+                        for (int i = 0; i < files.size(); i++) {
+                            // Retrieve the fileName and fileData and store them.
+                            final String fName = volume.id + ":" + files.get(i);
+                            final FileData fData = l.files.get(fName);
+                            zombieFiles.put(fName, fData);
+                        }
+
+                        // TODO: results.add...
                     }
 
-                    // TODO: results.add...
-                }
+                    if (zombieFiles.size() != 0) {
+                        zombieFilesPerVolume.put(volume, zombieFiles);
+                    }
+                } // for (Volume volume : perVolume.keySet())
 
-                if (zombieFiles.size() != 0) {
-                    zombieFilesPerVolume.put(volume, zombieFiles);
+                synchronized (this) {
+                    if (!isRunning)
+                        break;
                 }
-            } // for (Volume volume : perVolume.keySet())
 
-            synchronized (this) {
-                if (!isRunning)
-                    break;
-            }
-
-            // deal with the zombies
-            for (Volume volume : zombieFilesPerVolume.keySet()) {
-                // restore files if the flag is set (files from dead volumes cannot be restored
-                if (!volume.isDead() && lostAndFound) {
-                    Map<String, FileData> zombieFiles = zombieFilesPerVolume.get(volume);
-
-                    for (String fileName : zombieFiles.keySet()) {
-                        FileData data = zombieFiles.get(fileName);
-                        if (!data.metaDataOnly) {
-                            RPCResponse r = mrcClient.xtreemfs_restore_file(volume.mrc.getAddress(),
-                                    RPCAuthentication.authNone, RPCAuthentication.userService, DEFAULT_RESTORE_PATH,
-                                    fileName, data.size, localUUID.toString(),
-                                    Integer.valueOf(String.valueOf(data.objectSize)));
-
-                            // the response does not matter
-                            r.get();
-                            r.freeBuffers();
-
-                            // TODO(jdillmann): clear stored xlocset, or send version to mrc...
+                // deal with the zombies
+                for (Volume volume : zombieFilesPerVolume.keySet()) {
+                    // restore files if the flag is set (files from dead volumes cannot be restored
+                    if (!volume.isDead() && lostAndFound) {
+                        Map<String, FileData> zombieFiles = zombieFilesPerVolume.get(volume);
+
+                        for (String fileName : zombieFiles.keySet()) {
+                            FileData data = zombieFiles.get(fileName);
+                            if (!data.metaDataOnly) {
+                                RPCResponse r = mrcClient.xtreemfs_restore_file(volume.mrc.getAddress(),
+                                        RPCAuthentication.authNone, RPCAuthentication.userService, DEFAULT_RESTORE_PATH,
+                                        fileName, data.size, localUUID.toString(),
+                                        Integer.valueOf(String.valueOf(data.objectSize)));
+
+                                // the response does not matter
+                                r.get();
+                                r.freeBuffers();
+
+                                // TODO(jdillmann): clear stored xlocset, or send version to mrc...
+                            }
                         }
-                    }
                     
-                    results.add(String.format(ZOMBIES_RESTORED_FORMAT, zombieFiles.keySet().size(), volume.id));
+                        results.add(String.format(ZOMBIES_RESTORED_FORMAT, zombieFiles.keySet().size(), volume.id));
 
-                } else if ((volume.isDead() && removeDeadVolumes) || (!volume.isDead() && removeZombies)) {
-                    // Delete all files of dead volumes if the flag is set
-                    // or delete zombies if the flag is set.
-                    Map<String, FileData> zombieFiles = zombieFilesPerVolume.get(volume);
+                    } else if ((volume.isDead() && removeDeadVolumes) || (!volume.isDead() && removeZombies)) {
+                        // Delete all files of dead volumes if the flag is set
+                        // or delete zombies if the flag is set.
+                        Map<String, FileData> zombieFiles = zombieFilesPerVolume.get(volume);
                     
-                    final boolean cowEnabled = false; // FIXME: fetch COW policy for current volume
+                        final boolean cowEnabled = false; // FIXME: fetch COW policy for current volume
                     
-                    for (final String fileName : zombieFiles.keySet()) {
-                        deleteFile(fileName, cowEnabled);
-                    }
+                        for (final String fileName : zombieFiles.keySet()) {
+                            deleteFile(fileName, cowEnabled);
+                        }
 
-                    results.add(String.format(ZOMBIES_DELETED_FORMAT, zombieFiles.keySet().size(),
-                            (volume.isDead() ? "dead" : "existing"), volume.id));
+                        results.add(String.format(ZOMBIES_DELETED_FORMAT, zombieFiles.keySet().size(),
+                                (volume.isDead() ? "dead" : "existing"), volume.id));
+                    }
                 }
-            }
 
-            // Deal with metaData only directories.
-            if (removeMetadata) {
-                for (Volume volume : metaOnlyPerVolume.keySet()) {
-                    final boolean cowEnabled = false; // FIXME: fetch COW policy for current volume
+                // Deal with metaData only directories.
+                if (removeMetadata) {
+                    for (Volume volume : metaOnlyPerVolume.keySet()) {
+                        final boolean cowEnabled = false; // FIXME: fetch COW policy for current volume
 
-                    List<String> metaDataDirs = metaOnlyPerVolume.get(volume);
-                    for (String fileId : metaDataDirs) {
-                        // retrieve the fileName
-                        final String fName = volume.id + ":" + fileId;
-                        deleteFile(fName, cowEnabled);
+                        List<String> metaDataDirs = metaOnlyPerVolume.get(volume);
+                        for (String fileId : metaDataDirs) {
+                            // retrieve the fileName
+                            final String fName = volume.id + ":" + fileId;
+                            deleteFile(fName, cowEnabled);
+                        }
+                        // TODO: results.add(...)
+                        // results.add(String.format(ZOMBIES_DELETED_FORMAT, zombieFiles.keySet().size(),
+                        // (volume.isDead() ? "dead" : "existing"), volume.id));
                     }
-                    // TODO: results.add(...)
-                    // results.add(String.format(ZOMBIES_DELETED_FORMAT, zombieFiles.keySet().size(),
-                    // (volume.isDead() ? "dead" : "existing"), volume.id));
                 }
-            }
 
-            synchronized (openDeletes) {
-                while (openDeletes.get() > 0)
-                    openDeletes.wait();
-            }
+                synchronized (openDeletes) {
+                    while (openDeletes.get() > 0)
+                        openDeletes.wait();
+                }
 
-            synchronized (this) {
-                if (!isRunning)
-                    break;
-            }
+                synchronized (this) {
+                    if (!isRunning)
+                        break;
+                }
 
-        } while (l.hasMore);
+            } while (l.hasMore);
+        } finally {
+            // stop the directory walk if the cleanup was interrupted
+            if (l != null)
+                l.close();
+        }
     }
 
 
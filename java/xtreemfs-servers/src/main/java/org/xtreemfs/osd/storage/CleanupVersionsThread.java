@@ -16,6 +16,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.Map.Entry;
+import java.util.concurrent.CountDownLatch;
 
 import org.xtreemfs.common.KeyValuePairs;
 import org.xtreemfs.common.uuids.ServiceUUID;
@@ -26,8 +27,10 @@ import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
 import org.xtreemfs.foundation.pbrpc.client.RPCAuthentication;
 import org.xtreemfs.foundation.pbrpc.client.RPCResponse;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader.ErrorResponse;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.UserCredentials;
 import org.xtreemfs.osd.OSDRequestDispatcher;
+import org.xtreemfs.osd.stages.StorageStage.CompactObjectVersionsCallback;
 import org.xtreemfs.osd.storage.StorageLayout.FileList;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRCServiceClient;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceSet;
@@ -148,89 +151,95 @@ public class CleanupVersionsThread extends LifeCycleThread {
                 // volume -> set of file IDs
                 Map<Volume, List<String>> perVolume = new Hashtable<Volume, List<String>>();
                 
-                do {
+                try {
+                    do {
                     
-                    l = layout.getFileList(l, 1024 * 4);
+                        l = layout.getFileList(l, 1024 * 4);
                     
-                    for (String fileName : l.files.keySet()) {
+                        for (String fileName : l.files.keySet()) {
                         
-                        filesChecked++;
+                            filesChecked++;
                         
-                        // parse volume and file ID
-                        String[] tmp = fileName.split(":");
-                        String volId = tmp[0];
-                        String fileId = tmp[1];
+                            // parse volume and file ID
+                            String[] tmp = fileName.split(":");
+                            String volId = tmp[0];
+                            String fileId = tmp[1];
                         
-                        // create a new volume and add it to the map if
-                        // necessary
-                        Volume vol = new Volume(volId);
-                        List<String> flist = perVolume.get(vol);
+                            // create a new volume and add it to the map if
+                            // necessary
+                            Volume vol = new Volume(volId);
+                            List<String> flist = perVolume.get(vol);
                         
-                        // if the volume doesn't exist in the map yet ...
-                        if (flist == null) {
+                            // if the volume doesn't exist in the map yet ...
+                            if (flist == null) {
                             
-                            // determine the list of snapshot timestamps for the
-                            // volume
+                                // determine the list of snapshot timestamps for the
+                                // volume
                             
-                            // first, determine the volume name
-                            ServiceSet s = master.getDIRClient().xtreemfs_service_get_by_uuid(
-                                null, RPCAuthentication.authNone, RPCAuthentication.userService, vol.id);
-                            if (s.getServicesCount() == 0) {
-                                Logging.logMessage(Logging.LEVEL_WARN, Category.misc, this,
-                                    "could not retrieve volume information for '%s' from DIR", vol.id);
-                                continue;
-                            }
+                                // first, determine the volume name
+                                ServiceSet s = master.getDIRClient().xtreemfs_service_get_by_uuid(
+                                    null, RPCAuthentication.authNone, RPCAuthentication.userService, vol.id);
+                                if (s.getServicesCount() == 0) {
+                                    Logging.logMessage(Logging.LEVEL_WARN, Category.misc, this,
+                                        "could not retrieve volume information for '%s' from DIR", vol.id);
+                                    continue;
+                                }
                             
-                            // get the MRC responsible for the volume
-                            String volName = s.getServices(0).getName();
-                            vol.mrc = new ServiceUUID(KeyValuePairs.getValue(s.getServices(0).getData()
-                                    .getDataList(), "mrc"));
+                                // get the MRC responsible for the volume
+                                String volName = s.getServices(0).getName();
+                                vol.mrc = new ServiceUUID(KeyValuePairs.getValue(s.getServices(0).getData()
+                                        .getDataList(), "mrc"));
                             
-                            // get the list of snapshot timestamps for the
-                            // volume
-                            RPCResponse<getxattrResponse> tsResponse = null;
-                            String ts = null;
-                            try {
+                                // get the list of snapshot timestamps for the
+                                // volume
+                                RPCResponse<getxattrResponse> tsResponse = null;
+                                String ts = null;
+                                try {
                                 
-                                tsResponse = mrcClient.getxattr(vol.mrc.getAddress(),
-                                    RPCAuthentication.authNone, uc, getxattrRequest.newBuilder()
-                                            .setVolumeName(volName).setPath("").setName(
-                                                "xtreemfs.snapshot_time").build());
-                                ts = tsResponse.get().getValue();
+                                    tsResponse = mrcClient.getxattr(vol.mrc.getAddress(),
+                                        RPCAuthentication.authNone, uc, getxattrRequest.newBuilder()
+                                                .setVolumeName(volName).setPath("").setName(
+                                                    "xtreemfs.snapshot_time").build());
+                                    ts = tsResponse.get().getValue();
                                 
-                                StringTokenizer st = new StringTokenizer(ts);
-                                long[] tsArray = new long[st.countTokens()];
-                                for (int i = 0; i < tsArray.length; i++)
-                                    tsArray[i] = Long.parseLong(st.nextToken());
+                                    StringTokenizer st = new StringTokenizer(ts);
+                                    long[] tsArray = new long[st.countTokens()];
+                                    for (int i = 0; i < tsArray.length; i++)
+                                        tsArray[i] = Long.parseLong(st.nextToken());
                                 
-                                vol.timestamps = tsArray;
+                                    vol.timestamps = tsArray;
                                 
-                                // add the volume entry to the map
-                                flist = new LinkedList<String>();
-                                perVolume.put(vol, flist);
+                                    // add the volume entry to the map
+                                    flist = new LinkedList<String>();
+                                    perVolume.put(vol, flist);
                                 
-                            } finally {
-                                if (tsResponse != null)
-                                    tsResponse.freeBuffers();
-                            }
+                                } finally {
+                                    if (tsResponse != null)
+                                        tsResponse.freeBuffers();
+                                }
                             
-                        }
+                            }
                         
-                        flist.add(fileId);
+                            flist.add(fileId);
                         
+                            synchronized (this) {
+                                if (!isRunning)
+                                    break;
+                            }
+                        
+                        }
+                    
                         synchronized (this) {
                             if (!isRunning)
                                 break;
                         }
-                        
-                    }
-                    
-                    synchronized (this) {
-                        if (!isRunning)
-                            break;
-                    }
                     
-                } while (l.hasMore);
+                    } while (l.hasMore);
+                } finally {
+                    // stop the directory walk if the cleanup was interrupted
+                    if (l != null)
+                        l.close();
+                }
                 
                 // check each volume
                 for (Entry<Volume, List<String>> entry : perVolume.entrySet()) {
@@ -268,6 +277,9 @@ public class CleanupVersionsThread extends LifeCycleThread {
                         if (versionsToDelete.size() != 0)
                             md.getVersionTable().save();
                         
+                        // compact the remaining object versions
+                        compactObjectVersions(fileId, md);
+                        
                         synchronized (this) {
                             if (!isRunning)
                                 break;
@@ -294,6 +306,25 @@ public class CleanupVersionsThread extends LifeCycleThread {
         notifyStopped();
     }
     
+    /**
+     * Merges the delta versions of a file in the storage thread of the file,
+     * so that the merge does not interfere with writes to the file.
+     */
+    private void compactObjectVersions(final String fileId, FileMetadata md) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        master.getStorageStage().compactObjectVersions(fileId, md.getStripingPolicy(),
+            new CompactObjectVersionsCallback() {
+                @Override
+                public void compactObjectVersionsComplete(ErrorResponse error) {
+                    if (error != null)
+                        Logging.logMessage(Logging.LEVEL_WARN, Category.storage, CleanupVersionsThread.this,
+                            "could not compact the object versions of %s: %s", fileId, error.getErrorMessage());
+                    done.countDown();
+                }
+            });
+        done.await();
+    }
+    
     public class Volume {
         
         final String id;
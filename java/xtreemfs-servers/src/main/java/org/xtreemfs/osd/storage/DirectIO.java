@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.logging.Logging.Category;
+
+/**
+ * Reads and writes object files with direct I/O (<tt>O_DIRECT</tt>), which
+ * bypasses the page cache of the operating system.
+ * <p>
+ * Direct I/O requires file offsets, lengths and buffer addresses to be
+ * aligned to the block size of the device. Reads and writes are therefore
+ * extended to the enclosing aligned range and performed with aligned buffers
+ * from a pool; the blocks at the edges of unaligned writes are read before
+ * they are overwritten, and files are truncated to their exact length
+ * afterwards.
+ * <p>
+ * Direct I/O is available with Java 10 and later. Whether the JVM and the
+ * file system support it is checked when an instance is created; files that
+ * cannot be opened with direct I/O later on are accessed through the page
+ * cache.
+ */
+public class DirectIO {
+
+    /**
+     * alignment of offsets, lengths and buffers; covers devices with 512 byte
+     * and 4 KB sectors
+     */
+    public static final int           ALIGNMENT            = 4096;
+
+    /**
+     * maximum number of pooled buffers per size
+     */
+    private static final int          MAX_POOLED_BUFFERS   = 16;
+
+    private static final byte[]       ZEROS                = new byte[ALIGNMENT];
+
+    private static final OpenOption   DIRECT;
+
+    private static final Method       ALIGNED_SLICE;
+
+    static {
+        OpenOption direct = null;
+        Method alignedSlice = null;
+        try {
+            Class<?> options = Class.forName("com.sun.nio.file.ExtendedOpenOption");
+            direct = (OpenOption) options.getField("DIRECT").get(null);
+            alignedSlice = ByteBuffer.class.getMethod("alignedSlice", int.class);
+        } catch (Exception ex) {
+            direct = null;
+            alignedSlice = null;
+        }
+        DIRECT = direct;
+        ALIGNED_SLICE = alignedSlice;
+    }
+
+    private final Map<Integer, LinkedList<ByteBuffer>> pool;
+
+    private volatile boolean                           enabled;
+
+    /**
+     * @param dir
+     *            a directory on the file system of the files to access, which
+     *            is probed for direct I/O support
+     * @throws IOException
+     *             if the JVM or the file system of the directory does not
+     *             support direct I/O
+     */
+    public DirectIO(File dir) throws IOException {
+        this.pool = new HashMap<Integer, LinkedList<ByteBuffer>>();
+        this.enabled = true;
+
+        if (!isSupported()) {
+            throw new IOException("direct I/O requires Java 10 or later");
+        }
+
+        File probe = File.createTempFile(".directio", null, dir);
+        try {
+            FileChannel channel = FileChannel.open(probe.toPath(), StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, DIRECT);
+            channel.close();
+        } catch (IOException ex) {
+            throw new IOException("direct I/O is not supported by the file system of " + dir + " ("
+                    + ex.getMessage() + ")", ex);
+        } finally {
+            probe.delete();
+        }
+    }
+
+    /**
+     * Checks whether the JVM supports direct I/O.
+     */
+    public static boolean isSupported() {
+        return DIRECT != null && ALIGNED_SLICE != null;
+    }
+
+    /**
+     * Checks whether files are accessed with direct I/O, which is no longer
+     * the case after a file could not be opened with it.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Reads the content of a file into the remaining space of a buffer,
+     * starting at the given position of the file.
+     *
+     * @return the number of bytes read, which is smaller than the remaining
+     *         space if the file ends before
+     */
+    public int read(File file, long position, ByteBuffer dst) throws IOException {
+
+        final int length = dst.remaining();
+        final long start = alignDown(position);
+        final long end = alignUp(position + length);
+
+        ByteBuffer buf = allocate((int) (end - start));
+        FileChannel channel = open(file, false, false);
+        try {
+            int bytesRead = readFully(channel, buf, start);
+            int available = (int) Math.max(0, Math.min(length, bytesRead - (position - start)));
+            if (available > 0) {
+                buf.limit((int) (position - start) + available);
+                buf.position((int) (position - start));
+                dst.put(buf);
+            }
+            return available;
+        } finally {
+            channel.close();
+            free(buf);
+        }
+    }
+
+    /**
+     * Writes the remaining content of a buffer to a file, starting at the
+     * given position of the file. The file is created if necessary, and
+     * extended if the data ends beyond its end.
+     */
+    public void write(File file, long position, ByteBuffer src, boolean sync) throws IOException {
+
+        final int length = src.remaining();
+        if (length == 0) {
+            return;
+        }
+
+        final long start = alignDown(position);
+        final long end = alignUp(position + length);
+
+        ByteBuffer buf = allocate((int) (end - start));
+        FileChannel channel = open(file, true, sync);
+        try {
+            final long oldLength = channel.size();
+
+            // preserve the existing data of the first and last block; gaps
+            // beyond the end of the file are filled with zeros
+            zero(buf);
+            final boolean headRead = position != start && start < oldLength;
+            if (headRead) {
+                buf.limit(ALIGNMENT);
+                readFully(channel, buf, start);
+            }
+            final long tail = end - ALIGNMENT;
+            if (position + length != end && tail < oldLength && !(headRead && tail == start)) {
+                buf.limit((int) (end - start));
+                buf.position((int) (tail - start));
+                readFully(channel, buf, tail);
+            }
+
+            buf.limit((int) (end - start));
+            buf.position((int) (position - start));
+            buf.put(src.duplicate());
+            buf.position(0);
+
+            long pos = start;
+            while (buf.hasRemaining()) {
+                pos += channel.write(buf, pos);
+            }
+
+            // remove the alignment padding beyond the end of the data
+            final long newLength = Math.max(oldLength, position + length);
+            if (channel.size() > newLength) {
+                channel.truncate(newLength);
+            }
+            if (sync) {
+                channel.force(true);
+            }
+        } finally {
+            channel.close();
+            free(buf);
+        }
+    }
+
+    /**
+     * Reads until the buffer is full or the file ends. A read that ends
+     * within a block has reached the end of the file; it must not be
+     * continued at the unaligned position.
+     */
+    private static int readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        int bytesRead = 0;
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position + bytesRead);
+            if (n <= 0) {
+                break;
+            }
+            bytesRead += n;
+            if (n % ALIGNMENT != 0) {
+                break;
+            }
+        }
+        return bytesRead;
+    }
+
+    private static void zero(ByteBuffer buf) {
+        buf.position(0);
+        while (buf.remaining() >= ZEROS.length) {
+            buf.put(ZEROS);
+        }
+        buf.put(ZEROS, 0, buf.remaining());
+        buf.position(0);
+    }
+
+    private FileChannel open(File file, boolean write, boolean sync) throws IOException {
+
+        Set<OpenOption> options = new HashSet<OpenOption>();
+        if (write) {
+            options.add(StandardOpenOption.READ);
+            options.add(StandardOpenOption.WRITE);
+            options.add(StandardOpenOption.CREATE);
+            if (sync)
+                options.add(StandardOpenOption.DSYNC);
+        } else {
+            options.add(StandardOpenOption.READ);
+        }
+
+        if (!enabled) {
+            return FileChannel.open(file.toPath(), options);
+        }
+
+        options.add(DIRECT);
+        try {
+            return FileChannel.open(file.toPath(), options);
+        } catch (IOException ex) {
+            options.remove(DIRECT);
+            FileChannel channel = FileChannel.open(file.toPath(), options);
+
+            // the file can be accessed, but not with direct I/O
+            enabled = false;
+            Logging.logMessage(Logging.LEVEL_WARN, Category.storage, this,
+                    "direct I/O is not supported by the file system of %s (%s), object files are accessed "
+                            + "through the page cache", file, ex.getMessage());
+            return channel;
+        }
+    }
+
+    /**
+     * Returns an aligned buffer with the given limit, which has to be a
+     * multiple of the alignment.
+     */
+    ByteBuffer allocate(int size) {
+
+        assert (size % ALIGNMENT == 0) : "unaligned size " + size;
+
+        int capacity = ALIGNMENT;
+        while (capacity < size) {
+            capacity <<= 1;
+        }
+
+        ByteBuffer buf = null;
+        synchronized (pool) {
+            LinkedList<ByteBuffer> buffers = pool.get(capacity);
+            if (buffers != null) {
+                buf = buffers.poll();
+            }
+        }
+
+        if (buf == null) {
+            buf = ByteBuffer.allocateDirect(capacity + ALIGNMENT);
+            if (ALIGNED_SLICE != null) {
+                try {
+                    buf = (ByteBuffer) ALIGNED_SLICE.invoke(buf, ALIGNMENT);
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+            buf.limit(capacity);
+            buf = buf.slice();
+        }
+
+        buf.clear();
+        buf.limit(size);
+        return buf;
+    }
+
+    void free(ByteBuffer buf) {
+
+        int capacity = buf.capacity();
+        synchronized (pool) {
+            LinkedList<ByteBuffer> buffers = pool.get(capacity);
+            if (buffers == null) {
+                buffers = new LinkedList<ByteBuffer>();
+                pool.put(capacity, buffers);
+            }
+            if (buffers.size() < MAX_POOLED_BUFFERS) {
+                buffers.add(buf);
+            }
+        }
+    }
+
+    private static long alignDown(long offset) {
+        return offset & ~((long) ALIGNMENT - 1);
+    }
+
+    private static long alignUp(long offset) {
+        return alignDown(offset + ALIGNMENT - 1);
+    }
+}
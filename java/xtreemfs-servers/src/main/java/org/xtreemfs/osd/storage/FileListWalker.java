@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd.storage;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SecureDirectoryStream;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.logging.Logging.Category;
+import org.xtreemfs.osd.storage.HashStorageLayout.ObjFileData;
+import org.xtreemfs.osd.storage.StorageLayout.FileData;
+
+/**
+ * Walks the directory tree of a {@link HashStorageLayout} and streams the
+ * files found to a consumer. Each directory is scanned by a separate task of a
+ * fork-join pool, i.e. the hash subtrees are scanned in parallel. The files
+ * found are passed through a bounded queue, so that the memory required by a
+ * walk does not depend on the number of files stored on the OSD.
+ * <p>
+ * The attributes of a directory entry are read with a single call relative to
+ * the open directory, rather than with separate calls for the type and size
+ * of each file.
+ */
+class FileListWalker {
+
+    private static final Entry<String, FileData> END = new SimpleImmutableEntry<String, FileData>("", null);
+
+    private final Path                                 root;
+
+    private final ForkJoinPool                         pool;
+
+    private final BlockingQueue<Entry<String, FileData>> queue;
+
+    /** number of directories which were found but not scanned yet */
+    private final AtomicInteger                        pendingDirs;
+
+    private volatile boolean                           cancelled;
+
+    private boolean                                    finished;
+
+    /**
+     * @param storageDir
+     *            the root directory of the storage layout
+     * @param numThreads
+     *            the number of directories scanned in parallel
+     * @param queueCapacity
+     *            the maximum number of files which are buffered until they
+     *            are retrieved by the consumer
+     */
+    FileListWalker(String storageDir, int numThreads, int queueCapacity) {
+        this.root = Paths.get(storageDir);
+        this.pool = new ForkJoinPool(numThreads);
+        this.queue = new ArrayBlockingQueue<Entry<String, FileData>>(queueCapacity);
+        this.pendingDirs = new AtomicInteger();
+    }
+
+    void start() {
+        pendingDirs.incrementAndGet();
+        pool.execute(new DirectoryTask(root));
+    }
+
+    /**
+     * Blocks until the given number of files has been found or the walk is
+     * complete.
+     *
+     * @param files
+     *            the map to which the files are added
+     * @param maxNumEntries
+     *            the maximum number of files to add
+     * @return true, if more files may be found
+     */
+    boolean next(Map<String, FileData> files, int maxNumEntries) throws InterruptedException {
+        while (!finished && files.size() < maxNumEntries) {
+            Entry<String, FileData> entry = queue.take();
+            if (entry == END) {
+                finished = true;
+            } else {
+                files.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return !finished;
+    }
+
+    /**
+     * Terminates the walk. Must be called if the walk is abandoned before all
+     * files were retrieved.
+     */
+    void cancel() {
+        cancelled = true;
+        pool.shutdownNow();
+        queue.clear();
+    }
+
+    private void emit(Entry<String, FileData> entry) throws InterruptedException {
+        while (!cancelled) {
+            if (queue.offer(entry, 1, TimeUnit.SECONDS)) {
+                return;
+            }
+        }
+    }
+
+    private void directoryDone() {
+        if (pendingDirs.decrementAndGet() == 0) {
+            try {
+                emit(END);
+            } catch (InterruptedException ex) {
+                // cancelled
+            }
+            pool.shutdown();
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(DirectoryStream<Path> stream, Path entry)
+            throws IOException {
+        if (stream instanceof SecureDirectoryStream) {
+            // the attributes are read relative to the open directory
+            return ((SecureDirectoryStream<Path>) stream).getFileAttributeView(entry.getFileName(),
+                    BasicFileAttributeView.class).readAttributes();
+        }
+        return Files.readAttributes(entry, BasicFileAttributes.class);
+    }
+
+    private final class DirectoryTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path        dir;
+
+        DirectoryTask(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                if (!cancelled) {
+                    scan();
+                }
+            } catch (InterruptedException ex) {
+                // cancelled
+            } catch (Exception ex) {
+                Logging.logMessage(Logging.LEVEL_WARN, Category.storage, this, "could not scan %s: %s", dir,
+                        ex.toString());
+            } finally {
+                directoryDone();
+            }
+        }
+
+        private void scan() throws IOException, InterruptedException {
+
+            boolean foundObject = false;
+            long newestVersion = 0;
+            long firstObjNo = 0;
+            long lastObjNo = 0;
+            long firstSize = 0;
+            long lastSize = 0;
+            long objectSize = 0;
+            boolean isFileNameDir = false;
+
+            DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+            try {
+                for (Path entry : stream) {
+
+                    if (cancelled) {
+                        return;
+                    }
+
+                    final String name = entry.getFileName().toString();
+                    final BasicFileAttributes attrs;
+                    try {
+                        attrs = readAttributes(stream, entry);
+                    } catch (IOException ex) {
+                        // the entry was deleted in the meantime
+                        continue;
+                    }
+
+                    // handle the directories (hash and fileName); the
+                    // directories of delta object versions are skipped
+                    if (attrs.isDirectory()) {
+                        if (name.startsWith(".")) {
+                            continue;
+                        }
+                        pendingDirs.incrementAndGet();
+                        new DirectoryTask(entry).fork();
+
+                    } else if (attrs.isRegularFile() && !name.contains(".")) {
+                        // get information from the objects
+                        final ObjFileData ofd;
+                        try {
+                            ofd = HashStorageLayout.parseFileName(name);
+                        } catch (Exception ex) {
+                            Logging.logMessage(Logging.LEVEL_WARN, Category.storage, this,
+                                    "CleanUp: an illegal file (" + entry + ") was discovered and ignored.");
+                            continue;
+                        }
+
+                        final long size = attrs.size();
+                        isFileNameDir = true;
+                        if (!foundObject || ofd.objVersion > newestVersion) {
+                            foundObject = true;
+                            newestVersion = ofd.objVersion;
+                            firstObjNo = lastObjNo = ofd.objNo;
+                            firstSize = lastSize = size;
+                            objectSize = Math.max(objectSize, size);
+                        } else if (ofd.objVersion == newestVersion) {
+                            if (ofd.objNo < firstObjNo) {
+                                firstObjNo = ofd.objNo;
+                                firstSize = size;
+                            } else if (ofd.objNo > lastObjNo) {
+                                lastObjNo = ofd.objNo;
+                                lastSize = size;
+                            }
+                            objectSize = Math.max(objectSize, size);
+                        }
+
+                    } else if (attrs.isRegularFile()
+                            && (name.endsWith(HashStorageLayout.XLOC_VERSION_STATE_FILENAME) || name
+                                    .equals(HashStorageLayout.PADDING_FILENAME))) {
+                        // If no data file exists, but a version_state file, the whole data folder can be deleted
+                        // after a certain period.
+                        isFileNameDir = true;
+                    }
+                }
+            } finally {
+                stream.close();
+            }
+
+            // dir is a fileName-directory
+            if (isFileNameDir) {
+                final String dirName = dir.getFileName().toString();
+                final String fileName = StorageLayout.WIN ? dirName.replace('_', ':') : dirName;
+
+                if (foundObject) {
+                    long fileSize = (lastObjNo == 1) ? firstSize : (objectSize * lastObjNo) + lastSize;
+                    emit(new SimpleImmutableEntry<String, FileData>(fileName, new FileData(fileSize,
+                            (int) (objectSize / 1024))));
+                } else {
+                    // No data file exists, but the folders some metadata is still in place.
+                    emit(new SimpleImmutableEntry<String, FileData>(fileName, new FileData(true)));
+                }
+            }
+        }
+    }
+}
@@ -39,6 +39,10 @@ public class FileMetadata {
     private final StripingPolicyImpl   stripingPolicy;
     
     private VersionTable               versionTable;
+    
+    private PaddingExtents             paddingExtents;
+    
+    private Map<Long, Map<Long, Long>> deltaVersions;
 
     private RandomAccessFile[]       handles;
 
@@ -113,6 +117,16 @@ public class FileMetadata {
         this.versionTable = versionTable;
     }
     
+    public void initPaddingExtents(PaddingExtents paddingExtents) {
+        assert (this.paddingExtents == null);
+        this.paddingExtents = paddingExtents;
+    }
+    
+    public void initDeltaVersions(Map<Long, Map<Long, Long>> deltaVersions) {
+        assert (this.deltaVersions == null);
+        this.deltaVersions = deltaVersions;
+    }
+    
     public void updateObjectVersion(long objId, long newVersion) {
         
         latestObjVersions.put(objId, newVersion);
@@ -133,6 +147,56 @@ public class FileMetadata {
         checksums.put(objVer, newChecksum);
     }
     
+    /**
+     * Returns the base version of a delta object version, which only contains
+     * the byte ranges that differ from the base version.
+     * 
+     * @return the base version, or 0 if the object version is complete
+     */
+    public long getDeltaBaseVersion(long objId, long objVer) {
+        
+        if (deltaVersions == null)
+            return 0;
+        
+        Map<Long, Long> versions = deltaVersions.get(objId);
+        if (versions == null)
+            return 0;
+        
+        Long v = versions.get(objVer);
+        return (v == null) ? 0 : v;
+    }
+    
+    /**
+     * Returns the delta versions of all objects, as a mapping from object
+     * numbers to mappings from delta versions to base versions.
+     */
+    public Map<Long, Map<Long, Long>> getDeltaVersions() {
+        return deltaVersions;
+    }
+    
+    /**
+     * Records the base version of a delta object version. A base version of 0
+     * marks the object version as complete.
+     */
+    public void updateDeltaBaseVersion(long objId, long objVer, long baseVersion) {
+        
+        Map<Long, Long> versions = deltaVersions.get(objId);
+        if (baseVersion == 0) {
+            if (versions != null) {
+                versions.remove(objVer);
+                if (versions.isEmpty())
+                    deltaVersions.remove(objId);
+            }
+            return;
+        }
+        
+        if (versions == null) {
+            versions = new HashMap<Long, Long>();
+            deltaVersions.put(objId, versions);
+        }
+        versions.put(objVer, baseVersion);
+    }
+    
     public void discardObject(long objId, long objVer) {
         latestObjVersions.remove(objId);
         objChecksums.remove(objId + "." + objVer);
@@ -175,6 +239,15 @@ public class FileMetadata {
     public VersionTable getVersionTable() {
         return versionTable;
     }
+    
+    /**
+     * @return the padding objects of the file that are not stored in object
+     *         files, or <code>null</code> if the storage layout creates object
+     *         files for all padding objects
+     */
+    public PaddingExtents getPaddingExtents() {
+        return paddingExtents;
+    }
 
     /**
      * @return the handles
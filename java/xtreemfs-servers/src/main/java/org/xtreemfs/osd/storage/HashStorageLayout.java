@@ -22,11 +22,15 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.EmptyStackException;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.Stack;
 import java.util.TreeSet;
@@ -85,6 +89,27 @@ public class HashStorageLayout extends StorageLayout {
      */
     public static final String             QUOTA_INVALID_EXPIRE_TIMES_FILENAME = ".invalid_expire_times";
 
+    /**
+     * file that stores the index of all object files, see {@link ObjectIndex}
+     */
+    public static final String             OBJECT_INDEX_FILENAME         = ".objidx";
+
+    /**
+     * file in the storage directory that records the generations of the object
+     * indices, see {@link ObjectIndex.Generations}
+     */
+    public static final String             OBJECT_INDEX_STATE_FILENAME   = ".objidx_state";
+
+    /**
+     * file that contains the extents of padding objects without object files
+     */
+    public static final String             PADDING_FILENAME              = ".padding";
+
+    /**
+     * directory that contains the delta object versions of a file
+     */
+    public static final String             DELTA_DIRNAME                 = ".deltas";
+
     public static final int                SL_TAG                        = 0x00000002;
 
     /** 32bit algorithm */
@@ -111,6 +136,12 @@ public class HashStorageLayout extends StorageLayout {
 
     private static final int               DEFAULT_MAX_DIR_DEPTH         = 4;
 
+    /**
+     * maximum number of delta versions an object version is based on, before
+     * a complete object version is written
+     */
+    private static final int               MAX_DELTA_CHAIN_LENGTH        = 8;
+
     private int                            prefixLength;
 
     private int                            hashCutLength;
@@ -119,8 +150,16 @@ public class HashStorageLayout extends StorageLayout {
 
     private long                           _stat_fileInfoLoads;
 
+    private long                           _stat_objectDirScans;
+
     private final boolean                  checksumsEnabled;
 
+    private final boolean                  objectIndexEnabled;
+
+    private final ObjectIndex.Generations  indexGenerations;
+
+    private final int                      scanThreads;
+
     private final LRUCache<String, String> hashedPathCache;
 
     private static final boolean           USE_PATH_CACHE                = true;
@@ -135,6 +174,21 @@ public class HashStorageLayout extends StorageLayout {
 
     private final LRUCache<String, XLocSetVersionState> xLocSetVSCache;
 
+    /** reader for asynchronous object reads, or <tt>null</tt> if reads are synchronous */
+    private final AsyncObjectReader        asyncReader;
+
+    /** direct I/O for object files, or <tt>null</tt> if all files are accessed through the page cache */
+    private final DirectIO                 directIO;
+
+    /** volumes whose objects are accessed with direct I/O, or <tt>null</tt> for all volumes */
+    private final Set<String>              directIOVolumes;
+
+    /** if padding objects are recorded as extents instead of object files */
+    private final boolean                  sparsePadding;
+
+    /** if partial copy-on-write writes create delta object versions */
+    private final boolean                  deltaVersions;
+
     /** Creates a new instance of HashStorageLayout */
     public HashStorageLayout(OSDConfig config, MetadataCache cache) throws IOException {
         this(config, cache, DEFAULT_HASH, DEFAULT_SUBDIRS, DEFAULT_MAX_DIR_DEPTH);
@@ -152,8 +206,25 @@ public class HashStorageLayout extends StorageLayout {
      */
     public HashStorageLayout(OSDConfig config, MetadataCache cache, String hashAlgo, int maxSubdirsPerDir,
             int maxDirDepth) throws IOException {
+        this(config, cache, config.getObjDir(), hashAlgo, maxSubdirsPerDir, maxDirDepth);
+    }
 
-        super(config, cache);
+    /**
+     * Creates a new instance of HashStorageLayout that stores its files in the given directory instead of the
+     * object directory of the configuration.
+     * 
+     * @param config
+     * @param objDir
+     * @throws IOException
+     */
+    public HashStorageLayout(OSDConfig config, MetadataCache cache, String objDir) throws IOException {
+        this(config, cache, objDir, DEFAULT_HASH, DEFAULT_SUBDIRS, DEFAULT_MAX_DIR_DEPTH);
+    }
+
+    private HashStorageLayout(OSDConfig config, MetadataCache cache, String objDir, String hashAlgo,
+            int maxSubdirsPerDir, int maxDirDepth) throws IOException {
+
+        super(objDir, cache);
 
         /*
          * if (hashAlgo.equals(JAVA_HASH)) { this.hashAlgo = new JavaHash(); }else if
@@ -161,6 +232,34 @@ public class HashStorageLayout extends StorageLayout {
          */
 
         this.checksumsEnabled = config.isUseChecksums();
+        this.objectIndexEnabled = config.isUsingObjectIndex();
+        this.scanThreads = config.getStorageLayoutScanThreads();
+        this.sparsePadding = config.isUsingSparsePadding();
+        this.deltaVersions = config.isUsingDeltaVersions();
+        this.asyncReader = config.getAsyncIODepth() > 0 ? new AsyncObjectReader("OSD AIO",
+                config.getAsyncIODepth()) : null;
+
+        String directIOVolumes = config.getDirectIOVolumes().trim();
+        if (directIOVolumes.length() == 0) {
+            this.directIO = null;
+            this.directIOVolumes = null;
+        } else {
+            try {
+                this.directIO = new DirectIO(new File(this.storageDir));
+            } catch (IOException ex) {
+                throw new IOException("cannot use direct I/O for the volumes '" + directIOVolumes
+                        + "' (storage_layout.direct_io): " + ex.getMessage(), ex);
+            }
+            if (directIOVolumes.equals("*")) {
+                this.directIOVolumes = null;
+            } else {
+                this.directIOVolumes = new HashSet<String>();
+                for (String volume : directIOVolumes.split(",")) {
+                    if (volume.trim().length() > 0)
+                        this.directIOVolumes.add(volume.trim());
+                }
+            }
+        }
         if (config.isUseChecksums()) {
 
             // get the algorithm from the factory
@@ -176,6 +275,17 @@ public class HashStorageLayout extends StorageLayout {
             }
         }
 
+        if (objectIndexEnabled) {
+            this.indexGenerations = ObjectIndex.Generations.begin(new File(storageDir,
+                    OBJECT_INDEX_STATE_FILENAME));
+            if (indexGenerations.isRecovering() && Logging.isInfo())
+                Logging.logMessage(Logging.LEVEL_INFO, Category.storage, this,
+                        "no clean shutdown recorded for %s, object indices are rebuilt when files are opened",
+                        storageDir);
+        } else {
+            this.indexGenerations = null;
+        }
+
         if (maxSubdirsPerDir != 0) {
             this.prefixLength = Integer.toHexString(maxSubdirsPerDir).length();
         } else {
@@ -189,8 +299,9 @@ public class HashStorageLayout extends StorageLayout {
         }
 
         if (Logging.isDebug()) {
-            Logging.logMessage(Logging.LEVEL_DEBUG, this, "initialized with checksums=%s prefixLen=%d",
-                    this.checksumsEnabled, this.prefixLength);
+            Logging.logMessage(Logging.LEVEL_DEBUG, this,
+                    "initialized with checksums=%s objectIndex=%s prefixLen=%d", this.checksumsEnabled,
+                    this.objectIndexEnabled, this.prefixLength);
         }
 
         _stat_fileInfoLoads = 0;
@@ -200,6 +311,21 @@ public class HashStorageLayout extends StorageLayout {
         xLocSetVSCache = new LRUCache<String, XLocSetVersionState>(2048);
     }
 
+    /**
+     * Records the clean shutdown, upon which the object indices remain trusted.
+     */
+    @Override
+    public void shutdown() {
+        if (indexGenerations != null) {
+            try {
+                indexGenerations.end();
+            } catch (IOException ex) {
+                Logging.logMessage(Logging.LEVEL_WARN, Category.storage, this,
+                        "could not record the clean shutdown of %s: %s", storageDir, ex.toString());
+            }
+        }
+    }
+
     @Override
     public ObjectInformation readObject(String fileId, FileMetadata md, long objNo, int offset, int length,
             long version) throws IOException {
@@ -232,6 +358,31 @@ public class HashStorageLayout extends StorageLayout {
             return new ObjectInformation(ObjectInformation.ObjectStatus.DOES_NOT_EXIST, null, stripeSize);
         }
 
+        final PaddingExtents.Extent padding = getPaddingExtent(md, objNo, version);
+        if (padding != null) {
+            // padding objects without object file consist of zeros only
+            if (Logging.isDebug()) {
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.storage, this,
+                        "object %d is a padding object of size %d", objNo, padding.getSize());
+            }
+
+            if (padding.getSize() == 0) {
+                return new ObjectInformation(ObjectInformation.ObjectStatus.PADDING_OBJECT, null, stripeSize);
+            }
+
+            bbuf = BufferPool.allocate(Math.max(0, Math.min(length, padding.getSize() - offset)));
+            while (bbuf.hasRemaining()) {
+                bbuf.put((byte) 0);
+            }
+            bbuf.position(0);
+            return new ObjectInformation(ObjectInformation.ObjectStatus.EXISTS, bbuf, stripeSize);
+        }
+
+        final File deltaFile = getDeltaFile(fileId, md, objNo, version);
+        if (deltaFile != null) {
+            return readDeltaVersion(fileId, md, objNo, offset, length, version, deltaFile);
+        }
+
         final long oldChecksum = md.getObjectChecksum(objNo, version);
         String fileName = generateAbsoluteObjectPathFromFileId(fileId, objNo, version, oldChecksum);
 
@@ -241,6 +392,7 @@ public class HashStorageLayout extends StorageLayout {
         }
 
         File file = new File(fileName);
+        final boolean direct = isDirectIO(fileId);
 
         if (file.exists()) {
 
@@ -294,8 +446,12 @@ public class HashStorageLayout extends StorageLayout {
                                     attempt, RETRIES_INCOMPLETE_READ, fileName);
                         }
 
-                        f.getChannel().position(offset);
-                        f.getChannel().read(bbuf.getBuffer());
+                        if (direct) {
+                            directIO.read(file, offset, bbuf.getBuffer());
+                        } else {
+                            f.getChannel().position(offset);
+                            f.getChannel().read(bbuf.getBuffer());
+                        }
                         if (Logging.isDebug()) {
                             Logging.logMessage(Logging.LEVEL_DEBUG, Category.storage, this,
                                     "object %d is read at offset %d, %d bytes read, attempt: %d", objNo,
@@ -370,6 +526,424 @@ public class HashStorageLayout extends StorageLayout {
         }
     }
 
+    @Override
+    public void readObjectAsync(final String fileId, final FileMetadata md, final long objNo, final int offset,
+            final int length, final long version, final ReadObjectListener listener) {
+
+        // only the data of existing objects is read asynchronously; checksum
+        // verifications, padding objects, missing objects and direct I/O are
+        // handled by the synchronous read
+        if (asyncReader == null || length == FULL_OBJECT_LENGTH || version == 0 || isDirectIO(fileId)
+                || getPaddingExtent(md, objNo, version) != null || md.getDeltaBaseVersion(objNo, version) != 0) {
+            super.readObjectAsync(fileId, md, objNo, offset, length, version, listener);
+            return;
+        }
+
+        final int stripeSize = md.getStripingPolicy().getStripeSizeForObject(objNo);
+        final File file = new File(generateAbsoluteObjectPathFromFileId(fileId, objNo, version,
+                md.getObjectChecksum(objNo, version)));
+        final long flength = file.length();
+        if (flength <= offset) {
+            super.readObjectAsync(fileId, md, objNo, offset, length, version, listener);
+            return;
+        }
+
+        if (Logging.isDebug()) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, Category.storage, this,
+                    "reading object %s-%d asynchronously: %s", fileId, objNo, file.getPath());
+        }
+
+        final ReusableBuffer bbuf = BufferPool.allocate((int) Math.min(length, flength - offset));
+        asyncReader.read(file, offset, bbuf, new AsyncObjectReader.Listener() {
+
+            @Override
+            public void readComplete(IOException error) {
+                if (error == null && !bbuf.hasRemaining()) {
+                    bbuf.position(0);
+                    listener.readComplete(new ObjectInformation(ObjectInformation.ObjectStatus.EXISTS, bbuf,
+                            stripeSize), null);
+                    return;
+                }
+
+                // retry incomplete and failed reads synchronously
+                BufferPool.free(bbuf);
+                HashStorageLayout.super.readObjectAsync(fileId, md, objNo, offset, length, version, listener);
+            }
+        });
+    }
+
+    /**
+     * Checks whether the objects of a file are read and written with direct
+     * I/O, which depends on the volume of the file.
+     */
+    private boolean isDirectIO(String fileId) {
+        if (directIO == null || !directIO.isEnabled())
+            return false;
+        if (directIOVolumes == null)
+            return true;
+        int i = fileId.indexOf(':');
+        return i > 0 && directIOVolumes.contains(fileId.substring(0, i));
+    }
+
+    /**
+     * Returns the extent of a padding object without object file, or
+     * <code>null</code> if the object version is stored in an object file.
+     */
+    private static PaddingExtents.Extent getPaddingExtent(FileMetadata md, long objNo, long version) {
+        PaddingExtents padding = md.getPaddingExtents();
+        return padding == null ? null : padding.get(objNo, version);
+    }
+
+    /**
+     * Creates the object file of a padding object without object file, so
+     * that the object can be modified in place or copied to a new version.
+     */
+    private void createPaddingObjectFile(String fileId, FileMetadata md, long objNo, long version)
+            throws IOException {
+
+        PaddingExtents.Extent padding = getPaddingExtent(md, objNo, version);
+        String filename = generateAbsoluteObjectPathFromFileId(fileId, objNo, version, padding.getChecksum());
+        indexObjectCreated(fileId, objNo, version, padding.getChecksum());
+        RandomAccessFile raf = new RandomAccessFile(filename, "rw");
+        try {
+            raf.setLength(padding.getSize());
+        } finally {
+            raf.close();
+        }
+
+        md.getPaddingExtents().remove(objNo, version);
+        md.getPaddingExtents().save();
+    }
+
+    /**
+     * Returns the file of a delta object version. The name of the file
+     * contains the base version instead of the checksum.
+     */
+    private File getDeltaFile(String fileId, long objNo, long version, long baseVersion) {
+        return new File(generateAbsoluteFilePath(fileId) + DELTA_DIRNAME + "/"
+                + createFileName(objNo, version, baseVersion));
+    }
+
+    /**
+     * Returns the file of an object version if it is a delta version, or
+     * <code>null</code> if it is a complete object version. A delta version
+     * that was merged in the meantime, e.g. by the version cleanup, is
+     * treated as a complete object version.
+     */
+    private File getDeltaFile(String fileId, FileMetadata md, long objNo, long version) {
+        final long baseVersion = md.getDeltaBaseVersion(objNo, version);
+        if (baseVersion == 0) {
+            return null;
+        }
+        File deltaFile = getDeltaFile(fileId, objNo, version, baseVersion);
+        return deltaFile.exists() ? deltaFile : null;
+    }
+
+    /**
+     * Returns the number of delta versions an object version is based on,
+     * including the version itself.
+     */
+    private static int getDeltaChainLength(FileMetadata md, long objNo, long version) {
+        int length = 0;
+        for (long v = md.getDeltaBaseVersion(objNo, version); v != 0; v = md.getDeltaBaseVersion(objNo, v)) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Returns the size of an object version.
+     */
+    private int getObjectSize(String fileId, FileMetadata md, long objNo, long version) throws IOException {
+
+        final int stripeSize = md.getStripingPolicy().getStripeSizeForObject(objNo);
+        if (version == 0) {
+            return 0;
+        }
+
+        PaddingExtents.Extent padding = getPaddingExtent(md, objNo, version);
+        if (padding != null) {
+            return padding.getSize() == 0 ? stripeSize : padding.getSize();
+        }
+
+        File deltaFile = getDeltaFile(fileId, md, objNo, version);
+        if (deltaFile != null) {
+            return readDeltaObjectSize(deltaFile);
+        }
+
+        File file = new File(generateAbsoluteObjectPathFromFileId(fileId, objNo, version,
+                md.getObjectChecksum(objNo, version)));
+        if (!file.exists()) {
+            return 0;
+        }
+        return file.length() == 0 ? stripeSize : (int) file.length();
+    }
+
+    /**
+     * Writes a partial copy-on-write write as a delta version, which consists
+     * of the size of the object and the written byte range. The unmodified
+     * data is taken from the base version when the delta version is read.
+     */
+    private void writeDeltaVersion(String fileId, FileMetadata md, ReusableBuffer data, long objNo, int offset,
+            long newVersion, long baseVersion, boolean sync) throws IOException {
+
+        final int length = data.remaining();
+        final int objectSize = Math.max(getObjectSize(fileId, md, objNo, baseVersion), offset + length);
+
+        File deltaFile = getDeltaFile(fileId, objNo, newVersion, baseVersion);
+        deltaFile.getParentFile().mkdirs();
+        if (Logging.isDebug()) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, this, "writing delta version: %s", deltaFile);
+        }
+
+        RandomAccessFile f = new RandomAccessFile(deltaFile, sync ? "rwd" : "rw");
+        try {
+            f.setLength(0);
+            ByteBuffer header = ByteBuffer.allocate(3 * Integer.SIZE / 8);
+            header.putInt(objectSize).putInt(offset).putInt(length).flip();
+            f.getChannel().write(new ByteBuffer[] { header, data.getBuffer() });
+        } finally {
+            f.close();
+            BufferPool.free(data);
+        }
+
+        md.updateObjectVersion(objNo, newVersion);
+        md.updateDeltaBaseVersion(objNo, newVersion, baseVersion);
+    }
+
+    /**
+     * Appends a partial write to an existing delta version.
+     */
+    private void appendDeltaVersion(String fileId, FileMetadata md, ReusableBuffer data, long objNo, int offset,
+            long oldVersion, long newVersion, File deltaFile, boolean sync) throws IOException {
+
+        final int length = data.remaining();
+
+        RandomAccessFile f = new RandomAccessFile(deltaFile, sync ? "rwd" : "rw");
+        try {
+            final int objectSize = f.readInt();
+            if (offset + length > objectSize) {
+                f.seek(0);
+                f.writeInt(offset + length);
+            }
+            ByteBuffer header = ByteBuffer.allocate(2 * Integer.SIZE / 8);
+            header.putInt(offset).putInt(length).flip();
+            f.getChannel().position(f.length());
+            f.getChannel().write(new ByteBuffer[] { header, data.getBuffer() });
+        } finally {
+            f.close();
+            BufferPool.free(data);
+        }
+
+        if (newVersion != oldVersion) {
+            final long baseVersion = md.getDeltaBaseVersion(objNo, oldVersion);
+            deltaFile.renameTo(getDeltaFile(fileId, objNo, newVersion, baseVersion));
+            md.updateDeltaBaseVersion(objNo, oldVersion, 0);
+            md.updateDeltaBaseVersion(objNo, newVersion, baseVersion);
+            md.updateObjectVersion(objNo, newVersion);
+        }
+    }
+
+    /**
+     * Reads a range of a delta version.
+     */
+    private ObjectInformation readDeltaVersion(String fileId, FileMetadata md, long objNo, int offset, int length,
+            long version, File deltaFile) throws IOException {
+
+        final int stripeSize = md.getStripingPolicy().getStripeSizeForObject(objNo);
+        if (Logging.isDebug()) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, Category.storage, this,
+                    "object %d is a delta version based on version %d", objNo,
+                    md.getDeltaBaseVersion(objNo, version));
+        }
+
+        final int size = readDeltaObjectSize(deltaFile);
+        if (size <= offset) {
+            return new ObjectInformation(ObjectInformation.ObjectStatus.EXISTS, BufferPool.allocate(0),
+                    stripeSize);
+        }
+
+        ReusableBuffer bbuf = readObjectRange(fileId, md, objNo, version, offset, Math.min(length, size - offset));
+        return new ObjectInformation(ObjectInformation.ObjectStatus.EXISTS, bbuf, stripeSize);
+    }
+
+    /**
+     * Returns the complete content of a delta version.
+     */
+    private ReusableBuffer readDeltaObject(String fileId, FileMetadata md, long objNo, long version,
+            File deltaFile) throws IOException {
+        return readObjectRange(fileId, md, objNo, version, 0, readDeltaObjectSize(deltaFile));
+    }
+
+    /**
+     * Returns a range of an object version, in which the parts that no
+     * version has written consist of zeros.
+     */
+    private ReusableBuffer readObjectRange(String fileId, FileMetadata md, long objNo, long version, int offset,
+            int length) throws IOException {
+
+        ReusableBuffer bbuf = BufferPool.allocate(length);
+        try {
+            while (bbuf.hasRemaining()) {
+                bbuf.put((byte) 0);
+            }
+            bbuf.position(0);
+            readObjectVersionData(fileId, md, objNo, version, offset, bbuf);
+            bbuf.position(0);
+            return bbuf;
+        } catch (IOException ex) {
+            BufferPool.free(bbuf);
+            throw ex;
+        }
+    }
+
+    /**
+     * Reads a range of an object version into a zero-filled buffer, which
+     * receives the bytes from the given offset of the object up to the limit
+     * of the buffer. Delta versions are merged with their base versions; only
+     * the parts of the base versions and the byte ranges of the deltas that
+     * overlap the range are read.
+     */
+    private void readObjectVersionData(String fileId, FileMetadata md, long objNo, long version, int offset,
+            ReusableBuffer bbuf) throws IOException {
+
+        if (version == 0 || getPaddingExtent(md, objNo, version) != null) {
+            return;
+        }
+
+        final File deltaFile = getDeltaFile(fileId, md, objNo, version);
+        if (deltaFile != null) {
+
+            readObjectVersionData(fileId, md, objNo, md.getDeltaBaseVersion(objNo, version), offset, bbuf);
+
+            // apply the byte ranges of the delta version that overlap the
+            // range; the data of the other ones is skipped
+            final int end = offset + bbuf.limit();
+            RandomAccessFile f = new RandomAccessFile(deltaFile, "r");
+            try {
+                final FileChannel channel = f.getChannel();
+                final long fileLength = channel.size();
+                final ByteBuffer header = ByteBuffer.allocate(2 * Integer.SIZE / 8);
+                long pos = Integer.SIZE / 8;
+                while (fileLength - pos >= header.capacity()) {
+                    header.clear();
+                    readFully(channel, header, pos);
+                    header.flip();
+                    final int rangeOffset = header.getInt();
+                    final int rangeLength = header.getInt();
+                    pos += header.capacity();
+                    if (rangeLength > fileLength - pos) {
+                        // incomplete write
+                        break;
+                    }
+
+                    final int from = Math.max(offset, rangeOffset);
+                    final int to = Math.min(end, rangeOffset + rangeLength);
+                    if (from < to) {
+                        ByteBuffer dst = bbuf.getBuffer().duplicate();
+                        dst.limit(to - offset);
+                        dst.position(from - offset);
+                        readFully(channel, dst, pos + from - rangeOffset);
+                    }
+                    pos += rangeLength;
+                }
+            } finally {
+                f.close();
+            }
+            bbuf.position(0);
+            return;
+        }
+
+        File file = new File(generateAbsoluteObjectPathFromFileId(fileId, objNo, version,
+                md.getObjectChecksum(objNo, version)));
+        if (!file.exists()) {
+            return;
+        }
+        RandomAccessFile f = new RandomAccessFile(file, "r");
+        try {
+            bbuf.position(0);
+            int bytesRead;
+            do {
+                bytesRead = f.getChannel().read(bbuf.getBuffer(), offset + bbuf.position());
+            } while (bytesRead > 0 && bbuf.hasRemaining());
+            bbuf.position(0);
+        } finally {
+            f.close();
+        }
+    }
+
+    /**
+     * Reads until the buffer is full or the file ends.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            final int bytesRead = channel.read(buf, position);
+            if (bytesRead <= 0) {
+                break;
+            }
+            position += bytesRead;
+        }
+    }
+
+    private static int readDeltaObjectSize(File deltaFile) throws IOException {
+        RandomAccessFile f = new RandomAccessFile(deltaFile, "r");
+        try {
+            return f.readInt();
+        } finally {
+            f.close();
+        }
+    }
+
+    /**
+     * Replaces a delta version by a complete object version.
+     */
+    private void mergeDeltaVersion(String fileId, FileMetadata md, long objNo, long version) throws IOException {
+
+        final File deltaFile = getDeltaFile(fileId, md, objNo, version);
+        if (deltaFile == null) {
+            md.updateDeltaBaseVersion(objNo, version, 0);
+            return;
+        }
+
+        ReusableBuffer data = readDeltaObject(fileId, md, objNo, version, deltaFile);
+        String filename = generateAbsoluteObjectPathFromFileId(fileId, objNo, version, 0l);
+        if (Logging.isDebug()) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, Category.storage, this, "merging delta version %s to %s",
+                    deltaFile, filename);
+        }
+
+        // the delta version is only deleted once the complete object version
+        // has been written; until then, a temporary file is used, which is
+        // not taken for an object file
+        File objFile = new File(filename);
+        File tmpFile = new File(objFile.getParentFile(), "." + objFile.getName() + ".tmp");
+        RandomAccessFile f = new RandomAccessFile(tmpFile, "rw");
+        try {
+            f.getChannel().write(data.getBuffer());
+            f.getChannel().force(false);
+        } finally {
+            f.close();
+            BufferPool.free(data);
+        }
+
+        indexObjectCreated(fileId, objNo, version, 0l);
+        if (!tmpFile.renameTo(objFile)) {
+            tmpFile.delete();
+            throw new IOException("could not create the object file " + filename);
+        }
+
+        deltaFile.delete();
+        md.updateDeltaBaseVersion(objNo, version, 0);
+    }
+
+    /**
+     * Deletes a delta version.
+     */
+    private void deleteDeltaVersion(FileMetadata md, long objNo, long version, File deltaFile) {
+        deltaFile.delete();
+        md.updateDeltaBaseVersion(objNo, version, 0);
+    }
+
     @Override
     public void writeObject(String fileId, FileMetadata md, ReusableBuffer data, long objNo, int offset,
             long newVersion, boolean sync, boolean cow) throws IOException {
@@ -381,7 +955,7 @@ public class HashStorageLayout extends StorageLayout {
         }
 
         String relPath = generateRelativeFilePath(fileId);
-        new File(this.storageDir + relPath).mkdirs();
+        createFileDir(relPath);
 
         if (Logging.isDebug()) {
             Logging.logMessage(Logging.LEVEL_DEBUG, Category.storage, this,
@@ -390,10 +964,48 @@ public class HashStorageLayout extends StorageLayout {
 
         try {
 
-            final boolean isRangeWrite = (offset > 0)
-                    || (data.capacity() < md.getStripingPolicy().getStripeSizeForObject(objNo));
+            final int stripeSize = md.getStripingPolicy().getStripeSizeForObject(objNo);
+            final boolean isRangeWrite = (offset > 0) || (data.capacity() < stripeSize);
+
+            final long oldVersion = md.getLatestObjectVersion(objNo);
+            final boolean replacesOldVersion = !cow || newVersion == oldVersion;
+            boolean padding = getPaddingExtent(md, objNo, oldVersion) != null;
+            if (padding && isRangeWrite && replacesOldVersion) {
+                // the object is modified in place, or copied to its new
+                // version, from an object file
+                createPaddingObjectFile(fileId, md, objNo, oldVersion);
+                padding = false;
+            }
+
+            File oldDeltaFile = getDeltaFile(fileId, md, objNo, oldVersion);
+            if (oldDeltaFile != null && isRangeWrite && !(cow || checksumsEnabled)) {
+                // small writes are added to the delta version; a delta version
+                // that would exceed half of the object size is merged
+                if (oldDeltaFile.length() + data.capacity() <= stripeSize / 2) {
+                    data.position(0);
+                    appendDeltaVersion(fileId, md, data, objNo, offset, oldVersion, newVersion, oldDeltaFile,
+                            sync);
+                    return;
+                }
+                mergeDeltaVersion(fileId, md, objNo, oldVersion);
+                oldDeltaFile = null;
+            }
+
+            // the extent of a replaced padding object is removed before the
+            // object file is written, since reads check the extents first
+            if (padding && replacesOldVersion) {
+                md.getPaddingExtents().remove(objNo, oldVersion);
+                md.getPaddingExtents().save();
+            }
+
             if (isRangeWrite) {
-                if (cow || checksumsEnabled) {
+                if (cow && deltaVersions && !checksumsEnabled && oldVersion != 0 && newVersion != oldVersion
+                        && data.capacity() <= stripeSize / 2
+                        && getDeltaChainLength(md, objNo, oldVersion) < MAX_DELTA_CHAIN_LENGTH) {
+                    // only store the written range instead of copying the object
+                    data.position(0);
+                    writeDeltaVersion(fileId, md, data, objNo, offset, newVersion, oldVersion, sync);
+                } else if (cow || checksumsEnabled) {
                     partialWriteCOW(relPath, fileId, md, data, offset, objNo, newVersion, sync, !cow);
                 } else {
                     partialWriteNoCOW(relPath, fileId, md, data, objNo, offset, newVersion, sync);
@@ -402,8 +1014,17 @@ public class HashStorageLayout extends StorageLayout {
                 completeWrite(relPath, fileId, md, data, objNo, newVersion, sync, !cow);
             }
 
+            // the old version of the object was replaced
+            if (oldDeltaFile != null && replacesOldVersion) {
+                deleteDeltaVersion(md, objNo, oldVersion, oldDeltaFile);
+            }
+
         } catch (FileNotFoundException ex) {
+            invalidateObjectIndex(fileId);
             throw new IOException("unable to create file directory or object: " + ex.getMessage());
+        } catch (IOException ex) {
+            invalidateObjectIndex(fileId);
+            throw ex;
         }
     }
 
@@ -430,14 +1051,19 @@ public class HashStorageLayout extends StorageLayout {
         if (Logging.isDebug()) {
             Logging.logMessage(Logging.LEVEL_DEBUG, this, "writing to file (COW): %s", newFilename);
         }
+        indexObjectCreated(fileId, objNo, newVersion, newChecksum);
         File file = new File(newFilename);
         String mode = sync ? "rwd" : "rw";
         RandomAccessFile f = null;
 
         try {
-            f = new RandomAccessFile(file, mode);
             fullObj.position(0);
-            f.getChannel().write(fullObj.getBuffer());
+            if (isDirectIO(fileId)) {
+                directIO.write(file, 0, fullObj.getBuffer(), sync);
+            } else {
+                f = new RandomAccessFile(file, mode);
+                f.getChannel().write(fullObj.getBuffer());
+            }
         } catch (IOException e) {
             Logging.logMessage(Logging.LEVEL_ERROR, Category.storage, this,
                     "Failed to write object file to disk. Error: %s Path to the file on disk: %s",
@@ -454,7 +1080,9 @@ public class HashStorageLayout extends StorageLayout {
             String oldFilename = generateAbsoluteObjectPathFromRelPath(relativePath, objNo, oldVersion,
                     oldChecksum);
             File oldFile = new File(oldFilename);
-            oldFile.delete();
+            if (oldFile.delete()) {
+                indexObjectDeleted(fileId, objNo, oldVersion, oldChecksum);
+            }
         }
 
         md.updateObjectVersion(objNo, newVersion);
@@ -467,19 +1095,28 @@ public class HashStorageLayout extends StorageLayout {
         assert (!checksumsEnabled);
 
         final long oldVersion = md.getLatestObjectVersion(objNo);
-        final String filename = generateAbsoluteObjectPathFromRelPath(relativePath, objNo, oldVersion, 0l);
+        // objects which do not exist yet are directly created with the new version
+        final long fileVersion = oldVersion == 0 ? newVersion : oldVersion;
+        final String filename = generateAbsoluteObjectPathFromRelPath(relativePath, objNo, fileVersion, 0l);
         if (Logging.isDebug()) {
             Logging.logMessage(Logging.LEVEL_DEBUG, this, "writing to file: %s", filename);
         }
+        if (oldVersion == 0) {
+            indexObjectCreated(fileId, objNo, newVersion, 0l);
+        }
         File file = new File(filename);
         String mode = sync ? "rwd" : "rw";
         RandomAccessFile f = null;
 
         try {
-            f = new RandomAccessFile(file, mode);
             data.position(0);
-            f.seek(offset);
-            f.getChannel().write(data.getBuffer());
+            if (isDirectIO(fileId)) {
+                directIO.write(file, offset, data.getBuffer(), sync);
+            } else {
+                f = new RandomAccessFile(file, mode);
+                f.seek(offset);
+                f.getChannel().write(data.getBuffer());
+            }
         } catch (IOException e) {
             Logging.logMessage(Logging.LEVEL_ERROR, Category.storage, this,
                     "Failed to write object file to disk. Error: %s Path to the file on disk: %s",
@@ -492,12 +1129,14 @@ public class HashStorageLayout extends StorageLayout {
             BufferPool.free(data);
         }
 
-        if (newVersion != oldVersion) {
+        if (newVersion != fileVersion) {
             String newFilename = generateAbsoluteObjectPathFromRelPath(relativePath, objNo, newVersion, 0l);
-            file.renameTo(new File(newFilename));
+            renameObjectFile(fileId, file, new File(newFilename), objNo, oldVersion, newVersion);
             if (Logging.isDebug()) {
                 Logging.logMessage(Logging.LEVEL_DEBUG, this, "renamed to: %s", newFilename);
             }
+        }
+        if (newVersion != oldVersion) {
             md.updateObjectVersion(objNo, newVersion);
         }
     }
@@ -520,14 +1159,21 @@ public class HashStorageLayout extends StorageLayout {
         if (Logging.isDebug()) {
             Logging.logMessage(Logging.LEVEL_DEBUG, this, "writing to file: %s", newFilename);
         }
+        if ((oldVersion != newVersion) || (newChecksum != oldChecksum)) {
+            indexObjectCreated(fileId, objNo, newVersion, newChecksum);
+        }
         File file = new File(newFilename);
         String mode = sync ? "rwd" : "rw";
         RandomAccessFile f = null;
 
         try {
-            f = new RandomAccessFile(file, mode);
             data.position(0);
-            f.getChannel().write(data.getBuffer());
+            if (isDirectIO(fileId)) {
+                directIO.write(file, 0, data.getBuffer(), sync);
+            } else {
+                f = new RandomAccessFile(file, mode);
+                f.getChannel().write(data.getBuffer());
+            }
         } finally {
             if (f != null) {
                 f.close();
@@ -539,7 +1185,9 @@ public class HashStorageLayout extends StorageLayout {
             String oldFilename = generateAbsoluteObjectPathFromRelPath(relativePath, objNo, oldVersion,
                     oldChecksum);
             File oldFile = new File(oldFilename);
-            oldFile.delete();
+            if (oldFile.delete()) {
+                indexObjectDeleted(fileId, objNo, oldVersion, oldChecksum);
+            }
         }
 
         md.updateObjectVersion(objNo, newVersion);
@@ -586,12 +1234,47 @@ public class HashStorageLayout extends StorageLayout {
     @Override
     public void truncateObject(String fileId, FileMetadata md, long objNo, int newLength, long newVersion,
             boolean cow) throws IOException {
+        try {
+            truncateObjectFile(fileId, md, objNo, newLength, newVersion, cow);
+        } catch (IOException ex) {
+            invalidateObjectIndex(fileId);
+            throw ex;
+        }
+    }
+
+    private void truncateObjectFile(String fileId, FileMetadata md, long objNo, int newLength, long newVersion,
+            boolean cow) throws IOException {
 
         final long oldVersion = md.getLatestObjectVersion(objNo);
         final long oldChecksum = md.getObjectChecksum(objNo, oldVersion);
 
         assert (newLength <= md.getStripingPolicy().getStripeSizeForObject(objNo));
 
+        // delta versions are truncated like complete object versions
+        if (md.getDeltaBaseVersion(objNo, oldVersion) != 0) {
+            mergeDeltaVersion(fileId, md, objNo, oldVersion);
+        }
+
+        final PaddingExtents.Extent padding = getPaddingExtent(md, objNo, oldVersion);
+        if (padding != null) {
+            // a padding object remains a padding object, only its size changes
+            if (newLength == padding.getSize()) {
+                return;
+            }
+
+            final long newChecksum = calcPaddingChecksum(newLength);
+            if (!cow || newVersion == oldVersion) {
+                md.getPaddingExtents().remove(objNo, oldVersion);
+            }
+            md.getPaddingExtents().add(objNo, newVersion, newLength, newChecksum);
+            md.getPaddingExtents().save();
+
+            md.updateObjectVersion(objNo, newVersion);
+            if (checksumsEnabled)
+                md.updateObjectChecksum(objNo, newVersion, newChecksum);
+            return;
+        }
+
         String oldFileName = generateAbsoluteObjectPathFromFileId(fileId, objNo, oldVersion, oldChecksum);
         File oldFile = new File(oldFileName);
         final long currentLength = oldFile.length();
@@ -626,7 +1309,9 @@ public class HashStorageLayout extends StorageLayout {
             }
 
             if (!cow) {
-                oldFile.delete();
+                if (oldFile.delete()) {
+                    indexObjectDeleted(fileId, objNo, oldVersion, oldChecksum);
+                }
                 if (Logging.isDebug()) {
                     Logging.logMessage(Logging.LEVEL_DEBUG, Category.storage, this,
                             "truncate object %d, delete old version %d: %s", objNo, oldVersion, oldFileName);
@@ -634,6 +1319,7 @@ public class HashStorageLayout extends StorageLayout {
             }
 
             String newFilename = generateAbsoluteObjectPathFromFileId(fileId, objNo, newVersion, newChecksum);
+            indexObjectCreated(fileId, objNo, newVersion, newChecksum);
             RandomAccessFile raf = null;
             try {
                 raf = new RandomAccessFile(newFilename, mode);
@@ -656,6 +1342,10 @@ public class HashStorageLayout extends StorageLayout {
 
         } else {
             // just make the object shorter
+            if (oldVersion == 0) {
+                // the object file is created
+                indexObjectCreated(fileId, objNo, oldVersion, 0l);
+            }
             RandomAccessFile raf = null;
             try {
                 raf = new RandomAccessFile(oldFile, mode);
@@ -667,7 +1357,7 @@ public class HashStorageLayout extends StorageLayout {
             }
             if (newVersion != oldVersion) {
                 String newFilename = generateAbsoluteObjectPathFromFileId(fileId, objNo, newVersion, 0l);
-                oldFile.renameTo(new File(newFilename));
+                renameObjectFile(fileId, oldFile, new File(newFilename), objNo, oldVersion, newVersion);
                 md.updateObjectVersion(objNo, newVersion);
                 if (Logging.isDebug()) {
                     Logging.logMessage(Logging.LEVEL_DEBUG, Category.storage, this,
@@ -685,22 +1375,38 @@ public class HashStorageLayout extends StorageLayout {
         assert (size >= 0) : "size is " + size;
 
         String relPath = generateRelativeFilePath(fileId);
-        new File(this.storageDir + relPath).mkdirs();
+        createFileDir(relPath);
 
         // calculate the checksum for the padding object if necessary
-        long checksum = 0;
-        if (checksumAlgo != null) {
-            byte[] content = new byte[size];
-            checksumAlgo.update(ByteBuffer.wrap(content));
-            checksum = checksumAlgo.getValue();
+        long checksum = calcPaddingChecksum(size);
+
+        String filename = generateAbsoluteObjectPathFromRelPath(relPath, objNo, version, checksum);
+
+        // record the padding object without creating an object file, unless
+        // an object file of the same version exists
+        PaddingExtents padding = md.getPaddingExtents();
+        if (sparsePadding && padding != null && !new File(filename).exists()) {
+            if (padding.get(objNo, version) != null) {
+                padding.remove(objNo, version);
+            }
+            padding.add(objNo, version, size, checksum);
+            padding.save();
+
+            md.updateObjectVersion(objNo, version);
+            if (checksumsEnabled)
+                md.updateObjectChecksum(objNo, version, checksum);
+            return;
         }
 
         // write file
-        String filename = generateAbsoluteObjectPathFromRelPath(relPath, objNo, version, checksum);
+        indexObjectCreated(fileId, objNo, version, checksum);
         RandomAccessFile raf = null;
         try {
             raf = new RandomAccessFile(filename, "rw");
             raf.setLength(size);
+        } catch (IOException ex) {
+            invalidateObjectIndex(fileId);
+            throw ex;
         } finally {
             if (raf != null) {
                 raf.close();
@@ -713,10 +1419,38 @@ public class HashStorageLayout extends StorageLayout {
             md.updateObjectChecksum(objNo, version, checksum);
     }
 
+    /**
+     * Calculates the checksum of a padding object of the given size, if
+     * checksums are enabled.
+     */
+    private long calcPaddingChecksum(int size) {
+        if (checksumAlgo == null) {
+            return 0;
+        }
+        checksumAlgo.reset();
+        checksumAlgo.update(ByteBuffer.wrap(new byte[size]));
+        return checksumAlgo.getValue();
+    }
+
     @Override
-    public void deleteFile(String fileId, final boolean deleteMetadata) throws IOException {
+    public long deleteFile(String fileId, final boolean deleteMetadata) throws IOException {
         File fileDir = new File(generateAbsoluteFilePath(fileId));
 
+        // The object index has to be removed before the objects, as it must not
+        // refer to object files which do not exist.
+        new File(fileDir, OBJECT_INDEX_FILENAME).delete();
+
+        // Padding objects are deleted with the objects, even though their
+        // extents are stored in a metadata file.
+        new File(fileDir, PADDING_FILENAME).delete();
+        FileMetadata md = cache == null ? null : cache.getFileInfo(fileId);
+        if (md != null && md.getPaddingExtents() != null) {
+            md.getPaddingExtents().clear();
+        }
+        if (md != null && md.getDeltaVersions() != null) {
+            md.getDeltaVersions().clear();
+        }
+
         // Filter metadata from the fileList, if deleteMetadata is not set.
         File[] fileList = fileDir.listFiles(new FileFilter() {
 
@@ -732,18 +1466,37 @@ public class HashStorageLayout extends StorageLayout {
 
         // Stop the execution if the directory does not exist.
         if (fileList == null) {
-            return;
+            return 0;
         }
 
         // Delete the filtered files.
+        long deletedBytes = 0;
         for (File file : fileList) {
-            file.delete();
+            long length = file.length();
+            if (file.delete()) {
+                deletedBytes += length;
+            }
+        }
+
+        // Delete the delta object versions.
+        File deltaDir = new File(fileDir, DELTA_DIRNAME);
+        File[] deltas = deltaDir.listFiles();
+        if (deltas != null) {
+            for (File file : deltas) {
+                long length = file.length();
+                if (file.delete()) {
+                    deletedBytes += length;
+                }
+            }
+            deltaDir.delete();
         }
 
         // Try to delete the data directory if it is empty.
         if (deleteMetadata) {
             del(fileDir);
         }
+
+        return deletedBytes;
     }
 
     public boolean isMetadataFile(File pathname) {
@@ -762,6 +1515,29 @@ public class HashStorageLayout extends StorageLayout {
     public void deleteObject(String fileId, FileMetadata md, final long objNo, long version)
             throws IOException {
         final long verToDel = (version == LATEST_VERSION) ? md.getLatestObjectVersion(objNo) : version;
+
+        // delta versions based on the deleted version are merged first
+        Map<Long, Long> deltas = md.getDeltaVersions() == null ? null : md.getDeltaVersions().get(objNo);
+        if (deltas != null) {
+            for (Entry<Long, Long> delta : new ArrayList<Entry<Long, Long>>(deltas.entrySet())) {
+                if (delta.getValue() == verToDel) {
+                    mergeDeltaVersion(fileId, md, objNo, delta.getKey());
+                }
+            }
+        }
+
+        File deltaFile = getDeltaFile(fileId, md, objNo, verToDel);
+        if (deltaFile != null) {
+            deleteDeltaVersion(md, objNo, verToDel, deltaFile);
+            return;
+        }
+
+        PaddingExtents padding = md.getPaddingExtents();
+        if (padding != null && padding.remove(objNo, verToDel)) {
+            padding.save();
+            return;
+        }
+
         File fileDir = new File(generateAbsoluteFilePath(fileId));
         File[] objs = fileDir.listFiles(new FileFilter() {
 
@@ -775,10 +1551,38 @@ public class HashStorageLayout extends StorageLayout {
             }
         });
         for (File obj : objs) {
-            obj.delete();
+            if (obj.delete()) {
+                ObjFileData ofd = parseFileName(obj.getName());
+                indexObjectDeleted(fileId, ofd.objNo, ofd.objVersion, ofd.checksum);
+            }
         }
     }
 
+    @Override
+    public int compactObjectVersions(String fileId, FileMetadata md) throws IOException {
+
+        // merge delta versions that are no longer small compared to the
+        // object, or that are based on too many other delta versions
+        List<long[]> merge = new ArrayList<long[]>();
+        for (Entry<Long, Map<Long, Long>> obj : md.getDeltaVersions().entrySet()) {
+            for (long version : obj.getValue().keySet()) {
+                File deltaFile = getDeltaFile(fileId, md, obj.getKey(), version);
+                if (deltaFile == null) {
+                    continue;
+                }
+                if (deltaFile.length() > readDeltaObjectSize(deltaFile) / 2
+                        || getDeltaChainLength(md, obj.getKey(), version) > MAX_DELTA_CHAIN_LENGTH) {
+                    merge.add(new long[] { obj.getKey(), version });
+                }
+            }
+        }
+
+        for (long[] delta : merge) {
+            mergeDeltaVersion(fileId, md, delta[0], delta[1]);
+        }
+        return merge.size();
+    }
+
     @Override
     public boolean fileExists(String fileId) {
         File dir = new File(generateAbsoluteFilePath(fileId));
@@ -802,7 +1606,7 @@ public class HashStorageLayout extends StorageLayout {
             Map<Long, Long> latestObjVersions = null;
 
             long lastObjNum = -1;
-            String lastObject = null;
+            ObjFileData lastObject = null;
 
             File currVerFile = new File(fileDir, CURRENT_VER_FILENAME);
             boolean multiVersionSupport = currVerFile.exists();
@@ -830,15 +1634,29 @@ public class HashStorageLayout extends StorageLayout {
                 rf.close();
             }
 
-            // determine the largest object versions, as well as all checksums
-            String[] objs = fileDir.list();
-            for (String obj : objs) {
-
-                if (obj.startsWith(".")) {
-                    continue; // ignore special files (metadata, .tepoch)
+            // padding objects without object files are treated like objects
+            PaddingExtents padding = new PaddingExtents(new File(fileDir, PADDING_FILENAME));
+            padding.load();
+            List<ObjFileData> objects = new ArrayList<ObjFileData>(getObjectFiles(fileDir));
+            objects.addAll(padding.getObjects());
+
+            // as well as delta versions, whose file names contain the base
+            // versions instead of checksums
+            Map<Long, Map<Long, Long>> deltaVersions = new HashMap<Long, Map<Long, Long>>();
+            String[] deltas = new File(fileDir, DELTA_DIRNAME).list();
+            for (int i = 0; deltas != null && i < deltas.length; i++) {
+                ObjFileData ofd = parseFileName(deltas[i]);
+                objects.add(new ObjFileData(ofd.objNo, ofd.objVersion, 0));
+                Map<Long, Long> versions = deltaVersions.get(ofd.objNo);
+                if (versions == null) {
+                    versions = new HashMap<Long, Long>();
+                    deltaVersions.put(ofd.objNo, versions);
                 }
+                versions.put(ofd.objVersion, ofd.checksum);
+            }
 
-                ObjFileData ofd = parseFileName(obj);
+            // determine the largest object versions, as well as all checksums
+            for (ObjFileData ofd : objects) {
 
                 // determine the checksum
                 if (ofd.checksum != 0) {
@@ -856,12 +1674,12 @@ public class HashStorageLayout extends StorageLayout {
                 if (multiVersionSupport) {
                     Long latestObjVer = latestObjVersions.get(ofd.objNo);
                     if (ofd.objNo == lastObjNum && latestObjVer != null && ofd.objVersion == latestObjVer)
-                        lastObject = obj;
+                        lastObject = ofd;
                 }
 
                 else {
                     if (ofd.objNo > lastObjNum) {
-                        lastObject = obj;
+                        lastObject = ofd;
                         lastObjNum = ofd.objNo;
                     }
                 }
@@ -891,10 +1709,21 @@ public class HashStorageLayout extends StorageLayout {
 
             info.initObjectChecksums(objChecksums);
 
+            info.initPaddingExtents(padding);
+            info.initDeltaVersions(deltaVersions);
+
             // determine filesize from lastObjectNumber
             if (lastObjNum > -1) {
-                File lastObjFile = new File(fileDir.getAbsolutePath() + "/" + lastObject);
-                long lastObjSize = lastObjFile.length();
+                PaddingExtents.Extent lastPadding = lastObject == null ? null : padding.get(lastObject.objNo,
+                        lastObject.objVersion);
+                File lastObjFile = new File(fileDir.getAbsolutePath() + "/"
+                        + (lastObject == null ? null : lastObject.getFileName()));
+                long lastObjSize = lastPadding != null ? lastPadding.getSize() : lastObjFile.length();
+                File lastDeltaFile = lastObject == null ? null : getDeltaFile(fileId, info, lastObject.objNo,
+                        lastObject.objVersion);
+                if (lastDeltaFile != null) {
+                    lastObjSize = readDeltaObjectSize(lastDeltaFile);
+                }
                 // check for empty padding file
                 if (lastObjSize == 0) {
                     lastObjSize = sp.getStripeSizeForObject(lastObjSize);
@@ -944,12 +1773,164 @@ public class HashStorageLayout extends StorageLayout {
             info.initLargestObjectVersions(new HashMap<Long, Long>());
             info.initObjectChecksums(new HashMap<Long, Map<Long, Long>>());
             info.initVersionTable(new VersionTable(new File(fileDir, VTABLE_FILENAME)));
+            info.initPaddingExtents(new PaddingExtents(new File(fileDir, PADDING_FILENAME)));
+            info.initDeltaVersions(new HashMap<Long, Map<Long, Long>>());
         }
 
         info.setGlobalLastObjectNumber(-1);
         return info;
     }
 
+    /**
+     * Determines the object files of a file. If possible, the object files are
+     * read from the object index. Otherwise, the directory is scanned and the
+     * object index is rebuilt.
+     */
+    private Collection<ObjFileData> getObjectFiles(File fileDir) throws IOException {
+
+        File indexFile = new File(fileDir, OBJECT_INDEX_FILENAME);
+
+        if (!objectIndexEnabled) {
+            // an index from a previous run would not reflect the objects
+            // written in the meantime
+            indexFile.delete();
+            return scanObjectFiles(fileDir);
+        }
+
+        ObjectIndex index = ObjectIndex.load(indexFile);
+        if (index != null && index.getGeneration() < indexGenerations.trusted) {
+            // the index may have lost records in an unclean shutdown
+            if (Logging.isDebug())
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.storage, this,
+                        "object index of %s predates an unclean shutdown, rebuilding it", fileDir);
+        } else if (index != null && index.isTailConsistent(fileDir)) {
+            List<ObjFileData> objFiles = index.getObjectFiles();
+            if (index.needsCompaction(objFiles.size())) {
+                ObjectIndex.write(indexFile, objFiles, indexGenerations.current);
+            }
+            return objFiles;
+        } else if (index != null) {
+            Logging.logMessage(Logging.LEVEL_INFO, Category.storage, this,
+                    "object index of %s does not match the object files, rebuilding it", fileDir);
+        }
+
+        List<ObjFileData> objFiles = scanObjectFiles(fileDir);
+
+        // files with object file names of the old layout version are not
+        // indexed
+        boolean legacyNames = false;
+        for (ObjFileData ofd : objFiles) {
+            if (!ofd.getFileName().equals(createFileName(ofd.objNo, ofd.objVersion, ofd.checksum))) {
+                legacyNames = true;
+                break;
+            }
+        }
+        if (legacyNames) {
+            indexFile.delete();
+        } else {
+            ObjectIndex.write(indexFile, objFiles, indexGenerations.current);
+        }
+
+        return objFiles;
+    }
+
+    private List<ObjFileData> scanObjectFiles(File fileDir) {
+
+        _stat_objectDirScans++;
+
+        String[] objs = fileDir.list();
+        List<ObjFileData> objFiles = new ArrayList<ObjFileData>(objs == null ? 0 : objs.length);
+        if (objs != null) {
+            for (String obj : objs) {
+                if (obj.startsWith(".")) {
+                    continue; // ignore special files (metadata, .tepoch)
+                }
+                objFiles.add(parseFileName(obj));
+            }
+        }
+        return objFiles;
+    }
+
+    /**
+     * Creates the directory of a file before any of its objects or metadata
+     * are written, so that {@link #fileExists(String)} finds the file.
+     */
+    void createFileDirectory(String fileId) throws IOException {
+        createFileDir(generateRelativeFilePath(fileId));
+    }
+
+    /**
+     * Creates the directory of a file. The object index of a newly created
+     * directory is initialized.
+     */
+    private void createFileDir(String relPath) throws IOException {
+        File fileDir = new File(this.storageDir + relPath);
+        if (fileDir.mkdirs() && objectIndexEnabled) {
+            ObjectIndex.write(new File(fileDir, OBJECT_INDEX_FILENAME), new ArrayList<ObjFileData>(0),
+                    indexGenerations.current);
+        }
+    }
+
+    /**
+     * Adds an object file to the object index. Has to be called before the
+     * object file is created.
+     */
+    private void indexObjectCreated(String fileId, long objNo, long objVersion, long checksum) {
+        if (!objectIndexEnabled) {
+            return;
+        }
+        try {
+            ObjectIndex.appendAdd(new File(generateAbsoluteFilePath(fileId), OBJECT_INDEX_FILENAME), objNo,
+                    objVersion, checksum);
+        } catch (IOException ex) {
+            Logging.logMessage(Logging.LEVEL_WARN, Category.storage, this,
+                    "could not update object index of %s: %s", fileId, ex.toString());
+            invalidateObjectIndex(fileId);
+        }
+    }
+
+    /**
+     * Removes an object file from the object index. Has to be called after the
+     * object file was deleted.
+     */
+    private void indexObjectDeleted(String fileId, long objNo, long objVersion, long checksum) {
+        if (!objectIndexEnabled) {
+            return;
+        }
+        try {
+            ObjectIndex.appendRemove(new File(generateAbsoluteFilePath(fileId), OBJECT_INDEX_FILENAME), objNo,
+                    objVersion, checksum);
+        } catch (IOException ex) {
+            Logging.logMessage(Logging.LEVEL_WARN, Category.storage, this,
+                    "could not update object index of %s: %s", fileId, ex.toString());
+            invalidateObjectIndex(fileId);
+        }
+    }
+
+    /**
+     * Renames an object file and updates the object index accordingly.
+     */
+    private void renameObjectFile(String fileId, File oldFile, File newFile, long objNo, long oldVersion,
+            long newVersion) {
+        indexObjectCreated(fileId, objNo, newVersion, 0l);
+        if (oldFile.renameTo(newFile)) {
+            indexObjectDeleted(fileId, objNo, oldVersion, 0l);
+        } else {
+            indexObjectDeleted(fileId, objNo, newVersion, 0l);
+        }
+    }
+
+    /**
+     * Removes the object index of a file after an operation on its object
+     * files failed. The index is rebuilt from the directory when the file
+     * metadata is loaded the next time.
+     */
+    private void invalidateObjectIndex(String fileId) {
+        if (objectIndexEnabled) {
+            new File(generateAbsoluteFilePath(fileId), OBJECT_INDEX_FILENAME).delete();
+        }
+    }
+
     @Override
     public void setTruncateEpoch(String fileId, long newTruncateEpoch) throws IOException {
         File parent = new File(generateAbsoluteFilePath(fileId));
@@ -992,6 +1973,17 @@ public class HashStorageLayout extends StorageLayout {
             for (int i = 0; i < objs.length; i++) {
                 objectSet.add(parseFileName(objs[i]).objNo);
             }
+
+            if (md != null && md.getPaddingExtents() != null) {
+                for (ObjFileData ofd : md.getPaddingExtents().getObjects()) {
+                    objectSet.add(ofd.objNo);
+                }
+            }
+            if (md != null && md.getDeltaVersions() != null) {
+                for (long objNo : md.getDeltaVersions().keySet()) {
+                    objectSet.add(objNo);
+                }
+            }
         } else {
             objectSet = new ObjectSet(0);
         }
@@ -1019,7 +2011,11 @@ public class HashStorageLayout extends StorageLayout {
 
     private String generateRelativeFilePath(String fileId) {
         if (USE_PATH_CACHE) {
-            String cached = hashedPathCache.get(fileId);
+            // the cache is shared by all storage threads
+            String cached;
+            synchronized (hashedPathCache) {
+                cached = hashedPathCache.get(fileId);
+            }
             if (cached != null)
                 return cached;
         }
@@ -1029,7 +2025,9 @@ public class HashStorageLayout extends StorageLayout {
         path.append("/");
         final String pathStr = path.toString();
         if (USE_PATH_CACHE) {
-            hashedPathCache.put(fileId, pathStr);
+            synchronized (hashedPathCache) {
+                hashedPathCache.put(fileId, pathStr);
+            }
         }
         return pathStr;
     }
@@ -1085,6 +2083,14 @@ public class HashStorageLayout extends StorageLayout {
         return _stat_fileInfoLoads;
     }
 
+    /**
+     * @return the number of object directories scanned because no valid object
+     *         index was available
+     */
+    public long getObjectDirScanCount() {
+        return _stat_objectDirScans;
+    }
+
     /**
      * 
      * @param f
@@ -1123,12 +2129,12 @@ public class HashStorageLayout extends StorageLayout {
             final long objNo = OutputUtils.readHexLong(filename, 0);
             final int objVersion = OutputUtils.readHexInt(filename, 16);
             final long checksum = OutputUtils.readHexLong(filename, 24);
-            return new ObjFileData(objNo, objVersion, checksum);
+            return new ObjFileData(objNo, objVersion, checksum, filename);
         } else {
             final long objNo = OutputUtils.readHexLong(filename, 0);
             final long objVersion = OutputUtils.readHexLong(filename, 16);
             final long checksum = OutputUtils.readHexLong(filename, 32);
-            return new ObjFileData(objNo, objVersion, checksum);
+            return new ObjFileData(objNo, objVersion, checksum, filename);
         }
     }
 
@@ -1139,6 +2145,10 @@ public class HashStorageLayout extends StorageLayout {
 
     @Override
     public boolean isCompatibleVersion(int layoutVersionTag) {
+        return isCompatibleVersionTag(layoutVersionTag);
+    }
+
+    static boolean isCompatibleVersionTag(int layoutVersionTag) {
         if (layoutVersionTag == SL_TAG) {
             return true;
         }
@@ -1151,16 +2161,30 @@ public class HashStorageLayout extends StorageLayout {
 
     public static final class ObjFileData {
 
-        final long objNo;
+        final long   objNo;
 
-        final long objVersion;
+        final long   objVersion;
 
-        final long checksum;
+        final long   checksum;
+
+        final String fileName;
 
         public ObjFileData(long objNo, long objVersion, long checksum) {
+            this(objNo, objVersion, checksum, null);
+        }
+
+        public ObjFileData(long objNo, long objVersion, long checksum, String fileName) {
             this.objNo = objNo;
             this.objVersion = objVersion;
             this.checksum = checksum;
+            this.fileName = fileName;
+        }
+
+        /**
+         * @return the name of the object file
+         */
+        public String getFileName() {
+            return fileName != null ? fileName : createFileName(objNo, objVersion, checksum);
         }
     }
 
@@ -1168,96 +2192,20 @@ public class HashStorageLayout extends StorageLayout {
     public FileList getFileList(FileList l, int maxNumEntries) {
 
         if (l == null) {
-            l = new FileList(new Stack<String>(), new HashMap<String, FileData>());
-            l.status.push("");
+            FileListWalker walker = new FileListWalker(storageDir, scanThreads, maxNumEntries);
+            l = new FileList(walker, new HashMap<String, FileData>());
+            walker.start();
         }
         l.files.clear();
 
         try {
-            do {
-                String currentDir = l.status.pop();
-                File dir = new File(storageDir + currentDir);
-                File[] dirFiles = dir.listFiles();
-                if (dirFiles == null) {
-                    Logging.logMessage(Logging.LEVEL_WARN, Category.misc, this, storageDir + currentDir
-                            + " is not a valid directory!");
-                    continue;
-                }
-
-                File newestFirst = null;
-                File newestLast = null;
-                Long objectSize = 0L;
-                boolean isFileNameDir = false;
-
-                for (File ch : dirFiles) {
-                    // handle the directories (hash and fileName)
-                    if (ch != null && ch.isDirectory()) {
-                        l.status.push(currentDir + "/" + ch.getName());
-                        // get information from the objects
-                    } else if (ch != null && ch.isFile() && !ch.getName().contains(".")
-                            && !ch.getName().endsWith(".ser")) {
-                        // get the file metadata
-                        try {
-                            long version = getVersion(ch);
-                            long objNum = getObjectNo(ch);
-
-                            isFileNameDir = true;
-                            if (newestFirst == null) {
-
-                                newestFirst = newestLast = ch;
-                                objectSize = ch.length();
-                            } else if (version > getVersion(newestFirst)) {
-
-                                newestFirst = newestLast = ch;
-                                objectSize = (objectSize >= ch.length()) ? objectSize : ch.length();
-                            } else if (version == getVersion(newestFirst)) {
-
-                                if (objNum < getObjectNo(newestFirst)) {
-                                    newestFirst = ch;
-                                } else if (objNum > getObjectNo(newestLast)) {
-                                    newestLast = ch;
-                                }
-                                objectSize = (objectSize >= ch.length()) ? objectSize : ch.length();
-                            }
-                        } catch (Exception e) {
-
-                            Logging.logMessage(Logging.LEVEL_WARN, Category.storage, this,
-                                    "CleanUp: an illegal file (" + ch.getAbsolutePath()
-                                            + ") was discovered and ignored.");
-                        }
-                    } else if (ch != null && ch.isFile() && ch.getName().endsWith(XLOC_VERSION_STATE_FILENAME)) {
-                        // If no data file exists, but a version_state file, the whole data folder can be deleted after
-                        // a certain period.
-                        isFileNameDir = true;
-                    }
-                }
-
-                // dir is a fileName-directory
-                if (isFileNameDir) {
-                    if (newestFirst != null) {
-                        // get the metaInfo from the root-directory
-                        long stripCount = getObjectNo(newestLast);
-                        long fileSize = (stripCount == 1) ? newestFirst.length() : (objectSize * stripCount)
-                                + newestLast.length();
-
-                        // insert the data into the FileList
-                        l.files.put((WIN) ? dir.getName().replace('_', ':') : dir.getName(),
-                                new FileData(fileSize, (int) (objectSize / 1024)));
-                    } else {
-                        // No data file exists, but the folders some metadata is still in place.
-                        l.files.put((WIN) ? dir.getName().replace('_', ':') : dir.getName(), 
-                                new FileData(true));
-                    }
-                }
-            } while (l.files.size() < maxNumEntries);
-            l.hasMore = true;
-            return l;
-
-        } catch (EmptyStackException ex) {
-            // done
+            l.hasMore = l.walker.next(l.files, maxNumEntries);
+        } catch (InterruptedException ex) {
+            l.walker.cancel();
             l.hasMore = false;
-            return l;
+            Thread.currentThread().interrupt();
         }
+        return l;
     }
 
     @Override
@@ -1273,7 +2221,10 @@ public class HashStorageLayout extends StorageLayout {
         while (!directories.empty()) {
             currentFile = new File(directories.pop());
             for (File f : currentFile.listFiles()) {
-                if (f != null && f.isDirectory() && !f.getName().contains(":")) {
+                if (f != null && f.isDirectory() && f.getName().startsWith(".")) {
+                    // delta versions of a file
+                    continue;
+                } else if (f != null && f.isDirectory() && !f.getName().contains(":")) {
                     directories.push(f.getAbsolutePath());
                 } else {
                     if (f != null && !f.getName().contains(".") && !f.getName().endsWith(".ser")) {
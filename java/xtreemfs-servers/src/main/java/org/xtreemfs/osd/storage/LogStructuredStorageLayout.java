@@ -0,0 +1,1536 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.xtreemfs.common.xloc.StripingPolicyImpl;
+import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+import org.xtreemfs.foundation.checksums.ChecksumAlgorithm;
+import org.xtreemfs.foundation.checksums.ChecksumFactory;
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.logging.Logging.Category;
+import org.xtreemfs.osd.OSDConfig;
+import org.xtreemfs.osd.replication.ObjectSet;
+import org.xtreemfs.pbrpc.generatedinterfaces.OSD.TruncateLog;
+import org.xtreemfs.pbrpc.generatedinterfaces.OSD.XLocSetVersionState;
+
+/**
+ * A storage layout for workloads with many small objects. Instead of storing
+ * each object version in a file of its own, all objects are appended to large
+ * segment files, which saves inodes and turns object writes into sequential
+ * appends.
+ * <p>
+ * The location of each object version is kept in an in-memory index. Since
+ * every change is appended to the log as a record, the index can be rebuilt by
+ * replaying the segments. Whenever a segment is full, a checkpoint of the
+ * index is written, so that only the records appended after the last
+ * checkpoint have to be replayed when the OSD is restarted. Records at the end
+ * of a segment that were not written completely before a crash are detected
+ * by their checksums and discarded.
+ * <p>
+ * Appends are serialized by a lock of their own. The index is only locked to
+ * publish a record once it has been written, so that reads are not blocked by
+ * writes to the log.
+ * <p>
+ * Records of overwritten or deleted objects are garbage. A background thread
+ * compacts segments that are covered by the checkpoint and consist mostly of
+ * garbage: their live records are appended to the current segment, a new
+ * checkpoint is written, and the segments are deleted. Records of deletions
+ * and truncate epochs are not copied, i.e. once a segment has been compacted,
+ * the index can no longer be rebuilt without the checkpoint.
+ * <p>
+ * Per-file metadata that is only maintained for replicated or versioned files
+ * (master epochs, truncate logs, version tables, ...) is stored by a
+ * {@link HashStorageLayout} in a subdirectory; truncate epochs are logged.
+ */
+public class LogStructuredStorageLayout extends StorageLayout {
+
+    public static final int      SL_TAG                = 0x00040001;
+
+    /**
+     * directory containing the segment files
+     */
+    public static final String   SEGMENT_DIR           = "segments";
+
+    /**
+     * directory containing the metadata files of replicated and versioned
+     * files
+     */
+    public static final String   METADATA_DIR          = "metadata";
+
+    /**
+     * file to store the index checkpoint in
+     */
+    public static final String   CHECKPOINT_FILENAME   = ".checkpoint";
+
+    /**
+     * Sealed segments in which less than this fraction of the bytes belong to
+     * live objects are compacted.
+     */
+    private static final double  COMPACTION_THRESHOLD  = 0.5;
+
+    /**
+     * interval between two compaction runs in ms
+     */
+    private static final long    COMPACTION_INTERVAL   = 10 * 1000;
+
+    private static final int     RECORD_MAGIC          = 0x4c534c52;
+
+    private static final int     CHECKPOINT_MAGIC      = 0x4c534c43;
+
+    private static final byte    REC_OBJECT            = 1;
+
+    private static final byte    REC_PADDING           = 2;
+
+    private static final byte    REC_DELETE_OBJECT     = 3;
+
+    private static final byte    REC_DELETE_FILE       = 4;
+
+    private static final byte    REC_TRUNCATE_EPOCH    = 5;
+
+    /**
+     * magic, type, file ID length, object number, version, replaced version,
+     * checksum, length, CRC; followed by the file ID and the object data
+     */
+    private static final int     RECORD_HEADER_SIZE    = 4 + 1 + 2 + 8 + 8 + 8 + 8 + 4 + 4;
+
+    private static final Charset UTF8                  = Charset.forName("UTF-8");
+
+    /**
+     * The location of an object version in the log.
+     */
+    private static final class Location {
+
+        final int     segment;
+
+        /**
+         * offset of the record in the segment
+         */
+        final long    offset;
+
+        /**
+         * size of the record, including header and data
+         */
+        final int     size;
+
+        /**
+         * length of the object
+         */
+        final int     length;
+
+        final long    checksum;
+
+        /**
+         * padding objects consist of zeros that are not stored
+         */
+        final boolean padding;
+
+        Location(int segment, long offset, int size, int length, long checksum, boolean padding) {
+            this.segment = segment;
+            this.offset = offset;
+            this.size = size;
+            this.length = length;
+            this.checksum = checksum;
+            this.padding = padding;
+        }
+
+        long getDataOffset() {
+            return offset + size - (padding ? 0 : length);
+        }
+    }
+
+    private static final class FileEntry {
+
+        /**
+         * object number -> version -> location
+         */
+        final Map<Long, Map<Long, Location>> objects = new HashMap<Long, Map<Long, Location>>();
+
+        long                                 truncateEpoch;
+    }
+
+    private static final class Segment {
+
+        final int         id;
+
+        final File        file;
+
+        final FileChannel channel;
+
+        long              size;
+
+        long              liveBytes;
+
+        Segment(int id, File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.channel = new RandomAccessFile(file, "rw").getChannel();
+            this.size = channel.size();
+        }
+    }
+
+    /**
+     * A record read from a segment.
+     */
+    private static final class Record {
+
+        byte   type;
+
+        String fileId;
+
+        long   objNo;
+
+        long   version;
+
+        long   replacedVersion;
+
+        long   checksum;
+
+        int    length;
+
+        long   offset;
+
+        int    size;
+
+        byte[] data;
+    }
+
+    /**
+     * A copy of the index entry of a file, taken for a checkpoint.
+     */
+    private static final class FileSnapshot {
+
+        final String     fileId;
+
+        final long       truncateEpoch;
+
+        final long[]     objNos;
+
+        final long[]     versions;
+
+        final Location[] locations;
+
+        FileSnapshot(String fileId, FileEntry entry) {
+            this.fileId = fileId;
+            this.truncateEpoch = entry.truncateEpoch;
+            int numObjects = 0;
+            for (Map<Long, Location> versions : entry.objects.values())
+                numObjects += versions.size();
+            this.objNos = new long[numObjects];
+            this.versions = new long[numObjects];
+            this.locations = new Location[numObjects];
+            int i = 0;
+            for (Map.Entry<Long, Map<Long, Location>> obj : entry.objects.entrySet()) {
+                for (Map.Entry<Long, Location> ver : obj.getValue().entrySet()) {
+                    objNos[i] = obj.getKey();
+                    versions[i] = ver.getKey();
+                    locations[i] = ver.getValue();
+                    i++;
+                }
+            }
+        }
+    }
+
+    private final File                        segmentDir;
+
+    private final long                        segmentSize;
+
+    private final HashStorageLayout           metadataLayout;
+
+    private final boolean                     checksumsEnabled;
+
+    private ChecksumAlgorithm                 checksumAlgo;
+
+    private final Map<String, FileEntry>      files;
+
+    private final TreeMap<Integer, Segment>   segments;
+
+    /**
+     * segments that have been compacted; they are deleted by the next
+     * compaction run, so that reads which located an object in such a segment
+     * before it was compacted can still be completed
+     */
+    private final List<Segment>               retiredSegments;
+
+    /**
+     * serializes the appends to the log, which thus are applied to the index
+     * in the order of the records; acquired before the lock of the index
+     */
+    private final Object                      appendLock;
+
+    /**
+     * the segment to which records are appended; only replaced while holding
+     * the append lock and the lock of the index
+     */
+    private Segment                           activeSegment;
+
+    /**
+     * segment and offset up to which the records are covered by the last
+     * checkpoint
+     */
+    private int                               checkpointSegment;
+
+    private long                              checkpointOffset;
+
+    private boolean                           checkpointNeeded;
+
+    private boolean                           quit;
+
+    private long                              _stat_fileInfoLoads;
+
+    private final Thread                      compactor;
+
+    public LogStructuredStorageLayout(OSDConfig config, MetadataCache cache) throws IOException {
+
+        super(config, cache);
+
+        this.segmentSize = config.getStorageLayoutSegmentSize();
+        this.checksumsEnabled = config.isUseChecksums();
+        if (config.isUseChecksums()) {
+
+            // get the algorithm from the factory
+            try {
+                checksumAlgo = ChecksumFactory.getInstance().getAlgorithm(config.getChecksumProvider());
+                if (checksumAlgo == null)
+                    throw new NoSuchAlgorithmException("algo is null");
+            } catch (NoSuchAlgorithmException e) {
+                Logging.logMessage(Logging.LEVEL_ERROR, Category.storage, this,
+                        "could not instantiate checksum algorithm '%s'", config.getChecksumProvider());
+                Logging.logMessage(Logging.LEVEL_ERROR, Category.storage, this,
+                        "OSD checksums will be switched off");
+            }
+        }
+
+        this.metadataLayout = new HashStorageLayout(config, cache, storageDir + METADATA_DIR);
+
+        this.files = new HashMap<String, FileEntry>();
+        this.segments = new TreeMap<Integer, Segment>();
+        this.retiredSegments = new ArrayList<Segment>();
+        this.appendLock = new Object();
+
+        this.segmentDir = new File(storageDir, SEGMENT_DIR);
+        segmentDir.mkdirs();
+
+        recover();
+
+        // new records are always appended to a new segment, which prevents
+        // records from being appended to a segment with a damaged end
+        int nextId = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        activeSegment = openSegment(nextId);
+
+        // all previous segments are covered by a new checkpoint, which allows
+        // to compact them
+        writeCheckpoint();
+
+        compactor = new Thread("OSD LSL compactor") {
+            @Override
+            public void run() {
+                runCompaction();
+            }
+        };
+        compactor.setDaemon(true);
+        compactor.start();
+
+        if (Logging.isInfo())
+            Logging.logMessage(Logging.LEVEL_INFO, Category.storage, this,
+                    "initialized with %d files in %d segments", files.size(), segments.size());
+    }
+
+    /**
+     * Stops the compaction thread.
+     */
+    @Override
+    public void shutdown() {
+        synchronized (this) {
+            quit = true;
+            notifyAll();
+        }
+        try {
+            compactor.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        metadataLayout.shutdown();
+    }
+
+    @Override
+    protected FileMetadata loadFileMetadata(String fileId, StripingPolicyImpl sp) throws IOException {
+
+        _stat_fileInfoLoads++;
+
+        FileMetadata info = new FileMetadata(sp);
+
+        Map<Long, Long> largestObjVersions = new HashMap<Long, Long>();
+        Map<Long, Map<Long, Long>> objChecksums = new HashMap<Long, Map<Long, Long>>();
+        Map<Long, Map<Long, Integer>> objLengths = new HashMap<Long, Map<Long, Integer>>();
+        long truncateEpoch = 0;
+
+        synchronized (this) {
+            FileEntry entry = files.get(fileId);
+            if (entry != null) {
+                truncateEpoch = entry.truncateEpoch;
+                for (Map.Entry<Long, Map<Long, Location>> obj : entry.objects.entrySet()) {
+                    long largest = 0;
+                    Map<Long, Integer> lengths = new HashMap<Long, Integer>();
+                    for (Map.Entry<Long, Location> ver : obj.getValue().entrySet()) {
+                        Location loc = ver.getValue();
+                        if (loc.checksum != 0) {
+                            Map<Long, Long> checksums = objChecksums.get(obj.getKey());
+                            if (checksums == null) {
+                                checksums = new HashMap<Long, Long>();
+                                objChecksums.put(obj.getKey(), checksums);
+                            }
+                            checksums.put(ver.getKey(), loc.checksum);
+                        }
+                        if (ver.getKey() > largest) {
+                            largest = ver.getKey();
+                        }
+                        lengths.put(ver.getKey(), loc.length);
+                    }
+                    objLengths.put(obj.getKey(), lengths);
+                    largestObjVersions.put(obj.getKey(), largest);
+                }
+            }
+        }
+
+        long lastObjNum = -1;
+        long lastObjVersion = 0;
+
+        // if multi-file-version support is enabled, the object versions of the
+        // current file version are stored with the metadata
+        File currVerFile = new File(metadataLayout.generateAbsoluteFilePath(fileId),
+                HashStorageLayout.CURRENT_VER_FILENAME);
+        if (currVerFile.exists()) {
+
+            Map<Long, Long> latestObjVersions = new HashMap<Long, Long>();
+
+            RandomAccessFile rf = new RandomAccessFile(currVerFile, "r");
+            try {
+                for (long l = 0;; l++) {
+                    // read object numbers until the file ends
+                    try {
+                        long objVer = rf.readLong();
+                        if (objVer != 0)
+                            latestObjVersions.put(l, objVer);
+                    } catch (EOFException exc) {
+                        lastObjNum = l - 1;
+                        break;
+                    }
+                }
+            } finally {
+                rf.close();
+            }
+
+            Long ver = latestObjVersions.get(lastObjNum);
+            lastObjVersion = ver == null ? 0 : ver;
+
+            info.initLatestObjectVersions(latestObjVersions);
+            info.initLargestObjectVersions(largestObjVersions);
+        }
+
+        // otherwise, the file version consists of the objects with the largest
+        // version numbers
+        else {
+            for (Map.Entry<Long, Long> obj : largestObjVersions.entrySet()) {
+                if (obj.getKey() > lastObjNum) {
+                    lastObjNum = obj.getKey();
+                    lastObjVersion = obj.getValue();
+                }
+            }
+
+            info.initLatestObjectVersions(largestObjVersions);
+            info.initLargestObjectVersions(largestObjVersions);
+        }
+
+        info.initObjectChecksums(objChecksums);
+
+        // determine the file size from the last object
+        if (lastObjNum > -1) {
+            Map<Long, Integer> lengths = objLengths.get(lastObjNum);
+            Integer length = lengths == null ? null : lengths.get(lastObjVersion);
+            long lastObjSize = length == null ? 0 : length;
+            // check for empty padding objects
+            if (lastObjSize == 0) {
+                lastObjSize = sp.getStripeSizeForObject(lastObjNum);
+            }
+            long fsize = lastObjSize;
+            if (lastObjNum > 0) {
+                fsize += sp.getObjectEndOffset(lastObjNum - 1) + 1;
+            }
+            assert (fsize >= 0);
+            info.setFilesize(fsize);
+            info.setLastObjectNumber(lastObjNum);
+        } else {
+            info.setFilesize(0);
+            info.setLastObjectNumber(-1);
+        }
+
+        info.setTruncateEpoch(truncateEpoch);
+
+        // initialize version table
+        File vtFile = new File(metadataLayout.generateAbsoluteFilePath(fileId), HashStorageLayout.VTABLE_FILENAME);
+        VersionTable vt = new VersionTable(vtFile);
+        if (vtFile.exists())
+            vt.load();
+        info.initVersionTable(vt);
+
+        info.setGlobalLastObjectNumber(-1);
+        return info;
+    }
+
+    @Override
+    public ObjectInformation readObject(String fileId, FileMetadata md, long objNo, int offset, int length,
+            long version) throws IOException {
+
+        final int stripeSize = md.getStripingPolicy().getStripeSizeForObject(objNo);
+        boolean checkChecksum = false;
+
+        if (length == -1) {
+            assert (offset == 0) : "if length is -1 offset must be 0 but is " + offset;
+            length = stripeSize;
+            // only xtfs_scrub reads full objects with length -1
+            checkChecksum = checksumsEnabled;
+        }
+
+        if (version == 0) {
+            // object does not exist
+            return new ObjectInformation(ObjectInformation.ObjectStatus.DOES_NOT_EXIST, null, stripeSize);
+        }
+
+        Location loc;
+        Segment seg = null;
+        synchronized (this) {
+            loc = getLocation(fileId, objNo, version);
+            if (loc != null)
+                seg = segments.get(loc.segment);
+        }
+
+        if (loc == null || seg == null) {
+            if (Logging.isDebug()) {
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.storage, this, "object %d does not exist",
+                        objNo);
+            }
+            return new ObjectInformation(ObjectInformation.ObjectStatus.DOES_NOT_EXIST, null, stripeSize);
+        }
+
+        if (loc.length == 0) {
+            return new ObjectInformation(ObjectInformation.ObjectStatus.PADDING_OBJECT, null, stripeSize);
+        }
+
+        if (loc.length <= offset) {
+            return new ObjectInformation(ObjectInformation.ObjectStatus.EXISTS, BufferPool.allocate(0),
+                    stripeSize);
+        }
+
+        assert (offset + length <= stripeSize);
+        ReusableBuffer bbuf = BufferPool.allocate(Math.min(length, loc.length - offset));
+        try {
+            if (loc.padding) {
+                while (bbuf.hasRemaining()) {
+                    bbuf.put((byte) 0);
+                }
+            } else {
+                long pos = loc.getDataOffset() + offset;
+                while (bbuf.hasRemaining()) {
+                    int read = seg.channel.read(bbuf.getBuffer(), pos);
+                    if (read < 0) {
+                        throw new IOException("segment " + seg.file + " ends within object " + fileId + "-"
+                                + objNo);
+                    }
+                    pos += read;
+                }
+            }
+        } catch (IOException ex) {
+            BufferPool.free(bbuf);
+            Logging.logMessage(Logging.LEVEL_ERROR, Category.storage, this,
+                    "Failed to read object from segment. Error: %s Path to the segment on disk: %s",
+                    ex.getMessage(), seg.file);
+            throw ex;
+        }
+
+        bbuf.position(0);
+        ObjectInformation oInfo = new ObjectInformation(ObjectInformation.ObjectStatus.EXISTS, bbuf, stripeSize);
+
+        if (checkChecksum && checksumAlgo != null) {
+            ReusableBuffer bbufCopy = bbuf.createViewBuffer();
+            long newChecksum = calcChecksum(bbufCopy.getBuffer());
+            BufferPool.free(bbufCopy);
+            oInfo.setChecksumInvalidOnOSD(newChecksum != loc.checksum);
+        }
+
+        return oInfo;
+    }
+
+    @Override
+    public void writeObject(String fileId, FileMetadata md, ReusableBuffer data, long objNo, int offset,
+            long newVersion, boolean sync, boolean cow) throws IOException {
+
+        assert (newVersion > 0) : "object version must be > 0";
+
+        if (data.capacity() == 0) {
+            return;
+        }
+
+        final long oldVersion = md.getLatestObjectVersion(objNo);
+
+        // objects are never modified in place, so range writes always create
+        // a complete copy of the object
+        final boolean isRangeWrite = (offset > 0)
+                || (data.capacity() < md.getStripingPolicy().getStripeSizeForObject(objNo));
+        ReusableBuffer obj = data;
+        if (isRangeWrite) {
+            obj = cow ? cow(fileId, md, objNo, data, offset, oldVersion) : merge(fileId, md, objNo, data, offset,
+                    oldVersion);
+        }
+
+        long checksum = 0;
+        try {
+            obj.position(0);
+            if (checksumsEnabled && checksumAlgo != null) {
+                checksum = calcChecksum(obj.getBuffer());
+                obj.position(0);
+            }
+            append(REC_OBJECT, fileId, objNo, newVersion, cow ? 0 : oldVersion, checksum, obj.remaining(),
+                    obj.getBuffer(), sync);
+        } finally {
+            BufferPool.free(obj);
+        }
+
+        md.updateObjectVersion(objNo, newVersion);
+        if (checksumsEnabled)
+            md.updateObjectChecksum(objNo, newVersion, checksum);
+    }
+
+    /**
+     * Writes data into a copy of an object version, as if the object was
+     * modified in place: the object is extended if necessary, and a gap
+     * between the end of the object and the offset is filled with zeros.
+     */
+    private ReusableBuffer merge(String fileId, FileMetadata md, long objNo, ReusableBuffer data, int offset,
+            long oldVersion) throws IOException {
+
+        int oldLength;
+        synchronized (this) {
+            Location loc = getLocation(fileId, objNo, oldVersion);
+            oldLength = loc == null ? 0 : loc.length;
+        }
+
+        data.position(0);
+        ReusableBuffer obj = BufferPool.allocate(Math.max(oldLength, offset + data.remaining()));
+        try {
+            if (oldLength > 0) {
+                ObjectInformation oldObj = readObject(fileId, md, objNo, 0, oldLength, oldVersion);
+                if (oldObj.getData() != null) {
+                    obj.put(oldObj.getData());
+                    BufferPool.free(oldObj.getData());
+                }
+            }
+            while (obj.position() < offset) {
+                obj.put((byte) 0);
+            }
+            obj.position(offset);
+            obj.put(data);
+        } catch (IOException ex) {
+            BufferPool.free(obj);
+            throw ex;
+        } finally {
+            BufferPool.free(data);
+        }
+        return obj;
+    }
+
+    @Override
+    public void truncateObject(String fileId, FileMetadata md, long objNo, int newLength, long newVersion,
+            boolean cow) throws IOException {
+
+        assert (newLength <= md.getStripingPolicy().getStripeSizeForObject(objNo));
+
+        final long oldVersion = md.getLatestObjectVersion(objNo);
+        final int currentLength;
+        synchronized (this) {
+            Location loc = getLocation(fileId, objNo, oldVersion);
+            currentLength = loc == null ? 0 : loc.length;
+        }
+
+        if (newLength == currentLength) {
+            return;
+        }
+
+        ReusableBuffer oldData = unwrapObjectData(fileId, md, objNo, oldVersion);
+        if (newLength < oldData.capacity()) {
+            oldData.range(0, newLength);
+        } else {
+            ReusableBuffer newData = BufferPool.allocate(newLength);
+            newData.put(oldData);
+            while (newData.hasRemaining()) {
+                newData.put((byte) 0);
+            }
+            BufferPool.free(oldData);
+            oldData = newData;
+        }
+
+        long checksum = 0;
+        try {
+            oldData.position(0);
+            if (checksumsEnabled && checksumAlgo != null) {
+                checksum = calcChecksum(oldData.getBuffer());
+                oldData.position(0);
+            }
+            append(REC_OBJECT, fileId, objNo, newVersion, cow ? 0 : oldVersion, checksum, newLength,
+                    oldData.getBuffer(), false);
+        } finally {
+            BufferPool.free(oldData);
+        }
+
+        md.updateObjectVersion(objNo, newVersion);
+        if (checksumsEnabled)
+            md.updateObjectChecksum(objNo, newVersion, checksum);
+    }
+
+    @Override
+    public void createPaddingObject(String fileId, FileMetadata md, long objNo, long version, int size)
+            throws IOException {
+
+        assert (size >= 0) : "size is " + size;
+
+        // calculate the checksum for the padding object if necessary
+        long checksum = 0;
+        if (checksumAlgo != null) {
+            checksum = calcChecksum(ByteBuffer.wrap(new byte[size]));
+        }
+
+        // the zeros of padding objects are not stored
+        append(REC_PADDING, fileId, objNo, version, 0, checksum, size, null, false);
+
+        md.updateObjectVersion(objNo, version);
+
+        if (checksumsEnabled)
+            md.updateObjectChecksum(objNo, version, checksum);
+    }
+
+    @Override
+    public long deleteFile(String fileId, boolean deleteMetadata) throws IOException {
+
+        long deletedBytes = 0;
+        boolean exists;
+        synchronized (this) {
+            FileEntry entry = files.get(fileId);
+            exists = entry != null;
+            if (exists) {
+                for (Map<Long, Location> versions : entry.objects.values()) {
+                    for (Location loc : versions.values()) {
+                        deletedBytes += loc.length;
+                    }
+                }
+            }
+        }
+
+        if (exists) {
+            append(REC_DELETE_FILE, fileId, deleteMetadata ? 1 : 0, 0, 0, 0, 0, null, false);
+        }
+        deletedBytes += metadataLayout.deleteFile(fileId, deleteMetadata);
+
+        return deletedBytes;
+    }
+
+    @Override
+    public void deleteObject(String fileId, FileMetadata md, long objNo, long version) throws IOException {
+
+        final long verToDel = (version == LATEST_VERSION) ? md.getLatestObjectVersion(objNo) : version;
+
+        boolean exists;
+        synchronized (this) {
+            exists = getLocation(fileId, objNo, verToDel) != null;
+        }
+        if (exists) {
+            append(REC_DELETE_OBJECT, fileId, objNo, verToDel, 0, 0, 0, null, false);
+        }
+    }
+
+    @Override
+    public void setTruncateEpoch(String fileId, long newTruncateEpoch) throws IOException {
+        append(REC_TRUNCATE_EPOCH, fileId, 0, newTruncateEpoch, 0, 0, 0, null, true);
+    }
+
+    @Override
+    public boolean fileExists(String fileId) {
+        synchronized (this) {
+            if (files.containsKey(fileId))
+                return true;
+        }
+        return metadataLayout.fileExists(fileId);
+    }
+
+    @Override
+    public void updateCurrentObjVersion(String fileId, long objNo, long newVersion) throws IOException {
+        metadataLayout.updateCurrentObjVersion(fileId, objNo, newVersion);
+    }
+
+    @Override
+    public void updateCurrentVersionSize(String fileId, long newLastObject) throws IOException {
+        metadataLayout.updateCurrentVersionSize(fileId, newLastObject);
+    }
+
+    @Override
+    public long getFileInfoLoadCount() {
+        return _stat_fileInfoLoads;
+    }
+
+    @Override
+    public synchronized ObjectSet getObjectSet(String fileId, FileMetadata md) {
+
+        FileEntry entry = files.get(fileId);
+        if (entry == null) {
+            return new ObjectSet(0);
+        }
+
+        ObjectSet objectSet = new ObjectSet(entry.objects.size());
+        for (Long objNo : entry.objects.keySet()) {
+            objectSet.add(objNo);
+        }
+        return objectSet;
+    }
+
+    @Override
+    public FileList getFileList(FileList l, int maxNumEntries) {
+
+        // the files of the index are listed first, followed by the files of
+        // which only metadata exists
+        if (l == null) {
+            List<String> fileIds;
+            synchronized (this) {
+                fileIds = new ArrayList<String>(files.keySet());
+            }
+            l = new FileList(null, new HashMap<String, FileData>());
+            l.fileIds = fileIds.iterator();
+        }
+
+        if (l.fileIds != null && l.fileIds.hasNext()) {
+            l.files.clear();
+            synchronized (this) {
+                while (l.fileIds.hasNext() && l.files.size() < maxNumEntries) {
+                    String fileId = l.fileIds.next();
+                    FileEntry entry = files.get(fileId);
+                    if (entry != null) {
+                        l.files.put(fileId, getFileData(entry));
+                    }
+                }
+            }
+            l.hasMore = true;
+            return l;
+        }
+
+        l = metadataLayout.getFileList(l.fileIds != null ? null : l, maxNumEntries);
+        synchronized (this) {
+            Iterator<String> it = l.files.keySet().iterator();
+            while (it.hasNext()) {
+                if (files.containsKey(it.next()))
+                    it.remove();
+            }
+        }
+        return l;
+    }
+
+    private static FileData getFileData(FileEntry entry) {
+
+        if (entry.objects.isEmpty()) {
+            return new FileData(true);
+        }
+
+        long lastObjNo = -1;
+        long lastSize = 0;
+        long objectSize = 0;
+        for (Map.Entry<Long, Map<Long, Location>> obj : entry.objects.entrySet()) {
+            long newestVersion = -1;
+            long size = 0;
+            for (Map.Entry<Long, Location> ver : obj.getValue().entrySet()) {
+                if (ver.getKey() > newestVersion) {
+                    newestVersion = ver.getKey();
+                    size = ver.getValue().length;
+                }
+            }
+            objectSize = Math.max(objectSize, size);
+            if (obj.getKey() > lastObjNo) {
+                lastObjNo = obj.getKey();
+                lastSize = size;
+            }
+        }
+
+        return new FileData(objectSize * lastObjNo + lastSize, (int) (objectSize / 1024));
+    }
+
+    @Override
+    public ArrayList<String> getFileIDList() {
+
+        Set<String> fileIds;
+        synchronized (this) {
+            fileIds = new HashSet<String>(files.keySet());
+        }
+        fileIds.addAll(metadataLayout.getFileIDList());
+
+        return new ArrayList<String>(fileIds);
+    }
+
+    @Override
+    public int getLayoutVersionTag() {
+        return SL_TAG;
+    }
+
+    @Override
+    public boolean isCompatibleVersion(int layoutVersionTag) {
+        return layoutVersionTag == SL_TAG;
+    }
+
+    @Override
+    public int getMasterEpoch(String fileId) throws IOException {
+        return metadataLayout.getMasterEpoch(fileId);
+    }
+
+    @Override
+    public void setMasterEpoch(String fileId, int masterEpoch) throws IOException {
+        metadataLayout.setMasterEpoch(fileId, masterEpoch);
+    }
+
+    @Override
+    public TruncateLog getTruncateLog(String fileId) throws IOException {
+        return metadataLayout.getTruncateLog(fileId);
+    }
+
+    @Override
+    public void setTruncateLog(String fileId, TruncateLog log) throws IOException {
+        metadataLayout.setTruncateLog(fileId, log);
+    }
+
+    @Override
+    public XLocSetVersionState getXLocSetVersionState(String fileId) throws IOException {
+        return metadataLayout.getXLocSetVersionState(fileId);
+    }
+
+    @Override
+    public void setXLocSetVersionState(String fileId, XLocSetVersionState versionState) throws IOException {
+        metadataLayout.setXLocSetVersionState(fileId, versionState);
+    }
+
+    @Override
+    public Set<String> getInvalidClientExpireTimeSet(String fileId) throws IOException {
+        return metadataLayout.getInvalidClientExpireTimeSet(fileId);
+    }
+
+    @Override
+    public void setInvalidClientExpireTimeSet(String fileId, Set<String> invalidClientExpireTimeSet)
+            throws IOException {
+        metadataLayout.setInvalidClientExpireTimeSet(fileId, invalidClientExpireTimeSet);
+    }
+
+    /**
+     * Returns the number of segment files, including the current one.
+     */
+    public synchronized int getNumberOfSegments() {
+        return segments.size();
+    }
+
+    /**
+     * Compacts all segments that are covered by the last checkpoint and
+     * consist mostly of garbage, and deletes the segments compacted by the
+     * previous run. Invoked periodically by the compaction thread.
+     *
+     * @return the number of compacted segments
+     */
+    public int compact() throws IOException {
+
+        List<Segment> retired;
+        List<Segment> candidates = new ArrayList<Segment>();
+        synchronized (this) {
+            retired = new ArrayList<Segment>(retiredSegments);
+            retiredSegments.clear();
+            for (Segment seg : segments.values()) {
+                if (seg.id < checkpointSegment && seg.liveBytes <= seg.size * COMPACTION_THRESHOLD)
+                    candidates.add(seg);
+            }
+        }
+
+        for (Segment seg : retired) {
+            seg.channel.close();
+            if (!seg.file.delete()) {
+                Logging.logMessage(Logging.LEVEL_WARN, Category.storage, this, "could not delete segment %s",
+                        seg.file);
+            }
+        }
+
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+
+        // copy the live records to the current segment
+        for (Segment seg : candidates) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(seg.file)));
+            try {
+                long offset = 0;
+                for (Record rec; (rec = readRecord(in, offset)) != null; offset += rec.size) {
+                    if (rec.type != REC_OBJECT && rec.type != REC_PADDING)
+                        continue;
+
+                    // the index cannot change while the append lock is held
+                    synchronized (appendLock) {
+                        boolean live;
+                        synchronized (this) {
+                            Location loc = getLocation(rec.fileId, rec.objNo, rec.version);
+                            live = loc != null && loc.segment == seg.id && loc.offset == rec.offset;
+                        }
+                        if (live) {
+                            appendLocked(rec.type, rec.fileId, rec.objNo, rec.version, 0, rec.checksum,
+                                    rec.length, rec.data == null ? null : ByteBuffer.wrap(rec.data));
+                        }
+                    }
+                }
+            } finally {
+                in.close();
+            }
+        }
+        FileChannel channel;
+        synchronized (appendLock) {
+            channel = activeSegment.channel;
+        }
+        channel.force(false);
+
+        // the compacted segments must not be referenced by the checkpoint
+        // before they can be deleted
+        writeCheckpoint();
+
+        synchronized (this) {
+            for (Segment seg : candidates) {
+                assert (seg.liveBytes == 0) : "segment " + seg.id + " still contains live objects";
+                segments.remove(seg.id);
+                retiredSegments.add(seg);
+            }
+        }
+
+        if (Logging.isDebug())
+            Logging.logMessage(Logging.LEVEL_DEBUG, Category.storage, this, "compacted %d segments",
+                    candidates.size());
+
+        return candidates.size();
+    }
+
+    private void runCompaction() {
+        for (;;) {
+            try {
+                synchronized (this) {
+                    if (!checkpointNeeded && !quit)
+                        wait(COMPACTION_INTERVAL);
+                    if (quit)
+                        break;
+                }
+                if (checkpointNeeded())
+                    writeCheckpoint();
+                compact();
+            } catch (InterruptedException ex) {
+                break;
+            } catch (Exception ex) {
+                Logging.logMessage(Logging.LEVEL_ERROR, Category.storage, this, "segment compaction failed: %s",
+                        ex.toString());
+                Logging.logError(Logging.LEVEL_ERROR, this, ex);
+            }
+        }
+    }
+
+    private synchronized boolean checkpointNeeded() {
+        return checkpointNeeded;
+    }
+
+    private Location getLocation(String fileId, long objNo, long version) {
+        assert (Thread.holdsLock(this));
+
+        FileEntry entry = files.get(fileId);
+        if (entry == null)
+            return null;
+        Map<Long, Location> versions = entry.objects.get(objNo);
+        if (versions == null)
+            return null;
+        return versions.get(version);
+    }
+
+    private long calcChecksum(ByteBuffer data) {
+        synchronized (checksumAlgo) {
+            checksumAlgo.reset();
+            checksumAlgo.update(data);
+            return checksumAlgo.getValue();
+        }
+    }
+
+    /**
+     * Appends a record to the log and applies it to the index.
+     */
+    private void append(byte type, String fileId, long objNo, long version, long replacedVersion, long checksum,
+            int length, ByteBuffer data, boolean sync) throws IOException {
+
+        FileChannel channel;
+        synchronized (appendLock) {
+            channel = appendLocked(type, fileId, objNo, version, replacedVersion, checksum, length, data);
+        }
+
+        if (sync) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Writes a record at the end of the active segment and applies it to the
+     * index afterwards.
+     *
+     * @return the channel of the segment the record was written to
+     */
+    private FileChannel appendLocked(byte type, String fileId, long objNo, long version, long replacedVersion,
+            long checksum, int length, ByteBuffer data) throws IOException {
+        assert (Thread.holdsLock(appendLock) && !Thread.holdsLock(this));
+
+        byte[] id = fileId.getBytes(UTF8);
+        int dataLength = data == null ? 0 : data.remaining();
+        int size = RECORD_HEADER_SIZE + id.length + dataLength;
+
+        if (activeSegment.size > 0 && activeSegment.size + size > segmentSize) {
+            // seal the current segment; the compaction thread writes a
+            // checkpoint
+            activeSegment.channel.force(false);
+            synchronized (this) {
+                activeSegment = openSegment(activeSegment.id + 1);
+                checkpointNeeded = true;
+                notifyAll();
+            }
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE + id.length);
+        header.putInt(RECORD_MAGIC).put(type).putShort((short) id.length).putLong(objNo).putLong(version)
+                .putLong(replacedVersion).putLong(checksum).putInt(length);
+
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, header.position());
+        crc.update(id);
+        if (data != null) {
+            updateCRC(crc, data.duplicate());
+        }
+        header.putInt((int) crc.getValue()).put(id);
+        header.flip();
+
+        // the size of the segment only covers the records applied to the
+        // index, which a checkpoint relies on
+        final Segment seg = activeSegment;
+        final long offset = seg.size;
+        long pos = offset;
+        while (header.hasRemaining()) {
+            pos += seg.channel.write(header, pos);
+        }
+        if (data != null) {
+            ByteBuffer buf = data.duplicate();
+            while (buf.hasRemaining()) {
+                pos += seg.channel.write(buf, pos);
+            }
+        }
+
+        synchronized (this) {
+            seg.size += size;
+            apply(type, fileId, objNo, version, replacedVersion, checksum, length, new Location(seg.id, offset,
+                    size, length, checksum, data == null));
+        }
+        return seg.channel;
+    }
+
+    private static void updateCRC(CRC32 crc, ByteBuffer buf) {
+        if (buf.hasArray()) {
+            crc.update(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+            return;
+        }
+        byte[] chunk = new byte[Math.min(buf.remaining(), 8192)];
+        while (buf.hasRemaining()) {
+            int n = Math.min(chunk.length, buf.remaining());
+            buf.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+        }
+    }
+
+    /**
+     * Applies a record to the index.
+     */
+    private void apply(byte type, String fileId, long objNo, long version, long replacedVersion, long checksum,
+            int length, Location loc) {
+
+        FileEntry entry = files.get(fileId);
+
+        switch (type) {
+        case REC_OBJECT:
+        case REC_PADDING: {
+            if (entry == null) {
+                entry = new FileEntry();
+                files.put(fileId, entry);
+            }
+            Map<Long, Location> versions = entry.objects.get(objNo);
+            if (versions == null) {
+                versions = new HashMap<Long, Location>();
+                entry.objects.put(objNo, versions);
+            }
+            release(versions.put(version, loc));
+            if (replacedVersion != 0 && replacedVersion != version) {
+                release(versions.remove(replacedVersion));
+            }
+            addLive(loc);
+            break;
+        }
+        case REC_DELETE_OBJECT: {
+            if (entry == null)
+                break;
+            Map<Long, Location> versions = entry.objects.get(objNo);
+            if (versions == null)
+                break;
+            release(versions.remove(version));
+            if (versions.isEmpty())
+                entry.objects.remove(objNo);
+            break;
+        }
+        case REC_DELETE_FILE: {
+            if (entry == null)
+                break;
+            for (Map<Long, Location> versions : entry.objects.values()) {
+                for (Location l : versions.values()) {
+                    release(l);
+                }
+            }
+            entry.objects.clear();
+            // the truncate epoch is metadata, which is kept unless requested
+            if (objNo != 0 || entry.truncateEpoch == 0)
+                files.remove(fileId);
+            break;
+        }
+        case REC_TRUNCATE_EPOCH: {
+            if (entry == null) {
+                entry = new FileEntry();
+                files.put(fileId, entry);
+            }
+            entry.truncateEpoch = version;
+            break;
+        }
+        default:
+            Logging.logMessage(Logging.LEVEL_WARN, Category.storage, this, "ignoring record of unknown type %d",
+                    type);
+        }
+    }
+
+    private void addLive(Location loc) {
+        Segment seg = segments.get(loc.segment);
+        if (seg != null)
+            seg.liveBytes += loc.size;
+    }
+
+    private void release(Location loc) {
+        if (loc == null)
+            return;
+        Segment seg = segments.get(loc.segment);
+        if (seg != null)
+            seg.liveBytes -= loc.size;
+    }
+
+    private Segment openSegment(int id) throws IOException {
+        Segment seg = new Segment(id, new File(segmentDir, String.format("%08x", id)));
+        segments.put(id, seg);
+        return seg;
+    }
+
+    /**
+     * Reads the next record of a segment.
+     *
+     * @return the record, or <tt>null</tt> if the segment ends or the record
+     *         has not been written completely
+     */
+    private static Record readRecord(DataInputStream in, long offset) throws IOException {
+
+        CRC32 crc = new CRC32();
+        byte[] header = new byte[RECORD_HEADER_SIZE - 4];
+        try {
+            in.readFully(header);
+        } catch (EOFException ex) {
+            return null;
+        }
+        crc.update(header);
+
+        ByteBuffer buf = ByteBuffer.wrap(header);
+        if (buf.getInt() != RECORD_MAGIC)
+            return null;
+
+        Record rec = new Record();
+        rec.type = buf.get();
+        int idLength = buf.getShort() & 0xffff;
+        rec.objNo = buf.getLong();
+        rec.version = buf.getLong();
+        rec.replacedVersion = buf.getLong();
+        rec.checksum = buf.getLong();
+        rec.length = buf.getInt();
+        rec.offset = offset;
+
+        try {
+            int recordCRC = in.readInt();
+
+            byte[] id = new byte[idLength];
+            in.readFully(id);
+            crc.update(id);
+            rec.fileId = new String(id, UTF8);
+
+            int dataLength = 0;
+            if (rec.type == REC_OBJECT) {
+                if (rec.length < 0)
+                    return null;
+                dataLength = rec.length;
+                rec.data = new byte[dataLength];
+                in.readFully(rec.data);
+                crc.update(rec.data);
+            }
+
+            if ((int) crc.getValue() != recordCRC)
+                return null;
+
+            rec.size = RECORD_HEADER_SIZE + idLength + dataLength;
+            return rec;
+
+        } catch (EOFException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Rebuilds the index from the last checkpoint and the records appended
+     * afterwards.
+     */
+    private void recover() throws IOException {
+
+        File[] segmentFiles = segmentDir.listFiles();
+        if (segmentFiles != null) {
+            for (File f : segmentFiles) {
+                if (f.getName().startsWith(CHECKPOINT_FILENAME))
+                    continue;
+                try {
+                    int id = (int) Long.parseLong(f.getName(), 16);
+                    segments.put(id, new Segment(id, f));
+                } catch (NumberFormatException ex) {
+                    Logging.logMessage(Logging.LEVEL_WARN, Category.storage, this,
+                            "ignoring unknown file %s in the segment directory", f);
+                }
+            }
+        }
+
+        if (!loadCheckpoint()) {
+            // compacted segments are gone, and so are the records of
+            // deletions they contained; replaying the remaining segments
+            // would resurrect deleted objects
+            if (!segments.isEmpty() && (segments.firstKey() != 0 || segments.lastKey() != segments.size() - 1)) {
+                throw new IOException("the index checkpoint in " + segmentDir
+                        + " is missing or invalid, and the index cannot be rebuilt from the segments since some"
+                        + " of them have been compacted");
+            }
+            checkpointSegment = 0;
+            checkpointOffset = 0;
+        }
+
+        int replayed = 0;
+        for (Segment seg : segments.values()) {
+            if (seg.id < checkpointSegment)
+                continue;
+
+            long offset = seg.id == checkpointSegment ? checkpointOffset : 0;
+            FileInputStream fin = new FileInputStream(seg.file);
+            DataInputStream in = null;
+            try {
+                if (fin.skip(offset) != offset) {
+                    throw new IOException("segment " + seg.file + " is shorter than the checkpoint position");
+                }
+                in = new DataInputStream(new BufferedInputStream(fin));
+                for (Record rec; (rec = readRecord(in, offset)) != null; offset += rec.size) {
+                    apply(rec.type, rec.fileId, rec.objNo, rec.version, rec.replacedVersion, rec.checksum,
+                            rec.length, new Location(seg.id, rec.offset, rec.size, rec.length, rec.checksum,
+                                    rec.type == REC_PADDING));
+                    replayed++;
+                }
+            } finally {
+                if (in != null)
+                    in.close();
+                else
+                    fin.close();
+            }
+
+            // discard an incompletely written record at the end of the segment
+            if (offset < seg.size) {
+                Logging.logMessage(Logging.LEVEL_WARN, Category.storage, this,
+                        "discarding %d bytes of incomplete records at the end of segment %s", seg.size - offset,
+                        seg.file);
+                seg.channel.truncate(offset);
+                seg.size = offset;
+            }
+        }
+
+        if (Logging.isInfo())
+            Logging.logMessage(Logging.LEVEL_INFO, Category.storage, this,
+                    "replayed %d records appended after the last checkpoint", replayed);
+    }
+
+    private boolean loadCheckpoint() throws IOException {
+
+        File file = new File(segmentDir, CHECKPOINT_FILENAME);
+        if (!file.exists()) {
+            return false;
+        }
+
+        CheckedInputStream cin = new CheckedInputStream(new BufferedInputStream(new FileInputStream(file)),
+                new CRC32());
+        DataInputStream in = new DataInputStream(cin);
+        try {
+            if (in.readInt() != CHECKPOINT_MAGIC)
+                throw new IOException("invalid checkpoint");
+
+            int ckptSegment = in.readInt();
+            long ckptOffset = in.readLong();
+
+            Map<String, FileEntry> ckptFiles = new HashMap<String, FileEntry>();
+            int numFiles = in.readInt();
+            for (int i = 0; i < numFiles; i++) {
+                String fileId = in.readUTF();
+                FileEntry entry = new FileEntry();
+                entry.truncateEpoch = in.readLong();
+                int numObjects = in.readInt();
+                for (int j = 0; j < numObjects; j++) {
+                    long objNo = in.readLong();
+                    long version = in.readLong();
+                    Location loc = new Location(in.readInt(), in.readLong(), in.readInt(), in.readInt(),
+                            in.readLong(), in.readBoolean());
+                    Map<Long, Location> versions = entry.objects.get(objNo);
+                    if (versions == null) {
+                        versions = new HashMap<Long, Location>();
+                        entry.objects.put(objNo, versions);
+                    }
+                    versions.put(version, loc);
+                }
+                ckptFiles.put(fileId, entry);
+            }
+
+            long crc = cin.getChecksum().getValue();
+            if (in.readLong() != crc)
+                throw new IOException("checksum mismatch");
+
+            for (FileEntry entry : ckptFiles.values()) {
+                for (Map<Long, Location> versions : entry.objects.values()) {
+                    for (Location loc : versions.values()) {
+                        if (!segments.containsKey(loc.segment))
+                            throw new IOException("checkpoint refers to missing segment " + loc.segment);
+                        addLive(loc);
+                    }
+                }
+            }
+
+            files.putAll(ckptFiles);
+            checkpointSegment = ckptSegment;
+            checkpointOffset = ckptOffset;
+            return true;
+
+        } catch (IOException ex) {
+            Logging.logMessage(Logging.LEVEL_WARN, Category.storage, this,
+                    "could not load the index checkpoint (%s)", ex.getMessage());
+            return false;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes a checkpoint of the index that covers all records applied to it
+     * so far. The index is copied while it is locked; it is written
+     * afterwards.
+     */
+    private void writeCheckpoint() throws IOException {
+
+        final int ckptSegment;
+        final long ckptOffset;
+        final FileChannel ckptChannel;
+        final List<FileSnapshot> snapshot;
+        synchronized (this) {
+            checkpointNeeded = false;
+            ckptSegment = activeSegment.id;
+            ckptOffset = activeSegment.size;
+            ckptChannel = activeSegment.channel;
+            snapshot = new ArrayList<FileSnapshot>(files.size());
+            for (Map.Entry<String, FileEntry> file : files.entrySet())
+                snapshot.add(new FileSnapshot(file.getKey(), file.getValue()));
+        }
+
+        // the records covered by the checkpoint must be on disk; the segments
+        // before the active one have been forced when they were sealed
+        ckptChannel.force(false);
+
+        File tmpFile = new File(segmentDir, CHECKPOINT_FILENAME + ".tmp");
+        FileOutputStream fout = new FileOutputStream(tmpFile);
+        CheckedOutputStream cout = new CheckedOutputStream(new BufferedOutputStream(fout), new CRC32());
+        DataOutputStream out = new DataOutputStream(cout);
+        try {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeInt(ckptSegment);
+            out.writeLong(ckptOffset);
+            out.writeInt(snapshot.size());
+            for (FileSnapshot file : snapshot) {
+                out.writeUTF(file.fileId);
+                out.writeLong(file.truncateEpoch);
+                out.writeInt(file.locations.length);
+                for (int i = 0; i < file.locations.length; i++) {
+                    Location loc = file.locations[i];
+                    out.writeLong(file.objNos[i]);
+                    out.writeLong(file.versions[i]);
+                    out.writeInt(loc.segment);
+                    out.writeLong(loc.offset);
+                    out.writeInt(loc.size);
+                    out.writeInt(loc.length);
+                    out.writeLong(loc.checksum);
+                    out.writeBoolean(loc.padding);
+                }
+            }
+            out.writeLong(cout.getChecksum().getValue());
+            out.flush();
+            fout.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        if (!tmpFile.renameTo(new File(segmentDir, CHECKPOINT_FILENAME))) {
+            throw new IOException("could not replace the checkpoint " + CHECKPOINT_FILENAME);
+        }
+
+        synchronized (this) {
+            checkpointSegment = ckptSegment;
+            checkpointOffset = ckptOffset;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.xtreemfs.common.xloc.StripingPolicyImpl;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.logging.Logging.Category;
+import org.xtreemfs.osd.OSDConfig;
+import org.xtreemfs.osd.replication.ObjectSet;
+import org.xtreemfs.pbrpc.generatedinterfaces.OSD.TruncateLog;
+import org.xtreemfs.pbrpc.generatedinterfaces.OSD.XLocSetVersionState;
+
+/**
+ * A storage layout that distributes the files of an OSD across multiple object
+ * directories, usually located on different devices. All objects and metadata
+ * of a file are stored on the same device by a {@link HashStorageLayout}.
+ * <p>
+ * The device of a new file is chosen by rendezvous hashing of the file ID, so
+ * that files can be found without an index. Devices that are (almost) full
+ * are skipped. Since files may thus not reside on their preferred device, and
+ * devices may be added later on, existing files are looked up on all devices
+ * in the order of preference; the locations are cached. The directory of a
+ * new file is created as soon as the file is placed, so that its location is
+ * found again after it has been evicted from the cache.
+ * <p>
+ * The requests of a file are processed by the storage threads of its
+ * preferred device, wherever the file is stored. Thus, the threads of a file
+ * can be determined without accessing the disk, and they do not change when
+ * the file is placed.
+ */
+public class MultiDeviceStorageLayout extends StorageLayout {
+
+    /**
+     * A device is considered full if less than this fraction of its capacity
+     * is usable.
+     */
+    private static final double        MIN_USABLE_FRACTION = 0.05;
+
+    /**
+     * Maximum number of cached file locations.
+     */
+    private static final int           MAX_LOCATIONS       = 64 * 1024;
+
+    private final String[]             dirs;
+
+    private final HashStorageLayout[]  devices;
+
+    private final Map<String, Integer> locations;
+
+    public MultiDeviceStorageLayout(OSDConfig config, MetadataCache cache) throws IOException {
+
+        super(config, cache);
+
+        List<String> objDirs = config.getObjDirs();
+        this.dirs = objDirs.toArray(new String[objDirs.size()]);
+        this.devices = new HashStorageLayout[dirs.length];
+        for (int i = 0; i < dirs.length; i++) {
+            devices[i] = new HashStorageLayout(config, cache, dirs[i]);
+        }
+
+        this.locations = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > MAX_LOCATIONS;
+            }
+        };
+
+        if (Logging.isInfo())
+            Logging.logMessage(Logging.LEVEL_INFO, Category.storage, this, "initialized with %d devices",
+                    dirs.length);
+    }
+
+    @Override
+    public int getNumberOfDevices() {
+        return devices.length;
+    }
+
+    @Override
+    public void shutdown() {
+        for (HashStorageLayout device : devices)
+            device.shutdown();
+    }
+
+    /**
+     * Returns the preferred device of a file, whose storage threads process
+     * the requests of the file.
+     */
+    @Override
+    public int getDevice(String fileId) {
+        return getPreferenceOrder(fileId)[0];
+    }
+
+    /**
+     * Returns the device on which a file is stored, or -1 if the file does
+     * not exist.
+     */
+    private int locate(String fileId) {
+
+        synchronized (locations) {
+            Integer device = locations.get(fileId);
+            if (device != null)
+                return device;
+        }
+
+        for (int d : getPreferenceOrder(fileId)) {
+            if (devices[d].fileExists(fileId)) {
+                synchronized (locations) {
+                    locations.put(fileId, d);
+                }
+                return d;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Places a new file on the most preferred device that is not full. The
+     * directory of the file is created right away, so that the file is found
+     * on the device from now on.
+     */
+    private int place(String fileId) throws IOException {
+
+        int[] order = getPreferenceOrder(fileId);
+        int device = order[0];
+        for (int d : order) {
+            if (!isFull(d)) {
+                device = d;
+                break;
+            }
+        }
+        devices[device].createFileDirectory(fileId);
+
+        synchronized (locations) {
+            locations.put(fileId, device);
+        }
+        return device;
+    }
+
+    /**
+     * Returns the directory of a device.
+     */
+    public String getDeviceDirectory(int device) {
+        return dirs[device];
+    }
+
+    /**
+     * Returns the device indices, ordered by the rendezvous hash of the file
+     * ID and the device index.
+     */
+    int[] getPreferenceOrder(String fileId) {
+
+        final int n = devices.length;
+        int[] order = new int[n];
+        long[] scores = new long[n];
+        for (int i = 0; i < n; i++) {
+            long score = mix(((long) fileId.hashCode() << 32) ^ i);
+
+            // insertion sort by descending score
+            int j = i;
+            while (j > 0 && scores[j - 1] < score) {
+                scores[j] = scores[j - 1];
+                order[j] = order[j - 1];
+                j--;
+            }
+            scores[j] = score;
+            order[j] = i;
+        }
+        return order;
+    }
+
+    private boolean isFull(int device) {
+        File dir = new File(dirs[device]);
+        return dir.getUsableSpace() < dir.getTotalSpace() * MIN_USABLE_FRACTION;
+    }
+
+    /**
+     * The finalizer of MurmurHash3, which spreads the bits of the key.
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb93e53e1ca87L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * Returns the layout of the device on which a file is stored, or of its
+     * preferred device if it does not exist.
+     */
+    private HashStorageLayout getLayout(String fileId) {
+        final int device = locate(fileId);
+        return devices[device == -1 ? getDevice(fileId) : device];
+    }
+
+    /**
+     * Returns the layout of the device on which a file is stored, and places
+     * the file if it does not exist yet.
+     */
+    private HashStorageLayout getLayoutForUpdate(String fileId) throws IOException {
+        final int device = locate(fileId);
+        return devices[device == -1 ? place(fileId) : device];
+    }
+
+    @Override
+    protected FileMetadata loadFileMetadata(String fileId, StripingPolicyImpl sp) throws IOException {
+        return getLayout(fileId).loadFileMetadata(fileId, sp);
+    }
+
+    @Override
+    public ObjectInformation readObject(String fileId, FileMetadata md, long objNo, int offset, int length,
+            long version) throws IOException {
+        return getLayout(fileId).readObject(fileId, md, objNo, offset, length, version);
+    }
+
+    @Override
+    public void readObjectAsync(String fileId, FileMetadata md, long objNo, int offset, int length,
+            long version, ReadObjectListener listener) {
+        getLayout(fileId).readObjectAsync(fileId, md, objNo, offset, length, version, listener);
+    }
+
+    @Override
+    public void writeObject(String fileId, FileMetadata md, ReusableBuffer data, long objNo, int offset,
+            long newVersion, boolean sync, boolean cow) throws IOException {
+        getLayoutForUpdate(fileId).writeObject(fileId, md, data, objNo, offset, newVersion, sync, cow);
+    }
+
+    @Override
+    public void truncateObject(String fileId, FileMetadata md, long objNo, int newLength, long newVersion,
+            boolean cow) throws IOException {
+        getLayoutForUpdate(fileId).truncateObject(fileId, md, objNo, newLength, newVersion, cow);
+    }
+
+    @Override
+    public long deleteFile(String fileId, boolean deleteMetadata) throws IOException {
+        long deleted = getLayout(fileId).deleteFile(fileId, deleteMetadata);
+        if (deleteMetadata) {
+            synchronized (locations) {
+                locations.remove(fileId);
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public void deleteObject(String fileId, FileMetadata md, long objNo, long version) throws IOException {
+        getLayout(fileId).deleteObject(fileId, md, objNo, version);
+    }
+
+    @Override
+    public int compactObjectVersions(String fileId, FileMetadata md) throws IOException {
+        return getLayout(fileId).compactObjectVersions(fileId, md);
+    }
+
+    @Override
+    public void createPaddingObject(String fileId, FileMetadata md, long objNo, long version, int size)
+            throws IOException {
+        getLayoutForUpdate(fileId).createPaddingObject(fileId, md, objNo, version, size);
+    }
+
+    @Override
+    public void setTruncateEpoch(String fileId, long newTruncateEpoch) throws IOException {
+        getLayoutForUpdate(fileId).setTruncateEpoch(fileId, newTruncateEpoch);
+    }
+
+    @Override
+    public boolean fileExists(String fileId) {
+        return getLayout(fileId).fileExists(fileId);
+    }
+
+    @Override
+    public void updateCurrentObjVersion(String fileId, long objNo, long newVersion) throws IOException {
+        getLayoutForUpdate(fileId).updateCurrentObjVersion(fileId, objNo, newVersion);
+    }
+
+    @Override
+    public void updateCurrentVersionSize(String fileId, long newLastObject) throws IOException {
+        getLayoutForUpdate(fileId).updateCurrentVersionSize(fileId, newLastObject);
+    }
+
+    @Override
+    public long getFileInfoLoadCount() {
+        long count = 0;
+        for (HashStorageLayout device : devices)
+            count += device.getFileInfoLoadCount();
+        return count;
+    }
+
+    @Override
+    public ObjectSet getObjectSet(String fileId, FileMetadata md) {
+        return getLayout(fileId).getObjectSet(fileId, md);
+    }
+
+    @Override
+    public FileList getFileList(FileList l, int maxNumEntries) {
+
+        // a list without a walker starts with the device set in the list
+        final int device = l == null ? 0 : l.device;
+        if (l != null && l.walker == null)
+            l = null;
+
+        l = devices[device].getFileList(l, maxNumEntries);
+        l.device = device;
+
+        // continue with the next device once this one has been walked
+        if (!l.hasMore && device < devices.length - 1) {
+            FileList next = new FileList(null, l.files);
+            next.device = device + 1;
+            next.hasMore = true;
+            return next;
+        }
+        return l;
+    }
+
+    @Override
+    public int getLayoutVersionTag() {
+        // the first device shares the object directory and its version file
+        return HashStorageLayout.SL_TAG;
+    }
+
+    @Override
+    public boolean isCompatibleVersion(int layoutVersionTag) {
+        return HashStorageLayout.isCompatibleVersionTag(layoutVersionTag);
+    }
+
+    @Override
+    public int getMasterEpoch(String fileId) throws IOException {
+        return getLayout(fileId).getMasterEpoch(fileId);
+    }
+
+    @Override
+    public void setMasterEpoch(String fileId, int masterEpoch) throws IOException {
+        getLayoutForUpdate(fileId).setMasterEpoch(fileId, masterEpoch);
+    }
+
+    @Override
+    public TruncateLog getTruncateLog(String fileId) throws IOException {
+        return getLayout(fileId).getTruncateLog(fileId);
+    }
+
+    @Override
+    public void setTruncateLog(String fileId, TruncateLog log) throws IOException {
+        getLayoutForUpdate(fileId).setTruncateLog(fileId, log);
+    }
+
+    @Override
+    public ArrayList<String> getFileIDList() {
+        ArrayList<String> fileList = new ArrayList<String>();
+        for (HashStorageLayout device : devices)
+            fileList.addAll(device.getFileIDList());
+        return fileList;
+    }
+
+    @Override
+    public XLocSetVersionState getXLocSetVersionState(String fileId) throws IOException {
+        return getLayout(fileId).getXLocSetVersionState(fileId);
+    }
+
+    @Override
+    public void setXLocSetVersionState(String fileId, XLocSetVersionState versionState) throws IOException {
+        getLayoutForUpdate(fileId).setXLocSetVersionState(fileId, versionState);
+    }
+
+    @Override
+    public Set<String> getInvalidClientExpireTimeSet(String fileId) throws IOException {
+        return getLayout(fileId).getInvalidClientExpireTimeSet(fileId);
+    }
+
+    @Override
+    public void setInvalidClientExpireTimeSet(String fileId, Set<String> invalidClientExpireTimeSet)
+            throws IOException {
+        getLayoutForUpdate(fileId).setInvalidClientExpireTimeSet(fileId, invalidClientExpireTimeSet);
+    }
+}
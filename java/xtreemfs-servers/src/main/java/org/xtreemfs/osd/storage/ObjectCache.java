@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd.storage;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+
+/**
+ * A bounded LRU cache for the content of objects, shared by all storage
+ * threads.
+ * <p>
+ * Cached objects are copied to direct buffers outside of the Java heap. A hit
+ * returns a view buffer of the cached data, which remains valid after the
+ * object was evicted. Objects are cached with the version they were read in;
+ * since objects may be overwritten without creating a new version, the storage
+ * threads invalidate the cached objects of a file whenever they modify it.
+ */
+public class ObjectCache {
+
+    private static final class Key {
+
+        final String fileId;
+
+        final long   objNo;
+
+        Key(String fileId, long objNo) {
+            this.fileId = fileId;
+            this.objNo = objNo;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return objNo == other.objNo && fileId.equals(other.fileId);
+        }
+
+        @Override
+        public int hashCode() {
+            return fileId.hashCode() * 31 + (int) (objNo ^ (objNo >>> 32));
+        }
+    }
+
+    private static final class Entry {
+
+        final long           version;
+
+        final ReusableBuffer data;
+
+        /**
+         * True if the object was prefetched and has not been read yet.
+         */
+        boolean              prefetched;
+
+        Entry(long version, ReusableBuffer data, boolean prefetched) {
+            this.version = version;
+            this.data = data;
+            this.prefetched = prefetched;
+        }
+    }
+
+    private final long                      maxSize;
+
+    private final LinkedHashMap<Key, Entry> entries;
+
+    private final Map<String, Set<Key>>     keysByFile;
+
+    private long                            size;
+
+    private long                            hits;
+
+    private long                            misses;
+
+    private long                            prefetches;
+
+    private long                            prefetchHits;
+
+    /**
+     * @param maxSize
+     *            the maximum number of bytes held by the cache
+     */
+    public ObjectCache(long maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+        this.keysByFile = new HashMap<String, Set<Key>>();
+    }
+
+    /**
+     * Returns the requested range of a cached object in the same way as
+     * {@link StorageLayout#readObject}, or <tt>null</tt> if the object is not
+     * cached in the given version.
+     */
+    public synchronized ObjectInformation get(String fileId, long objNo, long version, int offset, int length,
+        int stripeSize) {
+
+        Entry entry = entries.get(new Key(fileId, objNo));
+        if (entry == null || entry.version != version) {
+            misses++;
+            return null;
+        }
+
+        hits++;
+        if (entry.prefetched) {
+            entry.prefetched = false;
+            prefetchHits++;
+        }
+
+        final int objSize = entry.data.limit();
+        if (objSize <= offset)
+            return new ObjectInformation(ObjectInformation.ObjectStatus.EXISTS, BufferPool.allocate(0), stripeSize);
+
+        ReusableBuffer view = entry.data.createViewBuffer();
+        view.range(offset, Math.min(length, objSize - offset));
+        return new ObjectInformation(ObjectInformation.ObjectStatus.EXISTS, view, stripeSize);
+    }
+
+    /**
+     * Checks whether an object is cached in the given version, without
+     * affecting the statistics. The object counts as recently used.
+     */
+    public synchronized boolean contains(String fileId, long objNo, long version) {
+        Entry entry = entries.get(new Key(fileId, objNo));
+        return entry != null && entry.version == version;
+    }
+
+    /**
+     * Adds the complete content of an object to the cache. The position and
+     * limit of <tt>data</tt> are not modified.
+     */
+    public void put(String fileId, long objNo, long version, ReusableBuffer data, boolean prefetched) {
+
+        final int objSize = data.remaining();
+        if (objSize == 0 || objSize > maxSize)
+            return;
+
+        // copy the data outside of the lock
+        ByteBuffer copy = ByteBuffer.allocateDirect(objSize);
+        ByteBuffer src = data.getBuffer().duplicate();
+        src.position(data.position());
+        src.limit(data.limit());
+        copy.put(src);
+        copy.flip();
+
+        synchronized (this) {
+            Key key = new Key(fileId, objNo);
+            removeEntry(key);
+
+            entries.put(key, new Entry(version, new ReusableBuffer(copy), prefetched));
+            Set<Key> keys = keysByFile.get(fileId);
+            if (keys == null) {
+                keys = new HashSet<Key>();
+                keysByFile.put(fileId, keys);
+            }
+            keys.add(key);
+            size += objSize;
+            if (prefetched)
+                prefetches++;
+
+            // evict the least recently used objects
+            Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+            while (size > maxSize && it.hasNext()) {
+                Map.Entry<Key, Entry> lru = it.next();
+                it.remove();
+                removeKeyOfFile(lru.getKey());
+                size -= lru.getValue().data.limit();
+            }
+        }
+    }
+
+    /**
+     * Removes a single object from the cache.
+     */
+    public synchronized void invalidate(String fileId, long objNo) {
+        removeEntry(new Key(fileId, objNo));
+    }
+
+    /**
+     * Removes all objects of a file from the cache.
+     */
+    public synchronized void invalidate(String fileId) {
+        Set<Key> keys = keysByFile.remove(fileId);
+        if (keys == null)
+            return;
+
+        for (Key key : keys) {
+            Entry entry = entries.remove(key);
+            if (entry != null)
+                size -= entry.data.limit();
+        }
+    }
+
+    private void removeEntry(Key key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            removeKeyOfFile(key);
+            size -= entry.data.limit();
+        }
+    }
+
+    private void removeKeyOfFile(Key key) {
+        Set<Key> keys = keysByFile.get(key.fileId);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty())
+                keysByFile.remove(key.fileId);
+        }
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of objects that were added to the cache by a
+     * prefetch.
+     */
+    public synchronized long getPrefetches() {
+        return prefetches;
+    }
+
+    /**
+     * Returns the number of prefetched objects that were read afterwards.
+     */
+    public synchronized long getPrefetchHits() {
+        return prefetchHits;
+    }
+
+}
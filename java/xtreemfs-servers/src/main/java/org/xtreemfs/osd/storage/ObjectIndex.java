@@ -0,0 +1,364 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd.storage;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.xtreemfs.osd.storage.HashStorageLayout.ObjFileData;
+
+/**
+ * Append-only index of the object files of a file stored in a
+ * {@link HashStorageLayout}. Each record adds or removes a single object file,
+ * identified by its object number, version and checksum. The index is
+ * maintained such that it always describes a superset of the object files in
+ * the directory: records adding an object are appended before the file is
+ * created, records removing an object after the file was deleted.
+ * <p>
+ * Records are not forced to disk, so an index may lose records in an unclean
+ * shutdown and hide object files that survived it. Each index therefore
+ * records the generation of the storage layout in which it was written, see
+ * {@link Generations}. After an unclean shutdown, the indices of earlier
+ * generations are no longer trusted and are rebuilt from the directory.
+ * <p>
+ * An index consists of a header followed by fixed-size records. An index
+ * without a valid header or with a truncated record is considered corrupt.
+ */
+class ObjectIndex {
+
+    private static final int    MAGIC          = 0x4F424A58;
+
+    private static final int    FORMAT_VERSION = 2;
+
+    private static final int    HEADER_SIZE    = 4 + 4 + 8;
+
+    private static final byte   ADD            = 1;
+
+    private static final byte   REMOVE         = 2;
+
+    private static final int    RECORD_SIZE    = 1 + 3 * 8;
+
+    /**
+     * Number of records at the end of the index which are checked against the
+     * object files in the directory when the index is loaded. An operation
+     * appends at most two records, i.e. the records of an operation which was
+     * interrupted by a crash are checked.
+     */
+    static final int            TAIL_RECORDS   = 4;
+
+    /**
+     * The generations of the object indices of a storage layout. The
+     * generation is increased whenever the storage layout is started. A state
+     * file records whether the last generation ended with a clean shutdown, in
+     * which case all records appended by it are in the page cache or on disk.
+     * Otherwise, only the indices written in the new generation are trusted.
+     * <p>
+     * A clean shutdown of the OSD that is directly followed by a crash of the
+     * operating system may still lose records, as the page cache is not
+     * flushed.
+     */
+    static final class Generations {
+
+        private static final int STATE_MAGIC = 0x4F424A47;
+
+        private static final int STATE_SIZE  = 4 + 8 + 8 + 1;
+
+        private final File       stateFile;
+
+        /** the generation of the running storage layout */
+        final long               current;
+
+        /** the oldest generation whose indices are trusted */
+        final long               trusted;
+
+        private Generations(File stateFile, long current, long trusted) {
+            this.stateFile = stateFile;
+            this.current = current;
+            this.trusted = trusted;
+        }
+
+        /**
+         * Starts a new generation. The state file is marked as unclean until
+         * {@link #end()} is called.
+         */
+        static Generations begin(File stateFile) throws IOException {
+
+            long last = 0;
+            long trusted = -1;
+            if (stateFile.length() == STATE_SIZE) {
+                RandomAccessFile raf = new RandomAccessFile(stateFile, "r");
+                try {
+                    if (raf.readInt() == STATE_MAGIC) {
+                        last = raf.readLong();
+                        long lastTrusted = raf.readLong();
+                        if (raf.readBoolean())
+                            trusted = lastTrusted;
+                    }
+                } finally {
+                    raf.close();
+                }
+            }
+
+            // generations are based on the time, since the generations of a
+            // lost state file cannot be restored
+            long current = Math.max(last + 1, System.currentTimeMillis());
+            Generations gens = new Generations(stateFile, current, trusted == -1 ? current : trusted);
+            gens.writeState(false);
+            return gens;
+        }
+
+        /**
+         * Ends the current generation with a clean shutdown.
+         */
+        void end() throws IOException {
+            writeState(true);
+        }
+
+        /**
+         * @return true, if the last generation did not end with a clean
+         *         shutdown
+         */
+        boolean isRecovering() {
+            return trusted == current;
+        }
+
+        private void writeState(boolean clean) throws IOException {
+            // the state is small enough to be overwritten in place
+            RandomAccessFile raf = new RandomAccessFile(stateFile, "rw");
+            try {
+                raf.writeInt(STATE_MAGIC);
+                raf.writeLong(current);
+                raf.writeLong(trusted);
+                raf.writeBoolean(clean);
+                raf.getFD().sync();
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    /** object number -> (object version -> checksum) */
+    private final Map<Long, Map<Long, Long>> objects;
+
+    private final long                       generation;
+
+    private final int                        numRecords;
+
+    private final List<ObjFileData>          tail;
+
+    private ObjectIndex(Map<Long, Map<Long, Long>> objects, long generation, int numRecords,
+            List<ObjFileData> tail) {
+        this.objects = objects;
+        this.generation = generation;
+        this.numRecords = numRecords;
+        this.tail = tail;
+    }
+
+    /**
+     * Loads an object index.
+     *
+     * @return the index, or null if the index does not exist or is corrupt
+     */
+    static ObjectIndex load(File indexFile) throws IOException {
+
+        FileInputStream in;
+        try {
+            in = new FileInputStream(indexFile);
+        } catch (IOException ex) {
+            return null;
+        }
+
+        ByteBuffer buf;
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size < HEADER_SIZE || (size - HEADER_SIZE) % RECORD_SIZE != 0 || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            buf = ByteBuffer.allocate((int) size);
+            while (buf.hasRemaining()) {
+                if (channel.read(buf) < 0) {
+                    return null;
+                }
+            }
+            buf.flip();
+        } finally {
+            in.close();
+        }
+
+        if (buf.getInt() != MAGIC || buf.getInt() != FORMAT_VERSION) {
+            return null;
+        }
+        final long generation = buf.getLong();
+
+        final int numRecords = buf.remaining() / RECORD_SIZE;
+        Map<Long, Map<Long, Long>> objects = new HashMap<Long, Map<Long, Long>>();
+        List<ObjFileData> tail = new ArrayList<ObjFileData>(TAIL_RECORDS);
+
+        for (int i = 0; i < numRecords; i++) {
+            final byte type = buf.get();
+            final long objNo = buf.getLong();
+            final long objVersion = buf.getLong();
+            final long checksum = buf.getLong();
+
+            Map<Long, Long> versions = objects.get(objNo);
+            if (type == ADD) {
+                if (versions == null) {
+                    versions = new HashMap<Long, Long>();
+                    objects.put(objNo, versions);
+                }
+                versions.put(objVersion, checksum);
+            } else if (type == REMOVE) {
+                if (versions != null && versions.containsKey(objVersion)
+                        && versions.get(objVersion) == checksum) {
+                    versions.remove(objVersion);
+                    if (versions.isEmpty()) {
+                        objects.remove(objNo);
+                    }
+                }
+            } else {
+                return null;
+            }
+
+            if (i >= numRecords - TAIL_RECORDS) {
+                tail.add(new ObjFileData(objNo, objVersion, checksum));
+            }
+        }
+
+        return new ObjectIndex(objects, generation, numRecords, tail);
+    }
+
+    /**
+     * Writes a new index containing the given object files. The index is
+     * written to a temporary file first, which replaces the existing index
+     * afterwards.
+     */
+    static void write(File indexFile, Collection<ObjFileData> objFiles, long generation) throws IOException {
+
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + objFiles.size() * RECORD_SIZE);
+        buf.putInt(MAGIC);
+        buf.putInt(FORMAT_VERSION);
+        buf.putLong(generation);
+        for (ObjFileData ofd : objFiles) {
+            putRecord(buf, ADD, ofd.objNo, ofd.objVersion, ofd.checksum);
+        }
+        buf.flip();
+
+        File tmpFile = new File(indexFile.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmpFile);
+        try {
+            while (buf.hasRemaining()) {
+                out.getChannel().write(buf);
+            }
+        } finally {
+            out.close();
+        }
+
+        if (!tmpFile.renameTo(indexFile)) {
+            tmpFile.delete();
+            throw new IOException("could not replace object index " + indexFile);
+        }
+    }
+
+    /**
+     * Appends a record for a new object file. Has to be called before the
+     * object file is created.
+     */
+    static void appendAdd(File indexFile, long objNo, long objVersion, long checksum) throws IOException {
+        append(indexFile, ADD, objNo, objVersion, checksum);
+    }
+
+    /**
+     * Appends a record for a removed object file. Has to be called after the
+     * object file was deleted.
+     */
+    static void appendRemove(File indexFile, long objNo, long objVersion, long checksum) throws IOException {
+        append(indexFile, REMOVE, objNo, objVersion, checksum);
+    }
+
+    private static void append(File indexFile, byte type, long objNo, long objVersion, long checksum)
+            throws IOException {
+
+        ByteBuffer buf = ByteBuffer.allocate(RECORD_SIZE);
+        putRecord(buf, type, objNo, objVersion, checksum);
+        buf.flip();
+
+        // If the index does not exist, a file without header is created which
+        // will be detected as corrupt. Records are written with a single write
+        // call in append mode, i.e. concurrent appends do not interleave.
+        FileOutputStream out = new FileOutputStream(indexFile, true);
+        try {
+            out.getChannel().write(buf);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void putRecord(ByteBuffer buf, byte type, long objNo, long objVersion, long checksum) {
+        buf.put(type);
+        buf.putLong(objNo);
+        buf.putLong(objVersion);
+        buf.putLong(checksum);
+    }
+
+    /**
+     * @return all object files contained in the index
+     */
+    List<ObjFileData> getObjectFiles() {
+        List<ObjFileData> objFiles = new ArrayList<ObjFileData>();
+        for (Entry<Long, Map<Long, Long>> obj : objects.entrySet()) {
+            for (Entry<Long, Long> version : obj.getValue().entrySet()) {
+                objFiles.add(new ObjFileData(obj.getKey(), version.getKey(), version.getValue()));
+            }
+        }
+        return objFiles;
+    }
+
+    /**
+     * @return the generation in which the index was written
+     */
+    long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Checks if the object files referenced by the last records exist if and
+     * only if they are contained in the index.
+     */
+    boolean isTailConsistent(File fileDir) {
+        for (ObjFileData ofd : tail) {
+            Map<Long, Long> versions = objects.get(ofd.objNo);
+            boolean indexed = versions != null && versions.containsKey(ofd.objVersion)
+                    && versions.get(ofd.objVersion) == ofd.checksum;
+            if (indexed != new File(fileDir, ofd.getFileName()).exists()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true, if the index contains considerably more records than object
+     *         files and should be rewritten
+     */
+    boolean needsCompaction(int numObjFiles) {
+        return numRecords > 2 * numObjFiles + 64;
+    }
+
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd.storage;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+import org.xtreemfs.osd.storage.HashStorageLayout.ObjFileData;
+
+/**
+ * This class implements the list of padding objects of a file. Padding objects
+ * consist of zeros only; instead of creating an object file for each of them,
+ * they are recorded as extents, i.e. ranges of consecutive objects with the
+ * same version, size and checksum. Their content is synthesized when they are
+ * read. The extents of each version are indexed by their first object number.
+ * <p>
+ * The list is persistently stored in a file in the directory of the file.
+ */
+public class PaddingExtents {
+
+    /** size of a serialized extent */
+    private static final int EXTENT_SIZE = 8 + 8 + 8 + 4 + 8;
+
+    public static final class Extent {
+
+        private final long firstObjNo;
+
+        private final long lastObjNo;
+
+        private final long version;
+
+        private final int  size;
+
+        private final long checksum;
+
+        public Extent(long firstObjNo, long lastObjNo, long version, int size, long checksum) {
+            this.firstObjNo = firstObjNo;
+            this.lastObjNo = lastObjNo;
+            this.version = version;
+            this.size = size;
+            this.checksum = checksum;
+        }
+
+        public long getFirstObjNo() {
+            return firstObjNo;
+        }
+
+        public long getLastObjNo() {
+            return lastObjNo;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @return the size of each object of the extent; 0 stands for a full
+         *         object
+         */
+        public int getSize() {
+            return size;
+        }
+
+        public long getChecksum() {
+            return checksum;
+        }
+
+        private boolean contains(long objNo) {
+            return objNo >= firstObjNo && objNo <= lastObjNo;
+        }
+
+        private boolean isMergeable(Extent e) {
+            return e.version == version && e.size == size && e.checksum == checksum;
+        }
+    }
+
+    /** the extents by version and first object number */
+    private final Map<Long, TreeMap<Long, Extent>> extents;
+
+    private final File                             file;
+
+    private int                                    numExtents;
+
+    /**
+     * Creates a new empty list.
+     *
+     * @param file
+     *            the file that persistently stores the list
+     */
+    public PaddingExtents(File file) {
+        this.file = file;
+        this.extents = new HashMap<Long, TreeMap<Long, Extent>>();
+    }
+
+    /**
+     * Loads the list from its file, if the file exists.
+     */
+    public synchronized void load() throws IOException {
+
+        clear();
+        if (!file.exists())
+            return;
+
+        FileInputStream fi = new FileInputStream(file);
+        ReusableBuffer buf = BufferPool.allocate((int) file.length());
+        try {
+            fi.getChannel().read(buf.getBuffer());
+            buf.position(0);
+
+            while (buf.remaining() >= EXTENT_SIZE) {
+                final long firstObjNo = buf.getLong();
+                final long lastObjNo = buf.getLong();
+                final long version = buf.getLong();
+                final int size = buf.getInt();
+                final long checksum = buf.getLong();
+                put(new Extent(firstObjNo, lastObjNo, version, size, checksum));
+            }
+        } finally {
+            BufferPool.free(buf);
+            fi.close();
+        }
+    }
+
+    /**
+     * Stores the list in its file. The file is replaced atomically, and it is
+     * deleted if the list is empty.
+     */
+    public synchronized void save() throws IOException {
+
+        if (numExtents == 0) {
+            file.delete();
+            return;
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream fo = new FileOutputStream(tmp);
+        ReusableBuffer buf = BufferPool.allocate(numExtents * EXTENT_SIZE);
+        try {
+            for (TreeMap<Long, Extent> versionExtents : extents.values()) {
+                for (Extent e : versionExtents.values()) {
+                    buf.putLong(e.firstObjNo);
+                    buf.putLong(e.lastObjNo);
+                    buf.putLong(e.version);
+                    buf.putInt(e.size);
+                    buf.putLong(e.checksum);
+                }
+            }
+            buf.flip();
+            fo.getChannel().write(buf.getBuffer());
+        } finally {
+            BufferPool.free(buf);
+            fo.close();
+        }
+
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("could not replace " + file);
+        }
+    }
+
+    /**
+     * Returns the extent that contains a given object version.
+     *
+     * @return the extent, or <code>null</code> if the object version is not a
+     *         padding object
+     */
+    public synchronized Extent get(long objNo, long objVer) {
+        TreeMap<Long, Extent> versionExtents = extents.get(objVer);
+        if (versionExtents == null)
+            return null;
+        Map.Entry<Long, Extent> e = versionExtents.floorEntry(objNo);
+        return e != null && e.getValue().contains(objNo) ? e.getValue() : null;
+    }
+
+    public synchronized boolean isEmpty() {
+        return numExtents == 0;
+    }
+
+    /**
+     * Adds a padding object. The object is merged with the adjacent extents if
+     * possible.
+     */
+    public synchronized void add(long objNo, long objVer, int size, long checksum) {
+
+        assert (get(objNo, objVer) == null) : "padding object " + objNo + "." + objVer + " exists";
+
+        Extent added = new Extent(objNo, objNo, objVer, size, checksum);
+        Extent prev = get(objNo - 1, objVer);
+        if (prev != null && prev.isMergeable(added)) {
+            delete(prev);
+            added = new Extent(prev.firstObjNo, added.lastObjNo, objVer, size, checksum);
+        }
+        Extent next = get(objNo + 1, objVer);
+        if (next != null && next.isMergeable(added)) {
+            delete(next);
+            added = new Extent(added.firstObjNo, next.lastObjNo, objVer, size, checksum);
+        }
+        put(added);
+    }
+
+    /**
+     * Removes a padding object. The extent that contains it is split if
+     * necessary.
+     *
+     * @return <code>true</code>, if the object version was a padding object
+     */
+    public synchronized boolean remove(long objNo, long objVer) {
+
+        Extent e = get(objNo, objVer);
+        if (e == null)
+            return false;
+
+        delete(e);
+        if (objNo > e.firstObjNo)
+            put(new Extent(e.firstObjNo, objNo - 1, e.version, e.size, e.checksum));
+        if (objNo < e.lastObjNo)
+            put(new Extent(objNo + 1, e.lastObjNo, e.version, e.size, e.checksum));
+        return true;
+    }
+
+    /**
+     * Removes all padding objects.
+     */
+    public synchronized void clear() {
+        extents.clear();
+        numExtents = 0;
+    }
+
+    /**
+     * Returns all padding objects in the form of object file descriptors.
+     */
+    public synchronized List<ObjFileData> getObjects() {
+        List<ObjFileData> objects = new ArrayList<ObjFileData>();
+        for (TreeMap<Long, Extent> versionExtents : extents.values())
+            for (Extent e : versionExtents.values())
+                for (long objNo = e.firstObjNo; objNo <= e.lastObjNo; objNo++)
+                    objects.add(new ObjFileData(objNo, e.version, e.checksum));
+        return objects;
+    }
+
+    /**
+     * Returns the number of extents.
+     */
+    public synchronized int getExtentCount() {
+        return numExtents;
+    }
+
+    private void put(Extent e) {
+        TreeMap<Long, Extent> versionExtents = extents.get(e.version);
+        if (versionExtents == null) {
+            versionExtents = new TreeMap<Long, Extent>();
+            extents.put(e.version, versionExtents);
+        }
+        if (versionExtents.put(e.firstObjNo, e) == null)
+            numExtents++;
+    }
+
+    private void delete(Extent e) {
+        TreeMap<Long, Extent> versionExtents = extents.get(e.version);
+        versionExtents.remove(e.firstObjNo);
+        if (versionExtents.isEmpty())
+            extents.remove(e.version);
+        numExtents--;
+    }
+}
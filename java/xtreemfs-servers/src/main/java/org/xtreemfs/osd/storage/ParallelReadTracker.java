@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd.storage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps track of the storage operations of each file, so that reads of a file
+ * can be processed by several storage threads at the same time.
+ * <p>
+ * Operations are registered when they are enqueued. A read-only operation is
+ * processed in parallel only if no other operation of the file is pending;
+ * all other operations are processed in order by the thread the file is
+ * assigned to. Before a serial operation that modifies the file is processed,
+ * the thread waits until the parallel reads of the file that were enqueued
+ * before it have been completed. Thus, reads never observe a file while it is
+ * modified, and no read overtakes a preceding write. Reads that are completed asynchronously
+ * are tracked like parallel reads.
+ */
+public class ParallelReadTracker {
+
+    private static final class FileOperations {
+
+        /**
+         * number of pending operations processed by the thread of the file
+         */
+        int serialOps;
+
+        /**
+         * number of pending reads processed by arbitrary threads
+         */
+        int parallelReads;
+    }
+
+    private final Map<String, FileOperations> files;
+
+    public ParallelReadTracker() {
+        this.files = new HashMap<String, FileOperations>();
+    }
+
+    /**
+     * Registers a new operation.
+     *
+     * @param fileId
+     *            the file ID
+     * @param readOnly
+     *            if the operation may be processed in parallel with other
+     *            reads of the file
+     * @return <tt>true</tt>, if the operation is a parallel read
+     */
+    public synchronized boolean register(String fileId, boolean readOnly) {
+        FileOperations ops = files.get(fileId);
+        if (ops == null) {
+            ops = new FileOperations();
+            files.put(fileId, ops);
+        }
+
+        if (readOnly && ops.serialOps == 0) {
+            ops.parallelReads++;
+            return true;
+        } else {
+            ops.serialOps++;
+            return false;
+        }
+    }
+
+    /**
+     * Waits until all parallel reads of a file have been completed. Has to be
+     * invoked before a serial operation that modifies the file is processed.
+     */
+    public synchronized void awaitParallelReads(String fileId) throws InterruptedException {
+        FileOperations ops = files.get(fileId);
+        while (ops != null && ops.parallelReads > 0) {
+            wait();
+            ops = files.get(fileId);
+        }
+    }
+
+    /**
+     * Turns a serial read into a parallel read, e.g. because it completes
+     * asynchronously after the thread of the file has moved on to subsequent
+     * operations. The read has to be unregistered as a parallel read.
+     */
+    public synchronized void detach(String fileId) {
+        FileOperations ops = files.get(fileId);
+        assert (ops != null && ops.serialOps > 0) : "no pending serial operations of " + fileId;
+
+        ops.serialOps--;
+        ops.parallelReads++;
+    }
+
+    /**
+     * Unregisters an operation that has been completed or could not be
+     * enqueued.
+     */
+    public synchronized void done(String fileId, boolean parallel) {
+        FileOperations ops = files.get(fileId);
+        assert (ops != null) : "no pending operations of " + fileId;
+
+        if (parallel) {
+            if (--ops.parallelReads == 0)
+                notifyAll();
+        } else {
+            ops.serialOps--;
+        }
+
+        if (ops.serialOps == 0 && ops.parallelReads == 0)
+            files.remove(fileId);
+    }
+
+    /**
+     * Returns the number of files with pending operations.
+     */
+    public synchronized int getNumberOfFiles() {
+        return files.size();
+    }
+}
@@ -271,12 +271,15 @@ public class RealSingleFileStorageLayout extends StorageLayout {
     }*/
 
     @Override
-    public void deleteFile(String fileId, boolean deleteMetadata) throws IOException {
+    public long deleteFile(String fileId, boolean deleteMetadata) throws IOException {
         File f = new File(getFilePath(fileId)+DATA_SUFFIX);
-        f.delete();
+        long length = f.length();
+        if (!f.delete())
+            length = 0;
         if (deleteMetadata) {
             //fixme
         }
+        return length;
     }
 
     @Override
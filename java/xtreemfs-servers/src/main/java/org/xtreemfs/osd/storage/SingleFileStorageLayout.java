@@ -261,14 +261,17 @@ public class SingleFileStorageLayout extends StorageLayout {
     }
 
     @Override
-    public void deleteFile(String fileId, boolean deleteMetadata) throws IOException {
+    public long deleteFile(String fileId, boolean deleteMetadata) throws IOException {
         File f = new File(getFilePath(fileId)+MD_SUFFIX);
         f.delete();
         f = new File(getFilePath(fileId)+DATA_SUFFIX);
-        f.delete();
+        long length = f.length();
+        if (!f.delete())
+            length = 0;
         if (deleteMetadata) {
             //fixme
         }
+        return length;
     }
 
     @Override
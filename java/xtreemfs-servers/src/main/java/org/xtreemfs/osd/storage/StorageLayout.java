@@ -14,9 +14,9 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
 
 import org.xtreemfs.common.xloc.StripingPolicyImpl;
 import org.xtreemfs.foundation.buffer.BufferPool;
@@ -66,11 +66,15 @@ public abstract class StorageLayout {
     protected final MetadataCache cache;
     
     protected StorageLayout(OSDConfig config, MetadataCache cache) throws IOException {
+        this(config.getObjDir(), cache);
+    }
+    
+    protected StorageLayout(String objDir, MetadataCache cache) throws IOException {
         
         this.cache = cache;
         
         // initialize the storage directory
-        String tmp = config.getObjDir();
+        String tmp = objDir;
         if (!tmp.endsWith("/"))
             tmp = tmp + "/";
         storageDir = tmp;
@@ -171,6 +175,37 @@ public abstract class StorageLayout {
     public void closeFile(FileMetadata metadata) {
         //do nothing
     }
+
+    /**
+     * Stops the background activities of the layout, if any. Called when the
+     * OSD is shut down, after the storage threads have been stopped.
+     */
+    public void shutdown() {
+    }
+    
+    /**
+     * Returns the number of storage devices the layout distributes files
+     * across. Each device is served by its own group of storage threads.
+     */
+    public int getNumberOfDevices() {
+        return 1;
+    }
+    
+    /**
+     * Returns the index of the device whose storage threads process the
+     * requests for a file. As it is called whenever a request is enqueued,
+     * the device has to be determined without accessing the disk. The result
+     * must never change for a file, so that its requests are processed in
+     * order.
+     * 
+     * @param fileId
+     *            the file ID
+     * @return a device index between 0 and
+     *         <code>getNumberOfDevices() - 1</code>
+     */
+    public int getDevice(String fileId) {
+        return 0;
+    }
     
     /**
      * Reads a complete object from the storage device.
@@ -195,6 +230,32 @@ public abstract class StorageLayout {
     public abstract ObjectInformation readObject(String fileId, FileMetadata md, long objNo, int offset,
         int length, long version) throws IOException;
     
+    /**
+     * Receives the result of an asynchronous read.
+     */
+    public static interface ReadObjectListener {
+        
+        public void readComplete(ObjectInformation obj, IOException error);
+    }
+    
+    /**
+     * Reads an object like {@link #readObject}, but may return before the
+     * data has been read. The listener may be invoked by another thread. The
+     * default implementation reads the object synchronously.
+     */
+    public void readObjectAsync(String fileId, FileMetadata md, long objNo, int offset, int length,
+        long version, ReadObjectListener listener) {
+        
+        ObjectInformation obj;
+        try {
+            obj = readObject(fileId, md, objNo, offset, length, version);
+        } catch (IOException ex) {
+            listener.readComplete(null, ex);
+            return;
+        }
+        listener.readComplete(obj, null);
+    }
+    
     /**
      * Writes a partial object to the storage device.
      * 
@@ -242,10 +303,11 @@ public abstract class StorageLayout {
      *            the ID of the file
      * @param deleteMetadata
      *            delete metadata and empty directories.
+     * @return the number of bytes of the deleted files
      * @throws IOException
      *             if an error occurred while deleting the objects
      */
-    public abstract void deleteFile(String fileId, boolean deleteMetadata) throws IOException;
+    public abstract long deleteFile(String fileId, boolean deleteMetadata) throws IOException;
     
     /**
      * Deletes a single version of a single object of a file.
@@ -264,6 +326,24 @@ public abstract class StorageLayout {
     public abstract void deleteObject(String fileId, FileMetadata md, long objNo, long version)
         throws IOException;
     
+    /**
+     * Compacts the object versions of a file that are stored in a space-saving
+     * but less efficient form, e.g. as differences from other versions. Called
+     * by the version cleanup after the object versions that are no longer part
+     * of any file version have been deleted.
+     * 
+     * @param fileId
+     *            the ID of the file
+     * @param md
+     *            file metadata
+     * @return the number of compacted object versions
+     * @throws IOException
+     *             if an error occurred while compacting the object versions
+     */
+    public int compactObjectVersions(String fileId, FileMetadata md) throws IOException {
+        return 0;
+    }
+    
     /**
      * Creates and stores a zero-padded object.
      * 
@@ -495,18 +575,42 @@ public abstract class StorageLayout {
             throws IOException;
 
     public static final class FileList {
-        // directories to scan
-        final Stack<String>         status;
+        // walker streaming the files
+        final FileListWalker        walker;
         
         // fileName->fileDetails
         final Map<String, FileData> files;
         
         boolean                     hasMore;
         
-        public FileList(Stack<String> status, Map<String, FileData> files) {
-            this.status = status;
+        // device of the walker, for layouts with multiple devices
+        int                         device;
+        
+        // remaining files, for layouts that list the files of an index
+        Iterator<String>            fileIds;
+        
+        FileList(FileListWalker walker, Map<String, FileData> files) {
+            this.walker = walker;
             this.files = files;
         }
+        
+        public Map<String, FileData> getFiles() {
+            return files;
+        }
+        
+        public boolean hasMore() {
+            return hasMore;
+        }
+        
+        /**
+         * Releases the resources of an unfinished file list. Has to be called
+         * if the list is not retrieved until <tt>hasMore</tt> is false.
+         */
+        public void close() {
+            if (walker != null && hasMore) {
+                walker.cancel();
+            }
+        }
     }
     
     public static final class FileData {
@@ -525,5 +629,13 @@ public abstract class StorageLayout {
             this.objectSize = 0;
             this.metaDataOnly = metaDataOnly;
         }
+        
+        public long getSize() {
+            return size;
+        }
+        
+        public boolean isMetaDataOnly() {
+            return metaDataOnly;
+        }
     }
 }
@@ -10,11 +10,15 @@
 package org.xtreemfs.osd.storage;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.xtreemfs.common.quota.FinalizeVoucherResponseHelper;
 import org.xtreemfs.common.uuids.ServiceUUID;
@@ -33,12 +37,18 @@ import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.POSIXErrno;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader;
 import org.xtreemfs.foundation.pbrpc.utils.ErrorUtils;
 import org.xtreemfs.foundation.util.OutputUtils;
+import org.xtreemfs.osd.OSDRequest;
 import org.xtreemfs.osd.OSDRequestDispatcher;
 import org.xtreemfs.osd.quota.OSDVoucherManager;
 import org.xtreemfs.osd.quota.VoucherErrorException;
 import org.xtreemfs.osd.replication.ObjectSet;
+import org.xtreemfs.osd.stages.FairRequestQueue.RequestClassifier;
+import org.xtreemfs.osd.stages.FairRequestQueue.TrafficClass;
 import org.xtreemfs.osd.stages.Stage;
+import org.xtreemfs.osd.stages.StageLatencyStats.Phase;
+import org.xtreemfs.osd.stages.StorageStage.BackgroundTurnCallback;
 import org.xtreemfs.osd.stages.StorageStage.CachesFlushedCallback;
+import org.xtreemfs.osd.stages.StorageStage.CompactObjectVersionsCallback;
 import org.xtreemfs.osd.stages.StorageStage.CreateFileVersionCallback;
 import org.xtreemfs.osd.stages.StorageStage.DeleteObjectsCallback;
 import org.xtreemfs.osd.stages.StorageStage.FinalizeVoucherCallback;
@@ -94,8 +104,34 @@ public class StorageThread extends Stage {
 
     public static final int            STAGEOP_FINALIZE_VOUCHERS     = 15;
 
+    public static final int            STAGEOP_PREFETCH_OBJECTS      = 16;
+
+    public static final int            STAGEOP_BACKGROUND_TURN       = 17;
+
+    public static final int            STAGEOP_COMPACT_VERSIONS      = 18;
+
+    /**
+     * Flag added to the operation code of a read-only operation that is
+     * processed in parallel with other reads of the file, see
+     * {@link ParallelReadTracker}.
+     */
+    public static final int            STAGEOP_PARALLEL              = 0x100;
+
     private final MetadataCache        cache;
 
+    private final ObjectCache          objectCache;
+
+    private final ParallelReadTracker  readTracker;
+
+    /** if reads are completed asynchronously by the storage layout */
+    private final boolean              asyncReads;
+
+    /**
+     * set if the operation being processed completes asynchronously, i.e. it
+     * is unregistered from the read tracker on completion
+     */
+    private boolean                    asyncPending;
+
     private final StorageLayout        layout;
     
     private final OSDRequestDispatcher master;
@@ -103,22 +139,37 @@ public class StorageThread extends Stage {
     private final boolean        checksumsEnabled;
     
     public StorageThread(int id, OSDRequestDispatcher dispatcher, MetadataCache cache, StorageLayout layout,
-        int maxQueueLength) {
+        ObjectCache objectCache, ParallelReadTracker readTracker, int maxQueueLength,
+        BlockingQueue<StageRequest> queue) {
         
-        super("OSD StThr " + id, maxQueueLength);
+        super("OSD StThr " + id, maxQueueLength, queue);
         
         this.cache = cache;
+        this.objectCache = objectCache;
+        this.readTracker = readTracker;
+        this.asyncReads = readTracker != null && dispatcher.getConfig().getAsyncIODepth() > 0;
         this.layout = layout;
         this.master = dispatcher;
         this.checksumsEnabled = master.getConfig().isUseChecksums();
+        setTimedPhases(Phase.STORAGE_QUEUE, Phase.STORAGE);
     }
     
     @Override
     protected void processMethod(StageRequest method) {
         
+        final boolean parallel = (method.getStageMethod() & STAGEOP_PARALLEL) != 0;
+        final int stageOp = method.getStageMethod() & ~STAGEOP_PARALLEL;
+        final String trackedFileId = readTracker != null && stageOp != STAGEOP_GET_FILEID_LIST ? (String) method
+                .getArgs()[0] : null;
+        
         try {
             
-            switch (method.getStageMethod()) {
+            // operations must not modify the file while it is read
+            if (trackedFileId != null && !isReadOnly(stageOp))
+                readTracker.awaitParallelReads(trackedFileId);
+            
+            asyncPending = false;
+            switch (stageOp) {
             case STAGEOP_READ_OBJECT:
                 processRead(method);
                 break;
@@ -164,14 +215,123 @@ public class StorageThread extends Stage {
             case STAGEOP_FINALIZE_VOUCHERS:
                 processFinalizeVouchers(method);
                 break;
+            case STAGEOP_PREFETCH_OBJECTS:
+                processPrefetchObjects(method);
+                break;
+            case STAGEOP_BACKGROUND_TURN:
+                ((BackgroundTurnCallback) method.getCallback()).turnGranted();
+                break;
+            case STAGEOP_COMPACT_VERSIONS:
+                processCompactVersions(method);
+                break;
             }
             
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            method.sendInternalServerError(ex);
         } catch (Exception ex) {
             method.sendInternalServerError(ex);
             Logging.logError(Logging.LEVEL_ERROR, this, ex);
+        } finally {
+            if (trackedFileId != null && !asyncPending)
+                readTracker.done(trackedFileId, parallel);
         }
     }
 
+    /**
+     * Checks whether an operation only reads a file, i.e. it may be processed
+     * at the same time as other reads of the file.
+     */
+    public static boolean isReadOnly(int stageOp) {
+        return stageOp == STAGEOP_READ_OBJECT || stageOp == STAGEOP_GET_FILE_SIZE
+            || stageOp == STAGEOP_PREFETCH_OBJECTS;
+    }
+    
+    /**
+     * Assigns the requests of the storage threads to traffic classes, and to
+     * flows by the volume or the client host that issued them.
+     */
+    public static final class StorageRequestClassifier implements RequestClassifier {
+
+        private final boolean byClient;
+
+        /**
+         * @param byClient
+         *            if requests are assigned to flows by client host rather
+         *            than by volume
+         */
+        public StorageRequestClassifier(boolean byClient) {
+            this.byClient = byClient;
+        }
+
+        @Override
+        public TrafficClass getTrafficClass(StageRequest rq) {
+
+            final int stageOp = rq.getStageMethod() & ~STAGEOP_PARALLEL;
+            final OSDRequest request = rq.getRequest();
+
+            if (request == null || request.getOperation() == null) {
+                switch (stageOp) {
+                case STAGEOP_WRITE_OBJECT:
+                    // objects fetched from other replicas
+                    return TrafficClass.REPLICATION;
+                case STAGEOP_DELETE_OBJECTS:
+                case STAGEOP_GET_FILEID_LIST:
+                case STAGEOP_PREFETCH_OBJECTS:
+                case STAGEOP_BACKGROUND_TURN:
+                case STAGEOP_COMPACT_VERSIONS:
+                    return TrafficClass.BACKGROUND;
+                default:
+                    return TrafficClass.FOREGROUND;
+                }
+            }
+
+            switch (request.getOperation().getProcedureId()) {
+            case OSDServiceConstants.PROC_ID_XTREEMFS_INTERNAL_READ_LOCAL:
+            case OSDServiceConstants.PROC_ID_XTREEMFS_RWR_FETCH:
+            case OSDServiceConstants.PROC_ID_XTREEMFS_RWR_UPDATE:
+            case OSDServiceConstants.PROC_ID_XTREEMFS_RWR_TRUNCATE:
+            case OSDServiceConstants.PROC_ID_XTREEMFS_RWR_STATUS:
+            case OSDServiceConstants.PROC_ID_XTREEMFS_RWR_AUTH_STATE:
+            case OSDServiceConstants.PROC_ID_XTREEMFS_RWR_AUTH_STATE_INVALIDATED:
+            case OSDServiceConstants.PROC_ID_XTREEMFS_RWR_RESET_STATUS:
+            case OSDServiceConstants.PROC_ID_XTREEMFS_XLOC_SET_INVALIDATE:
+                return TrafficClass.REPLICATION;
+            case OSDServiceConstants.PROC_ID_XTREEMFS_INTERNAL_GET_FILEID_LIST:
+                return TrafficClass.BACKGROUND;
+            default:
+                return TrafficClass.FOREGROUND;
+            }
+        }
+
+        @Override
+        public String getFlow(StageRequest rq) {
+
+            if (byClient) {
+                final OSDRequest request = rq.getRequest();
+                if (request == null || request.getRPCRequest() == null)
+                    return "";
+                final SocketAddress sender = request.getRPCRequest().getSenderAddress();
+                if (sender instanceof InetSocketAddress && ((InetSocketAddress) sender).getAddress() != null)
+                    return ((InetSocketAddress) sender).getAddress().getHostAddress();
+                return String.valueOf(sender);
+            }
+
+            // file IDs have the form <volume UUID>:<file number>
+            final String fileId = getFileId(rq);
+            if (fileId == null)
+                return "";
+            final int sep = fileId.indexOf(':');
+            return sep < 0 ? fileId : fileId.substring(0, sep);
+        }
+
+        @Override
+        public String getFileId(StageRequest rq) {
+            final int stageOp = rq.getStageMethod() & ~STAGEOP_PARALLEL;
+            return stageOp == STAGEOP_GET_FILEID_LIST ? null : (String) rq.getArgs()[0];
+        }
+    }
+    
     private void processGetMaxObjNo(StageRequest rq) {
         final InternalGetMaxObjectNoCallback cback = (InternalGetMaxObjectNoCallback) rq.getCallback();
         try {
@@ -395,18 +555,68 @@ public class StorageThread extends Stage {
                 Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this, "checksum is %d", objChksm);
             }
             
-            ObjectInformation obj = layout.readObject(fileId, fi, objNo, offset, length, objVer);
+            // the object cache does not hold previous versions; reads with
+            // length -1 are used to verify the checksum on disk
+            final boolean cacheable = objectCache != null && versionTimestamp == 0 && length != -1;
+            final int stripeSize = sp.getStripeSizeForObject(objNo);
             
+            final long lastLocalObjNo;
+            final long globalLastObjNo;
             if (versionTimestamp != 0) {
-                int lastObj = fi.getVersionTable().getLatestVersionBefore(versionTimestamp).getObjCount() - 1;
-                obj.setLastLocalObjectNo(lastObj);
-                obj.setGlobalLastObjectNo(lastObj);
+                lastLocalObjNo = fi.getVersionTable().getLatestVersionBefore(versionTimestamp).getObjCount() - 1;
+                globalLastObjNo = lastLocalObjNo;
+            } else {
+                lastLocalObjNo = fi.getLastObjectNumber();
+                globalLastObjNo = fi.getGlobalLastObjectNumber();
+            }
+            
+            ObjectInformation obj = cacheable && objVer != 0 ? objectCache.get(fileId, objNo, objVer, offset,
+                length, stripeSize) : null;
+            if (obj != null) {
+                obj.setLastLocalObjectNo(lastLocalObjNo);
+                obj.setGlobalLastObjectNo(globalLastObjNo);
+                cback.readComplete(obj, null);
+                return;
+            }
+            
+            final long version = objVer;
+            StorageLayout.ReadObjectListener listener = new StorageLayout.ReadObjectListener() {
+                @Override
+                public void readComplete(ObjectInformation obj, IOException error) {
+                    if (error != null) {
+                        cback.readComplete(null, ErrorUtils.getErrorResponse(ErrorType.ERRNO,
+                            POSIXErrno.POSIX_ERROR_EIO, error.toString()));
+                        return;
+                    }
+                    
+                    // cache objects that were read completely
+                    if (cacheable && offset == 0 && length == stripeSize
+                        && obj.getStatus() == ObjectInformation.ObjectStatus.EXISTS)
+                        objectCache.put(fileId, objNo, version, obj.getData(), false);
+                    
+                    obj.setLastLocalObjectNo(lastLocalObjNo);
+                    obj.setGlobalLastObjectNo(globalLastObjNo);
+                    cback.readComplete(obj, null);
+                }
+            };
+            
+            if (asyncReads) {
+                // subsequent operations of the file must wait for the read
+                if ((rq.getStageMethod() & STAGEOP_PARALLEL) == 0)
+                    readTracker.detach(fileId);
+                asyncPending = true;
+                AsyncReadListener asyncListener = new AsyncReadListener(fileId, listener);
+                try {
+                    layout.readObjectAsync(fileId, fi, objNo, offset, length, objVer, asyncListener);
+                } catch (RuntimeException ex) {
+                    asyncListener.release();
+                    throw ex;
+                }
             } else {
-                obj.setLastLocalObjectNo(fi.getLastObjectNumber());
-                obj.setGlobalLastObjectNo(fi.getGlobalLastObjectNumber());
+                obj = layout.readObject(fileId, fi, objNo, offset, length, objVer);
+                listener.readComplete(obj, null);
             }
             
-            cback.readComplete(obj, null);
         } catch (IOException ex) {
             cback.readComplete(null, ErrorUtils.getErrorResponse(ErrorType.ERRNO, POSIXErrno.POSIX_ERROR_EIO,
                 ex.toString()));
@@ -414,6 +624,77 @@ public class StorageThread extends Stage {
         
     }
     
+    /**
+     * Unregisters an asynchronous read from the read tracker once it has been
+     * completed.
+     */
+    private final class AsyncReadListener implements StorageLayout.ReadObjectListener {
+        
+        private final String                           fileId;
+        
+        private final StorageLayout.ReadObjectListener listener;
+        
+        private final AtomicBoolean                    released;
+        
+        AsyncReadListener(String fileId, StorageLayout.ReadObjectListener listener) {
+            this.fileId = fileId;
+            this.listener = listener;
+            this.released = new AtomicBoolean();
+        }
+        
+        @Override
+        public void readComplete(ObjectInformation obj, IOException error) {
+            try {
+                listener.readComplete(obj, error);
+            } finally {
+                release();
+            }
+        }
+        
+        void release() {
+            if (released.compareAndSet(false, true))
+                readTracker.done(fileId, true);
+        }
+    }
+    
+    /**
+     * Reads objects into the object cache in advance. Objects beyond the end
+     * of the file and objects that are already cached are skipped.
+     */
+    private void processPrefetchObjects(StageRequest rq) {
+        final String fileId = (String) rq.getArgs()[0];
+        final StripingPolicyImpl sp = (StripingPolicyImpl) rq.getArgs()[1];
+        final List<Long> objects = (List<Long>) rq.getArgs()[2];
+        
+        try {
+            final FileMetadata fi = layout.getFileMetadata(sp, fileId);
+            
+            for (long objNo : objects) {
+                if (objNo > fi.getLastObjectNumber())
+                    break;
+                
+                final long objVer = fi.getLatestObjectVersion(objNo);
+                if (objVer == 0 || objectCache.contains(fileId, objNo, objVer))
+                    continue;
+                
+                ObjectInformation obj = layout.readObject(fileId, fi, objNo, 0, sp.getStripeSizeForObject(objNo),
+                    objVer);
+                if (obj.getStatus() == ObjectInformation.ObjectStatus.EXISTS) {
+                    objectCache.put(fileId, objNo, objVer, obj.getData(), true);
+                    BufferPool.free(obj.getData());
+                }
+            }
+            
+            if (Logging.isDebug())
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this, "prefetched objects %s of %s",
+                    objects, fileId);
+            
+        } catch (IOException ex) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, Category.storage, this, "prefetching objects of %s failed: %s",
+                fileId, ex.toString());
+        }
+    }
+    
     /**
      * returns the OSDs view of a files size
      * 
@@ -457,6 +738,8 @@ public class StorageThread extends Stage {
             final long version = fi.getLatestObjectVersion(objNo) + 1;
             
             layout.createPaddingObject(fileId, fi, objNo, version, size);
+            if (objectCache != null)
+                objectCache.invalidate(fileId, objNo);
             
             OSDWriteResponse response = OSDWriteResponse.newBuilder().build();
             cback.writeComplete(response, null);
@@ -539,6 +822,8 @@ public class StorageThread extends Stage {
             }
             
             layout.writeObject(fileId, fi, data, objNo, offset, newVersion, syncWrite, isCow);
+            if (objectCache != null)
+                objectCache.invalidate(fileId, objNo);
             
             // if a new version was created, update the "latest versions" file
             if (cow.cowEnabled() && (isCow || largestV == 0))
@@ -651,6 +936,8 @@ public class StorageThread extends Stage {
             final Map<Long,Long> objectsToBeDeleted = (Map<Long,Long>) rq.getArgs()[3];
 
             final FileMetadata fi = layout.getFileMetadata(sp, fileId);
+            if (objectCache != null)
+                objectCache.invalidate(fileId);
 
             // Delete objects.
             for (Entry<Long,Long> obj : objectsToBeDeleted.entrySet()) {
@@ -667,6 +954,26 @@ public class StorageThread extends Stage {
         }
     }
     
+    private void processCompactVersions(StageRequest rq) {
+
+        final CompactObjectVersionsCallback cback = (CompactObjectVersionsCallback) rq.getCallback();
+        try {
+            final String fileId = (String) rq.getArgs()[0];
+            final StripingPolicyImpl sp = (StripingPolicyImpl) rq.getArgs()[1];
+
+            // the metadata of an open file is shared with its other requests
+            FileMetadata fi = cache.getFileInfo(fileId);
+            if (fi == null)
+                fi = layout.getFileMetadataNoCaching(sp, fileId);
+
+            layout.compactObjectVersions(fileId, fi);
+            cback.compactObjectVersionsComplete(null);
+        } catch (Exception ex) {
+            cback.compactObjectVersionsComplete(ErrorUtils.getErrorResponse(ErrorType.ERRNO,
+                POSIXErrno.POSIX_ERROR_EIO, ex.toString()));
+        }
+    }
+
     private void processTruncate(StageRequest rq) throws IOException {
         
         final TruncateCallback cback = (TruncateCallback) rq.getCallback();
@@ -696,6 +1003,9 @@ public class StorageThread extends Stage {
                 return;
             }
             
+            if (objectCache != null)
+                objectCache.invalidate(fileId);
+            
             // assign the number of objects to the COW policy if necessary (this
             // is e.g. needed for the COW_ONCE policy)
             cow.initCowFlagsIfRequired(fi.getLastObjectNumber() + 1);
@@ -28,6 +28,7 @@ import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.POSIXErrno;
 import org.xtreemfs.foundation.util.CLIParser;
 import org.xtreemfs.foundation.util.CLIParser.CliOption;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.PORTS;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_dump_restore_databaseRequest;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRCServiceClient;
 
 public class xtfs_mrcdbtool {
@@ -52,6 +53,10 @@ public class xtfs_mrcdbtool {
         oMrc.urlDefaultPort = PORTS.MRC_PBRPC_PORT_DEFAULT.getNumber();
         oMrc.urlDefaultProtocol = Schemes.SCHEME_PBRPC;
         options.put("mrc", oMrc);
+        options.put("binary", new CliOption(CliOption.OPTIONTYPE.SWITCH,
+            "write or read a binary dump directory instead of an XML dump file", ""));
+        options.put("base", new CliOption(CliOption.OPTIONTYPE.STRING,
+            "binary dump to create an incremental dump for (implies -binary)", "<base_dump>"));
         
         try {
             CLIParser.parseCLI(args, options, arguments);
@@ -89,6 +94,19 @@ public class xtfs_mrcdbtool {
         
         String dumpFile = arguments.get(1);
         
+        String baseDumpFile = options.get("base").stringValue;
+        boolean binary = options.get("binary").switchValue || baseDumpFile != null;
+        if (baseDumpFile != null && !"dump".equals(op)) {
+            System.out.println("'-base' can only be used with 'dump'");
+            usage(options);
+            System.exit(1);
+        }
+        
+        xtreemfs_dump_restore_databaseRequest.Builder rqArgs = xtreemfs_dump_restore_databaseRequest
+                .newBuilder().setDumpFile(dumpFile).setBinary(binary);
+        if (baseDumpFile != null)
+            rqArgs.setBaseDumpFile(baseDumpFile);
+        
         CliOption c = options.get(utils.OPTION_USER_CREDS_FILE);
         String cp = options.get(utils.OPTION_USER_CREDS_PASS).stringValue;
         if(cp != null && cp.equals("-")) {
@@ -147,7 +165,7 @@ public class xtfs_mrcdbtool {
                 RPCResponse<?> r = null;
                 try {
                     r = client.xtreemfs_dump_database(null, passwdAuth, RPCAuthentication.userService,
-                        dumpFile);
+                        rqArgs.build());
                     r.get();
                 } finally {
                     if (r != null)
@@ -157,7 +175,7 @@ public class xtfs_mrcdbtool {
                 RPCResponse<?> r = null;
                 try {
                     r = client.xtreemfs_restore_database(null, passwdAuth, RPCAuthentication.userService,
-                        dumpFile);
+                        rqArgs.build());
                     r.get();
                 } finally {
                     if (r != null)
@@ -185,7 +203,7 @@ public class xtfs_mrcdbtool {
     
     public static void usage(Map<String, CliOption> options) {
         System.out.println("usage: xtfs_mrcdbtool [options] dump|restore <dump_file>\n");
-        System.out.println("  " + "<dump_file> the file for the dump\n");
+        System.out.println("  " + "<dump_file> the file for the dump (a directory for binary dumps)\n");
         System.out.println("  " + "options:");
         
         utils.printOptions(options);
@@ -98,6 +98,24 @@ public class SetupUtils {
         return config;
     }
     
+    /**
+     * Creates the configuration of OSD 1 with additional object directories
+     * "osd0-dev1" ... "osd0-dev(numDevices-1)".
+     */
+    public static OSDConfig createMultiDeviceOSD1Config(int numDevices) throws IOException {
+        Properties props = createOSDProperties(32637 + PORT_RANGE_OFFSET, TEST_DIR + "/osd0");
+        StringBuilder dirs = new StringBuilder();
+        for (int i = 1; i < numDevices; i++) {
+            if (i > 1)
+                dirs.append(",");
+            dirs.append(TEST_DIR + "/osd0-dev" + i);
+        }
+        props.setProperty("storage_layout.additional_object_dirs", dirs.toString());
+        OSDConfig config = new OSDConfig(props);
+        config.setDefaults();
+        return config;
+    }
+    
     public static OSDConfig createOSD2Config() throws IOException {
         Properties props = createOSDProperties(32640 + PORT_RANGE_OFFSET, TEST_DIR + "/osd1");
         OSDConfig config = new OSDConfig(props);
@@ -128,4 +128,52 @@ public class FileSizeUpdateThreadTest {
         fileHandle.close();
         client.shutdown();
     }
+
+    @Test
+    public void testBatchedFileSizeUpdates() throws Exception {
+
+        final String VOLUME_NAME_1 = "testBatchedFileSizeUpdates";
+        final int NUM_FILES = 10;
+
+        Options options = new Options();
+        options.setPeriodicFileSizeUpdatesIntervalS(10);
+        options.setMaxFileSizeUpdatesPerRequest(4);
+        options.setMetadataCacheSize(0);
+
+        String dirAddress = testEnv.getDIRAddress().getHostName() + ":" + testEnv.getDIRAddress().getPort();
+        String mrcAddress = testEnv.getMRCAddress().getHostName() + ":" + testEnv.getMRCAddress().getPort();
+
+        Client client = ClientFactory.createClient(dirAddress, userCredentials, null, options);
+        client.start();
+
+        client.createVolume(mrcAddress, auth, userCredentials, VOLUME_NAME_1);
+        Volume volume = client.openVolume(VOLUME_NAME_1, null, options);
+
+        // Write files of different sizes; their sizes are sent with three batched requests.
+        FileHandle[] fileHandles = new FileHandle[NUM_FILES];
+        for (int i = 0; i < NUM_FILES; i++) {
+            fileHandles[i] = volume.openFile(
+                    userCredentials,
+                    "/file" + i,
+                    SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_O_CREAT.getNumber()
+                            | SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_O_TRUNC.getNumber()
+                            | SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_O_RDWR.getNumber());
+            byte[] data = new byte[i + 1];
+            fileHandles[i].write(userCredentials, data, data.length, 0);
+        }
+
+        Thread.sleep(10000);
+
+        for (int i = 0; i < NUM_FILES; i++) {
+            Stat stat = mrcClient
+                    .getattr(testEnv.getMRCAddress(), auth, userCredentials, VOLUME_NAME_1, "/file" + i, 0).get()
+                    .getStbuf();
+            assertEquals(i + 1, stat.getSize());
+        }
+
+        for (FileHandle fileHandle : fileHandles) {
+            fileHandle.close();
+        }
+        client.shutdown();
+    }
 }
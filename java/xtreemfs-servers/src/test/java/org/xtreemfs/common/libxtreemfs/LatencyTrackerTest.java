@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.common.libxtreemfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.xtreemfs.TestHelper;
+
+public class LatencyTrackerTest {
+    @Rule
+    public final TestRule testLog = TestHelper.testLog;
+
+    @Test
+    public void testEstimates() throws Exception {
+        LatencyTracker tracker = new LatencyTracker();
+
+        assertEquals(-1, tracker.getAverage("osd1"));
+        assertEquals(-1, tracker.getPercentile95("osd1"));
+
+        tracker.record("osd1", 1000);
+        assertEquals(1000, tracker.getAverage("osd1"));
+        assertEquals(2000, tracker.getPercentile95("osd1"));
+
+        // constant response times let the deviation converge to zero
+        for (int i = 0; i < 200; i++) {
+            tracker.record("osd1", 1000);
+        }
+        assertEquals(1000, tracker.getAverage("osd1"));
+        assertTrue(tracker.getPercentile95("osd1") < 1010);
+
+        // a single slow response moves the average only slightly, but widens the percentile
+        tracker.record("osd1", 9000);
+        assertEquals(2000, tracker.getAverage("osd1"));
+        assertTrue(tracker.getPercentile95("osd1") > 5000);
+    }
+
+    @Test
+    public void testSortByLatency() throws Exception {
+        LatencyTracker tracker = new LatencyTracker();
+        tracker.record("slow", 5000);
+        tracker.record("fast", 1000);
+        tracker.record("medium", 3000);
+
+        List<String> sorted = tracker.sortByLatency(Arrays.asList("slow", "medium", "unknown", "fast"));
+        assertEquals(Arrays.asList("unknown", "fast", "medium", "slow"), sorted);
+
+        tracker.clear();
+        sorted = tracker.sortByLatency(Arrays.asList("slow", "medium", "fast"));
+        assertEquals(Arrays.asList("slow", "medium", "fast"), sorted);
+    }
+}
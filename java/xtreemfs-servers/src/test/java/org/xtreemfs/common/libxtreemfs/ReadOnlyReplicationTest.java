@@ -7,7 +7,11 @@
  */
 package org.xtreemfs.common.libxtreemfs;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
 import java.io.IOException;
+import java.util.ArrayList;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -21,8 +25,12 @@ import org.xtreemfs.foundation.pbrpc.client.RPCAuthentication;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.Auth;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.UserCredentials;
 import org.xtreemfs.foundation.util.FSUtils;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.AccessControlPolicyType;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.KeyValuePair;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.OSDSelectionPolicyType;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.Replicas;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.SYSTEM_V_FCNTL;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.StripingPolicyType;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRCServiceClient;
 import org.xtreemfs.SetupUtils;
 import org.xtreemfs.TestEnvironment;
@@ -35,6 +43,8 @@ import org.xtreemfs.TestHelper;
  * on-demand replication of the same object was triggered by two concurrent requests. However, the test failed
  * to reproduce the issue and it was resolved otherwise.
  * 
+ * In addition, reads of striped read-only replicas are tested.
+ * 
  * @author mberlin
  * 
  */
@@ -63,7 +73,8 @@ public class ReadOnlyReplicationTest {
 
         testEnv = new TestEnvironment(new TestEnvironment.Services[] { TestEnvironment.Services.DIR_SERVICE, TestEnvironment.Services.DIR_CLIENT,
                 TestEnvironment.Services.TIME_SYNC, TestEnvironment.Services.RPC_CLIENT,
-                TestEnvironment.Services.MRC, TestEnvironment.Services.OSD, TestEnvironment.Services.OSD});
+                TestEnvironment.Services.MRC, TestEnvironment.Services.OSD, TestEnvironment.Services.OSD,
+                TestEnvironment.Services.OSD, TestEnvironment.Services.OSD});
         testEnv.start();
 
         userCredentials = UserCredentials.newBuilder().setUsername("test").addGroups("test").build();
@@ -159,4 +170,54 @@ public class ReadOnlyReplicationTest {
         volume.close();
         client.shutdown();
     }
-}
\ No newline at end of file
+
+    /**
+     * Hedged reads of a striped file have to be sent to the OSDs which store the object in the replicas, rather than
+     * to their head OSDs.
+     */
+    @Test
+    public void testHedgedReadsOfStripedReplicas() throws Exception {
+        final String volumeName = "testHedgedReadsOfStripedReplicas";
+        final String path = "/test.txt";
+        final int stripeSize = 128 * 1024;
+
+        // Send a hedged read for every object.
+        Options hedgedOptions = new Options();
+        hedgedOptions.setLatencyAwareReplicaSelection(true);
+        hedgedOptions.setHedgedReads(true);
+        hedgedOptions.setHedgedReadMinDelay_ms(0);
+
+        // Create a volume striped over two OSDs, with two replicas per file.
+        client.createVolume(mrcAddress, auth, userCredentials, volumeName, 0777, userCredentials.getUsername(),
+                userCredentials.getGroups(0), AccessControlPolicyType.ACCESS_CONTROL_POLICY_NULL,
+                StripingPolicyType.STRIPING_POLICY_RAID0, stripeSize / 1024, 2, new ArrayList<KeyValuePair>());
+        Volume volume = client.openVolume(volumeName, null, hedgedOptions);
+        volume.setDefaultReplicationPolicy(userCredentials, "/", ReplicaUpdatePolicies.REPL_UPDATE_PC_RONLY, 2,
+                ReplicationFlags.setFullReplica(ReplicationFlags.setRarestFirstStrategy(0)));
+
+        // Write four objects with different content.
+        byte[] bytesIn = new byte[4 * stripeSize];
+        for (int i = 0; i < bytesIn.length; i++) {
+            bytesIn[i] = (byte) (i / stripeSize + 1);
+        }
+        FileHandle fileHandle = volume.openFile(
+                userCredentials,
+                path,
+                SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_O_CREAT.getNumber()
+                        | SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_O_RDWR.getNumber(), 0777);
+        fileHandle.write(userCredentials, bytesIn, bytesIn.length, 0);
+        fileHandle.close();
+
+        // Read the file from both replicas.
+        Replicas replicas = volume.listReplicas(userCredentials, path);
+        assertEquals(2, replicas.getReplicasCount());
+        assertEquals(2, replicas.getReplicas(1).getOsdUuidsCount());
+        fileHandle = volume.openFile(userCredentials, path, SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_O_RDONLY.getNumber());
+        byte[] bytesOut = new byte[bytesIn.length];
+        assertEquals(bytesIn.length, fileHandle.read(userCredentials, bytesOut, bytesOut.length, 0));
+        assertArrayEquals(bytesIn, bytesOut);
+        fileHandle.close();
+
+        volume.close();
+    }
+}
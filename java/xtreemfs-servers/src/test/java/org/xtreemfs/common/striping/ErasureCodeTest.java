@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.common.striping;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.xtreemfs.TestHelper;
+import org.xtreemfs.common.xloc.ErasureCodeImpl;
+import org.xtreemfs.common.xloc.ReedSolomonCodec;
+import org.xtreemfs.common.xloc.StripingPolicyImpl;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.Replica;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.StripingPolicy;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.StripingPolicyType;
+
+/**
+ * Tests the erasure-coded striping policy and the Reed-Solomon codec.
+ */
+public class ErasureCodeTest {
+    @Rule
+    public final TestRule testLog = TestHelper.testLog;
+
+    private static Replica getReplica(int width, int parityWidth) {
+        StripingPolicy sp = StripingPolicy.newBuilder().setType(StripingPolicyType.STRIPING_POLICY_ERASURECODE)
+                .setStripeSize(128).setWidth(width).setParityWidth(parityWidth).build();
+        return Replica.newBuilder().setStripingPolicy(sp).setReplicationFlags(0).build();
+    }
+
+    @Test
+    public void testObjectMapping() throws Exception {
+
+        Replica r = getReplica(4, 2);
+        ErasureCodeImpl data = (ErasureCodeImpl) StripingPolicyImpl.getPolicy(r, 1);
+        ErasureCodeImpl parity = (ErasureCodeImpl) StripingPolicyImpl.getPolicy(r, 5);
+
+        assertEquals(4, data.getWidth());
+        assertEquals(2, data.getParityWidth());
+        assertFalse(data.isParityOSD(3));
+        assertTrue(data.isParityOSD(4));
+
+        // data objects are distributed like with RAID0
+        assertEquals(1, data.getOSDforObject(5));
+        assertEquals(3, data.getOSDforOffset(7 * 128 * 1024));
+        assertTrue(data.isLocalObject(5, 1));
+        assertFalse(data.isLocalObject(4, 1));
+        assertEquals(9, data.getGloablObjectNumber(2));
+
+        // parity objects are numbered like the first object of their row
+        assertEquals(8, parity.getParityObjectNumber(2));
+        assertTrue(parity.isLocalObject(8, 5));
+        assertFalse(parity.isLocalObject(9, 5));
+        assertEquals(8, parity.getGloablObjectNumber(2));
+        assertEquals(2, parity.getLocalObjectNumber(8));
+
+        Iterator<Long> objects = parity.getObjectsOfOSD(4, 3, 13);
+        assertEquals(0, objects.next().longValue());
+        assertEquals(4, objects.next().longValue());
+        assertEquals(8, objects.next().longValue());
+        assertEquals(12, objects.next().longValue());
+        assertFalse(objects.hasNext());
+
+        try {
+            StripingPolicyImpl.getPolicy(getReplica(4, 0), 0);
+            fail("a parity width of 0 must not be accepted");
+        } catch (IllegalArgumentException exc) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testEncodeDecode() throws Exception {
+
+        final int k = 4;
+        final int m = 3;
+        final int length = 100 * 1000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ReedSolomonCodec codec = new ReedSolomonCodec(k, m, executor, 4);
+
+            Random random = new Random(42);
+            byte[][] data = new byte[k][length];
+            for (byte[] chunk : data) {
+                random.nextBytes(chunk);
+            }
+            byte[][] parity = new byte[m][length];
+            codec.encode(data, parity, length);
+
+            // the result must not depend on the number of slices
+            byte[][] sequentialParity = new byte[m][length];
+            new ReedSolomonCodec(k, m, null, 1).encode(data, sequentialParity, length);
+            for (int p = 0; p < m; p++) {
+                assertArrayEquals(sequentialParity[p], parity[p]);
+            }
+
+            // restore the data from every combination of k chunks
+            for (int mask = 0; mask < (1 << (k + m)); mask++) {
+                if (Integer.bitCount(mask) != k) {
+                    continue;
+                }
+                byte[][] chunks = new byte[k + m][];
+                boolean[] present = new boolean[k + m];
+                for (int i = 0; i < k + m; i++) {
+                    present[i] = (mask & (1 << i)) != 0;
+                    if (present[i]) {
+                        chunks[i] = i < k ? data[i] : parity[i - k];
+                    }
+                }
+                codec.decode(chunks, present, length);
+                for (int i = 0; i < k; i++) {
+                    assertArrayEquals(data[i], chunks[i]);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
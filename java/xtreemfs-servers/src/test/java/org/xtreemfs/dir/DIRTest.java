@@ -43,6 +43,7 @@ import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceType;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.addressMappingSetResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.configurationSetResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.globalTimeSGetResponse;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.serviceHeartbeatRequest;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.serviceRegisterResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIRServiceClient;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.KeyValuePair;
@@ -301,4 +302,79 @@ public class DIRTest {
 
     }
 
+    @Test
+    public void testHeartbeat() throws Exception {
+
+        DIRServiceClient client = testEnv.getDirClient();
+
+        final int numServices = 50;
+
+        // register the services concurrently
+        RPCResponse<serviceRegisterResponse>[] responses = new RPCResponse[numServices];
+        for (int i = 0; i < numServices; i++) {
+            ServiceDataMap dmap = ServiceDataMap.newBuilder()
+                    .addData(KeyValuePair.newBuilder().setKey("free").setValue("100"))
+                    .addData(KeyValuePair.newBuilder().setKey("load").setValue("0")).build();
+            Service sr = Service.newBuilder().setData(dmap).setType(ServiceType.SERVICE_TYPE_OSD)
+                    .setUuid("hb-osd" + i).setName("OSD @ hb-osd" + i).setLastUpdatedS(0).setVersion(0).build();
+            responses[i] = client.xtreemfs_service_register(null, RPCAuthentication.authNone,
+                    RPCAuthentication.userService, sr);
+        }
+        long[] versions = new long[numServices];
+        for (int i = 0; i < numServices; i++) {
+            versions[i] = responses[i].get().getNewVersion();
+            responses[i].freeBuffers();
+        }
+
+        // send concurrent heartbeats which change and remove entries
+        for (int i = 0; i < numServices; i++) {
+            serviceHeartbeatRequest hb = serviceHeartbeatRequest.newBuilder().setUuid("hb-osd" + i)
+                    .setVersion(versions[i])
+                    .addChangedData(KeyValuePair.newBuilder().setKey("free").setValue(Integer.toString(i)))
+                    .addRemovedKeys("load").build();
+            responses[i] = client.xtreemfs_service_heartbeat(null, RPCAuthentication.authNone,
+                    RPCAuthentication.userService, hb);
+        }
+        for (int i = 0; i < numServices; i++) {
+            assertEquals(versions[i] + 1, responses[i].get().getNewVersion());
+            responses[i].freeBuffers();
+        }
+
+        for (int i = 0; i < numServices; i++) {
+            RPCResponse<ServiceSet> r2 = client.xtreemfs_service_get_by_uuid(null, RPCAuthentication.authNone,
+                    RPCAuthentication.userService, "hb-osd" + i);
+            Service service = r2.get().getServices(0);
+            r2.freeBuffers();
+
+            assertEquals(versions[i] + 1, service.getVersion());
+            assertTrue(service.getLastUpdatedS() > 0);
+            assertEquals(1, service.getData().getDataCount());
+            assertEquals("free", service.getData().getData(0).getKey());
+            assertEquals(Integer.toString(i), service.getData().getData(0).getValue());
+        }
+
+        // an outdated version must be rejected
+        RPCResponse<serviceRegisterResponse> r1 = client.xtreemfs_service_heartbeat(null,
+                RPCAuthentication.authNone, RPCAuthentication.userService, serviceHeartbeatRequest.newBuilder()
+                        .setUuid("hb-osd0").setVersion(versions[0]).build());
+        try {
+            r1.get();
+            fail();
+        } catch (PBRPCException ex) {
+            assertEquals(POSIXErrno.POSIX_ERROR_EAGAIN, ex.getPOSIXErrno());
+        }
+        r1.freeBuffers();
+
+        // as well as a heartbeat of an unknown service
+        r1 = client.xtreemfs_service_heartbeat(null, RPCAuthentication.authNone, RPCAuthentication.userService,
+                serviceHeartbeatRequest.newBuilder().setUuid("unknown").setVersion(1).build());
+        try {
+            r1.get();
+            fail();
+        } catch (PBRPCException ex) {
+            assertEquals(POSIXErrno.POSIX_ERROR_EAGAIN, ex.getPOSIXErrno());
+        }
+        r1.freeBuffers();
+    }
+
 }
@@ -57,6 +57,8 @@ import org.xtreemfs.pbrpc.generatedinterfaces.MRC.Volumes;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.XAttr;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.listxattrResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_get_suitable_osdsResponse;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_renew_capabilitiesRequest;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_renew_capabilitiesResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_set_replica_update_policyRequest;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_update_file_sizeRequest;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_replica_addRequest;
@@ -637,6 +639,16 @@ public class MRCTest {
                 RPCAuthentication.userService, xcap));
         assertTrue(xcap.getExpireTimeS() < newCap.getExpireTimeS());
         
+        // test renewing multiple capabilities at once; a capability with an
+        // invalid signature has to be returned unmodified
+        XCap invalidCap = xcap.toBuilder().setServerSignature("invalid").build();
+        xtreemfs_renew_capabilitiesResponse renewed = invokeSync(client.xtreemfs_renew_capabilities(mrcAddress,
+            RPCAuthentication.authNone, RPCAuthentication.userService, xtreemfs_renew_capabilitiesRequest
+                    .newBuilder().addXcaps(xcap).addXcaps(invalidCap).build()));
+        assertEquals(2, renewed.getXcapsCount());
+        assertTrue(xcap.getExpireTimeS() < renewed.getXcaps(0).getExpireTimeS());
+        assertEquals(invalidCap, renewed.getXcaps(1));
+        
         // open w/ truncate flag; check whether the epoch number is incremented
         invokeSync(client.open(mrcAddress, RPCAuthentication.authNone, uc, volumeName, "trunc",
             FileAccessManager.O_CREAT, 0777, 0, getDefaultCoordinates()));
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.xtreemfs.TestHelper;
+import org.xtreemfs.osd.stages.AdmissionController;
+
+public class AdmissionControllerTest {
+    @Rule
+    public final TestRule testLog = TestHelper.testLog;
+
+    private static final long MS = 1000000;
+
+    @Test
+    public void testShortBurstIsAdmitted() throws Exception {
+        AdmissionController ac = new AdmissionController(100, 1000);
+
+        // a burst that exceeds the target for less than an interval
+        long now = 1;
+        for (int i = 0; i < 9; i++) {
+            now += 100 * MS;
+            ac.dequeued(200 * MS, now, false);
+        }
+        assertFalse(ac.isOverloaded());
+        assertTrue(ac.admit(now));
+
+        // the queue drains below the target
+        ac.dequeued(10 * MS, now + 100 * MS, false);
+        ac.dequeued(200 * MS, now + 1500 * MS, false);
+        assertFalse(ac.isOverloaded());
+        assertEquals(0, ac.getNumRejected());
+    }
+
+    @Test
+    public void testStandingQueueIsRejected() throws Exception {
+        AdmissionController ac = new AdmissionController(100, 1000);
+
+        long now = 1;
+        for (int i = 0; i <= 10; i++) {
+            ac.dequeued(200 * MS, now, false);
+            now += 100 * MS;
+        }
+        assertTrue(ac.isOverloaded());
+
+        // single requests are rejected at intervals of interval / sqrt(count)
+        assertFalse(ac.admit(now));
+        assertTrue(ac.admit(now));
+        assertTrue(ac.admit(now + 999 * MS));
+        assertFalse(ac.admit(now + 1000 * MS));
+        assertTrue(ac.admit(now + 1700 * MS));
+        assertFalse(ac.admit(now + 1708 * MS));
+        assertTrue(ac.admit(now + 1708 * MS));
+        assertEquals(3, ac.getNumRejected());
+
+        // requests are admitted again once the delay drops below the target
+        now += 1800 * MS;
+        ac.dequeued(50 * MS, now, false);
+        assertFalse(ac.isOverloaded());
+        assertTrue(ac.admit(now + 2000 * MS));
+        assertEquals(3, ac.getNumRejected());
+
+        // if the backlog builds up again soon, the previous rejection rate is
+        // resumed
+        ac.dequeued(200 * MS, now + 100 * MS, false);
+        ac.dequeued(200 * MS, now + 1100 * MS, false);
+        assertTrue(ac.isOverloaded());
+        assertFalse(ac.admit(now + 1100 * MS));
+        assertTrue(ac.admit(now + 1800 * MS));
+        assertFalse(ac.admit(now + 1808 * MS));
+        assertEquals(5, ac.getNumRejected());
+    }
+
+    @Test
+    public void testEmptyQueueResetsOverload() throws Exception {
+        AdmissionController ac = new AdmissionController(100, 1000);
+
+        ac.dequeued(200 * MS, 1, false);
+        ac.dequeued(200 * MS, 1 + 1000 * MS, false);
+        assertTrue(ac.isOverloaded());
+
+        ac.dequeued(200 * MS, 1 + 1100 * MS, true);
+        assertFalse(ac.isOverloaded());
+        assertTrue(ac.admit(1 + 1100 * MS));
+    }
+}
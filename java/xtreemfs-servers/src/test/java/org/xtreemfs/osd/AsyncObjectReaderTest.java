@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.xtreemfs.TestHelper;
+import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+import org.xtreemfs.osd.storage.AsyncObjectReader;
+
+public class AsyncObjectReaderTest {
+    @Rule
+    public final TestRule testLog = TestHelper.testLog;
+
+    private static IOException read(AsyncObjectReader reader, File file, long position, ReusableBuffer buf)
+            throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<IOException> error = new AtomicReference<IOException>();
+        reader.read(file, position, buf, new AsyncObjectReader.Listener() {
+            @Override
+            public void readComplete(IOException exc) {
+                error.set(exc);
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        return error.get();
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        File file = File.createTempFile("asyncread", null);
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        for (int i = 0; i < 100; i++)
+            out.write(i);
+        out.close();
+
+        AsyncObjectReader reader = new AsyncObjectReader("test", 2);
+
+        ReusableBuffer buf = BufferPool.allocate(20);
+        assertNull(read(reader, file, 10, buf));
+        assertEquals(20, buf.position());
+        buf.flip();
+        for (int i = 10; i < 30; i++)
+            assertEquals(i, buf.get());
+        BufferPool.free(buf);
+
+        // a read beyond the end of the file leaves the buffer partially filled
+        buf = BufferPool.allocate(20);
+        assertNull(read(reader, file, 90, buf));
+        assertEquals(10, buf.position());
+        BufferPool.free(buf);
+
+        // a missing file is reported as an error
+        buf = BufferPool.allocate(20);
+        assertNotNull(read(reader, new File(file.getPath() + ".missing"), 0, buf));
+        BufferPool.free(buf);
+
+        assertEquals(0, reader.getOutstandingReads());
+        file.delete();
+    }
+}
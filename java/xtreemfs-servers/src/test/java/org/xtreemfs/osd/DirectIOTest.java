@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.xtreemfs.SetupUtils;
+import org.xtreemfs.TestHelper;
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.osd.storage.DirectIO;
+
+public class DirectIOTest {
+    @Rule
+    public final TestRule testLog = TestHelper.testLog;
+
+    @BeforeClass
+    public static void initializeTest() throws Exception {
+        Logging.start(SetupUtils.DEBUG_LEVEL);
+    }
+
+    @Test
+    public void testUnalignedReadsAndWrites() throws Exception {
+        assumeTrue(DirectIO.isSupported());
+
+        File file = File.createTempFile("directio", null, new File("."));
+        file.deleteOnExit();
+
+        DirectIO dio = new DirectIO(new File("."));
+        Random rnd = new Random(1);
+
+        // apply the same writes to a byte array and compare the results
+        byte[] expected = new byte[0];
+        int[][] writes = { { 100, 50 }, { 0, 10000 }, { 4000, 200 }, { 12000, 10 }, { 8192, 4096 }, { 5, 1 } };
+        for (int[] w : writes) {
+            byte[] data = new byte[w[1]];
+            rnd.nextBytes(data);
+            dio.write(file, w[0], ByteBuffer.wrap(data), false);
+
+            if (w[0] + w[1] > expected.length) {
+                byte[] tmp = new byte[w[0] + w[1]];
+                System.arraycopy(expected, 0, tmp, 0, expected.length);
+                expected = tmp;
+            }
+            System.arraycopy(data, 0, expected, w[0], w[1]);
+
+            assertEquals(expected.length, file.length());
+            byte[] content = new byte[expected.length];
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            raf.readFully(content);
+            raf.close();
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals("offset " + i, expected[i], content[i]);
+            }
+        }
+
+        // unaligned reads, including reads beyond the end of the file
+        int[][] reads = { { 0, 100 }, { 4090, 20 }, { 100, 12000 }, { 12005, 100 }, { 20000, 10 } };
+        for (int[] r : reads) {
+            ByteBuffer buf = ByteBuffer.allocate(r[1]);
+            int n = dio.read(file, r[0], buf);
+            assertEquals(Math.max(0, Math.min(r[1], expected.length - r[0])), n);
+            for (int i = 0; i < n; i++) {
+                assertEquals(expected[r[0] + i], buf.get(i));
+            }
+        }
+
+        file.delete();
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.xtreemfs.TestHelper;
+import org.xtreemfs.osd.stages.FairRequestQueue;
+import org.xtreemfs.osd.stages.FairRequestQueue.RequestClassifier;
+import org.xtreemfs.osd.stages.FairRequestQueue.TrafficClass;
+import org.xtreemfs.osd.stages.Stage.StageRequest;
+
+public class FairRequestQueueTest {
+    @Rule
+    public final TestRule testLog = TestHelper.testLog;
+
+    /**
+     * Requests carry the file ID and the traffic class as arguments; the flow
+     * is the volume part of the file ID.
+     */
+    private static final RequestClassifier CLASSIFIER = new RequestClassifier() {
+
+        @Override
+        public TrafficClass getTrafficClass(StageRequest rq) {
+            return (TrafficClass) rq.getArgs()[1];
+        }
+
+        @Override
+        public String getFlow(StageRequest rq) {
+            String fileId = getFileId(rq);
+            return fileId.substring(0, fileId.indexOf(':'));
+        }
+
+        @Override
+        public String getFileId(StageRequest rq) {
+            return (String) rq.getArgs()[0];
+        }
+    };
+
+    private static StageRequest request(int id, String fileId, TrafficClass tc) {
+        return new StageRequest(id, new Object[] { fileId, tc }, null, null);
+    }
+
+    private static List<Integer> drain(FairRequestQueue queue) {
+        List<Integer> ids = new ArrayList<Integer>();
+        StageRequest rq;
+        while ((rq = queue.poll()) != null)
+            ids.add(rq.getStageMethod());
+        return ids;
+    }
+
+    @Test
+    public void testFifo() throws Exception {
+        FairRequestQueue queue = new FairRequestQueue(CLASSIFIER);
+        for (int i = 0; i < 10; i++)
+            queue.put(request(i, (i < 6 ? "A:" : "B:") + i, i % 2 == 0 ? TrafficClass.FOREGROUND
+                : TrafficClass.REPLICATION));
+        assertEquals(10, queue.size());
+
+        List<Integer> ids = drain(queue);
+        for (int i = 0; i < 10; i++)
+            assertEquals(i, ids.get(i).intValue());
+        assertEquals(0, queue.size());
+
+        // delays are recorded per class
+        assertEquals(5, queue.getNumRequests(TrafficClass.FOREGROUND));
+        assertEquals(5, queue.getNumRequests(TrafficClass.REPLICATION));
+        assertEquals(0, queue.getNumRequests(TrafficClass.BACKGROUND));
+        assertTrue(queue.getMaxQueueingDelay(TrafficClass.FOREGROUND) >= 0);
+    }
+
+    @Test
+    public void testFifoDefersBackgroundRequests() throws Exception {
+        Map<String, Double> classWeights = FairRequestQueue.parseWeights("foreground=4, background=1");
+        FairRequestQueue queue = new FairRequestQueue(CLASSIFIER, false, classWeights, new HashMap<String, Double>());
+
+        // background requests queued first get a share of the stage, but do
+        // not delay the foreground requests of other volumes in order
+        for (int i = 0; i < 20; i++)
+            queue.put(request(i, "A:" + i, TrafficClass.BACKGROUND));
+        for (int i = 0; i < 20; i++)
+            queue.put(request(100 + i, "B:" + (100 + i), TrafficClass.FOREGROUND));
+
+        List<Integer> ids = drain(queue);
+        int numForeground = 0;
+        int lastForeground = 99;
+        for (int i = 0; i < ids.size(); i++) {
+            if (ids.get(i) >= 100) {
+                assertTrue(ids.get(i) > lastForeground);
+                lastForeground = ids.get(i);
+                if (i < 10)
+                    numForeground++;
+            }
+        }
+        assertEquals(8, numForeground);
+    }
+
+    @Test
+    public void testFairQueuingByVolume() throws Exception {
+        Map<String, Double> flowWeights = new HashMap<String, Double>();
+        flowWeights.put("C", 3.0);
+        FairRequestQueue queue = new FairRequestQueue(CLASSIFIER, true, new HashMap<String, Double>(), flowWeights);
+
+        // a bulk scan of volume A, followed by a few requests of volume B
+        for (int i = 0; i < 20; i++)
+            queue.put(request(i, "A:" + i, TrafficClass.FOREGROUND));
+        queue.put(request(100, "B:1", TrafficClass.FOREGROUND));
+        queue.put(request(101, "B:2", TrafficClass.FOREGROUND));
+
+        // the requests of B do not wait for the scan
+        List<Integer> ids = drain(queue);
+        assertEquals(22, ids.size());
+        assertTrue(ids.indexOf(100) <= 2);
+        assertTrue(ids.indexOf(101) <= 4);
+        assertTrue(ids.indexOf(100) < ids.indexOf(101));
+
+        // volume C gets three times the share of volume A
+        for (int i = 0; i < 20; i++) {
+            queue.put(request(i, "A:" + i, TrafficClass.FOREGROUND));
+            queue.put(request(100 + i, "C:" + i, TrafficClass.FOREGROUND));
+        }
+        ids = drain(queue);
+        int numC = 0;
+        for (int i = 0; i < 16; i++)
+            if (ids.get(i) >= 100)
+                numC++;
+        assertEquals(12, numC);
+
+        // requests of a flow remain in arrival order
+        int lastA = -1;
+        for (int id : ids) {
+            if (id < 100) {
+                assertTrue(id > lastA);
+                lastA = id;
+            }
+        }
+    }
+
+    @Test
+    public void testTrafficClasses() throws Exception {
+        Map<String, Double> classWeights = FairRequestQueue.parseWeights("foreground=4, background=1");
+        FairRequestQueue queue = new FairRequestQueue(CLASSIFIER, true, classWeights, new HashMap<String, Double>());
+
+        for (int i = 0; i < 20; i++)
+            queue.put(request(i, "A:" + i, TrafficClass.BACKGROUND));
+        for (int i = 0; i < 20; i++)
+            queue.put(request(100 + i, "A:" + (100 + i), TrafficClass.FOREGROUND));
+
+        List<Integer> ids = drain(queue);
+        int numForeground = 0;
+        for (int i = 0; i < 10; i++)
+            if (ids.get(i) >= 100)
+                numForeground++;
+        assertEquals(8, numForeground);
+
+        assertEquals(20, queue.getNumRequests(TrafficClass.FOREGROUND));
+        assertEquals(20, queue.getNumRequests(TrafficClass.BACKGROUND));
+    }
+
+    @Test
+    public void testRequestsOfFileAreNotReordered() throws Exception {
+        FairRequestQueue queue = new FairRequestQueue(CLASSIFIER, true, FairRequestQueue
+                .parseWeights("foreground=100"), new HashMap<String, Double>());
+
+        // the foreground request of file A:1 must not overtake its background
+        // request
+        for (int i = 0; i < 5; i++)
+            queue.put(request(i, "A:" + i, TrafficClass.BACKGROUND));
+        queue.put(request(10, "B:1", TrafficClass.FOREGROUND));
+        queue.put(request(11, "A:1", TrafficClass.FOREGROUND));
+
+        List<Integer> ids = drain(queue);
+        assertEquals(10, ids.get(0).intValue());
+        assertTrue(ids.indexOf(1) < ids.indexOf(11));
+
+        // the requests are recorded with their own class
+        assertEquals(2, queue.getNumRequests(TrafficClass.FOREGROUND));
+        assertEquals(5, queue.getNumRequests(TrafficClass.BACKGROUND));
+        assertNull(queue.poll());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWeight() throws Exception {
+        FairRequestQueue.parseWeights("foreground=0");
+    }
+}
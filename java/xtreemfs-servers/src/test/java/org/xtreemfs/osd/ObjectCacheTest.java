@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.xtreemfs.TestHelper;
+import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+import org.xtreemfs.osd.storage.ObjectCache;
+import org.xtreemfs.osd.storage.ObjectInformation;
+
+public class ObjectCacheTest {
+    @Rule
+    public final TestRule testLog = TestHelper.testLog;
+
+    private static ReusableBuffer createObject(int size, byte value) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++)
+            data[i] = (byte) (value + i);
+        return ReusableBuffer.wrap(data);
+    }
+
+    @Test
+    public void testGetRanges() throws Exception {
+        ObjectCache cache = new ObjectCache(1000);
+
+        ReusableBuffer obj = createObject(100, (byte) 0);
+        cache.put("file", 0, 1, obj, false);
+        assertEquals(0, obj.position());
+        assertEquals(100, obj.limit());
+
+        // an object that is not cached in the requested version is a miss
+        assertNull(cache.get("file", 0, 2, 0, 128, 128));
+        assertNull(cache.get("file", 1, 1, 0, 128, 128));
+
+        ObjectInformation info = cache.get("file", 0, 1, 10, 20, 128);
+        assertNotNull(info);
+        assertEquals(ObjectInformation.ObjectStatus.EXISTS, info.getStatus());
+        assertEquals(20, info.getData().remaining());
+        assertEquals(10, info.getData().get());
+        BufferPool.free(info.getData());
+
+        // ranges beyond the end of the object are truncated like on disk
+        info = cache.get("file", 0, 1, 90, 38, 128);
+        assertEquals(10, info.getData().remaining());
+        BufferPool.free(info.getData());
+        info = cache.get("file", 0, 1, 100, 28, 128);
+        assertEquals(0, info.getData().remaining());
+        BufferPool.free(info.getData());
+
+        assertEquals(3, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testEvictionAndInvalidation() throws Exception {
+        ObjectCache cache = new ObjectCache(300);
+
+        cache.put("a", 0, 1, createObject(100, (byte) 0), false);
+        cache.put("a", 1, 1, createObject(100, (byte) 0), true);
+        cache.put("b", 0, 1, createObject(100, (byte) 0), true);
+        assertEquals(300, cache.getSize());
+        assertEquals(2, cache.getPrefetches());
+
+        // access a/0, so that a/1 is the least recently used object
+        BufferPool.free(cache.get("a", 0, 1, 0, 100, 100).getData());
+        cache.put("b", 1, 1, createObject(100, (byte) 0), false);
+        assertEquals(300, cache.getSize());
+        assertFalse(cache.contains("a", 1, 1));
+        assertTrue(cache.contains("a", 0, 1));
+
+        // a prefetched object counts only once as a prefetch hit
+        BufferPool.free(cache.get("b", 0, 1, 0, 100, 100).getData());
+        BufferPool.free(cache.get("b", 0, 1, 0, 100, 100).getData());
+        assertEquals(1, cache.getPrefetchHits());
+
+        // views of invalidated objects remain valid
+        ReusableBuffer view = cache.get("b", 1, 1, 0, 100, 100).getData();
+        cache.invalidate("b");
+        assertEquals(100, cache.getSize());
+        assertFalse(cache.contains("b", 0, 1));
+        assertEquals(100, view.remaining());
+        BufferPool.free(view);
+
+        cache.invalidate("a", 0);
+        assertEquals(0, cache.getSize());
+
+        // objects larger than the cache are not cached
+        cache.put("c", 0, 1, createObject(400, (byte) 0), false);
+        assertEquals(0, cache.getSize());
+    }
+}
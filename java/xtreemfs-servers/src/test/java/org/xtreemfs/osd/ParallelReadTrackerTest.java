@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.xtreemfs.TestHelper;
+import org.xtreemfs.osd.storage.ParallelReadTracker;
+
+public class ParallelReadTrackerTest {
+    @Rule
+    public final TestRule testLog = TestHelper.testLog;
+
+    @Test
+    public void testReadsAfterWrites() throws Exception {
+        ParallelReadTracker tracker = new ParallelReadTracker();
+
+        assertTrue(tracker.register("a", true));
+        assertTrue(tracker.register("a", true));
+
+        // a pending write makes subsequent reads serial
+        assertFalse(tracker.register("a", false));
+        assertFalse(tracker.register("a", true));
+
+        // reads of other files are not affected
+        assertTrue(tracker.register("b", true));
+        tracker.done("b", true);
+
+        tracker.done("a", true);
+        tracker.done("a", true);
+        tracker.done("a", false);
+        assertEquals(1, tracker.getNumberOfFiles());
+        tracker.done("a", false);
+        assertEquals(0, tracker.getNumberOfFiles());
+
+        assertTrue(tracker.register("a", true));
+        tracker.done("a", true);
+    }
+
+    @Test
+    public void testWriteWaitsForReads() throws Exception {
+        final ParallelReadTracker tracker = new ParallelReadTracker();
+
+        assertTrue(tracker.register("a", true));
+        assertFalse(tracker.register("a", false));
+
+        final AtomicBoolean written = new AtomicBoolean();
+        Thread writer = new Thread() {
+            public void run() {
+                try {
+                    tracker.awaitParallelReads("a");
+                    written.set(true);
+                    tracker.done("a", false);
+                } catch (InterruptedException ex) {
+                    // ignore
+                }
+            }
+        };
+        writer.start();
+
+        writer.join(200);
+        assertFalse(written.get());
+
+        tracker.done("a", true);
+        writer.join(10000);
+        assertTrue(written.get());
+        assertEquals(0, tracker.getNumberOfFiles());
+    }
+}
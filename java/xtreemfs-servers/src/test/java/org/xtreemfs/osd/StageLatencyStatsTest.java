@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2026 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.xtreemfs.TestHelper;
+import org.xtreemfs.osd.stages.LatencyHistogram;
+import org.xtreemfs.osd.stages.RequestTimings;
+import org.xtreemfs.osd.stages.StageLatencyStats;
+import org.xtreemfs.osd.stages.StageLatencyStats.Phase;
+
+public class StageLatencyStatsTest {
+    @Rule
+    public final TestRule testLog = TestHelper.testLog;
+
+    @Test
+    public void testHistogram() throws Exception {
+        LatencyHistogram hist = new LatencyHistogram();
+        assertEquals(0, hist.getPercentileMicros(99));
+
+        // 98 requests of 10 us, one of 1 ms and one of 100 ms
+        for (int i = 0; i < 98; i++)
+            hist.add(10000);
+        hist.add(1000000);
+        hist.add(100000000);
+
+        assertEquals(100, hist.getCount());
+        assertEquals((98 * 10 + 1000 + 100000) / 100, hist.getMeanMicros());
+        assertEquals(100000, hist.getMaxMicros());
+        assertEquals(16, hist.getPercentileMicros(50));
+        assertEquals(1024, hist.getPercentileMicros(99));
+        assertEquals(100000, hist.getPercentileMicros(100));
+
+        LatencyHistogram sum = new LatencyHistogram();
+        sum.addAll(hist);
+        sum.addAll(hist);
+        assertEquals(200, sum.getCount());
+        assertEquals(hist.getMeanMicros(), sum.getMeanMicros());
+        assertEquals(100000, sum.getMaxMicros());
+    }
+
+    @Test
+    public void testSampling() throws Exception {
+        StageLatencyStats stats = new StageLatencyStats(4);
+        int sampled = 0;
+        for (int i = 0; i < 20; i++)
+            if (stats.sample() != null)
+                sampled++;
+        assertEquals(5, sampled);
+
+        assertNull(new StageLatencyStats(0).sample());
+    }
+
+    @Test
+    public void testPhases() throws Exception {
+        StageLatencyStats stats = new StageLatencyStats(1);
+
+        RequestTimings timings = stats.sample();
+        assertNotNull(timings);
+        timings.enter(Phase.PREPROC_QUEUE);
+        timings.enter(Phase.PREPROC);
+        // the request is handed to the storage stage while the preproc stage
+        // is still processing it
+        timings.enter(Phase.STORAGE_QUEUE);
+        timings.leave(Phase.PREPROC);
+        timings.enter(Phase.STORAGE);
+        Thread.sleep(20);
+        timings.finish("Read");
+        // transitions after the response are ignored
+        timings.leave(Phase.STORAGE);
+        timings.finish("Read");
+
+        stats.sample().finish("Write");
+
+        LatencyHistogram[] read = stats.getHistograms().get("Read");
+        assertEquals(1, read[Phase.PREPROC.ordinal()].getCount());
+        assertEquals(1, read[Phase.STORAGE_QUEUE.ordinal()].getCount());
+        assertEquals(0, read[Phase.RWR.ordinal()].getCount());
+        assertTrue(read[Phase.STORAGE.ordinal()].getMeanMicros() >= 20000);
+        assertTrue(read[Phase.TOTAL.ordinal()].getMeanMicros() >= read[Phase.STORAGE.ordinal()].getMeanMicros());
+
+        assertEquals(2, stats.getHistograms().size());
+        assertEquals(2, stats.getAggregate(Phase.TOTAL).getCount());
+        assertEquals(1, stats.getAggregate(Phase.STORAGE).getCount());
+
+        stats.reset();
+        assertEquals(0, stats.getAggregate(Phase.TOTAL).getCount());
+    }
+}
@@ -12,10 +12,14 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.junit.After;
 import org.junit.Before;
@@ -34,10 +38,14 @@ import org.xtreemfs.osd.OSDConfig;
 import org.xtreemfs.osd.replication.ObjectSet;
 import org.xtreemfs.osd.storage.FileMetadata;
 import org.xtreemfs.osd.storage.HashStorageLayout;
+import org.xtreemfs.osd.storage.LogStructuredStorageLayout;
 import org.xtreemfs.osd.storage.MetadataCache;
+import org.xtreemfs.osd.storage.MultiDeviceStorageLayout;
 import org.xtreemfs.osd.storage.ObjectInformation;
 import org.xtreemfs.osd.storage.SingleFileStorageLayout;
 import org.xtreemfs.osd.storage.StorageLayout;
+import org.xtreemfs.osd.storage.StorageLayout.FileData;
+import org.xtreemfs.osd.storage.StorageLayout.FileList;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.Replica;
 import org.xtreemfs.SetupUtils;
 import org.xtreemfs.TestHelper;
@@ -132,6 +140,467 @@ public class StorageLayoutTest {
         getFileIDListTest(layout);
     }
 
+    @Test
+    public void testHashStorageLayoutObjectIndex() throws Exception {
+        final String fileId = "ABCDEFG:0001";
+
+        Replica r = Replica.newBuilder().setStripingPolicy(SetupUtils.getStripingPolicy(1, 64)).setReplicationFlags(0)
+                .build();
+        StripingPolicyImpl sp = StripingPolicyImpl.getPolicy(r, 0);
+
+        HashStorageLayout layout = new HashStorageLayout(config, new MetadataCache());
+        FileMetadata md = layout.getFileMetadata(sp, fileId);
+
+        ReusableBuffer data = BufferPool.allocate(64);
+        for (int i = 0; i < 64; i++) {
+            data.put((byte) (48 + i));
+        }
+        data.flip();
+
+        // create objects 0-3, overwrite object 1 and truncate object 3
+        for (long objNo = 0; objNo < 4; objNo++) {
+            layout.writeObject(fileId, md, data.createViewBuffer(), objNo, 0, 1l, false, false);
+        }
+        layout.writeObject(fileId, md, data.createViewBuffer(), 1l, 0, 2l, false, false);
+        layout.truncateObject(fileId, md, 3l, 16, 3l, false);
+        BufferPool.free(data);
+        final long fileSize = 3 * sp.getStripeSizeForObject(0) + 16;
+
+        // after a clean shutdown, the metadata is restored from the index
+        // without scanning the directory
+        layout.shutdown();
+        HashStorageLayout layout2 = new HashStorageLayout(config, new MetadataCache());
+        FileMetadata md2 = layout2.getFileMetadata(sp, fileId);
+        assertEquals(0, layout2.getObjectDirScanCount());
+        assertObjectVersions(md2, 3, fileSize, 1l, 2l, 1l, 3l);
+
+        // without a clean shutdown, the index is rebuilt
+        HashStorageLayout layout3 = new HashStorageLayout(config, new MetadataCache());
+        assertObjectVersions(layout3.getFileMetadata(sp, fileId), 3, fileSize, 1l, 2l, 1l, 3l);
+        assertEquals(1, layout3.getObjectDirScanCount());
+        layout3.shutdown();
+
+        // a corrupt index is rebuilt
+        File indexFile = new File(layout.generateAbsoluteFilePath(fileId), HashStorageLayout.OBJECT_INDEX_FILENAME);
+        FileOutputStream out = new FileOutputStream(indexFile);
+        out.write(new byte[] { 1, 2, 3 });
+        out.close();
+
+        HashStorageLayout layout4 = new HashStorageLayout(config, new MetadataCache());
+        assertObjectVersions(layout4.getFileMetadata(sp, fileId), 3, fileSize, 1l, 2l, 1l, 3l);
+        assertEquals(1, layout4.getObjectDirScanCount());
+        layout4.shutdown();
+
+        HashStorageLayout layout5 = new HashStorageLayout(config, new MetadataCache());
+        assertObjectVersions(layout5.getFileMetadata(sp, fileId), 3, fileSize, 1l, 2l, 1l, 3l);
+        assertEquals(0, layout5.getObjectDirScanCount());
+        layout5.shutdown();
+    }
+
+    @Test
+    public void testHashStorageLayoutSparsePadding() throws Exception {
+        final String fileId = "ABCDEFG:0002";
+
+        Replica r = Replica.newBuilder().setStripingPolicy(SetupUtils.getStripingPolicy(1, 64)).setReplicationFlags(0)
+                .build();
+        StripingPolicyImpl sp = StripingPolicyImpl.getPolicy(r, 0);
+        final int stripeSize = sp.getStripeSizeForObject(0);
+
+        HashStorageLayout layout = new HashStorageLayout(config, new MetadataCache());
+        FileMetadata md = layout.getFileMetadata(sp, fileId);
+
+        ReusableBuffer data = BufferPool.allocate(64);
+        for (int i = 0; i < 64; i++) {
+            data.put((byte) (48 + i));
+        }
+        data.flip();
+
+        // extend a file of 64 bytes to 3 full objects and a last object of 100 bytes
+        layout.writeObject(fileId, md, data.createViewBuffer(), 0l, 0, 1l, false, false);
+        layout.truncateObject(fileId, md, 0l, stripeSize, 1l, false);
+        layout.createPaddingObject(fileId, md, 1l, 1l, stripeSize);
+        layout.createPaddingObject(fileId, md, 2l, 1l, stripeSize);
+        layout.createPaddingObject(fileId, md, 3l, 1l, 100);
+
+        // only object 0 has an object file
+        File fileDir = new File(layout.generateAbsoluteFilePath(fileId));
+        int numObjFiles = 0;
+        for (String name : fileDir.list()) {
+            if (!name.startsWith("."))
+                numObjFiles++;
+        }
+        assertEquals(1, numObjFiles);
+        assertEquals(2, md.getPaddingExtents().getExtentCount());
+        assertEquals(4, layout.getObjectSet(fileId, md).size());
+
+        // padding objects consist of zeros
+        ObjectInformation oinfo = layout.readObject(fileId, md, 1l, 0, stripeSize, 1l);
+        assertEquals(ObjectInformation.ObjectStatus.EXISTS, oinfo.getStatus());
+        assertEquals(stripeSize, oinfo.getData().remaining());
+        while (oinfo.getData().hasRemaining()) {
+            assertEquals(0, oinfo.getData().get());
+        }
+        BufferPool.free(oinfo.getData());
+
+        oinfo = layout.readObject(fileId, md, 3l, 50, 100, 1l);
+        assertEquals(50, oinfo.getData().remaining());
+        BufferPool.free(oinfo.getData());
+
+        final long fileSize = 3 * stripeSize + 100;
+        assertObjectVersions(new HashStorageLayout(config, new MetadataCache()).getFileMetadata(sp, fileId), 3,
+                fileSize, 1l, 1l, 1l, 1l);
+
+        // writing a padding object creates its object file
+        layout.writeObject(fileId, md, data.createViewBuffer(), 2l, 10, 1l, false, false);
+        oinfo = layout.readObject(fileId, md, 2l, 0, stripeSize, 1l);
+        assertEquals(stripeSize, oinfo.getData().remaining());
+        assertEquals(0, oinfo.getData().get(9));
+        assertEquals(48, oinfo.getData().get(10));
+        BufferPool.free(oinfo.getData());
+        assertEquals(2, md.getPaddingExtents().getExtentCount());
+
+        // truncating a padding object only changes its size
+        layout.truncateObject(fileId, md, 3l, 200, 1l, false);
+        assertEquals(2, md.getPaddingExtents().getExtentCount());
+        assertObjectVersions(new HashStorageLayout(config, new MetadataCache()).getFileMetadata(sp, fileId), 3,
+                3 * stripeSize + 200, 1l, 1l, 1l, 1l);
+        BufferPool.free(data);
+
+        // a padding object that is overwritten completely is replaced by its
+        // object file
+        ReusableBuffer fullObj = BufferPool.allocate(stripeSize);
+        while (fullObj.hasRemaining()) {
+            fullObj.put((byte) 1);
+        }
+        fullObj.flip();
+        layout.writeObject(fileId, md, fullObj.createViewBuffer(), 3l, 0, 1l, false, false);
+        BufferPool.free(fullObj);
+        assertEquals(1, md.getPaddingExtents().getExtentCount());
+        oinfo = layout.readObject(fileId, md, 3l, 0, stripeSize, 1l);
+        assertEquals(stripeSize, oinfo.getData().remaining());
+        assertEquals(1, oinfo.getData().get(stripeSize - 1));
+        BufferPool.free(oinfo.getData());
+
+        layout.deleteObject(fileId, md, 1l, 1l);
+        assertTrue(md.getPaddingExtents().isEmpty());
+
+        layout.deleteFile(fileId, false);
+        assertFalse(new File(fileDir, HashStorageLayout.PADDING_FILENAME).exists());
+    }
+
+    @Test
+    public void testHashStorageLayoutDeltaVersions() throws Exception {
+        final String fileId = "ABCDEFG:0003";
+
+        Replica r = Replica.newBuilder().setStripingPolicy(SetupUtils.getStripingPolicy(1, 64)).setReplicationFlags(0)
+                .build();
+        StripingPolicyImpl sp = StripingPolicyImpl.getPolicy(r, 0);
+        final int stripeSize = sp.getStripeSizeForObject(0);
+
+        HashStorageLayout layout = new HashStorageLayout(config, new MetadataCache());
+        FileMetadata md = layout.getFileMetadata(sp, fileId);
+
+        byte[] v1 = new byte[stripeSize];
+        for (int i = 0; i < v1.length; i++) {
+            v1[i] = (byte) i;
+        }
+        layout.writeObject(fileId, md, ReusableBuffer.wrap(v1.clone()), 0l, 0, 1l, false, true);
+
+        // small copy-on-write writes create delta versions
+        byte[] v2 = v1.clone();
+        writeRange(layout, fileId, md, v2, 100, 64, 2l, true);
+        byte[] v3 = v2.clone();
+        writeRange(layout, fileId, md, v3, 1000, 64, 3l, true);
+        writeRange(layout, fileId, md, v3, 2000, 64, 3l, false);
+
+        File fileDir = new File(layout.generateAbsoluteFilePath(fileId));
+        assertEquals(2, new File(fileDir, HashStorageLayout.DELTA_DIRNAME).list().length);
+        assertEquals(2l, md.getDeltaBaseVersion(0, 3));
+
+        assertObjectContent(layout, fileId, md, 1l, v1);
+        assertObjectContent(layout, fileId, md, 2l, v2);
+        assertObjectContent(layout, fileId, md, 3l, v3);
+
+        // ranges that cut through the byte ranges of the deltas
+        assertObjectRange(layout, fileId, md, 3l, v3, 1030, 1000);
+        assertObjectRange(layout, fileId, md, 3l, v3, 120, 10);
+        assertObjectRange(layout, fileId, md, 3l, v3, 2060, stripeSize - 2060);
+
+        // delta versions are restored with the metadata
+        FileMetadata md2 = new HashStorageLayout(config, new MetadataCache()).getFileMetadata(sp, fileId);
+        assertObjectVersions(md2, 0, stripeSize, 3l);
+        assertObjectContent(layout, fileId, md2, 3l, v3);
+
+        // deleting a base version merges the delta versions based on it
+        layout.deleteObject(fileId, md, 0l, 1l);
+        assertEquals(0, md.getDeltaBaseVersion(0, 2));
+        assertEquals(1, new File(fileDir, HashStorageLayout.DELTA_DIRNAME).list().length);
+        assertObjectContent(layout, fileId, md, 2l, v2);
+        assertObjectContent(layout, fileId, md, 3l, v3);
+        assertEquals(0, layout.compactObjectVersions(fileId, md));
+
+        layout.deleteFile(fileId, false);
+        assertFalse(new File(fileDir, HashStorageLayout.DELTA_DIRNAME).exists());
+    }
+
+    private static void writeRange(StorageLayout layout, String fileId, FileMetadata md, byte[] content,
+            int offset, int length, long version, boolean cow) throws IOException {
+        ReusableBuffer data = BufferPool.allocate(length);
+        for (int i = 0; i < length; i++) {
+            content[offset + i] = (byte) (version * 7 + i);
+            data.put(content[offset + i]);
+        }
+        data.flip();
+        layout.writeObject(fileId, md, data, 0l, offset, version, false, cow);
+    }
+
+    private static void assertObjectContent(StorageLayout layout, String fileId, FileMetadata md, long version,
+            byte[] content) throws IOException {
+        ObjectInformation oinfo = layout.readObject(fileId, md, 0l, 0, content.length, version);
+        assertEquals(content.length, oinfo.getData().remaining());
+        for (int i = 0; i < content.length; i++) {
+            assertEquals("offset " + i, content[i], oinfo.getData().get());
+        }
+        BufferPool.free(oinfo.getData());
+    }
+
+    private static void assertObjectRange(StorageLayout layout, String fileId, FileMetadata md, long version,
+            byte[] content, int offset, int length) throws IOException {
+        ObjectInformation oinfo = layout.readObject(fileId, md, 0l, offset, length, version);
+        assertEquals(Math.min(length, content.length - offset), oinfo.getData().remaining());
+        for (int i = offset; i < offset + oinfo.getData().limit(); i++) {
+            assertEquals("offset " + i, content[i], oinfo.getData().get());
+        }
+        BufferPool.free(oinfo.getData());
+    }
+
+    @Test
+    public void testHashStorageLayoutGetFileList() throws Exception {
+
+        Replica r = Replica.newBuilder().setStripingPolicy(SetupUtils.getStripingPolicy(1, 64)).setReplicationFlags(0)
+                .build();
+        StripingPolicyImpl sp = StripingPolicyImpl.getPolicy(r, 0);
+        final long stripeSize = sp.getStripeSizeForObject(0);
+
+        HashStorageLayout layout = new HashStorageLayout(config, new MetadataCache());
+
+        ReusableBuffer data = BufferPool.allocate(64);
+        for (int i = 0; i < 64; i++) {
+            data.put((byte) (48 + i));
+        }
+        data.flip();
+
+        // file i consists of i full objects and a last object of 64 bytes
+        final int numFiles = 100;
+        for (int i = 0; i < numFiles; i++) {
+            String fileId = "ABCDEFG:" + i;
+            FileMetadata md = layout.getFileMetadata(sp, fileId);
+            layout.writeObject(fileId, md, data.createViewBuffer(), i, 0, 1l, false, false);
+            if (i > 0) {
+                layout.writeObject(fileId, md, data.createViewBuffer(), 0, (int) stripeSize - 64, 1l, false,
+                        false);
+            }
+        }
+        BufferPool.free(data);
+
+        Map<String, FileData> files = new HashMap<String, FileData>();
+        FileList l = null;
+        do {
+            l = layout.getFileList(l, 7);
+            assertTrue(l.getFiles().size() <= 7);
+            files.putAll(l.getFiles());
+        } while (l.hasMore());
+
+        assertEquals(numFiles, files.size());
+        for (int i = 2; i < numFiles; i++) {
+            assertEquals(i * stripeSize + 64, files.get("ABCDEFG:" + i).getSize());
+        }
+
+        // an unfinished list can be closed
+        l = layout.getFileList(null, 7);
+        assertTrue(l.hasMore());
+        l.close();
+    }
+
+    @Test
+    public void testMultiDeviceStorageLayout() throws Exception {
+
+        OSDConfig mdConfig = SetupUtils.createMultiDeviceOSD1Config(3);
+        for (String dir : mdConfig.getObjDirs()) {
+            FSUtils.delTree(new File(dir));
+        }
+
+        MultiDeviceStorageLayout layout = new MultiDeviceStorageLayout(mdConfig, new MetadataCache());
+        assertEquals(3, layout.getNumberOfDevices());
+        basicTests(layout);
+
+        Replica r = Replica.newBuilder().setStripingPolicy(SetupUtils.getStripingPolicy(1, 64)).setReplicationFlags(0)
+                .build();
+        StripingPolicyImpl sp = StripingPolicyImpl.getPolicy(r, 0);
+
+        ReusableBuffer data = BufferPool.allocate(64);
+        for (int i = 0; i < 64; i++) {
+            data.put((byte) (48 + i));
+        }
+        data.flip();
+
+        final int numFiles = 100;
+        int[] filesPerDevice = new int[3];
+        for (int i = 0; i < numFiles; i++) {
+            String fileId = "ABCDEFG:" + i;
+            FileMetadata md = layout.getFileMetadata(sp, fileId);
+            layout.writeObject(fileId, md, data.createViewBuffer(), 0, 0, 1l, false, false);
+            filesPerDevice[layout.getDevice(fileId)]++;
+        }
+        BufferPool.free(data);
+
+        // the files are spread across all devices
+        for (int i = 0; i < 3; i++) {
+            assertTrue(filesPerDevice[i] > 0);
+        }
+
+        // the file lists span all devices, including the file of the basic
+        // tests
+        Map<String, FileData> files = new HashMap<String, FileData>();
+        FileList l = null;
+        do {
+            l = layout.getFileList(l, 7);
+            assertTrue(l.getFiles().size() <= 7);
+            files.putAll(l.getFiles());
+        } while (l.hasMore());
+        assertEquals(numFiles + 1, files.size());
+        assertEquals(numFiles + 1, layout.getFileIDList().size());
+
+        // the files are located again by a new instance
+        MultiDeviceStorageLayout layout2 = new MultiDeviceStorageLayout(mdConfig, new MetadataCache());
+        for (int i = 0; i < numFiles; i++) {
+            String fileId = "ABCDEFG:" + i;
+            assertEquals(layout.getDevice(fileId), layout2.getDevice(fileId));
+            FileMetadata md = layout2.getFileMetadata(sp, fileId);
+            ObjectInformation oinfo = layout2.readObject(fileId, md, 0l, 0, StorageLayout.FULL_OBJECT_LENGTH, 1l);
+            assertEquals(64, oinfo.getData().remaining());
+            BufferPool.free(oinfo.getData());
+        }
+        
+        for (String dir : mdConfig.getObjDirs()) {
+            FSUtils.delTree(new File(dir));
+        }
+    }
+
+    @Test
+    public void testLogStructuredStorageLayoutBasics() throws Exception {
+
+        LogStructuredStorageLayout layout = new LogStructuredStorageLayout(config, new MetadataCache());
+        basicTests(layout);
+        layout.shutdown();
+    }
+
+    @Test
+    public void testLogStructuredStorageLayoutGetObjectList() throws Exception {
+
+        LogStructuredStorageLayout layout = new LogStructuredStorageLayout(config, new MetadataCache());
+        getObjectListTest(layout);
+        layout.shutdown();
+    }
+
+    @Test
+    public void testLogStructuredStorageLayoutGetFileIDList() throws Exception {
+
+        LogStructuredStorageLayout layout = new LogStructuredStorageLayout(config, new MetadataCache());
+        getFileIDListTest(layout);
+        layout.shutdown();
+    }
+
+    @Test
+    public void testLogStructuredStorageLayoutRecovery() throws Exception {
+
+        Replica r = Replica.newBuilder().setStripingPolicy(SetupUtils.getStripingPolicy(1, 64)).setReplicationFlags(0)
+                .build();
+        StripingPolicyImpl sp = StripingPolicyImpl.getPolicy(r, 0);
+        final long stripeSize = sp.getStripeSizeForObject(0);
+
+        LogStructuredStorageLayout layout = new LogStructuredStorageLayout(config, new MetadataCache());
+
+        final int dataSize = 4096;
+        ReusableBuffer data = BufferPool.allocate(dataSize);
+        for (int i = 0; i < dataSize; i++) {
+            data.put((byte) (48 + i));
+        }
+        data.flip();
+
+        // file i consists of i padding objects and a last object of 4 KB
+        final int numFiles = 20;
+        for (int i = 0; i < numFiles; i++) {
+            String fileId = "ABCDEFG:" + i;
+            FileMetadata md = layout.getFileMetadata(sp, fileId);
+            for (int j = 0; j < i; j++) {
+                layout.createPaddingObject(fileId, md, j, 1l, (int) stripeSize);
+            }
+            layout.writeObject(fileId, md, data.createViewBuffer(), i, 0, 1l, false, false);
+        }
+        layout.setTruncateEpoch("ABCDEFG:1", 5);
+        layout.deleteFile("ABCDEFG:0", true);
+        layout.shutdown();
+
+        // the index is rebuilt by replaying the segment
+        LogStructuredStorageLayout layout2 = new LogStructuredStorageLayout(config, new MetadataCache());
+        assertFalse(layout2.fileExists("ABCDEFG:0"));
+        for (int i = 1; i < numFiles; i++) {
+            String fileId = "ABCDEFG:" + i;
+            FileMetadata md = layout2.getFileMetadata(sp, fileId);
+            assertObjectVersions(md, i, i * stripeSize + dataSize);
+            assertEquals(i == 1 ? 5 : 0, md.getTruncateEpoch());
+            ObjectInformation oinfo = layout2.readObject(fileId, md, i, 0, StorageLayout.FULL_OBJECT_LENGTH, 1l);
+            assertEquals(dataSize, oinfo.getData().remaining());
+            assertEquals((byte) 48, oinfo.getData().get(0));
+            BufferPool.free(oinfo.getData());
+
+            // overwrite the last object with a new version
+            layout2.writeObject(fileId, md, data.createViewBuffer(), i, 0, 2l, false, false);
+        }
+        BufferPool.free(data);
+
+        // the live records of the segment of the first instance are padding
+        // objects, which are copied to the current segment
+        assertEquals(1, layout2.compact());
+        assertEquals(0, layout2.compact());
+        assertEquals(1, layout2.getNumberOfSegments());
+        layout2.shutdown();
+
+        // the index is restored from the checkpoint
+        LogStructuredStorageLayout layout3 = new LogStructuredStorageLayout(config, new MetadataCache());
+        for (int i = 1; i < numFiles; i++) {
+            String fileId = "ABCDEFG:" + i;
+            FileMetadata md = layout3.getFileMetadata(sp, fileId);
+            assertObjectVersions(md, i, i * stripeSize + dataSize);
+            assertEquals(2l, md.getLatestObjectVersion(i));
+            ObjectInformation oinfo = layout3.readObject(fileId, md, 0, 0, StorageLayout.FULL_OBJECT_LENGTH, 1l);
+            assertEquals(stripeSize, oinfo.getData().remaining());
+            BufferPool.free(oinfo.getData());
+        }
+        assertEquals(numFiles - 1, layout3.getFileIDList().size());
+        layout3.shutdown();
+
+        // without the checkpoint, the deletion of ABCDEFG:0 is lost since the
+        // segment that recorded it has been compacted
+        File segmentDir = new File(config.getObjDir(), LogStructuredStorageLayout.SEGMENT_DIR);
+        assertTrue(new File(segmentDir, LogStructuredStorageLayout.CHECKPOINT_FILENAME).delete());
+        try {
+            new LogStructuredStorageLayout(config, new MetadataCache());
+            fail();
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+    private static void assertObjectVersions(FileMetadata md, long lastObjNo, long fileSize, long... versions) {
+        assertEquals(lastObjNo, md.getLastObjectNumber());
+        assertEquals(fileSize, md.getFilesize());
+        for (int i = 0; i < versions.length; i++) {
+            assertEquals(versions[i], md.getLatestObjectVersion(i));
+        }
+    }
+
     /**
      * @param layout
      * @throws IOException
@@ -11,7 +11,7 @@ Summary:        XtreemFS base package
 Source0:        XtreemFS-%{version}.tar.gz
 
 #requires for any distribution
-BuildRequires:  maven >= 3.0.4 java-devel >= 1.6.0
+BuildRequires:  maven >= 3.0.4 java-devel >= 1.7.0
 # Client dependencies.
 BuildRequires:  gcc-c++ >= 4.1 fuse >= 2.6 fuse-devel >= 2.6 openssl-devel >= 0.9.8 cmake >= 2.6 boost-devel >= 1.35 libattr-devel >= 2
 
@@ -65,7 +65,7 @@ This package contains the XtreemFS client module.
 %package backend
 Summary:        XtreemFS backend modules and libraries
 Group:          System/Filesystems
-Requires:       jre >= 1.6.0
+Requires:       jre >= 1.7.0
 
 %description backend
 XtreemFS is a distributed and replicated file system for the internet. For more details, visit www.xtreemfs.org.
@@ -77,7 +77,7 @@ Summary:        XtreemFS server components (DIR, MRC, OSD)
 Group:          System/Filesystems
 Requires:       %{name}-backend == %{version}-%{release}
 Requires:       grep
-Requires:       jre >= 1.6.0
+Requires:       jre >= 1.7.0
 %if 0%{?fedora_version} >= 21 || 0%{?centos_version} >= 700 || 0%{?rhel_version} >= 700
 Requires:       initscripts
 %endif
@@ -95,7 +95,7 @@ Summary:        XtreemFS administration tools
 Group:          System/Filesystems
 Requires:       %{name}-backend == %{version}-%{release}
 Requires:       attr >= 2
-Requires:       jre >= 1.6.0
+Requires:       jre >= 1.7.0
 Provides:       XtreemFS-tools = %{version}
 Obsoletes:      XtreemFS-tools < %{version}
 